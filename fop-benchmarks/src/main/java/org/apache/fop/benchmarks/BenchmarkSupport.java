@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.apps.FopFactory;
+
+/**
+ * Helpers shared by the benchmarks: loading the FO fixtures and running identity transforms.
+ */
+final class BenchmarkSupport {
+
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates a FopFactory with the default configuration, resolving relative URIs against the
+     * working directory.
+     * @return the new FopFactory
+     */
+    static FopFactory newFopFactory() {
+        return FopFactory.newInstance(new File(".").toURI());
+    }
+
+    /**
+     * Loads one of the FO files in this package into memory so that reading it from disk
+     * doesn't skew the measurements.
+     * @param name the name of the fixture, e.g. "text.fo"
+     * @return the content of the fixture
+     * @throws IOException if the fixture can't be read
+     */
+    static byte[] loadFixture(String name) throws IOException {
+        InputStream in = BenchmarkSupport.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Fixture not found: " + name);
+        }
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Creates a new source for the given document.
+     * @param document the document
+     * @return the source
+     */
+    static Source newSource(byte[] document) {
+        return new StreamSource(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * Copies a document to the given result with an identity transform.
+     * @param document the document
+     * @param result the result, e.g. the default handler of a Fop instance
+     * @throws TransformerException if the document can't be transformed
+     */
+    static void transform(byte[] document, Result result) throws TransformerException {
+        Transformer transformer;
+        synchronized (TRANSFORMER_FACTORY) {
+            transformer = TRANSFORMER_FACTORY.newTransformer();
+        }
+        transformer.transform(newSource(document), result);
+    }
+
+    /**
+     * An output stream that counts the bytes written to it and otherwise drops them.
+     */
+    static final class CountingNullOutputStream extends OutputStream {
+
+        private long count;
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        /**
+         * Returns the number of bytes written so far.
+         * @return the byte count
+         */
+        long getCount() {
+            return count;
+        }
+    }
+}
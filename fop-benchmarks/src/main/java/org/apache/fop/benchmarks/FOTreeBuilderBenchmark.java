@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.sax.SAXResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.fo.FOEventHandler;
+
+/**
+ * Measures parsing an FO document into an FO tree with the FOTreeBuilder, without any layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class FOTreeBuilderBenchmark {
+
+    /** The FO fixture to parse */
+    @Param({"text.fo", "pages.fo"})
+    public String fixture;
+
+    private FopFactory fopFactory;
+
+    private byte[] document;
+
+    /**
+     * Loads the fixture.
+     * @throws Exception if the fixture can't be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = BenchmarkSupport.newFopFactory();
+        document = BenchmarkSupport.loadFixture(fixture);
+    }
+
+    /**
+     * Builds the FO tree.
+     * @return the user agent, so the tree isn't optimized away
+     * @throws Exception if the document can't be parsed
+     */
+    @Benchmark
+    public FOUserAgent buildFOTree() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setFOEventHandlerOverride(new NullFOEventHandler(userAgent));
+        Fop fop = fopFactory.newFop(userAgent);
+        BenchmarkSupport.transform(document, new SAXResult(fop.getDefaultHandler()));
+        return userAgent;
+    }
+
+    /** An FOEventHandler that ignores all events. */
+    private static final class NullFOEventHandler extends FOEventHandler {
+
+        NullFOEventHandler(FOUserAgent userAgent) {
+            super(userAgent);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.EmbeddingMode;
+import org.apache.fop.fonts.EncodingMode;
+import org.apache.fop.fonts.FontLoader;
+import org.apache.fop.fonts.FontUris;
+import org.apache.fop.fonts.MultiByteFont;
+import org.apache.fop.fonts.truetype.FontFileReader;
+import org.apache.fop.fonts.truetype.OFFontLoader;
+import org.apache.fop.fonts.truetype.OTFSubSetFile;
+import org.apache.fop.fonts.truetype.TTFSubSetFile;
+
+/**
+ * Measures subsetting a TrueType font with the TTFSubSetFile and an OpenType CFF font with the
+ * OTFSubSetFile, for the printable characters of the Latin-1 and Latin Extended-A blocks. The default font
+ * files are the ones in the test resources, relative to the fop-benchmarks directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class FontSubsettingBenchmark {
+
+    /** The TrueType font file */
+    @Param("../fop/test/resources/fonts/ttf/DejaVuLGCSerif.ttf")
+    public String ttfFont;
+
+    /** The OpenType CFF font file */
+    @Param("../fop/test/resources/fonts/otf/SourceSansProBold.otf")
+    public String otfFont;
+
+    private byte[] ttfData;
+
+    private String ttfHeader;
+
+    private MultiByteFont ttfMultiByteFont;
+
+    private byte[] otfData;
+
+    private MultiByteFont otfMultiByteFont;
+
+    private FontFileReader ttfReader;
+
+    private Map<Integer, Integer> ttfGlyphs;
+
+    private FontFileReader otfReader;
+
+    /**
+     * Loads the fonts and maps the characters to subset.
+     * @throws Exception if the fonts can't be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        File ttfFile = new File(ttfFont);
+        ttfData = FileUtils.readFileToByteArray(ttfFile);
+        ttfHeader = OFFontLoader.readHeader(new FontFileReader(new ByteArrayInputStream(ttfData)));
+        ttfMultiByteFont = loadFont(ttfFile);
+        File otfFile = new File(otfFont);
+        otfData = FileUtils.readFileToByteArray(otfFile);
+        otfMultiByteFont = loadFont(otfFile);
+    }
+
+    /**
+     * Creates fresh copies of the font data and the glyphs for every subset, since the
+     * TTFSubSetFile remaps the composite glyphs in place and adds their components to the glyphs.
+     * @throws Exception if the fonts can't be read
+     */
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws Exception {
+        ttfReader = new FontFileReader(new ByteArrayInputStream(ttfData));
+        ttfGlyphs = new HashMap<Integer, Integer>(ttfMultiByteFont.getUsedGlyphs());
+        otfReader = new FontFileReader(new ByteArrayInputStream(otfData));
+    }
+
+    private static MultiByteFont loadFont(File file) throws IOException {
+        InternalResourceResolver resourceResolver
+                = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                        file.getParentFile().toURI());
+        MultiByteFont font = (MultiByteFont) FontLoader.loadFont(
+                new FontUris(file.toURI(), null), null, true, EmbeddingMode.SUBSET,
+                EncodingMode.CID, true, true, resourceResolver, false, false, false);
+        for (char c = 0x20; c < 0x180; c++) {
+            if (c < 0x7F || c >= 0xA0) {
+                font.mapChar(c);
+            }
+        }
+        return font;
+    }
+
+    /**
+     * Creates a subset of the TrueType font.
+     * @return the subset
+     * @throws Exception if the subset can't be created
+     */
+    @Benchmark
+    public byte[] trueType() throws Exception {
+        TTFSubSetFile subset = new TTFSubSetFile();
+        subset.readFont(ttfReader, ttfMultiByteFont.getEmbedFontName(), ttfHeader, ttfGlyphs);
+        return subset.getFontSubset();
+    }
+
+    /**
+     * Creates a subset of the OpenType CFF font.
+     * @return the subset
+     * @throws Exception if the subset can't be created
+     */
+    @Benchmark
+    public byte[] openTypeCFF() throws Exception {
+        OTFSubSetFile subset = new OTFSubSetFile();
+        subset.readFont(otfReader, otfMultiByteFont.getEmbedFontName(), otfMultiByteFont);
+        return subset.getFontSubset();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFDocumentHandler;
+import org.apache.fop.render.intermediate.IFParser;
+import org.apache.fop.render.intermediate.IFSerializer;
+
+/**
+ * Measures reading the intermediate format with the IFParser, both into an IFSerializer (a
+ * round trip through the intermediate format) and into the PDF document handler. The
+ * intermediate format is produced from the FO fixture once, up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class IFRoundTripBenchmark {
+
+    /** The FO fixture to produce the intermediate format from */
+    @Param({"text.fo", "pages.fo"})
+    public String fixture;
+
+    private FopFactory fopFactory;
+
+    private byte[] intermediateFormat;
+
+    /**
+     * Renders the fixture to the intermediate format.
+     * @throws Exception if the fixture can't be rendered
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = BenchmarkSupport.newFopFactory();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_IF, out);
+        BenchmarkSupport.transform(BenchmarkSupport.loadFixture(fixture),
+                new SAXResult(fop.getDefaultHandler()));
+        intermediateFormat = out.toByteArray();
+    }
+
+    /**
+     * Parses the intermediate format and serializes it again.
+     * @return the number of bytes written
+     * @throws Exception if the intermediate format can't be processed
+     */
+    @Benchmark
+    public long roundTrip() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        BenchmarkSupport.CountingNullOutputStream out
+                = new BenchmarkSupport.CountingNullOutputStream();
+        IFSerializer serializer = new IFSerializer(new IFContext(userAgent));
+        serializer.setResult(new StreamResult(out));
+        new IFParser().parse(BenchmarkSupport.newSource(intermediateFormat), serializer,
+                userAgent);
+        return out.getCount();
+    }
+
+    /**
+     * Parses the intermediate format and renders it to PDF.
+     * @return the number of bytes written
+     * @throws Exception if the intermediate format can't be processed
+     */
+    @Benchmark
+    public long renderPDF() throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        BenchmarkSupport.CountingNullOutputStream out
+                = new BenchmarkSupport.CountingNullOutputStream();
+        IFDocumentHandler documentHandler = userAgent.getRendererFactory().createDocumentHandler(
+                userAgent, MimeConstants.MIME_PDF);
+        documentHandler.setResult(new StreamResult(out));
+        documentHandler.setDefaultFontInfo(new FontInfo());
+        new IFParser().parse(BenchmarkSupport.newSource(intermediateFormat), documentHandler,
+                userAgent);
+        return out.getCount();
+    }
+}
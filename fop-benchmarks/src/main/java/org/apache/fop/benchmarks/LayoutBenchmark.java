@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.sax.SAXResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+
+/**
+ * Measures the layout of the FO fixtures, with the pages dropped by a {@link SinkRenderer}
+ * instead of being rendered. The layout can't be driven without an FO tree, so both benchmarks
+ * include parsing; subtract {@link FOTreeBuilderBenchmark} to get the layout alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class LayoutBenchmark {
+
+    private FopFactory fopFactory;
+
+    private byte[] text;
+
+    private byte[] pages;
+
+    /**
+     * Loads the fixtures.
+     * @throws Exception if the fixtures can't be loaded
+     */
+    @Setup
+    public void setUp() throws Exception {
+        fopFactory = BenchmarkSupport.newFopFactory();
+        text = BenchmarkSupport.loadFixture("text.fo");
+        pages = BenchmarkSupport.loadFixture("pages.fo");
+    }
+
+    /**
+     * Lays out long justified paragraphs in narrow columns, which is dominated by the
+     * TextLayoutManager and the line breaking of the LineLayoutManager.
+     * @return the number of pages
+     * @throws Exception if the document can't be laid out
+     */
+    @Benchmark
+    public int lineBreaking() throws Exception {
+        return layout(text);
+    }
+
+    /**
+     * Lays out many short blocks, tables, lists and footnotes with keeps, which is dominated by
+     * the PageBreakingAlgorithm.
+     * @return the number of pages
+     * @throws Exception if the document can't be laid out
+     */
+    @Benchmark
+    public int pageBreaking() throws Exception {
+        return layout(pages);
+    }
+
+    private int layout(byte[] document) throws Exception {
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        SinkRenderer renderer = new SinkRenderer(userAgent);
+        userAgent.setRendererOverride(renderer);
+        Fop fop = fopFactory.newFop(userAgent);
+        BenchmarkSupport.transform(document, new SAXResult(fop.getDefaultHandler()));
+        return renderer.getPageCount();
+    }
+}
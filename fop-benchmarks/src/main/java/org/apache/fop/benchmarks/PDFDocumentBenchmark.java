@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFactory;
+import org.apache.fop.pdf.PDFFilterList;
+import org.apache.fop.pdf.PDFPage;
+import org.apache.fop.pdf.PDFReference;
+import org.apache.fop.pdf.PDFResources;
+import org.apache.fop.pdf.PDFStream;
+
+/**
+ * Measures building and writing a PDFDocument with text-heavy content streams, including
+ * the compression of the streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class PDFDocumentBenchmark {
+
+    private static final int PAGE_COUNT = 100;
+
+    private static final int LINES_PER_PAGE = 60;
+
+    /** The number of threads compressing the streams */
+    @Param({"1", "4"})
+    public int compressionThreads;
+
+    private String[] lines;
+
+    /**
+     * Prepares the content of the pages.
+     */
+    @Setup
+    public void setUp() {
+        lines = new String[LINES_PER_PAGE];
+        for (int i = 0; i < LINES_PER_PAGE; i++) {
+            lines[i] = "BT /F1 10 Tf 1 0 0 1 56.7 " + (785 - i * 12) + " Tm [(Line ) -27 ("
+                    + i + ") 55 (of the benchmark page, kerned and justified.)] TJ ET\n";
+        }
+    }
+
+    /**
+     * Builds and writes the document.
+     * @return the number of bytes written
+     * @throws Exception if the document can't be written
+     */
+    @Benchmark
+    public long output() throws Exception {
+        PDFDocument doc = new PDFDocument("Apache FOP Benchmark");
+        doc.getInfo().setCreationDate(new Date(0));
+        doc.setCompressionThreads(compressionThreads);
+        PDFFactory factory = doc.getFactory();
+        BenchmarkSupport.CountingNullOutputStream out
+                = new BenchmarkSupport.CountingNullOutputStream();
+        doc.outputHeader(out);
+        PDFResources resources = doc.getResources();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            PDFPage page = factory.makePage(resources, 595, 842, i);
+            PDFStream contents = factory.makeStream(PDFFilterList.CONTENT_FILTER, true);
+            for (String line : lines) {
+                contents.add(line);
+            }
+            page.setContents(new PDFReference(contents));
+            doc.addObject(page);
+            doc.output(out);
+        }
+        doc.outputTrailer(out);
+        return out.getCount();
+    }
+}
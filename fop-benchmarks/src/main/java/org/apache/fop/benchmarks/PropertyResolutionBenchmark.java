@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.helpers.AttributesImpl;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.FOEventHandler;
+import org.apache.fop.fo.PropertyList;
+import org.apache.fop.fo.StaticPropertyList;
+import org.apache.fop.fo.flow.Block;
+import org.apache.fop.fo.pagination.Root;
+
+/**
+ * Measures the conversion of FO attributes into properties and the lookup of inherited
+ * properties through a chain of property lists, as done for every formatting object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class PropertyResolutionBenchmark {
+
+    private static final int NESTING_DEPTH = 8;
+
+    private static final int[] INHERITED_PROPERTIES = {
+        Constants.PR_FONT_FAMILY, Constants.PR_FONT_SIZE, Constants.PR_LINE_HEIGHT,
+        Constants.PR_COLOR, Constants.PR_TEXT_ALIGN, Constants.PR_START_INDENT
+    };
+
+    private Root root;
+
+    private AttributesImpl attributes;
+
+    private PropertyList parentList;
+
+    private PropertyList nestedList;
+
+    /**
+     * Sets up the attributes and the chain of property lists.
+     * @throws Exception if the properties can't be set up
+     */
+    @Setup
+    public void setUp() throws Exception {
+        FOUserAgent userAgent = BenchmarkSupport.newFopFactory().newFOUserAgent();
+        root = new Root(null);
+        root.setFOEventHandler(new FOEventHandler(userAgent) { });
+
+        AttributesImpl parentAttributes = new AttributesImpl();
+        addAttribute(parentAttributes, "font-family", "serif");
+        addAttribute(parentAttributes, "font-size", "11pt");
+        addAttribute(parentAttributes, "line-height", "1.3");
+        addAttribute(parentAttributes, "text-align", "justify");
+        addAttribute(parentAttributes, "color", "#333333");
+        parentList = newPropertyList(null, parentAttributes);
+
+        attributes = new AttributesImpl();
+        addAttribute(attributes, "font-size", "0.9em");
+        addAttribute(attributes, "font-weight", "bold");
+        addAttribute(attributes, "space-before", "6pt");
+        addAttribute(attributes, "space-after.optimum", "3pt");
+        addAttribute(attributes, "margin", "2mm 1cm");
+        addAttribute(attributes, "padding-start", "2pt");
+        addAttribute(attributes, "border", "0.5pt solid black");
+        addAttribute(attributes, "background-color", "rgb(240, 240, 240)");
+        addAttribute(attributes, "start-indent", "inherited-property-value(start-indent) + 2mm");
+        addAttribute(attributes, "keep-with-next.within-page", "always");
+        addAttribute(attributes, "widows", "3");
+
+        nestedList = parentList;
+        for (int i = 0; i < NESTING_DEPTH; i++) {
+            nestedList = newPropertyList(nestedList, new AttributesImpl());
+        }
+    }
+
+    private static void addAttribute(AttributesImpl atts, String name, String value) {
+        atts.addAttribute("", name, name, "CDATA", value);
+    }
+
+    private PropertyList newPropertyList(PropertyList parent, AttributesImpl atts)
+            throws Exception {
+        PropertyList propertyList = new StaticPropertyList(new Block(root), parent);
+        propertyList.addAttributesToList(atts);
+        return propertyList;
+    }
+
+    /**
+     * Converts the attributes of a block and binds the resulting properties to it, like the
+     * FOTreeBuilder does for every fo:block.
+     * @return the block
+     * @throws Exception if the properties can't be resolved
+     */
+    @Benchmark
+    public Block explicitProperties() throws Exception {
+        Block block = new Block(root);
+        PropertyList propertyList = new StaticPropertyList(block, parentList);
+        propertyList.addAttributesToList(attributes);
+        block.bind(propertyList);
+        return block;
+    }
+
+    /**
+     * Looks up inherited properties in a fresh property list at the bottom of a chain of
+     * property lists without explicit properties.
+     * @param blackhole consumes the properties
+     * @throws Exception if the properties can't be resolved
+     */
+    @Benchmark
+    public void inheritedProperties(Blackhole blackhole) throws Exception {
+        PropertyList propertyList = new StaticPropertyList(new Block(root), nestedList);
+        for (int propId : INHERITED_PROPERTIES) {
+            blackhole.consume(propertyList.get(propId));
+        }
+    }
+}
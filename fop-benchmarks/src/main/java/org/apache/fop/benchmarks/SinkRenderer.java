@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.benchmarks;
+
+import java.awt.Rectangle;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.area.Block;
+import org.apache.fop.area.CTM;
+import org.apache.fop.area.PageViewport;
+import org.apache.fop.area.inline.InlineArea;
+import org.apache.fop.fonts.FontCollection;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.fonts.FontManager;
+import org.apache.fop.fonts.base14.Base14FontCollection;
+import org.apache.fop.render.AbstractRenderer;
+
+/**
+ * A renderer that drops the pages handed to it, so that rendering a document measures the
+ * FO tree building and the layout but not the output.
+ */
+class SinkRenderer extends AbstractRenderer {
+
+    private int pageCount;
+
+    /**
+     * Creates a new renderer.
+     * @param userAgent the user agent
+     */
+    SinkRenderer(FOUserAgent userAgent) {
+        super(userAgent);
+    }
+
+    /** {@inheritDoc} */
+    public String getMimeType() {
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public void setupFontInfo(FontInfo fontInfo) throws FOPException {
+        FontManager fontManager = userAgent.getFontManager();
+        FontCollection[] fontCollections = new FontCollection[] {
+                new Base14FontCollection(fontManager.isBase14KerningEnabled())
+        };
+        fontManager.setup(fontInfo, fontCollections);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderPage(PageViewport page) {
+        pageCount++;
+    }
+
+    /**
+     * Returns the number of pages laid out.
+     * @return the page count
+     */
+    int getPageCount() {
+        return pageCount;
+    }
+
+    /** {@inheritDoc} */
+    protected void startVParea(CTM ctm, Rectangle clippingRect) {
+    }
+
+    /** {@inheritDoc} */
+    protected void endVParea() {
+    }
+
+    /** {@inheritDoc} */
+    protected void renderReferenceArea(Block block) {
+    }
+
+    /** {@inheritDoc} */
+    protected void startLayer(String layer) {
+    }
+
+    /** {@inheritDoc} */
+    protected void endLayer() {
+    }
+
+    /** {@inheritDoc} */
+    protected void renderInlineAreaBackAndBorders(InlineArea area) {
+    }
+}
@@ -61,6 +61,7 @@ import java.util.Set;
 import org.apache.fop.fonts.Base14Font;
 import org.apache.fop.fonts.CodePointMapping;
 import org.apache.fop.fonts.FontType;
+import org.apache.fop.fonts.KerningTable;
 import org.apache.fop.fonts.Typeface;
 
 // CSOFF: ConstantNameCheck
@@ -84,7 +85,7 @@ public class <xsl:value-of select="class-name"/> extends Base14Font {
     private final CodePointMapping mapping =
         CodePointMapping.getMapping("<xsl:value-of select="$encoding"/>");
 <xsl:if test="count(kerning) &gt; 0">
-    private static final Map kerning;
+    private static final KerningTable kerningTable;
 </xsl:if>
 
     private boolean enableKerning;
@@ -103,11 +104,12 @@ public class <xsl:value-of select="class-name"/> extends Base14Font {
         familyNames = new java.util.HashSet();
         familyNames.add("<xsl:value-of select="family-name"/>");
 <xsl:if test="count(kerning) &gt; 0">
-        kerning = new java.util.HashMap();
+        Map kerning = new java.util.HashMap();
         Integer first;
         Integer second;
         Map pairs;
 <xsl:apply-templates select="kerning"/>
+        kerningTable = KerningTable.valueOf(kerning);
 </xsl:if>
     }
 
@@ -200,7 +202,11 @@ public class <xsl:value-of select="class-name"/> extends Base14Font {
     }
 
     public java.util.Map getKerningInfo() {
-        return kerning;
+        return kerningTable.asMap();
+    }
+
+    public KerningTable getKerningTable() {
+        return enableKerning ? kerningTable : KerningTable.EMPTY;
     }
 </xsl:when>
 <xsl:otherwise>
@@ -211,6 +217,10 @@ public class <xsl:value-of select="class-name"/> extends Base14Font {
     public java.util.Map getKerningInfo() {
         return java.util.Collections.EMPTY_MAP;
     }
+
+    public KerningTable getKerningTable() {
+        return KerningTable.EMPTY;
+    }
 </xsl:otherwise>
 </xsl:choose>
     public char mapChar(char c) {
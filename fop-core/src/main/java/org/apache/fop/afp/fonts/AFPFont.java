@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.fop.fonts.FontType;
+import org.apache.fop.fonts.KerningTable;
 import org.apache.fop.fonts.Typeface;
 
 /**
@@ -102,6 +103,14 @@ public abstract class AFPFont extends Typeface {
         return null;
     }
 
+    /**
+     * Returns the kerning table for the font.
+     * @return the kerning table
+     */
+    public KerningTable getKerningTable() {
+        return KerningTable.EMPTY;
+    }
+
     /**
      * Returns the character set for a given size
      * @param size the font size
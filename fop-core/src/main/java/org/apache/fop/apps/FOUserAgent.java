@@ -26,6 +26,7 @@ import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -45,6 +46,7 @@ import org.apache.fop.accessibility.Accessibility;
 import org.apache.fop.accessibility.DummyStructureTreeEventHandler;
 import org.apache.fop.accessibility.StructureTreeEventHandler;
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.area.PageNumberIndex;
 import org.apache.fop.configuration.Configuration;
 import org.apache.fop.configuration.ConfigurationException;
 import org.apache.fop.events.DefaultEventBroadcaster;
@@ -53,10 +55,13 @@ import org.apache.fop.events.EventBroadcaster;
 import org.apache.fop.events.EventListener;
 import org.apache.fop.events.FOPEventListenerProxy;
 import org.apache.fop.events.LoggingEventListener;
+import org.apache.fop.events.model.EventSeverity;
 import org.apache.fop.fo.ElementMappingRegistry;
 import org.apache.fop.fo.FOEventHandler;
 import org.apache.fop.fonts.FontManager;
+import org.apache.fop.hyphenation.HyphenationResultCache;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
+import org.apache.fop.image.ImageDataCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.Renderer;
@@ -105,6 +110,14 @@ public class FOUserAgent {
     private FOEventHandler foEventHandlerOverride;
     private boolean locatorEnabled = true; // true by default (for error messages).
     private boolean conserveMemoryPolicy;
+    private boolean cachedPageCompression;
+    private int maxUnresolvedPagesInMemory = -1;
+    private boolean twoPassLayout;
+    private PageNumberIndex pageNumberIndex;
+    private RenderMonitor renderMonitor;
+    private ExecutorService layoutExecutor;
+
+    private ImageDataCache imageDataCache;
     private EventBroadcaster eventBroadcaster = new FOPEventBroadcaster();
     private StructureTreeEventHandler structureTreeEventHandler
             = DummyStructureTreeEventHandler.INSTANCE;
@@ -150,6 +163,8 @@ public class FOUserAgent {
         setTargetResolution(factory.getTargetResolution());
         setAccessibility(factory.isAccessibilityEnabled());
         setKeepEmptyTags(factory.isKeepEmptyTags());
+        setLayoutExecutor(factory.getLayoutExecutor());
+        setImageDataCache(factory.getImageDataCache());
         imageSessionContext = new AbstractImageSessionContext(factory.getFallbackResolver()) {
 
             public ImageContext getParentContext() {
@@ -595,34 +610,60 @@ public class FOUserAgent {
 
     private class FOPEventBroadcaster extends DefaultEventBroadcaster {
 
-        private EventListener rootListener;
+        private volatile EventListener rootListener;
 
         public FOPEventBroadcaster() {
             //Install a temporary event listener that catches the first event to
             //do some initialization.
             this.rootListener = new EventListener() {
                 public void processEvent(Event event) {
-                    if (!listeners.hasEventListeners()) {
-                        //Backwards-compatibility: Make sure at least the LoggingEventListener is
-                        //plugged in so no events are just silently swallowed.
-                        addEventListener(
-                                new LoggingEventListener(LogFactory.getLog(FOUserAgent.class)));
+                    //Events may arrive from several layout threads at once
+                    synchronized (FOPEventBroadcaster.this) {
+                        if (rootListener == this) {
+                            if (!listeners.hasEventListeners()) {
+                                //Backwards-compatibility: Make sure at least the
+                                //LoggingEventListener is plugged in so no events are just
+                                //silently swallowed.
+                                addEventListener(new LoggingEventListener(
+                                        LogFactory.getLog(FOUserAgent.class)));
+                            }
+                            //Replace with final event listener
+                            rootListener = new FOPEventListenerProxy(
+                                    listeners, FOUserAgent.this);
+                        }
                     }
-                    //Replace with final event listener
-                    rootListener = new FOPEventListenerProxy(
-                            listeners, FOUserAgent.this);
                     rootListener.processEvent(event);
                 }
             };
         }
 
+        private volatile boolean muted;
+
         /** {@inheritDoc} */
         public void broadcastEvent(Event event) {
+            if (muted && event.getSeverity() != EventSeverity.ERROR
+                    && event.getSeverity() != EventSeverity.FATAL) {
+                return;
+            }
             rootListener.processEvent(event);
         }
 
     }
 
+    /**
+     * Controls whether informational events and warnings are dropped instead of being sent
+     * to the event listeners. Errors are always sent. This is used while laying out the
+     * document for the first time in two-pass layout mode, where the same events would
+     * otherwise be reported twice.
+     *
+     * @param muted true to drop informational events and warnings
+     */
+    void setEventsMuted(boolean muted) {
+        if (eventBroadcaster instanceof FOPEventBroadcaster) {
+            ((FOPEventBroadcaster) eventBroadcaster).muted = muted;
+        }
+    }
+
     /**
      * Check whether memory-conservation is enabled.
      *
@@ -641,6 +682,157 @@ public class FOUserAgent {
         this.conserveMemoryPolicy = conserveMemoryPolicy;
     }
 
+    /**
+     * Check whether the pages that are written to disk when memory-conservation is enabled
+     * are compressed.
+     *
+     * @return true if cached pages are compressed
+     */
+    public boolean isCachedPageCompressionEnabled() {
+        return this.cachedPageCompression;
+    }
+
+    /**
+     * Control whether the pages that are written to disk when memory-conservation is enabled
+     * should be compressed. This makes the temporary file smaller at the expense of some
+     * processing time.
+     *
+     * @param cachedPageCompression true to compress cached pages
+     */
+    public void setCachedPageCompression(boolean cachedPageCompression) {
+        this.cachedPageCompression = cachedPageCompression;
+    }
+
+    /**
+     * Returns the maximum number of pages with unresolved references that are kept in memory
+     * until the references are resolved.
+     *
+     * @return the maximum number of pages, or -1 if there is no maximum
+     */
+    public int getMaxUnresolvedPagesInMemory() {
+        return this.maxUnresolvedPagesInMemory;
+    }
+
+    /**
+     * Sets the maximum number of pages with unresolved references (such as the pages of a
+     * table of contents) that are kept in memory until the references are resolved. When
+     * there are more such pages, the oldest ones are written to a temporary file and read
+     * back once they can be rendered. This has no effect if memory-conservation is enabled,
+     * since all these pages are written to a temporary file then.
+     *
+     * @param maxUnresolvedPagesInMemory the maximum number of pages, or -1 to keep all pages
+     * in memory
+     */
+    public void setMaxUnresolvedPagesInMemory(int maxUnresolvedPagesInMemory) {
+        this.maxUnresolvedPagesInMemory = maxUnresolvedPagesInMemory;
+    }
+
+    /**
+     * Check whether two-pass layout is enabled.
+     *
+     * @return true if the document is laid out twice to resolve page number citations
+     */
+    public boolean isTwoPassLayoutEnabled() {
+        return this.twoPassLayout;
+    }
+
+    /**
+     * Controls whether the document is laid out twice. The first pass only collects the
+     * page numbers of all the formatting objects with an id; the second pass uses them for
+     * the page number citations (fo:page-number-citation and
+     * fo:page-number-citation-last) that point forward in the document, so that the lines
+     * and pages containing them are broken with the right text instead of a placeholder.
+     * The citations are still resolved once the cited pages have been laid out, as the text
+     * of the second pass may move them to other pages.
+     * This requires the whole FO document to be held in memory and only applies to
+     * output formats that are rendered from the area tree, without an overriding renderer
+     * or document handler.
+     *
+     * @param twoPassLayout true to enable two-pass layout
+     */
+    public void setTwoPassLayout(boolean twoPassLayout) {
+        this.twoPassLayout = twoPassLayout;
+    }
+
+    /**
+     * Returns the page numbers collected during the first pass of a two-pass layout.
+     *
+     * @return the page number index, or null if there is none
+     */
+    public PageNumberIndex getPageNumberIndex() {
+        return this.pageNumberIndex;
+    }
+
+    /**
+     * Sets the page numbers used to resolve page number citations while laying out the
+     * document.
+     *
+     * @param pageNumberIndex the page number index, or null
+     */
+    public void setPageNumberIndex(PageNumberIndex pageNumberIndex) {
+        this.pageNumberIndex = pageNumberIndex;
+    }
+
+    /**
+     * Returns the monitor that enforces the limits of this rendering run.
+     *
+     * @return the render monitor, or null if the rendering run has no limits
+     */
+    public RenderMonitor getRenderMonitor() {
+        return this.renderMonitor;
+    }
+
+    /**
+     * Sets the monitor that enforces the limits of this rendering run and allows it to be
+     * cancelled. The layout stops with a {@link RenderCancelledException} when the monitor
+     * says so.
+     *
+     * @param renderMonitor the render monitor, or null
+     */
+    public void setRenderMonitor(RenderMonitor renderMonitor) {
+        this.renderMonitor = renderMonitor;
+    }
+
+    /**
+     * Returns the executor used to lay out page-sequences concurrently. By default, this is
+     * the worker pool of the {@link FopFactory} if it has been configured with more than one
+     * layout thread.
+     *
+     * @return the layout executor or null if page-sequences are laid out on the parsing thread
+     */
+    public ExecutorService getLayoutExecutor() {
+        return this.layoutExecutor;
+    }
+
+    /**
+     * Sets the executor used to lay out page-sequences concurrently. Setting null lays out
+     * all page-sequences on the thread parsing the FO document.
+     *
+     * @param layoutExecutor the layout executor or null
+     */
+    public void setLayoutExecutor(ExecutorService layoutExecutor) {
+        this.layoutExecutor = layoutExecutor;
+    }
+
+    /**
+     * Returns the persistent cache of processed image data. By default, this is the cache of
+     * the {@link FopFactory} if it has been configured with an image data cache directory.
+     *
+     * @return the cache or null if processed image data isn't cached
+     */
+    public ImageDataCache getImageDataCache() {
+        return this.imageDataCache;
+    }
+
+    /**
+     * Sets the persistent cache of processed image data.
+     *
+     * @param imageDataCache the cache or null to not cache processed image data
+     */
+    public void setImageDataCache(ImageDataCache imageDataCache) {
+        this.imageDataCache = imageDataCache;
+    }
+
     /**
      * Check whether complex script features are enabled.
      *
@@ -819,6 +1011,14 @@ public class FOUserAgent {
         return factory.getHyphenationTreeCache();
     }
 
+    /**
+     * Returns the cache of hyphenated words of the FopFactory.
+     * @return the cache or null if hyphenation results aren't cached
+     */
+    public HyphenationResultCache getHyphenationResultCache() {
+        return factory.getHyphenationResultCache();
+    }
+
     public void setKeepEmptyTags(boolean b) {
         getRendererOptions().put(Accessibility.KEEP_EMPTY_TAGS, b);
     }
@@ -57,6 +57,9 @@ public class Fop {
     // FOTreeBuilder object to maintain reference for access to results
     private FOTreeBuilder foTreeBuilder;
 
+    // the handler receiving the FO document, the FOTreeBuilder unless two-pass layout is used
+    private DefaultHandler defaultHandler;
+
     /**
      * Constructor for use with already-created FOUserAgents. It uses MIME types to select the
      * output format (ex. "application/pdf" for PDF).
@@ -74,6 +77,10 @@ public class Fop {
         foUserAgent = ua;
 
         this.stream = stream;
+        RenderMonitor monitor = ua.getRenderMonitor();
+        if (monitor != null && stream != null) {
+            this.stream = monitor.countBytes(stream);
+        }
 
         createDefaultHandler();
     }
@@ -102,6 +109,25 @@ public class Fop {
      */
     private void createDefaultHandler() throws FOPException {
         this.foTreeBuilder = new FOTreeBuilder(outputFormat, foUserAgent, stream);
+        if (isTwoPassLayout()) {
+            this.defaultHandler = new TwoPassLayoutHandler(foUserAgent, outputFormat,
+                    foTreeBuilder);
+        } else {
+            this.defaultHandler = foTreeBuilder;
+        }
+    }
+
+    /**
+     * Two-pass layout only applies to output formats that are rendered from the area tree.
+     * It isn't used with an overriding renderer or document handler either, as the first
+     * pass needs one of its own to set up the fonts.
+     */
+    private boolean isTwoPassLayout() {
+        return foUserAgent.isTwoPassLayoutEnabled()
+                && foUserAgent.getFOEventHandlerOverride() == null
+                && foUserAgent.getRendererOverride() == null
+                && foUserAgent.getDocumentHandlerOverride() == null
+                && foUserAgent.getRendererFactory().getFOEventHandlerMaker(outputFormat) == null;
     }
 
     /**
@@ -114,7 +140,7 @@ public class Fop {
         if (foTreeBuilder == null) {
             createDefaultHandler();
         }
-        return this.foTreeBuilder;
+        return this.defaultHandler;
     }
 
     /**
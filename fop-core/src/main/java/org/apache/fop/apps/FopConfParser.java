@@ -57,6 +57,9 @@ public class FopConfParser {
 
     private static final String PREFER_RENDERER = "prefer-renderer";
     private static final String TABLE_BORDER_OVERPAINT = "table-border-overpaint";
+    private static final String LAYOUT_THREADS = "layout-threads";
+    private static final String CACHES = "caches";
+    private static final String IMAGE_DATA_CACHE = "image-data-cache";
 
     private final Log log = LogFactory.getLog(FopConfParser.class);
 
@@ -275,6 +278,47 @@ public class FopConfParser {
             }
         }
 
+        if (cfg.getChild(LAYOUT_THREADS, false) != null) {
+            try {
+                fopFactoryBuilder.setLayoutThreads(cfg.getChild(LAYOUT_THREADS).getValueAsInteger());
+            } catch (ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
+
+        if (cfg.getChild(CACHES, false) != null) {
+            for (Configuration cacheCfg : cfg.getChild(CACHES).getChildren("cache")) {
+                try {
+                    fopFactoryBuilder.setCacheSize(cacheCfg.getAttribute("name"),
+                            Integer.parseInt(cacheCfg.getAttribute("size")));
+                } catch (ConfigurationException e) {
+                    LogUtil.handleException(log, e, strict);
+                } catch (IllegalArgumentException iae) {
+                    LogUtil.handleException(log, iae, strict);
+                }
+            }
+        }
+
+        if (cfg.getChild(IMAGE_DATA_CACHE, false) != null) {
+            Configuration imageDataCfg = cfg.getChild(IMAGE_DATA_CACHE);
+            try {
+                URI directory = baseURI.resolve(
+                        InternalResourceResolver.getBaseURI(imageDataCfg.getValue()));
+                fopFactoryBuilder.setImageDataCacheDirectory(new File(directory));
+                // the maximum size is given in megabytes
+                int maxSize = imageDataCfg.getAttributeAsInteger("max-size", -1);
+                if (maxSize > 0) {
+                    fopFactoryBuilder.setImageDataCacheMaxSize(maxSize * 1024L * 1024L);
+                }
+            } catch (ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            } catch (URISyntaxException use) {
+                LogUtil.handleException(log, use, strict);
+            } catch (IllegalArgumentException iae) {
+                LogUtil.handleException(log, iae, strict);
+            }
+        }
+
         // configure font manager
         new FontManagerConfigurator(cfg, baseURI, fopFactoryBuilder.getBaseURI(), resourceResolver)
                 .configure(fopFactoryBuilder.getFontManager(), strict);
@@ -27,6 +27,12 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xml.sax.SAXException;
 
@@ -44,7 +50,9 @@ import org.apache.fop.configuration.Configuration;
 import org.apache.fop.fo.ElementMapping;
 import org.apache.fop.fo.ElementMappingRegistry;
 import org.apache.fop.fonts.FontManager;
+import org.apache.fop.hyphenation.HyphenationResultCache;
 import org.apache.fop.hyphenation.HyphenationTreeCache;
+import org.apache.fop.image.ImageDataCache;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.RendererConfig;
@@ -91,6 +99,17 @@ public final class FopFactory implements ImageContext {
 
     private HyphenationTreeCache hyphenationTreeCache;
 
+    /** Cache of hyphenated words shared by all rendering runs, null if disabled */
+    private final HyphenationResultCache hyphenationResultCache;
+
+    /** Worker pool shared by all rendering runs for laying out page-sequences concurrently */
+    private ExecutorService layoutExecutor;
+
+    /** Persistent cache of processed image data, created on first use */
+    private ImageDataCache imageDataCache;
+
+    private boolean imageDataCacheFailed;
+
     private FopFactory(FopFactoryConfig config) {
         this.config = config;
         this.resolver = ResourceResolverFactory.createInternalResourceResolver(config.getBaseURI(),
@@ -101,6 +120,13 @@ public final class FopFactory implements ImageContext {
         this.xmlHandlers = new XMLHandlerRegistry();
         this.imageHandlers = new ImageHandlerRegistry();
         rendererConfig = new HashMap<String, RendererConfig>();
+        int hyphenationCacheSize = config.getCacheSize(FopFactoryConfig.HYPHENATION_CACHE);
+        this.hyphenationResultCache = hyphenationCacheSize > 0
+                ? new HyphenationResultCache(hyphenationCacheSize) : null;
+        config.getFontManager().setShapingCacheSize(
+                config.getCacheSize(FopFactoryConfig.SHAPING_CACHE));
+        config.getFontManager().setWordMeasurementCacheSize(
+                config.getCacheSize(FopFactoryConfig.WORD_MEASUREMENT_CACHE));
     }
 
     /**
@@ -211,6 +237,61 @@ public final class FopFactory implements ImageContext {
         return config.isTableBorderOverpaint();
     }
 
+    /** @see FopFactoryConfig#getCacheSize(String) */
+    int getCacheSize(String cache) {
+        return config.getCacheSize(cache);
+    }
+
+    /**
+     * Returns the worker pool used to lay out page-sequences concurrently. The pool is created
+     * on first use and its threads die off when idle, so no explicit shutdown is required.
+     * @return the layout executor or null if concurrent layout is disabled
+     */
+    synchronized ExecutorService getLayoutExecutor() {
+        int threads = config.getLayoutThreads();
+        if (threads <= 1) {
+            return null;
+        }
+        if (layoutExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "FOP layout " + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            layoutExecutor = executor;
+        }
+        return layoutExecutor;
+    }
+
+    /**
+     * Returns the persistent cache of processed image data shared by all rendering runs. The
+     * cache is created on first use; if its directory cannot be created, an error is logged and
+     * images are processed without the cache.
+     * @return the image data cache or null if it is disabled
+     */
+    synchronized ImageDataCache getImageDataCache() {
+        File directory = config.getImageDataCacheDirectory();
+        if (directory == null) {
+            return null;
+        }
+        if (imageDataCache == null && !imageDataCacheFailed) {
+            try {
+                imageDataCache = new ImageDataCache(directory, config.getImageDataCacheMaxSize());
+            } catch (IOException ioe) {
+                log.error("Image data cache disabled: " + ioe.getMessage());
+                imageDataCacheFailed = true;
+            }
+        }
+        return imageDataCache;
+    }
+
     /**
      * Returns a new {@link Fop} instance. FOP will be configured with a default user agent
      * instance. Use this factory method if your output type requires an output stream.
@@ -454,4 +535,12 @@ public final class FopFactory implements ImageContext {
         }
         return hyphenationTreeCache;
     }
+
+    /**
+     * Returns the cache of hyphenated words, which is shared by all rendering runs.
+     * @return the cache or null if hyphenation results aren't cached
+     */
+    public HyphenationResultCache getHyphenationResultCache() {
+        return hyphenationResultCache;
+    }
 }
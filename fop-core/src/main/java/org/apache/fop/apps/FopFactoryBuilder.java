@@ -19,10 +19,14 @@
 
 package org.apache.fop.apps;
 
+import java.io.File;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -55,6 +59,10 @@ import org.apache.fop.layoutmgr.LayoutManagerMaker;
  */
 public final class FopFactoryBuilder {
 
+    /** The names of the caches whose size can be set */
+    private static final List<String> CACHES = Arrays.asList(FopFactoryConfig.HYPHENATION_CACHE,
+            FopFactoryConfig.SHAPING_CACHE, FopFactoryConfig.WORD_MEASUREMENT_CACHE);
+
     private final FopFactoryConfig config;
 
     private FopFactoryConfigBuilder fopFactoryConfigBuilder;
@@ -332,6 +340,75 @@ public final class FopFactoryBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to lay out page-sequences concurrently. Page-sequences
+     * that don't depend on the page count of their predecessor (i.e. that have an explicit
+     * initial-page-number) are laid out on a worker pool, and the finished pages are handed
+     * to the renderer in document order. A value of 1 (the default) lays out every
+     * page-sequence on the thread that parses the FO document.
+     *
+     * @param threads the number of layout threads
+     * @return <code>this</code>
+     */
+    public FopFactoryBuilder setLayoutThreads(int threads) {
+        fopFactoryConfigBuilder.setLayoutThreads(threads);
+        return this;
+    }
+
+    /**
+     * Sets the size of one of the bounded caches, which drop the least recently used entries
+     * when they are full. A size of 0 (the default) disables the cache.
+     * <ul>
+     * <li>{@link FopFactoryConfig#HYPHENATION_CACHE}: the number of hyphenated words cached per
+     * language, shared by all rendering runs of the FopFactory</li>
+     * <li>{@link FopFactoryConfig#SHAPING_CACHE}: the number of glyph substitution and
+     * positioning results of complex script text cached per rendering run</li>
+     * <li>{@link FopFactoryConfig#WORD_MEASUREMENT_CACHE}: the number of word measurements
+     * cached per rendering run</li>
+     * </ul>
+     *
+     * @param cache the name of the cache
+     * @param size the maximum number of entries
+     * @return <code>this</code>
+     * @throws IllegalArgumentException if there's no such cache or the size is negative
+     */
+    public FopFactoryBuilder setCacheSize(String cache, int size) {
+        if (!CACHES.contains(cache)) {
+            throw new IllegalArgumentException("Unknown cache: " + cache);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("The size of the " + cache
+                    + " cache must not be negative: " + size);
+        }
+        fopFactoryConfigBuilder.setCacheSize(cache, size);
+        return this;
+    }
+
+    /**
+     * Sets the directory of the persistent cache for processed image data. Images are
+     * identified by a hash of their content, so the directory can be shared by several
+     * FopFactory instances and JVMs. Null (the default) disables the cache.
+     *
+     * @param directory the cache directory or null
+     * @return <code>this</code>
+     */
+    public FopFactoryBuilder setImageDataCacheDirectory(File directory) {
+        fopFactoryConfigBuilder.setImageDataCacheDirectory(directory);
+        return this;
+    }
+
+    /**
+     * Sets the maximum total size of the persistent cache for processed image data. The least
+     * recently used entries are deleted when it is exceeded.
+     *
+     * @param maxSize the maximum size in bytes
+     * @return <code>this</code>
+     */
+    public FopFactoryBuilder setImageDataCacheMaxSize(long maxSize) {
+        fopFactoryConfigBuilder.setImageDataCacheMaxSize(maxSize);
+        return this;
+    }
+
     public static class FopFactoryConfigImpl implements FopFactoryConfig {
 
         private final EnvironmentProfile enviro;
@@ -375,6 +452,14 @@ public final class FopFactoryBuilder {
 
         private boolean tableBorderOverpaint;
 
+        private int layoutThreads = FopFactoryConfig.DEFAULT_LAYOUT_THREADS;
+
+        private final Map<String, Integer> cacheSizes = new HashMap<String, Integer>();
+
+        private File imageDataCacheDirectory;
+
+        private long imageDataCacheMaxSize = FopFactoryConfig.DEFAULT_IMAGE_DATA_CACHE_MAX_SIZE;
+
         private static final class ImageContextImpl implements ImageContext {
 
             private final FopFactoryConfig config;
@@ -495,6 +580,27 @@ public final class FopFactoryBuilder {
             return tableBorderOverpaint;
         }
 
+        /** {@inheritDoc} */
+        public int getLayoutThreads() {
+            return layoutThreads;
+        }
+
+        /** {@inheritDoc} */
+        public int getCacheSize(String cache) {
+            Integer size = cacheSizes.get(cache);
+            return size != null ? size : 0;
+        }
+
+        /** {@inheritDoc} */
+        public File getImageDataCacheDirectory() {
+            return imageDataCacheDirectory;
+        }
+
+        /** {@inheritDoc} */
+        public long getImageDataCacheMaxSize() {
+            return imageDataCacheMaxSize;
+        }
+
         public Map<String, String> getHyphenationPatternNames() {
             return hyphPatNames;
         }
@@ -542,6 +648,14 @@ public final class FopFactoryBuilder {
         void setHyphPatNames(Map<String, String> hyphPatNames);
 
         void setTableBorderOverpaint(boolean b);
+
+        void setLayoutThreads(int threads);
+
+        void setCacheSize(String cache, int size);
+
+        void setImageDataCacheDirectory(File directory);
+
+        void setImageDataCacheMaxSize(long maxSize);
     }
 
     private static final class CompletedFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -629,6 +743,22 @@ public final class FopFactoryBuilder {
         public void setTableBorderOverpaint(boolean b) {
             throwIllegalStateException();
         }
+
+        public void setLayoutThreads(int threads) {
+            throwIllegalStateException();
+        }
+
+        public void setCacheSize(String cache, int size) {
+            throwIllegalStateException();
+        }
+
+        public void setImageDataCacheDirectory(File directory) {
+            throwIllegalStateException();
+        }
+
+        public void setImageDataCacheMaxSize(long maxSize) {
+            throwIllegalStateException();
+        }
     }
 
     private static final class ActiveFopFactoryConfigBuilder implements FopFactoryConfigBuilder {
@@ -717,6 +847,22 @@ public final class FopFactoryBuilder {
         public void setTableBorderOverpaint(boolean b) {
             config.tableBorderOverpaint = b;
         }
+
+        public void setLayoutThreads(int threads) {
+            config.layoutThreads = threads;
+        }
+
+        public void setCacheSize(String cache, int size) {
+            config.cacheSizes.put(cache, size);
+        }
+
+        public void setImageDataCacheDirectory(File directory) {
+            config.imageDataCacheDirectory = directory;
+        }
+
+        public void setImageDataCacheMaxSize(long maxSize) {
+            config.imageDataCacheMaxSize = maxSize;
+        }
     }
 
 }
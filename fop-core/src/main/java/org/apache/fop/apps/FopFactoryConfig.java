@@ -19,6 +19,7 @@
 
 package org.apache.fop.apps;
 
+import java.io.File;
 import java.net.URI;
 import java.util.Map;
 import java.util.Set;
@@ -61,6 +62,21 @@ public interface FopFactoryConfig {
     /** Defines the default target resolution (72dpi) for FOP */
     float DEFAULT_TARGET_RESOLUTION = 72.0f; //dpi
 
+    /** Defines the default number of threads used for laying out page-sequences */
+    int DEFAULT_LAYOUT_THREADS = 1;
+
+    /** The cache of hyphenated words, per language and shared by all rendering runs */
+    String HYPHENATION_CACHE = "hyphenation";
+
+    /** The cache of glyph substitution and positioning results, per rendering run */
+    String SHAPING_CACHE = "shaping";
+
+    /** The cache of word measurements, per rendering run */
+    String WORD_MEASUREMENT_CACHE = "word-measurement";
+
+    /** Defines the default maximum size of the image data cache (100MB) */
+    long DEFAULT_IMAGE_DATA_CACHE_MAX_SIZE = 100L * 1024 * 1024;
+
     /**
      * Whether accessibility features are switched on.
      *
@@ -165,6 +181,36 @@ public interface FopFactoryConfig {
 
     boolean isTableBorderOverpaint();
 
+    /**
+     * Returns the number of threads used to lay out independent page-sequences concurrently.
+     * A value of 1 or less means that all page-sequences are laid out on the parsing thread.
+     * @return the number of layout threads
+     */
+    int getLayoutThreads();
+
+    /**
+     * Returns the size of one of the bounded caches that keep the results of repeated work,
+     * like hyphenating, shaping or measuring the same word again. Each of them drops the least
+     * recently used entries when it is full. A value of 0 (the default) disables the cache.
+     * @param cache the name of the cache: {@link #HYPHENATION_CACHE}, {@link #SHAPING_CACHE}
+     * or {@link #WORD_MEASUREMENT_CACHE}
+     * @return the maximum number of entries
+     */
+    int getCacheSize(String cache);
+
+    /**
+     * Returns the directory of the persistent cache for processed image data, which can be
+     * shared by several FopFactory instances and JVMs. Null disables the cache.
+     * @return the cache directory or null
+     */
+    File getImageDataCacheDirectory();
+
+    /**
+     * Returns the maximum total size of the persistent cache for processed image data.
+     * @return the maximum size in bytes
+     */
+    long getImageDataCacheMaxSize();
+
     /** @return the hyphenation pattern names */
     Map<String, String> getHyphenationPatternNames();
 
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+/**
+ * Thrown when a rendering run is stopped by its {@link RenderMonitor}, either because it was
+ * cancelled or because it exceeded one of its limits. It is unchecked so that it can leave
+ * the layout code at whatever point the limit is detected.
+ */
+public class RenderCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = -4541862254446213406L;
+
+    /**
+     * Creates a new exception.
+     * @param message the reason why the rendering run was stopped
+     */
+    public RenderCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.OutputStream;
+
+import javax.xml.transform.Source;
+
+/**
+ * A document to be rendered by a {@link RenderService}, with the limits that apply to its
+ * rendering run.
+ */
+public class RenderJob {
+
+    /**
+     * Configures the {@link FOUserAgent} of a rendering run before it starts.
+     */
+    public interface UserAgentCustomizer {
+
+        /**
+         * Configures the user agent.
+         * @param userAgent the user agent of the rendering run
+         * @throws FOPException if the user agent cannot be configured
+         */
+        void customize(FOUserAgent userAgent) throws FOPException;
+    }
+
+    private final Source source;
+
+    private final String outputFormat;
+
+    private final OutputStream outputStream;
+
+    private UserAgentCustomizer userAgentCustomizer;
+
+    private RenderProgressListener progressListener;
+
+    private long timeout;
+
+    private int maxPages;
+
+    private long maxHeapUsage;
+
+    /**
+     * Creates a new job.
+     * @param source the XSL-FO document
+     * @param outputFormat the MIME type of the output format (ex. "application/pdf")
+     * @param outputStream the output stream, or null for output formats that don't need one
+     */
+    public RenderJob(Source source, String outputFormat, OutputStream outputStream) {
+        this.source = source;
+        this.outputFormat = outputFormat;
+        this.outputStream = outputStream;
+    }
+
+    /** @return the XSL-FO document */
+    public Source getSource() {
+        return this.source;
+    }
+
+    /** @return the MIME type of the output format */
+    public String getOutputFormat() {
+        return this.outputFormat;
+    }
+
+    /** @return the output stream, or null */
+    public OutputStream getOutputStream() {
+        return this.outputStream;
+    }
+
+    /** @return the user agent customizer, or null */
+    public UserAgentCustomizer getUserAgentCustomizer() {
+        return this.userAgentCustomizer;
+    }
+
+    /**
+     * Sets the object that configures the user agent of the rendering run.
+     * @param userAgentCustomizer the user agent customizer
+     */
+    public void setUserAgentCustomizer(UserAgentCustomizer userAgentCustomizer) {
+        this.userAgentCustomizer = userAgentCustomizer;
+    }
+
+    /** @return the progress listener, or null */
+    public RenderProgressListener getProgressListener() {
+        return this.progressListener;
+    }
+
+    /**
+     * Sets the listener that receives the progress of the rendering run.
+     * @param progressListener the progress listener
+     */
+    public void setProgressListener(RenderProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /** @return the maximum duration of the rendering run in milliseconds, 0 for none */
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Sets the maximum duration of the rendering run. It counts from the moment the job
+     * starts running, the time spent waiting for a worker is not included.
+     * @param timeout the maximum duration in milliseconds, 0 for none
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /** @return the maximum number of pages, 0 for none */
+    public int getMaxPages() {
+        return this.maxPages;
+    }
+
+    /**
+     * Sets the maximum number of pages of the document.
+     * @param maxPages the maximum number of pages, 0 for none
+     */
+    public void setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    /** @return the maximum heap usage in bytes, 0 for none */
+    public long getMaxHeapUsage() {
+        return this.maxHeapUsage;
+    }
+
+    /**
+     * Sets the heap usage at which the rendering run is stopped. This is the heap of the whole
+     * JVM that is still in use after garbage collection, see
+     * {@link RenderMonitor#RenderMonitor(long, int, long)}.
+     * @param maxHeapUsage the maximum heap usage in bytes, 0 for none
+     */
+    public void setMaxHeapUsage(long maxHeapUsage) {
+        this.maxHeapUsage = maxHeapUsage;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces the limits of a rendering run, allows it to be cancelled and reports its
+ * progress. FOP calls {@link #check()} and {@link #pageCreated()} at safe points (while
+ * building the FO tree, when a page-sequence starts and ends, for every page, in the
+ * breaking loops and before a page is rendered), which throw a
+ * {@link RenderCancelledException} once the run has to stop. Cancellation is cooperative:
+ * the run stops at the next of these points. The monitor of a rendering run is set with
+ * {@link FOUserAgent#setRenderMonitor(RenderMonitor)}, before the {@link Fop} instance is
+ * created.
+ */
+public class RenderMonitor {
+
+    /** The memory pools of the heap that report their usage after garbage collection */
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = getHeapPools();
+
+    private final long timeout;
+
+    private final int maxPages;
+
+    private final long maxHeapUsage;
+
+    private final long deadline;
+
+    private final AtomicInteger pageCount = new AtomicInteger();
+
+    private final AtomicInteger pagesLaidOut = new AtomicInteger();
+
+    private final AtomicInteger pagesRendered = new AtomicInteger();
+
+    private volatile boolean cancelled;
+
+    private volatile RenderProgressListener progressListener;
+
+    private volatile CountingOutputStream output;
+
+    /**
+     * Creates a new monitor without limits. It can still be used to cancel a rendering run
+     * and to follow its progress.
+     */
+    public RenderMonitor() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Creates a new monitor. The time limit counts from the creation of the monitor.
+     * @param timeout the maximum duration of the rendering run in milliseconds, 0 for none
+     * @param maxPages the maximum number of pages, 0 for none
+     * @param maxHeapUsage the maximum number of bytes in use on the heap, 0 for none. This is
+     * the heap that was still in use after the most recent garbage collection, so garbage that
+     * hasn't been collected yet doesn't count. It is measured for the whole JVM rather than
+     * for the rendering run alone: it stops the runs that are in progress when live data fills
+     * the heap, before the JVM runs out of memory.
+     */
+    public RenderMonitor(long timeout, int maxPages, long maxHeapUsage) {
+        this.timeout = timeout;
+        this.maxPages = maxPages;
+        this.maxHeapUsage = maxHeapUsage;
+        this.deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+    }
+
+    /**
+     * Cancels the rendering run. It stops the next time the monitor is checked.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Indicates whether the rendering run has been cancelled.
+     * @return true if it has been cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Returns the number of pages created so far.
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return pageCount.get();
+    }
+
+    /**
+     * Sets the listener that receives the progress of the rendering run.
+     * @param progressListener the listener, or null
+     */
+    public void setProgressListener(RenderProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the number of pages laid out so far.
+     * @return the number of pages
+     */
+    public int getPagesLaidOut() {
+        return pagesLaidOut.get();
+    }
+
+    /**
+     * Returns the number of pages rendered so far.
+     * @return the number of pages
+     */
+    public int getPagesRendered() {
+        return pagesRendered.get();
+    }
+
+    /**
+     * Returns the number of bytes written to the output stream so far.
+     * @return the number of bytes, or -1 if the output isn't written to a stream
+     */
+    public long getBytesWritten() {
+        CountingOutputStream out = output;
+        return out == null ? -1 : out.count.get();
+    }
+
+    /**
+     * Counts a new page and checks the limits.
+     * @throws RenderCancelledException if the rendering run has to stop
+     */
+    public void pageCreated() {
+        int pages = pageCount.incrementAndGet();
+        if (maxPages > 0 && pages > maxPages) {
+            throw new RenderCancelledException("The document has more than " + maxPages
+                    + " pages");
+        }
+        check();
+    }
+
+    /**
+     * Signals that a page has been laid out.
+     */
+    public void pageLaidOut() {
+        int pages = pagesLaidOut.incrementAndGet();
+        RenderProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.pageLaidOut(pages);
+        }
+    }
+
+    /**
+     * Signals that a page has been rendered.
+     */
+    public void pageRendered() {
+        int pages = pagesRendered.incrementAndGet();
+        RenderProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.pageRendered(pages, getBytesWritten());
+        }
+    }
+
+    /**
+     * Resets the page counts after the first pass of a two-pass layout, so that the page
+     * limit and the progress apply to the final layout.
+     */
+    void resetPageCounts() {
+        pageCount.set(0);
+        pagesLaidOut.set(0);
+    }
+
+    /**
+     * Wraps the output stream of the rendering run to count the bytes written to it.
+     * @param out the output stream
+     * @return the stream to write the output to
+     */
+    OutputStream countBytes(OutputStream out) {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        this.output = counting;
+        return counting;
+    }
+
+    /**
+     * Checks whether the rendering run has been cancelled or has exceeded its time or memory
+     * limit.
+     * @throws RenderCancelledException if the rendering run has to stop
+     */
+    public void check() {
+        if (cancelled) {
+            throw new RenderCancelledException("The rendering run was cancelled");
+        }
+        if (System.currentTimeMillis() > deadline) {
+            throw new RenderCancelledException("The rendering run took longer than "
+                    + timeout + " ms");
+        }
+        if (maxHeapUsage > 0) {
+            long heapUsage = getHeapUsageAfterCollection();
+            if (heapUsage > maxHeapUsage) {
+                throw new RenderCancelledException("The heap usage of " + heapUsage
+                        + " bytes exceeds the limit of " + maxHeapUsage + " bytes");
+            }
+        }
+    }
+
+    private static List<MemoryPoolMXBean> getHeapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Returns the number of bytes of the heap that were in use after the most recent garbage
+     * collection of each memory pool, which is 0 until the first collection.
+     * @return the heap usage after garbage collection
+     */
+    static long getHeapUsageAfterCollection() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : HEAP_POOLS) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final AtomicLong count = new AtomicLong();
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count.addAndGet(len);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.apps;
+
+/**
+ * Receives the progress of a rendering run from its {@link RenderMonitor}. The methods may
+ * be called from the threads laying out the document, so they should return quickly.
+ */
+public interface RenderProgressListener {
+
+    /**
+     * Called when a page has been laid out.
+     * @param pagesLaidOut the number of pages laid out so far
+     */
+    void pageLaidOut(int pagesLaidOut);
+
+    /**
+     * Called when a page has been rendered.
+     * @param pagesRendered the number of pages rendered so far
+     * @param bytesWritten the number of bytes written to the output stream so far, or -1 if
+     * the output isn't written to a stream
+     */
+    void pageRendered(int pagesRendered, long bytesWritten);
+}
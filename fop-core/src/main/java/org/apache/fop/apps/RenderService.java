@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.apps;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+
+/**
+ * Renders documents on a pool of workers that share one {@link FopFactory}. Each
+ * {@link RenderJob} gets its own {@link FOUserAgent} and a {@link RenderMonitor} that
+ * enforces the limits of the job, so that a runaway document stops instead of keeping a
+ * worker busy forever. The service can run on its own thread pool or on any executor, such
+ * as one that starts a virtual thread per task.
+ */
+public class RenderService {
+
+    private final FopFactory fopFactory;
+
+    private final ExecutorService executor;
+
+    private final boolean ownExecutor;
+
+    private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    /**
+     * Creates a service with its own pool of workers.
+     * @param fopFactory the factory used for all jobs
+     * @param threads the number of workers
+     */
+    public RenderService(FopFactory fopFactory, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        this.fopFactory = fopFactory;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "FOP render " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+        this.ownExecutor = true;
+    }
+
+    /**
+     * Creates a service that runs its jobs on the given executor. The executor isn't shut
+     * down by {@link #shutdown()}.
+     * @param fopFactory the factory used for all jobs
+     * @param executor the executor running the jobs
+     */
+    public RenderService(FopFactory fopFactory, ExecutorService executor) {
+        this.fopFactory = fopFactory;
+        this.executor = executor;
+        this.ownExecutor = false;
+    }
+
+    /**
+     * Submits a job. Cancelling the returned future stops the rendering run at the next
+     * point where the layout checks its {@link RenderMonitor}. If the job exceeds one of its
+     * limits, the future fails with a {@link RenderCancelledException}.
+     * @param job the job
+     * @return the future results of the rendering run
+     */
+    public Future<FormattingResults> submit(RenderJob job) {
+        final RenderTask task = new RenderTask(job);
+        FutureTask<FormattingResults> future = new FutureTask<FormattingResults>(task) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                task.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Shuts the service down. Jobs that have been submitted are still run, but no new jobs
+     * are accepted.
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private Transformer newTransformer() throws TransformerException {
+        synchronized (transformerFactory) {
+            return transformerFactory.newTransformer();
+        }
+    }
+
+    private static RenderCancelledException findCancellation(Throwable t) {
+        while (t != null) {
+            if (t instanceof RenderCancelledException) {
+                return (RenderCancelledException) t;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    private final class RenderTask implements Callable<FormattingResults> {
+
+        private final RenderJob job;
+
+        private volatile RenderMonitor monitor;
+
+        private volatile boolean cancelled;
+
+        RenderTask(RenderJob job) {
+            this.job = job;
+        }
+
+        public FormattingResults call() throws Exception {
+            RenderMonitor renderMonitor = new RenderMonitor(job.getTimeout(), job.getMaxPages(),
+                    job.getMaxHeapUsage());
+            renderMonitor.setProgressListener(job.getProgressListener());
+            monitor = renderMonitor;
+            if (cancelled) {
+                renderMonitor.cancel();
+            }
+            FOUserAgent userAgent = fopFactory.newFOUserAgent();
+            if (job.getUserAgentCustomizer() != null) {
+                job.getUserAgentCustomizer().customize(userAgent);
+            }
+            userAgent.setRenderMonitor(renderMonitor);
+            Fop fop = fopFactory.newFop(job.getOutputFormat(), userAgent, job.getOutputStream());
+            try {
+                newTransformer().transform(job.getSource(),
+                        new SAXResult(fop.getDefaultHandler()));
+            } catch (TransformerException e) {
+                RenderCancelledException cancellation = findCancellation(e);
+                if (cancellation != null) {
+                    throw cancellation;
+                }
+                throw e;
+            }
+            return fop.getResults();
+        }
+
+        void cancel() {
+            cancelled = true;
+            RenderMonitor renderMonitor = monitor;
+            if (renderMonitor != null) {
+                renderMonitor.cancel();
+            }
+        }
+    }
+}
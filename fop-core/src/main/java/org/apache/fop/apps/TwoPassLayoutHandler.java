@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import org.apache.fop.area.PageNumberCollector;
+import org.apache.fop.fo.FOTreeBuilder;
+import org.apache.fop.util.SAXEventRecorder;
+
+/**
+ * Receives the FO document for a two-pass layout. The document is recorded, then laid out
+ * once without rendering to collect the page numbers of all ids, and finally sent to the
+ * {@link FOTreeBuilder} that lays it out again and renders it, with the page numbers of the
+ * first pass available through {@link FOUserAgent#getPageNumberIndex()}.
+ */
+class TwoPassLayoutHandler extends SAXEventRecorder {
+
+    private final FOUserAgent userAgent;
+
+    private final String outputFormat;
+
+    private final FOTreeBuilder foTreeBuilder;
+
+    /**
+     * Creates a new handler.
+     * @param userAgent the user agent of the processing run
+     * @param outputFormat the MIME type of the output format
+     * @param foTreeBuilder the tree builder for the final layout
+     */
+    TwoPassLayoutHandler(FOUserAgent userAgent, String outputFormat,
+            FOTreeBuilder foTreeBuilder) {
+        this.userAgent = userAgent;
+        this.outputFormat = outputFormat;
+        this.foTreeBuilder = foTreeBuilder;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocument() throws SAXException {
+        PageNumberCollector collector;
+        try {
+            collector = new PageNumberCollector(userAgent, outputFormat);
+        } catch (FOPException e) {
+            throw new SAXException(e);
+        }
+        userAgent.setEventsMuted(true);
+        try {
+            replay(new FOTreeBuilder(userAgent, collector));
+        } finally {
+            userAgent.setEventsMuted(false);
+        }
+        userAgent.setPageNumberIndex(collector.getPageNumberIndex());
+        if (userAgent.getRenderMonitor() != null) {
+            userAgent.getRenderMonitor().resetPageCounts();
+        }
+        replay(foTreeBuilder);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void warning(SAXParseException e) {
+        foTreeBuilder.warning(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void error(SAXParseException e) {
+        foTreeBuilder.error(e);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fatalError(SAXParseException e) throws SAXException {
+        foTreeBuilder.fatalError(e);
+    }
+}
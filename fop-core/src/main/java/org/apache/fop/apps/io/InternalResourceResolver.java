@@ -62,6 +62,15 @@ public class InternalResourceResolver {
         return baseUri;
     }
 
+    /**
+     * Returns the resource resolver that URIs are delegated to.
+     *
+     * @return the resource resolver
+     */
+    public ResourceResolver getResourceResolver() {
+        return resourceResolver;
+    }
+
     /**
      * Retrieve a resource given a URI in String form. This also does some syntactical sanitaion on
      * the URI.
@@ -90,4 +90,15 @@ public interface AreaEventProducer extends EventProducer {
      */
     void pageRenderingError(Object source, String page, Exception e);
 
+    /**
+     * Statistics of the pages with unresolved references that were written to a temporary
+     * file.
+     * @param source the event source
+     * @param held the maximum number of pages with unresolved references held in memory
+     * @param spilled the number of pages written to the temporary file
+     * @param reloaded the number of pages read back from the temporary file
+     * @event.severity INFO
+     */
+    void cachedPagesStatistics(Object source, int held, int spilled, int reloaded);
+
 }
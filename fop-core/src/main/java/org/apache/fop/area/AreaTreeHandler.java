@@ -23,6 +23,7 @@ package org.apache.fop.area;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 
 import org.xml.sax.SAXException;
 
@@ -32,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.FormattingResults;
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.datatypes.Numeric;
 import org.apache.fop.fo.FOEventHandler;
 import org.apache.fop.fo.extensions.ExtensionAttachment;
@@ -41,11 +43,13 @@ import org.apache.fop.fo.pagination.AbstractPageSequence;
 import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.pagination.Root;
 import org.apache.fop.fo.pagination.bookmarks.BookmarkTree;
+import org.apache.fop.fonts.WordMeasurementCache;
 import org.apache.fop.layoutmgr.ExternalDocumentLayoutManager;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
 import org.apache.fop.layoutmgr.LayoutManagerMapping;
 import org.apache.fop.layoutmgr.PageSequenceLayoutManager;
 import org.apache.fop.layoutmgr.TopLevelLayoutManager;
+import org.apache.fop.layoutmgr.inline.InlineLevelEventProducer;
 
 /**
  * Area tree handler for formatting objects.
@@ -89,6 +93,9 @@ public class AreaTreeHandler extends FOEventHandler {
 
     private int idGen;
 
+    // Lays out page-sequences on worker threads, null for serial layout
+    private ConcurrentPageSequenceLayout concurrentLayout;
+
     /**
      * Constructor.
      *
@@ -113,6 +120,8 @@ public class AreaTreeHandler extends FOEventHandler {
 
         this.useComplexScriptFeatures = userAgent.isComplexScriptFeaturesEnabled();
 
+        setupConcurrentLayout(userAgent);
+
         if (log.isDebugEnabled()) {
             statistics = new Statistics();
         }
@@ -131,11 +140,28 @@ public class AreaTreeHandler extends FOEventHandler {
             OutputStream stream) throws FOPException {
         if (userAgent.isConserveMemoryPolicyEnabled()) {
             this.model = new CachedRenderPagesModel(userAgent, outputFormat, fontInfo, stream);
+        } else if (userAgent.getMaxUnresolvedPagesInMemory() >= 0) {
+            this.model = new CachedRenderPagesModel(userAgent, outputFormat, fontInfo, stream,
+                    userAgent.getMaxUnresolvedPagesInMemory());
         } else {
             this.model = new RenderPagesModel(userAgent, outputFormat, fontInfo, stream);
         }
     }
 
+    /**
+     * Sets up concurrent layout of page-sequences if the user agent provides an executor
+     * for it. The structure tree for accessibility is built in document order while parsing,
+     * which is why layout stays on the parsing thread in that case.
+     *
+     * @param userAgent FOUserAgent object for process
+     */
+    void setupConcurrentLayout(FOUserAgent userAgent) {
+        ExecutorService executor = userAgent.getLayoutExecutor();
+        if (executor != null && !userAgent.isAccessibilityEnabled()) {
+            this.concurrentLayout = new ConcurrentPageSequenceLayout(this, executor);
+        }
+    }
+
     /**
      * Get the area tree model for this area tree.
      *
@@ -223,6 +249,7 @@ public class AreaTreeHandler extends FOEventHandler {
     }
 
     private void startAbstractPageSequence(AbstractPageSequence pageSequence) {
+        checkRenderLimits();
         rootFObj = pageSequence.getRoot();
 
         //Before the first page-sequence...
@@ -236,10 +263,39 @@ public class AreaTreeHandler extends FOEventHandler {
             }
         }
 
-        finishPrevPageSequence(pageSequence.getInitialPageNumber());
+        Numeric initialPageNumber = pageSequence.getInitialPageNumber();
+        if (concurrentLayout != null) {
+            concurrentLayout.closeLastJob(initialPageNumber);
+            if (initialPageNumber.getEnum() != 0) {
+                // auto numbering depends on the page count of all earlier page-sequences
+                finishConcurrentLayout();
+            } else {
+                concurrentLayout.finishCompletedJobs();
+            }
+        }
+        finishPrevPageSequence(initialPageNumber);
         pageSequence.initPageNumber();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void abortDocument() {
+        if (concurrentLayout != null) {
+            concurrentLayout.cancel();
+        }
+        model.abortDocument();
+    }
+
+    /**
+     * Waits for all page-sequences being laid out concurrently and hands their pages over to
+     * the area tree model.
+     */
+    private void finishConcurrentLayout() {
+        if (concurrentLayout != null) {
+            concurrentLayout.finishAllJobs();
+        }
+    }
+
     private void wrapAndAddExtensionAttachments(List<ExtensionAttachment> list) {
         for (ExtensionAttachment attachment : list) {
             addOffDocumentItem(new OffDocumentExtensionAttachment(attachment));
@@ -254,6 +310,7 @@ public class AreaTreeHandler extends FOEventHandler {
      */
     @Override
     public void endPageSequence(PageSequence pageSequence) {
+        checkRenderLimits();
 
         if (statistics != null) {
             statistics.end();
@@ -261,6 +318,13 @@ public class AreaTreeHandler extends FOEventHandler {
 
         // If no main flow, nothing to layout!
         if (pageSequence.getMainFlow() != null) {
+            if (concurrentLayout != null) {
+                if (pageSequence.isLayoutIndependent()) {
+                    concurrentLayout.submit(pageSequence);
+                    return;
+                }
+                finishConcurrentLayout();
+            }
             PageSequenceLayoutManager pageSLM;
             pageSLM = getLayoutManagerMaker().makePageSequenceLayoutManager(
                     this, pageSequence);
@@ -284,6 +348,7 @@ public class AreaTreeHandler extends FOEventHandler {
             statistics.end();
         }
 
+        finishConcurrentLayout();
         ExternalDocumentLayoutManager edLM;
         edLM = getLayoutManagerMaker().makeExternalDocumentLayoutManager(this, document);
         edLM.activateLayout();
@@ -308,6 +373,13 @@ public class AreaTreeHandler extends FOEventHandler {
         }
     }
 
+    private void checkRenderLimits() {
+        RenderMonitor monitor = getUserAgent().getRenderMonitor();
+        if (monitor != null) {
+            monitor.check();
+        }
+    }
+
     /**
      * End the document.
      *
@@ -316,6 +388,10 @@ public class AreaTreeHandler extends FOEventHandler {
     @Override
     public void endDocument() throws SAXException {
 
+        if (concurrentLayout != null) {
+            concurrentLayout.closeLastJob(null);
+            concurrentLayout.finishAllJobs();
+        }
         finishPrevPageSequence(null);
         // process fox:destination elements
         if (rootFObj != null) {
@@ -341,6 +417,15 @@ public class AreaTreeHandler extends FOEventHandler {
         }
         model.endDocument();
 
+        WordMeasurementCache wordMeasurementCache = fontInfo.getWordMeasurementCache();
+        if (wordMeasurementCache != null) {
+            InlineLevelEventProducer eventProducer = InlineLevelEventProducer.Provider.get(
+                    getUserAgent().getEventBroadcaster());
+            eventProducer.wordMeasurementCacheStatistics(this, wordMeasurementCache.getHitCount(),
+                    wordMeasurementCache.getMissCount(),
+                    (int) Math.round(wordMeasurementCache.getHitRate() * 100));
+        }
+
         if (statistics != null) {
             statistics.logResults();
         }
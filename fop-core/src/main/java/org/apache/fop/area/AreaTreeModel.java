@@ -90,6 +90,11 @@ public class AreaTreeModel {
      */
     public void endDocument() throws SAXException { };
 
+    /**
+     * Signal that the document has been aborted, so any resources held for it can be released.
+     */
+    public void abortDocument() { }
+
     /**
      * Returns the currently active page-sequence.
      * @return the currently active page-sequence
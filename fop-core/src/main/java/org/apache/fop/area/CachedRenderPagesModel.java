@@ -29,7 +29,12 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.xml.sax.SAXException;
 
@@ -46,16 +51,29 @@ import org.apache.fop.fonts.FontInfo;
  * If the page is prepared for later rendering then this saves
  * the page contents to a file and once the page is resolved
  * the contents are reloaded.
+ * A number of pages may be kept in memory before the oldest ones are
+ * saved, so that small forward references don't cause any file access.
  */
 public class CachedRenderPagesModel extends RenderPagesModel {
 
     private Map<PageViewport, URI> pageMap = new HashMap<PageViewport, URI>();
 
-    /** Base directory to save temporary file in, typically points to the user's temp dir. */
     private final URI tempBaseURI;
     private static final TempResourceURIGenerator TEMP_URI_GENERATOR
             = new TempResourceURIGenerator("cached-pages");
 
+    private final boolean compress;
+
+    /** The maximum number of prepared pages to keep in memory */
+    private final int maxPagesInMemory;
+
+    /** The prepared pages that are kept in memory, oldest first */
+    private final Set<PageViewport> pagesInMemory = new LinkedHashSet<PageViewport>();
+
+    private int maxPagesHeld;
+    private int pagesSpilled;
+    private int pagesReloaded;
+
     /**
      * Main Constructor
      * @param userAgent FOUserAgent object for process
@@ -66,8 +84,25 @@ public class CachedRenderPagesModel extends RenderPagesModel {
      */
     public CachedRenderPagesModel(FOUserAgent userAgent, String outputFormat,
             FontInfo fontInfo, OutputStream stream) throws FOPException {
+        this(userAgent, outputFormat, fontInfo, stream, 0);
+    }
+
+    /**
+     * Creates a model that keeps up to the given number of prepared pages in memory.
+     * @param userAgent FOUserAgent object for process
+     * @param outputFormat the MIME type of the output format to use (ex. "application/pdf").
+     * @param fontInfo FontInfo object
+     * @param stream OutputStream
+     * @param maxPagesInMemory the maximum number of prepared pages to keep in memory; when
+     * there are more, the oldest ones are saved
+     * @throws FOPException if the renderer cannot be properly initialized
+     */
+    public CachedRenderPagesModel(FOUserAgent userAgent, String outputFormat,
+            FontInfo fontInfo, OutputStream stream, int maxPagesInMemory) throws FOPException {
         super(userAgent, outputFormat, fontInfo, stream);
         tempBaseURI = TEMP_URI_GENERATOR.generate();
+        compress = userAgent.isCachedPageCompressionEnabled();
+        this.maxPagesInMemory = maxPagesInMemory;
     }
 
     /** {@inheritDoc} */
@@ -76,20 +111,21 @@ public class CachedRenderPagesModel extends RenderPagesModel {
         for (Iterator iter = prepared.iterator(); iter.hasNext();) {
             PageViewport pageViewport = (PageViewport)iter.next();
             if (pageViewport.isResolved() || renderUnresolved) {
-                if (pageViewport != newpage) {
+                if (pageMap.containsKey(pageViewport)) {
                     try {
                         // load page from cache
-                        URI tempURI = pageMap.get(pageViewport);
+                        URI tempURI = pageMap.remove(pageViewport);
                         log.debug("Loading page from: " + tempURI);
                         InputStream inStream = renderer.getUserAgent().getResourceResolver().getResource(tempURI);
-                        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(inStream));
+                        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(compress
+                                ? new InflaterInputStream(inStream) : inStream));
                         try {
                             pageViewport.loadPage(in);
                         } finally {
                             IOUtils.closeQuietly(inStream);
                             IOUtils.closeQuietly(in);
                         }
-                        pageMap.remove(pageViewport);
+                        pagesReloaded++;
                     } catch (Exception e) {
                         AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
                                 renderer.getUserAgent().getEventBroadcaster());
@@ -99,6 +135,7 @@ public class CachedRenderPagesModel extends RenderPagesModel {
 
                 renderPage(pageViewport);
                 pageViewport.clear();
+                pagesInMemory.remove(pageViewport);
                 iter.remove();
             } else {
                 if (!renderer.supportsOutOfOrder()) {
@@ -107,8 +144,15 @@ public class CachedRenderPagesModel extends RenderPagesModel {
             }
         }
         if (newpage != null && newpage.getPage() != null) {
-            savePage(newpage);
-            newpage.clear();
+            pagesInMemory.add(newpage);
+            while (pagesInMemory.size() > maxPagesInMemory) {
+                Iterator<PageViewport> oldest = pagesInMemory.iterator();
+                PageViewport page = oldest.next();
+                oldest.remove();
+                savePage(page);
+                page.clear();
+            }
+            maxPagesHeld = Math.max(maxPagesHeld, pagesInMemory.size());
         }
         return renderer.supportsOutOfOrder() || prepared.isEmpty();
     }
@@ -122,17 +166,22 @@ public class CachedRenderPagesModel extends RenderPagesModel {
     protected void savePage(PageViewport page) {
         try {
             // save page to cache
-            ObjectOutputStream tempstream;
             String fname = "/fop-page-" + page.getPageIndex() + ".ser";
             URI tempURI = URI.create(tempBaseURI + fname);
             OutputStream outStream = renderer.getUserAgent().getResourceResolver().getOutputStream(tempURI);
-            tempstream = new ObjectOutputStream(new BufferedOutputStream(outStream));
+            Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            ObjectOutputStream tempstream = new ObjectOutputStream(new BufferedOutputStream(deflater != null
+                    ? new DeflaterOutputStream(outStream, deflater) : outStream));
             try {
                 page.savePage(tempstream);
             } finally {
                 IOUtils.closeQuietly(tempstream);
+                if (deflater != null) {
+                    deflater.end();
+                }
             }
             pageMap.put(page, tempURI);
+            pagesSpilled++;
             if (log.isDebugEnabled()) {
                 log.debug("Page saved to temporary file: " + tempURI);
             }
@@ -144,10 +193,64 @@ public class CachedRenderPagesModel extends RenderPagesModel {
         }
     }
 
+    /**
+     * Returns the maximum number of prepared pages that were held in memory at the same time.
+     * @return the number of pages
+     */
+    public int getMaxPagesHeld() {
+        return maxPagesHeld;
+    }
+
+    /**
+     * Returns the number of pages that were saved to the temporary file.
+     * @return the number of pages
+     */
+    public int getPagesSpilled() {
+        return pagesSpilled;
+    }
+
+    /**
+     * Returns the number of pages that were loaded from the temporary file.
+     * @return the number of pages
+     */
+    public int getPagesReloaded() {
+        return pagesReloaded;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void endDocument() throws SAXException {
-        super.endDocument();
+        try {
+            super.endDocument();
+        } finally {
+            releaseSavedPages();
+        }
+        if (maxPagesInMemory > 0) {
+            AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
+                    renderer.getUserAgent().getEventBroadcaster());
+            eventProducer.cachedPagesStatistics(this, maxPagesHeld, pagesSpilled, pagesReloaded);
+        }
     }
-}
 
+    /** {@inheritDoc} */
+    @Override
+    public void abortDocument() {
+        releaseSavedPages();
+    }
+
+    /**
+     * Releases the temporary files of the pages that were saved but never loaded again, by
+     * reading them back like the loaded pages, since the temporary resources are discarded
+     * once they have been read.
+     */
+    private void releaseSavedPages() {
+        for (URI tempURI : pageMap.values()) {
+            try {
+                IOUtils.closeQuietly(renderer.getUserAgent().getResourceResolver().getResource(tempURI));
+            } catch (IOException ioe) {
+                log.debug("Cannot release temporary file: " + tempURI, ioe);
+            }
+        }
+        pageMap.clear();
+    }
+}
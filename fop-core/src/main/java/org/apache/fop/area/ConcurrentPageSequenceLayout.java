@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.datatypes.Numeric;
+import org.apache.fop.fo.pagination.PageSequence;
+import org.apache.fop.layoutmgr.PageSequenceLayoutManager;
+
+/**
+ * Lays out page-sequences on the worker threads of an {@link ExecutorService} while the
+ * FO tree is still being built. Each page-sequence is laid out against its own
+ * {@link DetachedAreaTreeHandler} and the results are handed to the area tree handler on
+ * the parsing thread strictly in document order, so that the area tree model sees the same
+ * sequence of calls as with serial layout.
+ */
+class ConcurrentPageSequenceLayout {
+
+    private final AreaTreeHandler areaTreeHandler;
+
+    private final ExecutorService executor;
+
+    /**
+     * Upper limit of page-sequences in flight, so the FO tree doesn't grow unbounded: two per
+     * worker thread, so that every worker has another page-sequence queued
+     */
+    private final int maxPendingJobs;
+
+    private final LinkedList<Job> jobs = new LinkedList<Job>();
+
+    private int sequenceCount;
+
+    ConcurrentPageSequenceLayout(AreaTreeHandler areaTreeHandler, ExecutorService executor) {
+        this.areaTreeHandler = areaTreeHandler;
+        this.executor = executor;
+        this.maxPendingJobs = getPoolSize(executor) * 2;
+    }
+
+    /**
+     * Returns the number of worker threads of the executor. That's the core pool size of a
+     * {@link ThreadPoolExecutor} like the pool of the FopFactory; for other executors, and
+     * pools that only create threads on demand, the number of processors is assumed.
+     */
+    private static int getPoolSize(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            int size = ((ThreadPoolExecutor) executor).getCorePoolSize();
+            if (size > 0) {
+                return size;
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /** @return the maximum number of page-sequences that are laid out or queued at a time */
+    int getMaxPendingJobs() {
+        return maxPendingJobs;
+    }
+
+    /**
+     * Submits a page-sequence for layout. The page number of the page-sequence must already
+     * have been initialized.
+     * @param pageSequence the page-sequence to lay out
+     */
+    void submit(PageSequence pageSequence) {
+        if (jobs.size() >= maxPendingJobs) {
+            finishJob(jobs.removeFirst());
+        }
+        pageSequence.detachForLayout();
+        final DetachedAreaTreeHandler handler;
+        try {
+            handler = new DetachedAreaTreeHandler(areaTreeHandler, ++sequenceCount);
+        } catch (FOPException e) {
+            throw new IllegalStateException(e);
+        }
+        final PageSequenceLayoutManager pageSLM = areaTreeHandler.getLayoutManagerMaker()
+                .makePageSequenceLayoutManager(handler, pageSequence);
+        Future<Void> future = executor.submit(new Callable<Void>() {
+            public Void call() {
+                pageSLM.activateLayout();
+                return null;
+            }
+        });
+        jobs.add(new Job(handler, pageSLM, future));
+    }
+
+    /**
+     * Records the initial page number of the page-sequence following the most recently
+     * submitted one, which is needed to complete it (force-page-count).
+     * @param nextInitialPageNumber the initial-page-number of the next page-sequence or null
+     * at the end of the document
+     */
+    void closeLastJob(Numeric nextInitialPageNumber) {
+        if (!jobs.isEmpty()) {
+            Job last = jobs.getLast();
+            if (!last.closed) {
+                last.nextInitialPageNumber = nextInitialPageNumber;
+                last.closed = true;
+            }
+        }
+    }
+
+    /**
+     * Hands over all page-sequences at the head of the queue whose layout has already
+     * completed, without waiting for the others.
+     */
+    void finishCompletedJobs() {
+        while (!jobs.isEmpty() && jobs.getFirst().closed && jobs.getFirst().future.isDone()) {
+            finishJob(jobs.removeFirst());
+        }
+    }
+
+    /**
+     * Waits for the layout of all submitted page-sequences and hands them over.
+     */
+    void finishAllJobs() {
+        while (!jobs.isEmpty()) {
+            finishJob(jobs.removeFirst());
+        }
+    }
+
+    /**
+     * Abandons all outstanding page-sequences, for instance after an error or when the
+     * rendering run has been aborted. Page-sequences that are still queued are not laid out.
+     */
+    void cancel() {
+        for (Job job : jobs) {
+            job.future.cancel(true);
+        }
+        jobs.clear();
+    }
+
+    private void finishJob(Job job) {
+        boolean finished = false;
+        try {
+            waitFor(job);
+            if (!job.closed) {
+                throw new IllegalStateException("Page-sequence can't be finished before the next"
+                        + " one has started");
+            }
+            job.pageSLM.doForcePageCount(job.nextInitialPageNumber);
+            job.pageSLM.finishPageSequence();
+            job.handler.transferToParent();
+            finished = true;
+        } finally {
+            if (!finished) {
+                // the document can't be completed, don't keep the workers busy with it
+                cancel();
+            }
+        }
+    }
+
+    private static void waitFor(Job job) {
+        try {
+            job.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for page-sequence layout");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class Job {
+
+        private final DetachedAreaTreeHandler handler;
+
+        private final PageSequenceLayoutManager pageSLM;
+
+        private final Future<Void> future;
+
+        private Numeric nextInitialPageNumber;
+
+        private boolean closed;
+
+        Job(DetachedAreaTreeHandler handler, PageSequenceLayoutManager pageSLM,
+                Future<Void> future) {
+            this.handler = handler;
+            this.pageSLM = pageSLM;
+            this.future = future;
+        }
+    }
+}
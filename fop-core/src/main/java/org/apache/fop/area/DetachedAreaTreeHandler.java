@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.pagination.AbstractPageSequence;
+import org.apache.fop.layoutmgr.LayoutManagerMaker;
+
+/**
+ * Area tree handler used to lay out a single page-sequence on a worker thread. The pages
+ * are buffered together with their ID information and handed over to the parent handler,
+ * in document order, once the page-sequence is complete.
+ */
+class DetachedAreaTreeHandler extends AreaTreeHandler {
+
+    private final AreaTreeHandler parent;
+
+    private final String keyPrefix;
+
+    private int keyCount;
+
+    DetachedAreaTreeHandler(AreaTreeHandler parent, int sequenceNumber) throws FOPException {
+        super(parent.getUserAgent(), null, null);
+        this.parent = parent;
+        this.fontInfo = parent.getFontInfo();
+        this.keyPrefix = "S" + sequenceNumber + "P";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setupModel(FOUserAgent userAgent, String outputFormat,
+            OutputStream stream) {
+        this.model = new BufferingAreaTreeModel();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void setupConcurrentLayout(FOUserAgent userAgent) {
+        // a single page-sequence is laid out on the current thread
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public LayoutManagerMaker getLayoutManagerMaker() {
+        return parent.getLayoutManagerMaker();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isComplexScriptFeaturesEnabled() {
+        return parent.isComplexScriptFeaturesEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The keys only need to be unique, so they are derived from the position of the
+     * page-sequence in the document which keeps them independent of the scheduling.
+     */
+    @Override
+    public String generatePageViewportKey() {
+        keyCount++;
+        return keyPrefix + keyCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyPageSequenceFinished(AbstractPageSequence pageSequence, int pageCount) {
+        parent.notifyPageSequenceFinished(pageSequence, pageCount);
+    }
+
+    /**
+     * Hands the pages of the page-sequence over to the parent handler. The ID state is
+     * taken over first, so that pages whose references can now be resolved are rendered
+     * right away by the parent's model.
+     */
+    void transferToParent() {
+        parent.getIDTracker().takeOver(getIDTracker());
+        BufferingAreaTreeModel buffer = (BufferingAreaTreeModel) model;
+        if (buffer.pageSequence != null) {
+            AreaTreeModel target = parent.getAreaTreeModel();
+            target.startPageSequence(buffer.pageSequence);
+            for (PageViewport page : buffer.pages) {
+                target.addPage(page);
+            }
+        }
+    }
+
+    /**
+     * Collects the pages of the page-sequence. The area page-sequence seen by the layout
+     * managers is a stand-in, so that the real one only receives its pages once they are
+     * transferred to the parent's model.
+     */
+    private static class BufferingAreaTreeModel extends AreaTreeModel {
+
+        private PageSequence pageSequence;
+
+        private List<PageViewport> pages = new java.util.ArrayList<PageViewport>();
+
+        @Override
+        public void startPageSequence(PageSequence pageSequence) {
+            if (this.pageSequence != null) {
+                throw new IllegalStateException("Only one page-sequence can be buffered");
+            }
+            this.pageSequence = pageSequence;
+            PageSequence standIn = new PageSequence(pageSequence.getTitle());
+            standIn.setLocale(pageSequence.getLocale());
+            super.startPageSequence(standIn);
+        }
+
+        @Override
+        public void addPage(PageViewport page) {
+            super.addPage(page);
+            pages.add(page);
+        }
+    }
+}
@@ -223,6 +223,15 @@ public class IDTracker {
         return null;
     }
 
+    /**
+     * Returns the numbers of the first and last pages of all the ids located so far.
+     *
+     * @return the page number index
+     */
+    public PageNumberIndex getPageNumberIndex() {
+        return new PageNumberIndex(idLocations);
+    }
+
     /**
      * Add an Resolvable object with an unresolved idref
      *
@@ -239,6 +248,58 @@ public class IDTracker {
         todo.add(res);
     }
 
+    /**
+     * Takes over the ID state of a tracker that was used to lay out a single page-sequence in
+     * isolation. IDs located by the other tracker are associated with their pages here, which
+     * resolves references from earlier page-sequences, and references the other tracker couldn't
+     * resolve are either resolved against the IDs known here or kept for later resolution.
+     * @param other the tracker of a page-sequence that was laid out independently
+     */
+    void takeOver(IDTracker other) {
+        Set<String> previouslyPending = new java.util.HashSet<String>();
+        for (String id : other.idLocations.keySet()) {
+            if (!unfinishedIDs.add(id)) {
+                previouslyPending.add(id);
+            }
+        }
+        for (Map.Entry<String, List<PageViewport>> entry : other.idLocations.entrySet()) {
+            for (PageViewport pv : entry.getValue()) {
+                associateIDWithPageViewport(entry.getKey(), pv);
+            }
+        }
+        for (Map.Entry<String, List<PageViewport>> entry : other.idLocations.entrySet()) {
+            String id = entry.getKey();
+            if (other.unfinishedIDs.contains(id)) {
+                continue;
+            }
+            if (other.alreadyResolvedIDs.contains(id)) {
+                signalIDProcessed(id);
+            } else if (!previouslyPending.contains(id)) {
+                unfinishedIDs.remove(id);
+                tryIDResolution(id, idLocations.get(id));
+            }
+        }
+        alreadyResolvedIDs.addAll(other.alreadyResolvedIDs);
+        for (Map.Entry<String, Set<Resolvable>> entry : other.unresolvedIDRefs.entrySet()) {
+            String id = entry.getKey();
+            List<PageViewport> pvList = idLocations.get(id);
+            boolean resolvable = pvList != null && !pvList.isEmpty() && !unfinishedIDs.contains(id);
+            for (Resolvable res : entry.getValue()) {
+                if (resolvable) {
+                    res.resolveIDRef(id, pvList);
+                } else {
+                    addUnresolvedIDRef(id, res);
+                }
+            }
+        }
+        // IDs cited by page-number-citation-last that are still to come in a later page-sequence
+        for (String id : other.unfinishedIDs) {
+            if (!other.idLocations.containsKey(id) && !alreadyResolvedIDs.contains(id)) {
+                unfinishedIDs.add(id);
+            }
+        }
+    }
+
     /**
      * Replace all id locations pointing to the old page view port with a new one. This is
      * necessary when a layouted page is replaced with a new one (e.g. last page handling).
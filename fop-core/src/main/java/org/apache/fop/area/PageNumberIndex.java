@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The formatted numbers of the first and last pages on which the formatting objects with an
+ * id were placed during a previous layout of the document. It only holds strings, so that
+ * the pages themselves can be released.
+ */
+public final class PageNumberIndex {
+
+    private final Map<String, String[]> pageNumbers = new java.util.HashMap<String, String[]>();
+
+    /**
+     * Creates an index from the pages associated with each id.
+     * @param idLocations the pages on which the areas of each id are located
+     */
+    PageNumberIndex(Map<String, List<PageViewport>> idLocations) {
+        for (Map.Entry<String, List<PageViewport>> entry : idLocations.entrySet()) {
+            List<PageViewport> pages = entry.getValue();
+            if (!pages.isEmpty()) {
+                pageNumbers.put(entry.getKey(), new String[] {
+                        pages.get(0).getPageNumberString(),
+                        pages.get(pages.size() - 1).getPageNumberString()});
+            }
+        }
+    }
+
+    /**
+     * Returns the formatted number of the first page containing areas of the given id.
+     * @param id the id
+     * @return the page number, or null if the id wasn't placed on any page
+     */
+    public String getFirstPageNumber(String id) {
+        String[] numbers = pageNumbers.get(id);
+        return numbers == null ? null : numbers[0];
+    }
+
+    /**
+     * Returns the formatted number of the last page containing areas of the given id.
+     * @param id the id
+     * @return the page number, or null if the id wasn't placed on any page
+     */
+    public String getLastPageNumber(String id) {
+        String[] numbers = pageNumbers.get(id);
+        return numbers == null ? null : numbers[1];
+    }
+
+    /**
+     * Returns the number of ids in this index.
+     * @return the number of ids
+     */
+    public int size() {
+        return pageNumbers.size();
+    }
+}
@@ -30,6 +30,8 @@ import org.xml.sax.SAXException;
 
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.RenderCancelledException;
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.fonts.FontInfo;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.RendererEventProducer;
@@ -121,6 +123,9 @@ public class RenderPagesModel extends AreaTreeModel {
             }
             try {
                 renderer.renderPage(page);
+                pageRendered();
+            } catch (RenderCancelledException rce) {
+                throw rce;
             } catch (RuntimeException re) {
                 String err = "Error while rendering page " + page.getPageNumberString();
                 log.error(err, re);
@@ -191,6 +196,7 @@ public class RenderPagesModel extends AreaTreeModel {
     protected void renderPage(PageViewport pageViewport) {
         try {
             renderer.renderPage(pageViewport);
+            pageRendered();
             if (!pageViewport.isResolved()) {
                 String[] idrefs = pageViewport.getIDRefs();
                 for (String idref : idrefs) {
@@ -200,6 +206,8 @@ public class RenderPagesModel extends AreaTreeModel {
                             pageViewport.getPageNumberString(), idref);
                 }
             }
+        } catch (RenderCancelledException rce) {
+            throw rce;
         } catch (Exception e) {
             AreaEventProducer eventProducer = AreaEventProducer.Provider.get(
                     renderer.getUserAgent().getEventBroadcaster());
@@ -211,6 +219,13 @@ public class RenderPagesModel extends AreaTreeModel {
         }
     }
 
+    private void pageRendered() {
+        RenderMonitor monitor = renderer.getUserAgent().getRenderMonitor();
+        if (monitor != null) {
+            monitor.pageRendered();
+        }
+    }
+
     /**
      * Prepare a page.
      * An unresolved page can be prepared if the renderer supports
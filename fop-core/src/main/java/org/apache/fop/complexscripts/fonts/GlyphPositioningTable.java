@@ -21,6 +21,7 @@ package org.apache.fop.complexscripts.fonts;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +89,24 @@ public class GlyphPositioningTable extends GlyphTable {
         }
     }
 
+    /**
+     * Instantiate a <code>GlyphPositioningTable</code> object using the specified lookups, whose
+     * lookup tables are read on first use.
+     * @param gdef glyph definition table that applies
+     * @param lookups a map of lookup specifications to subtable identifier strings
+     * @param reader reader of the subtables of a lookup table
+     * @param lookupIds identifiers of the lookup tables to read on first use
+     */
+    public GlyphPositioningTable(GlyphDefinitionTable gdef, Map lookups, SubtableReader reader,
+                                 Collection<String> lookupIds, Map<String, ScriptProcessor> processors) {
+        super(gdef, lookups, processors);
+        if ((lookupIds == null) || (lookupIds.size() == 0)) {
+            throw new AdvancedTypographicTableFormatException("lookup tables must be non-empty");
+        } else {
+            deferSubtables(reader, lookupIds);
+        }
+    }
+
     /**
      * Map a lookup type name to its constant (integer) value.
      * @param name lookup type name
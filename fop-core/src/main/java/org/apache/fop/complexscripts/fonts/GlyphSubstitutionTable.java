@@ -20,6 +20,7 @@
 package org.apache.fop.complexscripts.fonts;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +88,24 @@ public class GlyphSubstitutionTable extends GlyphTable {
         }
     }
 
+    /**
+     * Instantiate a <code>GlyphSubstitutionTable</code> object using the specified lookups, whose
+     * lookup tables are read on first use.
+     * @param gdef glyph definition table that applies
+     * @param lookups a map of lookup specifications to subtable identifier strings
+     * @param reader reader of the subtables of a lookup table
+     * @param lookupIds identifiers of the lookup tables to read on first use
+     */
+    public GlyphSubstitutionTable(GlyphDefinitionTable gdef, Map lookups, SubtableReader reader,
+                                  Collection<String> lookupIds, Map<String, ScriptProcessor> processors) {
+        super(gdef, lookups, processors);
+        if ((lookupIds == null) || (lookupIds.size() == 0)) {
+            throw new AdvancedTypographicTableFormatException("lookup tables must be non-empty");
+        } else {
+            deferSubtables(reader, lookupIds);
+        }
+    }
+
     /**
      * Perform substitution processing using all matching lookups.
      * @param gs an input glyph sequence
@@ -19,9 +19,11 @@
 
 package org.apache.fop.complexscripts.fonts;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +31,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -69,12 +72,18 @@ public class GlyphTable {
     // map from lookup identifiers to lookup tables
     private Map<String, LookupTable> lookupTables;
 
-    // cache for lookups matching
+    // cache for lookups matching, concurrent since a glyph table may be shared by fonts in several documents
     private Map<LookupSpec, Map<LookupSpec, List<LookupTable>>> matchedLookups;
 
     // if true, then prevent further subtable addition
     private boolean frozen;
 
+    // reader of lookup tables not yet read, or null if all lookup tables have been read
+    private volatile SubtableReader subtableReader;
+
+    // identifiers of lookup tables not yet read by subtable reader
+    private Set<String> unreadLookupIds;
+
     protected Map<String, ScriptProcessor> processors;
 
     /**
@@ -93,7 +102,7 @@ public class GlyphTable {
             this.gdef = gdef;
             this.lookups = lookups;
             this.lookupTables = new LinkedHashMap<String, LookupTable>();
-            this.matchedLookups = new HashMap<LookupSpec, Map<LookupSpec, List<LookupTable>>>();
+            this.matchedLookups = new ConcurrentHashMap<LookupSpec, Map<LookupSpec, List<LookupTable>>>();
         }
     }
 
@@ -119,6 +128,9 @@ public class GlyphTable {
      * @return (possibly empty) ordered list of all lookup tables
      */
     public List<LookupTable> getLookupTables() {
+        if (subtableReader != null) {
+            readLookupTables();
+        }
         TreeSet<String> lids = new TreeSet<String>(lookupTables.keySet());
         List<LookupTable> ltl = new ArrayList<LookupTable>(lids.size());
         for (Object lid1 : lids) {
@@ -135,6 +147,9 @@ public class GlyphTable {
      * @return table associated with lookup id or null if none
      */
     public LookupTable getLookupTable(String lid) {
+        if (subtableReader != null) {
+            return readLookupTable(lid);
+        }
         return lookupTables.get(lid);
     }
 
@@ -174,6 +189,56 @@ public class GlyphTable {
         }
     }
 
+    /**
+     * Defer reading of subtables to first use of the lookup tables they belong to, and
+     * freeze this table, i.e., do not allow further subtable addition.
+     * @param reader reader of subtables
+     * @param lookupIds identifiers of lookup tables to read on first use
+     */
+    protected void deferSubtables(SubtableReader reader, Collection<String> lookupIds) {
+        if (frozen) {
+            throw new IllegalStateException("glyph table is frozen, subtable addition prohibited");
+        }
+        this.unreadLookupIds = new HashSet<String>(lookupIds);
+        this.subtableReader = reader;
+        frozen = true;
+    }
+
+    private synchronized LookupTable readLookupTable(String lid) {
+        if ((subtableReader != null) && unreadLookupIds.remove(lid)) {
+            List<GlyphSubtable> subtables = subtableReader.readSubtables(lid);
+            if (!subtables.isEmpty()) {
+                for (GlyphSubtable st : subtables) {
+                    st.setTable(this);
+                }
+                LookupTable lt = new LookupTable(lid, subtables);
+                // register before freezing, so that (possibly cyclic) references to it resolve
+                lookupTables.put(lid, lt);
+                lt.freezeSubtables(new DeferredLookupTables());
+            }
+            if (unreadLookupIds.isEmpty()) {
+                subtableReader = null;
+            }
+        }
+        return lookupTables.get(lid);
+    }
+
+    /**
+     * Obtain number of lookup tables that have not been read yet.
+     * @return number of unread lookup tables
+     */
+    synchronized int getUnreadLookupTableCount() {
+        return (subtableReader != null) ? unreadLookupIds.size() : 0;
+    }
+
+    private synchronized void readLookupTables() {
+        if (subtableReader != null) {
+            for (String lid : new ArrayList<String>(unreadLookupIds)) {
+                readLookupTable(lid);
+            }
+        }
+    }
+
     /**
      * Match lookup specifications according to &lt;script,language,feature&gt; tuple, where
      * '*' is a wildcard for a tuple component.
@@ -246,7 +311,7 @@ public class GlyphTable {
             for (Object id : ids) {
                 String lid = (String) id;
                 LookupTable lt;
-                if ((lt = lookupTables.get(lid)) != null) {
+                if ((lt = getLookupTable(lid)) != null) {
                     lts.add(lt);
                 }
             }
@@ -345,6 +410,37 @@ public class GlyphTable {
         }
     }
 
+    /**
+     * Reader of the subtables of a lookup table, for glyph tables that read their lookup
+     * tables on first use.
+     */
+    public interface SubtableReader {
+
+        /**
+         * Read the subtables of a lookup table.
+         * @param lid lookup table identifier
+         * @return (possibly empty) list of subtables
+         */
+        List<GlyphSubtable> readSubtables(String lid);
+    }
+
+    /**
+     * A view of this table's lookup tables, used to resolve lookup references, which reads
+     * referenced lookup tables that have not been read yet.
+     */
+    private final class DeferredLookupTables extends AbstractMap<String, LookupTable> {
+
+        /** {@inheritDoc} */
+        public LookupTable get(Object lid) {
+            return (lid instanceof String) ? getLookupTable((String) lid) : null;
+        }
+
+        /** {@inheritDoc} */
+        public Set<Map.Entry<String, LookupTable>> entrySet() {
+            return lookupTables.entrySet();
+        }
+    }
+
     /**
      * A structure class encapsulating a lookup specification as a &lt;script,language,feature&gt; tuple.
      */
@@ -19,8 +19,11 @@
 
 package org.apache.fop.complexscripts.fonts;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,7 +41,9 @@ import org.apache.fop.fonts.truetype.OpenFont;
 
 /**
  * <p>OpenType Font (OTF) advanced typographic table reader. Used by @{Link org.apache.fop.fonts.truetype.TTFFile}
- * to read advanced typographic tables (GDEF, GSUB, GPOS).</p>
+ * to read advanced typographic tables (GDEF, GSUB, GPOS). The script and feature lists of
+ * GSUB and GPOS are read up front, but their lookup tables are read on first use, so that only
+ * the lookups of the scripts, languages and features actually used in a document are read.</p>
  *
  * <p>This work was originally authored by Glenn Adams (gadams@apache.org).</p>
  */
@@ -49,6 +54,7 @@ public final class OTFAdvancedTypographicTableReader {
     // instance state
     private OpenFont otf;                                        // parent font file reader
     private FontFileReader in;                                  // input reader
+    private int upem;                                           // units per em of font
     private GlyphDefinitionTable gdef;                          // glyph definition table
     private GlyphSubstitutionTable gsub;                        // glyph substitution table
     private GlyphPositioningTable gpos;                         // glyph positioning table
@@ -59,6 +65,7 @@ public final class OTFAdvancedTypographicTableReader {
     private transient GlyphMappingTable seMapping;              // subtable entry mappings
     private transient List seEntries;                           // subtable entry entries
     private transient List seSubtables;                         // subtable entry subtables
+    private transient long[] seLookupTables;                    // lookup table offsets from beginning of font file
     private Map<String, ScriptProcessor> processors = new HashMap<String, ScriptProcessor>();
 
     /**
@@ -71,10 +78,24 @@ public final class OTFAdvancedTypographicTableReader {
         assert in != null;
         this.otf = otf;
         this.in = in;
+        this.upem = otf.getUnitsPerEm();
     }
 
     /**
-     * Read all advanced typographic tables.
+     * Construct an <code>OTFAdvancedTypographicTableReader</code> instance that only reads
+     * lookup tables from a copy of (part of) a GSUB or GPOS table.
+     * @param in reader of table data (must be non-null)
+     * @param upem units per em of font
+     */
+    private OTFAdvancedTypographicTableReader(FontFileReader in, int upem) {
+        assert in != null;
+        this.in = in;
+        this.upem = upem;
+    }
+
+    /**
+     * Read all advanced typographic tables, except for the lookup tables of GSUB and GPOS,
+     * which are read on first use.
      * @throws AdvancedTypographicTableFormatException if ATT table has invalid format
      */
     public void readAll() throws AdvancedTypographicTableFormatException {
@@ -1731,28 +1752,28 @@ public final class OTFAdvancedTypographicTableReader {
         // XPlacement
         int xp;
         if ((valueFormat & GlyphPositioningTable.Value.X_PLACEMENT) != 0) {
-            xp = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            xp = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
         } else {
             xp = 0;
         }
         // YPlacement
         int yp;
         if ((valueFormat & GlyphPositioningTable.Value.Y_PLACEMENT) != 0) {
-            yp = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            yp = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
         } else {
             yp = 0;
         }
         // XAdvance
         int xa;
         if ((valueFormat & GlyphPositioningTable.Value.X_ADVANCE) != 0) {
-            xa = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            xa = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
         } else {
             xa = 0;
         }
         // YAdvance
         int ya;
         if ((valueFormat & GlyphPositioningTable.Value.Y_ADVANCE) != 0) {
-            ya = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            ya = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
         } else {
             ya = 0;
         }
@@ -2024,23 +2045,23 @@ public final class OTFAdvancedTypographicTableReader {
         int af = in.readTTFUShort();
         if (af == 1) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             a = new GlyphPositioningTable.Anchor(x, y);
         } else if (af == 2) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             // read anchor point index
             int ap = in.readTTFUShort();
             a = new GlyphPositioningTable.Anchor(x, y, ap);
         } else if (af == 3) {
             // read x coordinate
-            int x = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int x = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             // read y coordinate
-            int y = otf.convertTTFUnit2PDFUnit(in.readTTFShort());
+            int y = OpenFont.convertTTFUnit2PDFUnit(in.readTTFShort(), upem);
             // read x device table offset
             int xdo = in.readTTFUShort();
             // read y device table offset
@@ -3200,23 +3221,51 @@ public final class OTFAdvancedTypographicTableReader {
         if (log.isDebugEnabled()) {
             log.debug(tableTag + " lookup list record count: " + nl);
         }
-        if (nl > 0) {
-            int[] loa = new int[nl];
-            // read lookup records
-            for (int i = 0, n = nl; i < n; i++) {
-                int lo = in.readTTFUShort();
-                if (log.isDebugEnabled()) {
-                    log.debug(tableTag + " lookup table offset: " + lo);
-                }
-                loa[i] = lo;
+        // read lookup records, deferring reading of lookup tables to first use
+        long[] loa = new long[nl];
+        for (int i = 0, n = nl; i < n; i++) {
+            int lo = in.readTTFUShort();
+            if (log.isDebugEnabled()) {
+                log.debug(tableTag + " lookup table offset: " + lo);
             }
-            // read lookup tables
-            for (int i = 0, n = nl; i < n; i++) {
-                if (log.isDebugEnabled()) {
-                    log.debug(tableTag + " lookup index: " + i);
-                }
-                readLookupTable(tableTag, i, lookupList + loa [ i ]);
+            loa[i] = lookupList + lo;
+        }
+        seLookupTables = loa;
+    }
+
+    /**
+     * Read the subtables of a lookup table of the GSUB or GPOS table.
+     * @param tableTag tag of table being read
+     * @param lookupTables offsets of lookup tables from beginning of font file
+     * @param lid lookup table identifier
+     * @return (possibly empty) list of subtables
+     */
+    private synchronized List<GlyphSubtable> readLookupSubtables(OFTableName tableTag, long[] lookupTables, String lid) {
+        int ln = Integer.parseInt(lid.substring(2));
+        if ((ln < 0) || (ln >= lookupTables.length)) {
+            return Collections.emptyList();
+        }
+        seSubtables = new ArrayList();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug(tableTag + " lookup index: " + ln);
+            }
+            readLookupTable(tableTag, ln, lookupTables [ ln ]);
+            if (tableTag.equals(OFTableName.GSUB)) {
+                return constructGSUBSubtables();
+            } else {
+                return constructGPOSSubtables();
             }
+        } catch (AdvancedTypographicTableFormatException e) {
+            log.warn("Encountered format constraint violation in " + tableTag + " lookup table '" + lid
+                + "', ignoring lookup: " + e.getMessage());
+            return Collections.emptyList();
+        } catch (IOException e) {
+            log.warn("Unable to read " + tableTag + " lookup table '" + lid + "', ignoring lookup: "
+                + e.getMessage());
+            return Collections.emptyList();
+        } finally {
+            resetATState();
         }
     }
 
@@ -3461,7 +3510,7 @@ public final class OTFAdvancedTypographicTableReader {
             long to = dirTab.getOffset();
             readCommonLayoutTables(tableTag, to + slo, to + flo, to + llo);
             GlyphSubstitutionTable gsub;
-            if ((gsub = constructGSUB()) != null) {
+            if ((gsub = constructGSUB(tableTag)) != null) {
                 this.gsub = gsub;
             }
         }
@@ -3498,7 +3547,7 @@ public final class OTFAdvancedTypographicTableReader {
             long to = dirTab.getOffset();
             readCommonLayoutTables(tableTag, to + slo, to + flo, to + llo);
             GlyphPositioningTable gpos;
-            if ((gpos = constructGPOS()) != null) {
+            if ((gpos = constructGPOS(tableTag)) != null) {
                 this.gpos = gpos;
             }
         }
@@ -3523,17 +3572,20 @@ public final class OTFAdvancedTypographicTableReader {
 
     /**
      * Construct the (internal representation of the) GSUB table based on previously
-     * parsed state.
+     * parsed state. Its lookup tables are read on first use.
+     * @param tableTag tag of table being read
      * @returns glyph substitution table or null if insufficient or invalid state
+     * @throws IOException In case of a I/O problem
      */
-    private GlyphSubstitutionTable constructGSUB() {
+    private GlyphSubstitutionTable constructGSUB(OFTableName tableTag) throws IOException {
         GlyphSubstitutionTable gsub = null;
         Map lookups;
         if ((lookups = constructLookups()) != null) {
-            List subtables;
-            if ((subtables = constructGSUBSubtables()) != null) {
-                if ((lookups.size() > 0) && (subtables.size() > 0)) {
-                    gsub = new GlyphSubstitutionTable(gdef, lookups, subtables, processors);
+            List<String> lookupIds;
+            if ((lookupIds = constructLookupIds()) != null) {
+                if ((lookups.size() > 0) && (lookupIds.size() > 0)) {
+                    gsub = new GlyphSubstitutionTable(gdef, lookups,
+                        createLookupListReader(tableTag), lookupIds, processors);
                 }
             }
         }
@@ -3543,17 +3595,20 @@ public final class OTFAdvancedTypographicTableReader {
 
     /**
      * Construct the (internal representation of the) GPOS table based on previously
-     * parsed state.
+     * parsed state. Its lookup tables are read on first use.
+     * @param tableTag tag of table being read
      * @returns glyph positioning table or null if insufficient or invalid state
+     * @throws IOException In case of a I/O problem
      */
-    private GlyphPositioningTable constructGPOS() {
+    private GlyphPositioningTable constructGPOS(OFTableName tableTag) throws IOException {
         GlyphPositioningTable gpos = null;
         Map lookups;
         if ((lookups = constructLookups()) != null) {
-            List subtables;
-            if ((subtables = constructGPOSSubtables()) != null) {
-                if ((lookups.size() > 0) && (subtables.size() > 0)) {
-                    gpos = new GlyphPositioningTable(gdef, lookups, subtables, processors);
+            List<String> lookupIds;
+            if ((lookupIds = constructLookupIds()) != null) {
+                if ((lookups.size() > 0) && (lookupIds.size() > 0)) {
+                    gpos = new GlyphPositioningTable(gdef, lookups,
+                        createLookupListReader(tableTag), lookupIds, processors);
                 }
             }
         }
@@ -3620,6 +3675,39 @@ public final class OTFAdvancedTypographicTableReader {
         return lookups;
     }
 
+    /**
+     * Create a reader of the lookup tables of the GSUB or GPOS table being read. It only
+     * retains a copy of the part of the table that follows the lookup list, where all the
+     * lookup tables and their subtables are located.
+     * @param tableTag tag of table being read
+     * @returns lookup table reader
+     * @throws IOException In case of a I/O problem
+     */
+    private LookupListReader createLookupListReader(OFTableName tableTag) throws IOException {
+        OFDirTabEntry dirTab = otf.getDirectoryEntry(tableTag);
+        long start = Long.MAX_VALUE;
+        for (long lo : seLookupTables) {
+            start = Math.min(start, lo);
+        }
+        long end = Math.min(dirTab.getOffset() + dirTab.getLength(), in.getFileSize());
+        byte[] data = (start < end) ? in.getBytes((int) start, (int) (end - start)) : new byte[0];
+        long[] lookupTables = new long[seLookupTables.length];
+        for (int i = 0, n = lookupTables.length; i < n; i++) {
+            lookupTables[i] = seLookupTables[i] - start;
+        }
+        return new LookupListReader(tableTag, data, lookupTables, upem);
+    }
+
+    private List<String> constructLookupIds() {
+        List<String> lookupIds = new ArrayList<String>();
+        if (seLookupTables != null) {
+            for (int i = 0, n = seLookupTables.length; i < n; i++) {
+                lookupIds.add("lu" + i);
+            }
+        }
+        return lookupIds;
+    }
+
     private List constructGDEFSubtables() {
         List<GlyphSubtable> subtables = new java.util.ArrayList();
         if (seSubtables != null) {
@@ -3733,6 +3821,7 @@ public final class OTFAdvancedTypographicTableReader {
         seLanguages = new java.util.LinkedHashMap();
         seFeatures = new java.util.LinkedHashMap();
         seSubtables = new java.util.ArrayList();
+        seLookupTables = null;
         resetATSubState();
     }
 
@@ -3741,6 +3830,7 @@ public final class OTFAdvancedTypographicTableReader {
         seLanguages = null;
         seFeatures = null;
         seSubtables = null;
+        seLookupTables = null;
         resetATSubState();
     }
 
@@ -3777,6 +3867,38 @@ public final class OTFAdvancedTypographicTableReader {
         gpos = null;
     }
 
+    /**
+     * Reads the lookup tables of a GSUB or GPOS table on first use, from a copy of the
+     * table data, so that neither the font file data nor the font are retained.
+     */
+    static final class LookupListReader implements GlyphTable.SubtableReader {
+
+        private final OFTableName tableTag;
+        private final long[] lookupTables;
+        private final OTFAdvancedTypographicTableReader reader;
+
+        /**
+         * Construct a lookup list reader.
+         * @param tableTag tag of table (GSUB or GPOS)
+         * @param data table data containing the lookup tables
+         * @param lookupTables offsets of lookup tables from beginning of table data
+         * @param upem units per em of font
+         * @throws IOException In case of a I/O problem
+         */
+        LookupListReader(OFTableName tableTag, byte[] data, long[] lookupTables, int upem)
+                throws IOException {
+            this.tableTag = tableTag;
+            this.lookupTables = lookupTables;
+            this.reader = new OTFAdvancedTypographicTableReader(
+                new FontFileReader(new ByteArrayInputStream(data)), upem);
+        }
+
+        /** {@inheritDoc} */
+        public List<GlyphSubtable> readSubtables(String lid) {
+            return reader.readLookupSubtables(tableTag, lookupTables, lid);
+        }
+    }
+
     /** helper method for formatting an integer array for output */
     private String toString(int[] ia) {
         StringBuffer sb = new StringBuffer();
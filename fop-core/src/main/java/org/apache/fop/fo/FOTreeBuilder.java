@@ -37,6 +37,7 @@ import org.apache.fop.accessibility.fo.FO2StructureTreeConverter;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.FormattingResults;
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.fo.ElementMapping.Maker;
 import org.apache.fop.fo.extensions.ExtensionElementMapping;
 import org.apache.fop.fo.pagination.Root;
@@ -110,6 +111,25 @@ public class FOTreeBuilder extends DefaultHandler {
             foEventHandler = new FO2StructureTreeConverter(
                     foUserAgent.getStructureTreeEventHandler(), foEventHandler);
         }
+        initBuilderContext();
+    }
+
+    /**
+     * Creates a <code>FOTreeBuilder</code> that sends the formatting objects to the given
+     * {@link FOEventHandler}, as is. Unlike the other constructor it doesn't add the
+     * structure tree handling required for accessibility.
+     *
+     * @param foUserAgent   the {@link FOUserAgent} in effect for this process
+     * @param foEventHandler the handler for the formatting objects
+     */
+    public FOTreeBuilder(FOUserAgent foUserAgent, FOEventHandler foEventHandler) {
+        this.userAgent = foUserAgent;
+        this.elementMappingRegistry = userAgent.getElementMappingRegistry();
+        this.foEventHandler = foEventHandler;
+        initBuilderContext();
+    }
+
+    private void initBuilderContext() {
         builderContext = new FOTreeBuilderContext();
         builderContext.setPropertyListMaker(new PropertyListMaker() {
             public PropertyList make(FObj fobj, PropertyList parentPropertyList) {
@@ -176,9 +196,17 @@ public class FOTreeBuilder extends DefaultHandler {
         this.depth++;
         errorinstart = false;
         try {
+            RenderMonitor monitor = userAgent.getRenderMonitor();
+            if (monitor != null) {
+                monitor.check();
+            }
             delegate.startElement(namespaceURI, localName, rawName, attlist);
         } catch (SAXException e) {
             errorinstart = true;
+            foEventHandler.abortDocument();
+            throw e;
+        } catch (RuntimeException e) {
+            foEventHandler.abortDocument();
             throw e;
         }
     }
@@ -187,15 +215,23 @@ public class FOTreeBuilder extends DefaultHandler {
     public void endElement(String uri, String localName, String rawName)
                 throws SAXException {
         if (!errorinstart) {
-            this.delegate.endElement(uri, localName, rawName);
-            this.depth--;
-            if (depth == 0) {
-                if (delegate != mainFOHandler) {
-                    //Return from sub-handler back to main handler
-                    delegate.endDocument();
-                    delegate = mainFOHandler;
-                    delegate.endElement(uri, localName, rawName);
+            try {
+                this.delegate.endElement(uri, localName, rawName);
+                this.depth--;
+                if (depth == 0) {
+                    if (delegate != mainFOHandler) {
+                        //Return from sub-handler back to main handler
+                        delegate.endDocument();
+                        delegate = mainFOHandler;
+                        delegate.endElement(uri, localName, rawName);
+                    }
                 }
+            } catch (SAXException e) {
+                foEventHandler.abortDocument();
+                throw e;
+            } catch (RuntimeException e) {
+                foEventHandler.abortDocument();
+                throw e;
             }
         }
     }
@@ -213,6 +249,7 @@ public class FOTreeBuilder extends DefaultHandler {
     /** {@inheritDoc} */
     public void fatalError(SAXParseException e) throws SAXException {
         LOG.error(e.toString());
+        foEventHandler.abortDocument();
         throw e;
     }
 
@@ -19,6 +19,7 @@
 
 package org.apache.fop.fo;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,7 +32,7 @@ public class FOTreeBuilderContext {
      * The current set of id's in the FO tree.
      * This is used so we know if the FO tree contains duplicates.
      */
-    private Set idReferences = new HashSet();
+    private Set idReferences = Collections.synchronizedSet(new HashSet());
 
     /**
      * The property list maker.
@@ -82,6 +83,21 @@ public class FOTreeBuilderContext {
         return whiteSpaceHandler;
     }
 
+    /**
+     * Creates a context for building FO nodes apart from the parsing of the document, like
+     * the clones of marker children created during layout. It shares the ID references and
+     * the current property list maker, but has its own white-space handling and marker
+     * state, so that it can be used while parsing continues on another thread.
+     *
+     * @return a new context
+     */
+    public FOTreeBuilderContext createDetachedContext() {
+        FOTreeBuilderContext context = new FOTreeBuilderContext();
+        context.idReferences = idReferences;
+        context.propertyListMaker = propertyListMaker;
+        return context;
+    }
+
     /**
      * Switch to or from marker context
      * (used by FOTreeBuilder when processing
@@ -31,9 +31,11 @@ import org.apache.fop.apps.FOPException;
 import org.apache.fop.complexscripts.bidi.DelimitedTextRange;
 import org.apache.fop.datatypes.Numeric;
 import org.apache.fop.fo.FONode;
+import org.apache.fop.fo.FOTreeBuilderContext;
 import org.apache.fop.fo.PropertyList;
 import org.apache.fop.fo.ValidationException;
 import org.apache.fop.fo.flow.ChangeBar;
+import org.apache.fop.fo.flow.RetrieveMarker;
 import org.apache.fop.fo.properties.CommonHyphenation;
 import org.apache.fop.traits.Direction;
 import org.apache.fop.traits.WritingMode;
@@ -70,6 +72,9 @@ public class PageSequence extends AbstractPageSequence implements WritingModeTra
     private SimplePageMaster simplePageMaster;
     private PageSequenceMaster pageSequenceMaster;
 
+    /** Builder context used during layout if the page-sequence is laid out concurrently */
+    private FOTreeBuilderContext builderContext;
+
     /**
      * The fo:title object for this page-sequence.
      */
@@ -455,6 +460,58 @@ public class PageSequence extends AbstractPageSequence implements WritingModeTra
         return true;
     }
 
+    /**
+     * Indicates whether this page-sequence can be laid out without knowledge of the areas
+     * generated for the page-sequences preceding it. This is not the case if its static
+     * content retrieves markers across page-sequence boundaries, or if it uses a page-master
+     * for the last page, whose selection depends on the previously laid out page-sequence.
+     * @return true if the page-sequence can be laid out in isolation
+     */
+    public boolean isLayoutIndependent() {
+        if (pageSequenceMaster != null && pageSequenceMaster.definesPagePositionLast()) {
+            return false;
+        }
+        for (FONode fn : flowMap.values()) {
+            if (fn instanceof StaticContent && retrievesFromDocument(fn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean retrievesFromDocument(FONode node) {
+        if (node instanceof RetrieveMarker
+                && ((RetrieveMarker) node).getRetrieveBoundary() == EN_DOCUMENT) {
+            return true;
+        }
+        FONode.FONodeIterator it = node.getChildNodes();
+        while (it != null && it.hasNext()) {
+            if (retrievesFromDocument(it.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Detaches this page-sequence from the state it shares with the rest of the FO tree, so
+     * that it can be laid out on another thread while the FO tree is still being built. It
+     * gets its own copy of the page-sequence-master it refers to and its own builder context
+     * for the marker contents that are cloned during layout.
+     */
+    public void detachForLayout() {
+        if (pageSequenceMaster != null) {
+            pageSequenceMaster = pageSequenceMaster.copy();
+        }
+        builderContext = super.getBuilderContext().createDetachedContext();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FOTreeBuilderContext getBuilderContext() {
+        return builderContext != null ? builderContext : super.getBuilderContext();
+    }
+
     /**
      * Releases a page-sequence's children after the page-sequence has been fully processed.
      */
@@ -152,6 +152,28 @@ public class PageSequenceMaster extends FObj {
         }
     }
 
+    /**
+     * Creates a copy of this page-sequence-master with its own sub-sequence state, so that
+     * it can be used by a page-sequence that is laid out concurrently with other
+     * page-sequences referring to the same master.
+     * @return a reset copy of this page-sequence-master
+     */
+    PageSequenceMaster copy() {
+        try {
+            PageSequenceMaster copy = (PageSequenceMaster) clone(parent, false);
+            copy.subSequenceSpecifiers
+                    = new java.util.ArrayList<SubSequenceSpecifier>(subSequenceSpecifiers.size());
+            for (SubSequenceSpecifier subSequenceSpecifier : subSequenceSpecifiers) {
+                copy.subSequenceSpecifiers.add(
+                        (SubSequenceSpecifier) ((FONode) subSequenceSpecifier).clone(copy, false));
+            }
+            copy.reset();
+            return copy;
+        } catch (FOPException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Used to set the "cursor position" for the page masters to the previous item.
      * @return true if there is a previous item, false if the current one was the first one.
@@ -178,6 +200,20 @@ public class PageSequenceMaster extends FObj {
                 && currentSubSequence.hasPagePositionLast());
     }
 
+    /**
+     * Indicates whether any of the sub-sequences of this page-sequence-master has a
+     * page-master with page-position="last", regardless of the current sub-sequence.
+     * @return true if a page-master with page-position="last" is defined
+     */
+    boolean definesPagePositionLast() {
+        for (SubSequenceSpecifier subSequenceSpecifier : subSequenceSpecifiers) {
+            if (subSequenceSpecifier.hasPagePositionLast()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** @return true if the page-sequence-master has a page-master with page-position="only" */
     public boolean hasPagePositionOnly() {
         return (currentSubSequence != null
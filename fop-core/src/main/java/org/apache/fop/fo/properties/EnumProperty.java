@@ -31,7 +31,7 @@ public final class EnumProperty extends Property {
 
     /** cache holding all canonical EnumProperty instances */
     private static final PropertyCache<EnumProperty> CACHE
-            = new PropertyCache<EnumProperty>();
+            = new PropertyCache<EnumProperty>(64);
 
     /**
      * Inner class for creating EnumProperty instances
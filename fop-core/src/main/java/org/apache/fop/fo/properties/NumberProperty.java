@@ -108,7 +108,7 @@ public final class NumberProperty extends Property implements Numeric {
 
     /** cache holding all canonical NumberProperty instances */
     private static final PropertyCache<NumberProperty> CACHE
-            = new PropertyCache<NumberProperty>();
+            = new PropertyCache<NumberProperty>(256);
 
     private final Number number;
 
@@ -19,14 +19,15 @@
 
 package org.apache.fop.fo.properties;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,39 +36,52 @@ import org.apache.commons.logging.LogFactory;
  * Thread-safe cache that minimizes the memory requirements by fetching an instance from the cache
  * that is equal to the given one. Internally the instances are stored in WeakReferences in order to
  * be reclaimed when they are no longer referenced.
+ * <p>
+ * The cache is split into segments by hash code. Lookups don't take any lock; adding an entry
+ * locks only its segment, which at the same time unlinks the entries whose referents have been
+ * reclaimed, as reported by the segment's reference queue. Optionally, the most recently fetched
+ * values are also held strongly in a small direct-mapped table, so that the hottest values
+ * survive garbage collection and are found without following a weak reference.
  * @param <T> The type of values that are cached
  */
 public final class PropertyCache<T> {
 
     private static final Log LOG = LogFactory.getLog(PropertyCache.class);
 
-    /**
-     * Determines if the cache is used based on the value of the system property
-     * org.apache.fop.fo.properties.use-cache
-     */
-    private final boolean useCache;
+    /** Number of segments, a power of 2 */
+    private static final int SEGMENT_COUNT = 16;
 
-    /**
-     * The underlying map that stores WeakReferences to the cached entries. The map keys are the
-     * hashCode of the cached entries. The map values are a WeakRefence to the cached entries. When
-     * two cached entries have the same hash code, the last one is kept but this should be an
-     * exception case (otherwise the hashCode() method of T needs to be fixed).
-     */
-    private final ConcurrentMap<Integer, WeakReference<T>> map;
+    private static final int SEGMENT_SHIFT = 32 - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
 
     /**
-     * Counts the number of entries put in the map in order to periodically check and remove the
-     * entries whose referents have been reclaimed.
+     * All caches that are in use, for monitoring. They are held weakly, so that caches that
+     * belong to discarded objects can be reclaimed.
      */
-    private final AtomicInteger putCounter;
+    private static final List<WeakReference<PropertyCache<?>>> CACHES
+            = new ArrayList<WeakReference<PropertyCache<?>>>();
 
     /**
-     * Lock to prevent concurrent cleanup of the map.
+     * Determines if the cache is used based on the value of the system property
+     * org.apache.fop.fo.properties.use-cache
      */
-    private final Lock cleanupLock;
+    private final boolean useCache;
+
+    private final Segment<T>[] segments;
+
+    /** The most recently fetched values, indexed by hash code; null if there's no strong tier */
+    private final AtomicReferenceArray<T> recent;
 
     private final AtomicInteger hashCodeCollisionCounter;
 
+    private final StripedCounter hits;
+
+    private final StripedCounter misses;
+
+    /** The class of the first cached value, to identify the cache */
+    private volatile String typeName;
+
     /**
      * Creates a new cache. The "org.apache.fop.fo.properties.use-cache" system
      * property is used to determine whether properties should actually be
@@ -76,6 +90,18 @@ public final class PropertyCache<T> {
      * (case insensitive).
      */
     public PropertyCache() {
+        this(0);
+    }
+
+    /**
+     * Creates a new cache that holds on to the most recently fetched values. See
+     * {@link #PropertyCache()} for the use of the "org.apache.fop.fo.properties.use-cache"
+     * system property.
+     * @param recentCapacity the number of slots for the most recently fetched values (rounded up
+     * to a power of 2), 0 for none
+     */
+    @SuppressWarnings("unchecked")
+    public PropertyCache(int recentCapacity) {
         boolean useCache;
         try {
             useCache = Boolean.valueOf(
@@ -86,15 +112,23 @@ public final class PropertyCache<T> {
                    + " due to security restriction; defaulting to 'true'.");
         }
         if (useCache) {
-            this.map = new ConcurrentHashMap<Integer, WeakReference<T>>();
-            this.putCounter = new AtomicInteger();
-            this.cleanupLock = new ReentrantLock();
+            this.segments = new Segment[SEGMENT_COUNT];
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                segments[i] = new Segment<T>();
+            }
+            this.recent = recentCapacity > 0
+                    ? new AtomicReferenceArray<T>(Integer.highestOneBit(recentCapacity * 2 - 1))
+                    : null;
             this.hashCodeCollisionCounter = new AtomicInteger();
+            this.hits = new StripedCounter();
+            this.misses = new StripedCounter();
+            register(this);
         } else {
-            this.map = null;
-            this.putCounter = null;
-            this.cleanupLock = null;
+            this.segments = null;
+            this.recent = null;
             this.hashCodeCollisionCounter = null;
+            this.hits = null;
+            this.misses = null;
         }
         this.useCache = useCache;
     }
@@ -115,80 +149,306 @@ public final class PropertyCache<T> {
             return null;
         }
 
-        Integer hashCode = obj.hashCode();
+        int hash = spread(obj.hashCode());
+        Segment<T> segment = segments[hash >>> SEGMENT_SHIFT];
+        int recentIndex = 0;
+        if (recent != null) {
+            recentIndex = hash & (recent.length() - 1);
+            T cached = recent.get(recentIndex);
+            if (cached != null && eq(cached, obj)) {
+                hits.increment();
+                return cached;
+            }
+        }
 
-        WeakReference<T> weakRef = map.get(hashCode);
-        if (weakRef == null) {
-            weakRef = map.putIfAbsent(hashCode, new WeakReference<T>(obj));
-            attemptCleanup();
+        T cached = segment.get(obj, hash);
+        if (cached != null) {
+            hits.increment();
+        } else {
+            cached = segment.put(obj, hash, this);
+        }
+        if (recent != null) {
+            recent.set(recentIndex, cached);
+        }
+        return cached;
+    }
 
-            if (weakRef == null) {
-                return obj;
+    /**
+     * Returns all caches that are in use (i.e. unless caching is disabled), for instance to
+     * monitor their hit rates and sizes.
+     * @return the caches
+     */
+    public static List<PropertyCache<?>> getCaches() {
+        List<PropertyCache<?>> caches = new ArrayList<PropertyCache<?>>();
+        synchronized (CACHES) {
+            for (Iterator<WeakReference<PropertyCache<?>>> iter = CACHES.iterator(); iter.hasNext();) {
+                PropertyCache<?> cache = iter.next().get();
+                if (cache == null) {
+                    iter.remove();
+                } else {
+                    caches.add(cache);
+                }
             }
-            // else another thread added a value, continue.
         }
+        return Collections.unmodifiableList(caches);
+    }
 
-        T cached = weakRef.get();
-        if (cached != null) {
-            if (eq(cached, obj)) {
-                return cached;
-            } else {
-                /*
-                 * Log a message when obj.getClass() does not implement correctly the equals() or
-                 * hashCode() method. It is expected that only very few objects will have the
-                 * same hashCode but will not be equal.
-                 */
-                if ((hashCodeCollisionCounter.incrementAndGet() % 10) == 0) {
-                    LOG.info(hashCodeCollisionCounter.get() + " hashCode() collisions for "
-                            + obj.getClass().getName());
+    private static void register(PropertyCache<?> cache) {
+        synchronized (CACHES) {
+            for (Iterator<WeakReference<PropertyCache<?>>> iter = CACHES.iterator(); iter.hasNext();) {
+                if (iter.next().get() == null) {
+                    iter.remove();
                 }
             }
+            CACHES.add(new WeakReference<PropertyCache<?>>(cache));
+        }
+    }
+
+    /**
+     * Returns the number of fetches that found an equal instance in the cache.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return useCache ? hits.sum() : 0;
+    }
+
+    /**
+     * Returns the number of fetches that added the instance to the cache.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return useCache ? misses.sum() : 0;
+    }
+
+    /**
+     * Returns the number of entries in the cache. Entries whose referents have been reclaimed
+     * are counted until they are unlinked, the next time an entry is added to their segment.
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                size += segment.count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of buckets of all segments, to check that memory is given back when
+     * most entries have been reclaimed.
+     * @return the number of buckets
+     */
+    int capacity() {
+        int capacity = 0;
+        if (useCache) {
+            for (Segment<T> segment : segments) {
+                capacity += segment.table.length();
+            }
+        }
+        return capacity;
+    }
 
+    /**
+     * Drops the given value from the cache as if it had been reclaimed by the garbage
+     * collector, so that tests don't have to rely on when garbage is collected.
+     * @param obj the value to drop
+     */
+    void reclaim(T obj) {
+        if (useCache && obj != null) {
+            int hash = spread(obj.hashCode());
+            segments[hash >>> SEGMENT_SHIFT].reclaim(obj, hash);
         }
+    }
 
-        // Adds a new or replaces an existing entry with obj that has the same hash code
-        map.put(hashCode, new WeakReference<T>(obj));
-        attemptCleanup();
-        return obj;
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "PropertyCache[type=" + typeName + ", size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + "]";
+    }
 
+    private void hashCodeCollision(Object obj) {
         /*
-         * Another thread might add first. We could check this using map.replace() instead of
-         * map.put() and then recursively call fetch(obj). But if in the meantime, garbage
-         * collection kicks in, we might end up with a StackOverflowException. Not caching an entry
-         * is tolerable, after all it's configurable.
+         * Log a message when obj.getClass() does not implement correctly the equals() or
+         * hashCode() method. It is expected that only very few objects will have the
+         * same hashCode but will not be equal.
          */
+        if ((hashCodeCollisionCounter.incrementAndGet() % 10) == 0) {
+            LOG.info(hashCodeCollisionCounter.get() + " hashCode() collisions for "
+                    + obj.getClass().getName());
+        }
+    }
+
+    private static int spread(int h) {
+        // multiplicative hashing, the high bits select the segment, the low bits the bucket
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean eq(Object p, Object q) {
+        return (p == q || p.equals(q));
     }
 
+    private static final class Entry<T> extends WeakReference<T> {
 
-    private void attemptCleanup() {
-        if ((putCounter.incrementAndGet() % 10000) != 0) {
-            return;
+        private final int hash;
+
+        private volatile Entry<T> next;
+
+        Entry(T referent, int hash, Entry<T> next, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
         }
+    }
+
+    /**
+     * A hash table of weak entries with chained buckets. Readers traverse the chains without
+     * locking; all modifications are made while holding the segment's monitor.
+     */
+    private static final class Segment<T> {
+
+        private final ReferenceQueue<T> queue = new ReferenceQueue<T>();
 
-        // Lock as there is no need for concurrent cleanup and protect us, on JDK5, from
-        // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6312056
-        if (cleanupLock.tryLock()) {
-            try {
-                cleanReclaimedMapEntries();
-            } finally {
-                cleanupLock.unlock();
+        private volatile AtomicReferenceArray<Entry<T>> table
+                = new AtomicReferenceArray<Entry<T>>(INITIAL_SEGMENT_CAPACITY);
+
+        private volatile int count;
+
+        T get(T obj, int hash) {
+            AtomicReferenceArray<Entry<T>> tab = table;
+            for (Entry<T> e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+                if (e.hash == hash) {
+                    T cached = e.get();
+                    if (cached != null && eq(cached, obj)) {
+                        return cached;
+                    }
+                }
             }
+            return null;
         }
-    }
 
-    private void cleanReclaimedMapEntries() {
-        Iterator<Map.Entry<Integer, WeakReference<T>>> iterator = map.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Integer, WeakReference<T>> entry = iterator.next();
-            WeakReference<T> weakRef = entry.getValue();
-            T r = weakRef.get();
-            if (r == null) {
-                iterator.remove();
+        synchronized T put(T obj, int hash, PropertyCache<T> cache) {
+            expungeStaleEntries();
+            int length = table.length();
+            if (length > INITIAL_SEGMENT_CAPACITY && count < length >>> 3) {
+                // most entries have been reclaimed, give the memory back
+                resize(length >>> 1);
+            }
+            AtomicReferenceArray<Entry<T>> tab = table;
+            int index = hash & (tab.length() - 1);
+            Entry<T> head = tab.get(index);
+            for (Entry<T> e = head; e != null; e = e.next) {
+                if (e.hash == hash) {
+                    T cached = e.get();
+                    if (cached != null) {
+                        if (eq(cached, obj)) {
+                            // added by another thread in the meantime
+                            cache.hits.increment();
+                            return cached;
+                        }
+                        cache.hashCodeCollision(obj);
+                    }
+                }
+            }
+            cache.misses.increment();
+            if (cache.typeName == null) {
+                cache.typeName = obj.getClass().getName();
+            }
+            tab.set(index, new Entry<T>(obj, hash, head, queue));
+            if (++count > tab.length() - (tab.length() >>> 2)) {
+                resize(tab.length() << 1);
+            }
+            return obj;
+        }
+
+        synchronized void reclaim(T obj, int hash) {
+            AtomicReferenceArray<Entry<T>> tab = table;
+            for (Entry<T> e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+                T cached = e.get();
+                if (e.hash == hash && cached != null && eq(cached, obj)) {
+                    e.clear();
+                    e.enqueue();
+                    return;
+                }
             }
         }
+
+        /** Unlinks the entries whose referents have been reclaimed. */
+        private void expungeStaleEntries() {
+            Object ref;
+            while ((ref = queue.poll()) != null) {
+                @SuppressWarnings("unchecked")
+                Entry<T> stale = (Entry<T>) ref;
+                AtomicReferenceArray<Entry<T>> tab = table;
+                int index = stale.hash & (tab.length() - 1);
+                Entry<T> prev = null;
+                for (Entry<T> e = tab.get(index); e != null; e = e.next) {
+                    if (e == stale) {
+                        if (prev == null) {
+                            tab.set(index, e.next);
+                        } else {
+                            prev.next = e.next;
+                        }
+                        count--;
+                        break;
+                    }
+                    prev = e;
+                }
+            }
+        }
+
+        /**
+         * Rebuilds the table with a new number of buckets. New entries are created so that
+         * readers still traversing the old table see intact chains; entries whose referents have
+         * been reclaimed are dropped.
+         */
+        private void resize(int length) {
+            AtomicReferenceArray<Entry<T>> oldTable = table;
+            AtomicReferenceArray<Entry<T>> newTable = new AtomicReferenceArray<Entry<T>>(length);
+            int newCount = 0;
+            for (int i = 0; i < oldTable.length(); i++) {
+                for (Entry<T> e = oldTable.get(i); e != null; e = e.next) {
+                    T referent = e.get();
+                    if (referent != null) {
+                        int index = e.hash & (newTable.length() - 1);
+                        newTable.set(index,
+                                new Entry<T>(referent, e.hash, newTable.get(index), queue));
+                        newCount++;
+                    }
+                }
+            }
+            count = newCount;
+            table = newTable;
+        }
     }
 
-    private boolean eq(Object p, Object q) {
-        return (p == q || p.equals(q));
+    /**
+     * A counter that is spread over several cache lines, selected by thread, so that threads
+     * counting hits of the same values don't contend.
+     */
+    private static final class StripedCounter {
+
+        private static final int STRIPES = 16;
+
+        /** Longs per stripe, so that each stripe occupies a cache line of its own */
+        private static final int PADDING = 8;
+
+        private final AtomicLongArray counts = new AtomicLongArray(STRIPES * PADDING);
+
+        void increment() {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            counts.incrementAndGet(stripe * PADDING);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += counts.get(i * PADDING);
+            }
+            return sum;
+        }
     }
 }
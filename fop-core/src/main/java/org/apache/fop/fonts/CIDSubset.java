@@ -24,6 +24,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.fop.util.CharUtilities;
 
@@ -43,6 +45,12 @@ public class CIDSubset implements CIDSet {
      */
     private Map<Integer, Integer> usedGlyphs = new LinkedHashMap<Integer, Integer>();
 
+    /**
+     * the same mapping as usedGlyphs, so that the glyphs that are already in the subset can be
+     * looked up without locking
+     */
+    private final ConcurrentMap<Integer, Integer> charSelectors = new ConcurrentHashMap<Integer, Integer>();
+
     /**
      * usedGlyphsIndex contains new glyph, original index (char selector -> glyph index)
      */
@@ -66,6 +74,7 @@ public class CIDSubset implements CIDSet {
         font = mbf;
         // The zeroth value is reserved for .notdef
         usedGlyphs.put(0, 0);
+        charSelectors.put(0, 0);
         usedGlyphsIndex.put(0, 0);
         usedGlyphsCount++;
     }
@@ -97,6 +106,15 @@ public class CIDSubset implements CIDSet {
 
     /** {@inheritDoc} */
     public int mapCodePoint(int glyphIndex, int codePoint) {
+        Integer subsetCharSelector = charSelectors.get(glyphIndex);
+        if (subsetCharSelector == null) {
+            return addGlyph(glyphIndex, codePoint);
+        } else {
+            return subsetCharSelector;
+        }
+    }
+
+    private synchronized int addGlyph(int glyphIndex, int codePoint) {
         // Reencode to a new subset font or get the reencoded value
         // IOW, accumulate the accessed characters and build a character map for them
         Integer subsetCharSelector = usedGlyphs.get(glyphIndex);
@@ -107,6 +125,7 @@ public class CIDSubset implements CIDSet {
             usedCharsIndex.put(selector, codePoint);
             charToGIDs.put(codePoint, glyphIndex);
             usedGlyphsCount++;
+            charSelectors.put(glyphIndex, selector);
             return selector;
         } else {
             return subsetCharSelector;
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.List;
+
+/**
+ * An immutable two-level page table mapping Unicode code points to glyph indices, built from
+ * the segments of a character map. The Basic Multilingual Plane is split into 256 pages of 256
+ * code points, the supplementary planes get such a set of pages only when they're used, and pages
+ * without any mapped code point share a single empty page. That way a lookup takes constant time
+ * however many segments the character map has.
+ */
+final class CMapPageTable {
+
+    /** Returned for code points whose glyph index can't be stored in the table */
+    static final int NOT_IN_TABLE = -1;
+
+    private static final int PAGE_SHIFT = 8;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int PLANE_SHIFT = 16;
+
+    private static final int PAGES_PER_PLANE = 1 << (PLANE_SHIFT - PAGE_SHIFT);
+
+    private static final int SUPPLEMENTARY_PLANES = 16;
+
+    /** Marks a glyph index that doesn't fit in a char */
+    private static final char OVERFLOW = 0xFFFF;
+
+    private static final char[] EMPTY_PAGE = new char[PAGE_SIZE];
+
+    private final char[][] bmp;
+
+    /** The pages of the supplementary planes, null for an unused plane */
+    private final char[][][] supplementary;
+
+    private CMapPageTable(char[][] bmp, char[][][] supplementary) {
+        this.bmp = bmp;
+        this.supplementary = supplementary;
+    }
+
+    /**
+     * Builds the page table for a character map. Like a search through the segments in order,
+     * a code point is mapped to the glyph index of the first segment that maps it to a glyph
+     * index other than 0.
+     * @param cmap the segments of the character map
+     * @return the page table
+     */
+    static CMapPageTable create(List<CMapSegment> cmap) {
+        char[][] bmp = new char[PAGES_PER_PLANE][];
+        for (int i = 0; i < PAGES_PER_PLANE; i++) {
+            bmp[i] = EMPTY_PAGE;
+        }
+        CMapPageTable table = new CMapPageTable(bmp, new char[SUPPLEMENTARY_PLANES][][]);
+        for (CMapSegment segment : cmap) {
+            int start = Math.max(segment.getUnicodeStart(), 0);
+            int end = Math.min(segment.getUnicodeEnd(), Character.MAX_CODE_POINT);
+            for (int cp = start; cp <= end; cp++) {
+                int glyphIndex = segment.getGlyphStartIndex() + cp - segment.getUnicodeStart();
+                if (glyphIndex != 0) {
+                    table.setIfUnmapped(cp, glyphIndex);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the glyph index for a code point.
+     * @param cp the code point
+     * @return the glyph index, 0 if the code point isn't mapped or {@link #NOT_IN_TABLE} if the
+     *          glyph index has to be looked up in the character map itself
+     */
+    int getGlyphIndex(int cp) {
+        char[] page;
+        if (cp >= 0 && cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            page = bmp[cp >> PAGE_SHIFT];
+        } else if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT && cp <= Character.MAX_CODE_POINT) {
+            char[][] plane = supplementary[(cp >> PLANE_SHIFT) - 1];
+            if (plane == null) {
+                return 0;
+            }
+            page = plane[(cp >> PAGE_SHIFT) & (PAGES_PER_PLANE - 1)];
+        } else {
+            return NOT_IN_TABLE;
+        }
+        char glyphIndex = page[cp & PAGE_MASK];
+        return glyphIndex == OVERFLOW ? NOT_IN_TABLE : glyphIndex;
+    }
+
+    /**
+     * Returns a page table with an additional mapping for a code point that isn't mapped yet.
+     * The pages that aren't affected are shared with this table.
+     * @param cp the code point
+     * @param glyphIndex the glyph index
+     * @return the new page table
+     */
+    CMapPageTable withMapping(int cp, int glyphIndex) {
+        if (cp < 0 || cp > Character.MAX_CODE_POINT || glyphIndex == 0) {
+            return this;
+        }
+        char[][][] supplementaryCopy = supplementary.clone();
+        CMapPageTable table = new CMapPageTable(bmp.clone(), supplementaryCopy);
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            int plane = (cp >> PLANE_SHIFT) - 1;
+            if (supplementaryCopy[plane] != null) {
+                supplementaryCopy[plane] = supplementaryCopy[plane].clone();
+            }
+        }
+        int pageIndex = (cp >> PAGE_SHIFT) & (PAGES_PER_PLANE - 1);
+        char[][] pages = table.getPages(cp);
+        if (pages[pageIndex] != EMPTY_PAGE) {
+            pages[pageIndex] = pages[pageIndex].clone();
+        }
+        table.setIfUnmapped(cp, glyphIndex);
+        return table;
+    }
+
+    /** Returns the pages of the plane of a code point, creating them if necessary. */
+    private char[][] getPages(int cp) {
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            return bmp;
+        }
+        int plane = (cp >> PLANE_SHIFT) - 1;
+        if (supplementary[plane] == null) {
+            char[][] pages = new char[PAGES_PER_PLANE][];
+            for (int i = 0; i < PAGES_PER_PLANE; i++) {
+                pages[i] = EMPTY_PAGE;
+            }
+            supplementary[plane] = pages;
+        }
+        return supplementary[plane];
+    }
+
+    /** Maps a code point unless it's already mapped. Only used while the table is built. */
+    private void setIfUnmapped(int cp, int glyphIndex) {
+        char[][] pages = getPages(cp);
+        int pageIndex = (cp >> PAGE_SHIFT) & (PAGES_PER_PLANE - 1);
+        char[] page = pages[pageIndex];
+        if (page == EMPTY_PAGE) {
+            page = new char[PAGE_SIZE];
+            pages[pageIndex] = page;
+        }
+        if (page[cp & PAGE_MASK] == 0) {
+            page[cp & PAGE_MASK] = glyphIndex > 0 && glyphIndex < OVERFLOW
+                    ? (char) glyphIndex : OVERFLOW;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,7 +40,7 @@ import org.apache.fop.fonts.truetype.SVGGlyphData;
  * Abstract base class for custom fonts loaded from files, for example.
  */
 public abstract class CustomFont extends Typeface
-            implements FontDescriptor, MutableFont {
+            implements FontDescriptor, MutableFont, Cloneable {
 
     /** Fallback thickness for underline and strikeout when not provided by the font. */
     private static final int DEFAULT_LINE_THICKNESS = 50;
@@ -51,7 +52,7 @@ public abstract class CustomFont extends Typeface
     private String fontSubName;
     private URI embedFileURI;
     private String embedResourceName;
-    private final InternalResourceResolver resourceResolver;
+    private InternalResourceResolver resourceResolver;
     private EmbeddingMode embeddingMode = EmbeddingMode.AUTO;
 
     private int capHeight;
@@ -76,8 +77,11 @@ public abstract class CustomFont extends Typeface
 
     private int strikeoutThickness;
 
+    /** the kerning pairs while the font is being loaded, null once they're in the table */
     private Map<Integer, Map<Integer, Integer>> kerning;
 
+    private volatile KerningTable kerningTable = KerningTable.EMPTY;
+
     private boolean useKerning = true;
     /** the character map, mapping Unicode ranges to glyph indices. */
     protected List<CMapSegment> cmap = new ArrayList<CMapSegment>();
@@ -312,18 +316,67 @@ public abstract class CustomFont extends Typeface
      * {@inheritDoc}
      */
     public final boolean hasKerningInfo() {
-        return (isKerningEnabled() && (kerning != null) && !kerning.isEmpty());
+        return isKerningEnabled() && !getAllKerning().isEmpty();
     }
 
     /**
-     * {@inheritDoc}
+     * Returns a read-only view of the kerning pairs. Unlike in earlier versions, the map
+     * can't be modified: kerning pairs are added with
+     * {@link #putKerningEntry(Integer, Map)} while the font is being loaded.
+     * @return the kerning map
      */
     public final Map<Integer, Map<Integer, Integer>> getKerningInfo() {
-        if (hasKerningInfo()) {
-            return kerning;
-        } else {
-            return Collections.emptyMap();
+        return getKerningTable().asMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final KerningTable getKerningTable() {
+        return isKerningEnabled() ? getAllKerning() : KerningTable.EMPTY;
+    }
+
+    private KerningTable getAllKerning() {
+        KerningTable table = kerningTable;
+        if (table == null) {
+            table = buildKerningTable();
         }
+        return table;
+    }
+
+    private synchronized KerningTable buildKerningTable() {
+        if (kerningTable == null) {
+            kerningTable = KerningTable.valueOf(kerning);
+            kerning = null;
+        }
+        return kerningTable;
+    }
+
+    /**
+     * Creates a copy of this font for use in another document. The copy shares the font data
+     * read from the font file, but has its own character map list, SVG glyphs, usage state and
+     * resource resolver.
+     * @param resourceResolver the resource resolver of the document's font setup
+     * @return the copy
+     */
+    protected CustomFont copyFont(InternalResourceResolver resourceResolver) {
+        getAllKerning();
+        CustomFont copy;
+        try {
+            copy = (CustomFont) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        copy.resourceResolver = resourceResolver;
+        copy.cmap = new ArrayList<CMapSegment>(cmap);
+        if (svgs != null) {
+            copy.svgs = new LinkedHashMap<Integer, SVGGlyphData>();
+            for (Map.Entry<Integer, SVGGlyphData> entry : svgs.entrySet()) {
+                copy.svgs.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+        copy.resetUsage();
+        return copy;
     }
 
     /**
@@ -508,9 +561,10 @@ public abstract class CustomFont extends Typeface
     }
 
     /** {@inheritDoc} */
-    public void putKerningEntry(Integer key, Map<Integer, Integer> value) {
+    public synchronized void putKerningEntry(Integer key, Map<Integer, Integer> value) {
         if (kerning == null) {
-            kerning = new HashMap<Integer, Map<Integer, Integer>>();
+            kerning = new HashMap<Integer, Map<Integer, Integer>>(kerningTable.asMap());
+            kerningTable = null;
         }
         this.kerning.put(key, value);
     }
@@ -520,12 +574,9 @@ public abstract class CustomFont extends Typeface
      * @param kerningMap the kerning map (the integers are
      *                          character codes)
      */
-    public void replaceKerningMap(Map<Integer, Map<Integer, Integer>> kerningMap) {
-        if (kerningMap == null) {
-            this.kerning = Collections.emptyMap();
-        } else {
-            this.kerning = kerningMap;
-        }
+    public synchronized void replaceKerningMap(Map<Integer, Map<Integer, Integer>> kerningMap) {
+        this.kerning = null;
+        this.kerningTable = KerningTable.valueOf(kerningMap);
     }
 
     /**
@@ -656,35 +707,40 @@ public abstract class CustomFont extends Typeface
         if (this.unencodedCharacters != null) {
             SingleByteFont.UnencodedCharacter unencoded = this.unencodedCharacters.get(ch);
             if (unencoded != null) {
-                if (this.additionalEncodings == null) {
-                    this.additionalEncodings = new ArrayList<SimpleSingleByteEncoding>();
-                }
-                SimpleSingleByteEncoding encoding = null;
-                char mappedStart = 0;
-                int additionalsCount = this.additionalEncodings.size();
-                for (int i = 0; i < additionalsCount; i++) {
-                    mappedStart += 256;
-                    encoding = getAdditionalEncoding(i);
-                    char alt = encoding.mapChar(ch);
-                    if (alt != 0) {
-                        return (char)(mappedStart + alt);
-                    }
-                }
-                if (encoding != null && encoding.isFull()) {
-                    encoding = null;
-                }
-                if (encoding == null) {
-                    encoding = new SimpleSingleByteEncoding(
-                            getFontName() + "EncodingSupp" + (additionalsCount + 1));
-                    this.additionalEncodings.add(encoding);
-                    mappedStart += 256;
-                }
-                return (char)(mappedStart + encoding.addCharacter(unencoded.getCharacter()));
+                return mapUnencodedCharacter(ch, unencoded);
             }
         }
         return 0;
     }
 
+    private synchronized char mapUnencodedCharacter(char ch,
+            SingleByteFont.UnencodedCharacter unencoded) {
+        if (this.additionalEncodings == null) {
+            this.additionalEncodings = new ArrayList<SimpleSingleByteEncoding>();
+        }
+        SimpleSingleByteEncoding encoding = null;
+        char mappedStart = 0;
+        int additionalsCount = this.additionalEncodings.size();
+        for (int i = 0; i < additionalsCount; i++) {
+            mappedStart += 256;
+            encoding = getAdditionalEncoding(i);
+            char alt = encoding.mapChar(ch);
+            if (alt != 0) {
+                return (char)(mappedStart + alt);
+            }
+        }
+        if (encoding != null && encoding.isFull()) {
+            encoding = null;
+        }
+        if (encoding == null) {
+            encoding = new SimpleSingleByteEncoding(
+                    getFontName() + "EncodingSupp" + (additionalsCount + 1));
+            this.additionalEncodings.add(encoding);
+            mappedStart += 256;
+        }
+        return (char)(mappedStart + encoding.addCharacter(unencoded.getCharacter()));
+    }
+
     public boolean hasSVG() {
         return svgs != null;
     }
@@ -82,6 +82,12 @@ public class Font implements Substitutable, Positionable {
 
     private final FontMetrics metric;
 
+    /** kerning table of the font metrics, looked up on first use */
+    private volatile KerningTable kerningTable;
+
+    /** cache of substitution and positioning results, null if they aren't cached */
+    private final ShapingCache shapingCache;
+
     /**
      * Main constructor
      * @param key key of the font
@@ -90,10 +96,24 @@ public class Font implements Substitutable, Positionable {
      * @param fontSize font size
      */
     public Font(String key, FontTriplet triplet, FontMetrics met, int fontSize) {
+        this(key, triplet, met, fontSize, null);
+    }
+
+    /**
+     * Constructor for a font that caches the results of glyph substitution and positioning.
+     * @param key key of the font
+     * @param triplet the font triplet that was used to lookup this font (may be null)
+     * @param met font metrics
+     * @param fontSize font size
+     * @param shapingCache the cache of substitution and positioning results (may be null)
+     */
+    public Font(String key, FontTriplet triplet, FontMetrics met, int fontSize,
+            ShapingCache shapingCache) {
         this.fontName = key;
         this.triplet = triplet;
         this.metric = met;
         this.fontSize = fontSize;
+        this.shapingCache = shapingCache;
     }
 
     /**
@@ -177,7 +197,25 @@ public class Font implements Substitutable, Positionable {
 
     /**
      * Returns the font's kerning table
-     * @return the kerning table
+     * @return the kerning table, empty if the font has no kerning information
+     */
+    public KerningTable getKerningTable() {
+        KerningTable table = kerningTable;
+        if (table == null) {
+            if (metric instanceof Typeface) {
+                table = ((Typeface) metric).getKerningTable();
+            } else {
+                table = metric.hasKerningInfo()
+                        ? KerningTable.valueOf(metric.getKerningInfo()) : KerningTable.EMPTY;
+            }
+            kerningTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Returns the font's kerning table as a map
+     * @return the kerning map
      */
     public Map<Integer, Map<Integer, Integer>> getKerning() {
         if (metric.hasKerningInfo()) {
@@ -204,14 +242,8 @@ public class Font implements Substitutable, Positionable {
             return 0;
         }
 
-        Map<Integer, Integer> kernPair = getKerning().get(ch1);
-        if (kernPair != null) {
-            Integer width = kernPair.get(ch2);
-            if (width != null) {
-                return width * getFontSize() / 1000;
-            }
-        }
-        return 0;
+        int width = getKerningTable().getKerning(ch1, ch2);
+        return width != 0 ? width * getFontSize() / 1000 : 0;
     }
 
     /**
@@ -468,6 +500,10 @@ public class Font implements Substitutable, Positionable {
         String script, String language, List associations, boolean retainControls) {
         if (metric instanceof Substitutable) {
             Substitutable s = (Substitutable) metric;
+            if (isShapingCached(script, language)) {
+                return shapingCache.substitute(s, fontName, cs, script, language, associations,
+                        retainControls);
+            }
             return s.performSubstitution(cs, script, language, associations, retainControls);
         } else {
             throw new UnsupportedOperationException();
@@ -499,6 +535,9 @@ public class Font implements Substitutable, Positionable {
     public int[][] performPositioning(CharSequence cs, String script, String language, int fontSize) {
         if (metric instanceof Positionable) {
             Positionable p = (Positionable) metric;
+            if (isShapingCached(script, language)) {
+                return shapingCache.position(p, fontName, cs, script, language, fontSize);
+            }
             return p.performPositioning(cs, script, language, fontSize);
         } else {
             throw new UnsupportedOperationException();
@@ -510,4 +549,8 @@ public class Font implements Substitutable, Positionable {
         return performPositioning(cs, script, language, fontSize);
     }
 
+    private boolean isShapingCached(String script, String language) {
+        return shapingCache != null && fontName != null && script != null && language != null;
+    }
+
 }
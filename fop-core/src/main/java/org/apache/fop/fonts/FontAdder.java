@@ -19,9 +19,12 @@
 
 package org.apache.fop.fonts;
 
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.fonts.autodetect.FontInfoFinder;
@@ -48,7 +51,9 @@ public class FontAdder {
     }
 
     /**
-     * Iterates over font url list adding to font info list
+     * Iterates over font url list adding to font info list. If the font manager is configured
+     * with more than one detection thread, the font files are parsed concurrently, but the
+     * font infos are still added in the order of the list.
      * @param fontURLList font file list
      * @param fontInfoList a configured font info list
      * @throws URISyntaxException if a URI syntax error is found
@@ -59,8 +64,26 @@ public class FontAdder {
         FontInfoFinder finder = new FontInfoFinder();
         finder.setEventListener(listener);
 
-        for (URL fontURL : fontURLList) {
-            EmbedFontInfo[] embedFontInfos = finder.find(fontURL.toURI(), resourceResolver, cache);
+        URI[] fontURIs = new URI[fontURLList.size()];
+        for (int i = 0; i < fontURIs.length; i++) {
+            fontURIs[i] = fontURLList.get(i).toURI();
+        }
+        EmbedFontInfo[][] found = new EmbedFontInfo[fontURIs.length][];
+        int threads = manager.getDetectionThreads();
+        if (threads > 1 && fontURIs.length > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new FindTask(finder, cache, fontURIs, found, 0, fontURIs.length));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (int i = 0; i < fontURIs.length; i++) {
+                found[i] = finder.find(fontURIs[i], resourceResolver, cache);
+            }
+        }
+
+        for (EmbedFontInfo[] embedFontInfos : found) {
             if (embedFontInfos == null) {
                 continue;
             }
@@ -71,4 +94,38 @@ public class FontAdder {
             }
         }
     }
+
+    /** Finds the font infos of a range of font files, splitting it up for other workers. */
+    private final class FindTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2894532616493584152L;
+
+        private final FontInfoFinder finder;
+        private final FontCache cache;
+        private final URI[] fontURIs;
+        private final EmbedFontInfo[][] found;
+        private final int start;
+        private final int end;
+
+        FindTask(FontInfoFinder finder, FontCache cache, URI[] fontURIs,
+                EmbedFontInfo[][] found, int start, int end) {
+            this.finder = finder;
+            this.cache = cache;
+            this.fontURIs = fontURIs;
+            this.found = found;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                found[start] = finder.find(fontURIs[start], resourceResolver, cache);
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new FindTask(finder, cache, fontURIs, found, start, middle),
+                        new FindTask(finder, cache, fontURIs, found, middle, end));
+            }
+        }
+    }
 }
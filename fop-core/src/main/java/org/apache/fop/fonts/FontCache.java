@@ -19,11 +19,10 @@
 
 package org.apache.fop.fonts;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
@@ -32,6 +31,10 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -46,6 +49,13 @@ import org.apache.fop.util.LogUtil;
 
 /**
  * Fop cache (currently only used for font info caching)
+ * <p>
+ * The cache is stored in a compact binary format (see {@link FontCacheFile}) which is
+ * memory-mapped when the cache is loaded. The fonts of a font file are only decoded when they
+ * are first asked for.
+ * <p>
+ * Instances may be accessed by several threads concurrently, e.g. during parallel font
+ * auto-detection.
  */
 public final class FontCache implements Serializable {
 
@@ -61,8 +71,11 @@ public final class FontCache implements Serializable {
     /** FOP's user directory name */
     private static final String FOP_USER_DIR = ".fop";
 
-    /** font cache file path */
-    private static final String DEFAULT_CACHE_FILENAME = "fop-fonts.cache";
+    /**
+     * font cache file path (differs from the name used by versions with the serialized
+     * format, which would discard this file)
+     */
+    private static final String DEFAULT_CACHE_FILENAME = "fop-fonts.bin";
 
     /** has this cache been changed since it was last read? */
     private transient boolean changed;
@@ -84,6 +97,22 @@ public final class FontCache implements Serializable {
      */
     private Map<String, Long> failedFontMap;
 
+    /** Creates an empty font cache. */
+    public FontCache() {
+    }
+
+    private FontCache(FontCacheFile file) {
+        fontfileMap = new HashMap<String, CachedFontFile>();
+        for (int i = 0; i < file.getFileCount(); i++) {
+            fontfileMap.put(file.getFileKey(i),
+                    new CachedFontFile(file.getFileLastModified(i), file, i));
+        }
+        failedFontMap = new HashMap<String, Long>();
+        for (int i = 0; i < file.getFailedFontCount(); i++) {
+            failedFontMap.put(file.getFailedFontKey(i), file.getFailedFontLastModified(i));
+        }
+    }
+
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
     }
@@ -149,7 +178,7 @@ public final class FontCache implements Serializable {
      *
      * @param cacheFile
      *            the cache file
-     * @return the font cache deserialized from the file (or null if no cache
+     * @return the font cache read from the file (or null if no cache
      *         file exists or if it could not be read)
      */
     public static FontCache loadFrom(File cacheFile) {
@@ -159,18 +188,7 @@ public final class FontCache implements Serializable {
                     log.trace("Loading font cache from "
                             + cacheFile.getCanonicalPath());
                 }
-                InputStream in = new BufferedInputStream(new FileInputStream(cacheFile));
-                ObjectInputStream oin = new ObjectInputStream(in);
-                try {
-                    return (FontCache) oin.readObject();
-                } finally {
-                    IOUtils.closeQuietly(oin);
-                }
-            } catch (ClassNotFoundException e) {
-                // We don't really care about the exception since it's just a
-                // cache file
-                log.warn("Could not read font cache. Discarding font cache file. Reason: "
-                        + e.getMessage());
+                return new FontCache(FontCacheFile.map(cacheFile));
             } catch (IOException ioe) {
                 // We don't really care about the exception since it's just a
                 // cache file
@@ -199,6 +217,10 @@ public final class FontCache implements Serializable {
 
     /**
      * Writes the font cache to disk.
+     * <p>
+     * The cache is written to a temporary file which then replaces the cache file, so that
+     * the file is never modified while it may be mapped into memory. If the cache file can't
+     * be replaced, the cache is left unchanged on disk and saved again the next time.
      *
      * @param cacheFile
      *            the file to write to
@@ -210,13 +232,20 @@ public final class FontCache implements Serializable {
             if (changed) {
                 try {
                     log.trace("Writing font cache to " + cacheFile.getCanonicalPath());
-                    OutputStream out = new java.io.FileOutputStream(cacheFile);
-                    out = new java.io.BufferedOutputStream(out);
-                    ObjectOutputStream oout = new ObjectOutputStream(out);
+                    File dir = cacheFile.getAbsoluteFile().getParentFile();
+                    File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
                     try {
-                        oout.writeObject(this);
+                        OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+                        try {
+                            createWriter().writeTo(out);
+                        } finally {
+                            IOUtils.closeQuietly(out);
+                        }
+                        if (!replace(tempFile, cacheFile)) {
+                            return;
+                        }
                     } finally {
-                        IOUtils.closeQuietly(oout);
+                        tempFile.delete();
                     }
                 } catch (IOException ioe) {
                     LogUtil.handleException(log, ioe, true);
@@ -227,6 +256,40 @@ public final class FontCache implements Serializable {
         }
     }
 
+    private FontCacheFile.Writer createWriter() {
+        FontCacheFile.Writer writer = new FontCacheFile.Writer();
+        for (Map.Entry<String, CachedFontFile> entry : getFontFileMap().entrySet()) {
+            CachedFontFile cachedFontFile = entry.getValue();
+            writer.addFontFile(entry.getKey(), cachedFontFile.lastModified(),
+                    Arrays.asList(cachedFontFile.getEmbedFontInfos()));
+        }
+        for (Map.Entry<String, Long> entry : getFailedFontMap().entrySet()) {
+            writer.addFailedFont(entry.getKey(), entry.getValue());
+        }
+        return writer;
+    }
+
+    /**
+     * Replaces the cache file with a newly written one. This fails if the cache file is in use,
+     * for instance on Windows, where a file can't be replaced while it is mapped into memory by
+     * this or another process. As it's just a cache file, that isn't treated as an error.
+     */
+    private static boolean replace(File source, File target) {
+        try {
+            try {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException ioe) {
+            log.warn("Unable to replace font cache file " + target.getAbsolutePath()
+                    + " (" + ioe.getMessage() + "). The font cache has not been written.");
+            return false;
+        }
+    }
+
     /**
      * creates a key given a font info for the font mapping
      *
@@ -260,7 +323,9 @@ public final class FontCache implements Serializable {
      * @return boolean
      */
     public boolean containsFont(String embedUrl) {
-        return (embedUrl != null && getFontFileMap().containsKey(embedUrl));
+        synchronized (changeLock) {
+            return (embedUrl != null && getFontFileMap().containsKey(embedUrl));
+        }
     }
 
     /**
@@ -271,8 +336,7 @@ public final class FontCache implements Serializable {
      * @return font
      */
     public boolean containsFont(EmbedFontInfo fontInfo) {
-        return (fontInfo != null && getFontFileMap().containsKey(
-                getCacheKey(fontInfo)));
+        return (fontInfo != null && containsFont(getCacheKey(fontInfo)));
     }
 
     /**
@@ -351,7 +415,9 @@ public final class FontCache implements Serializable {
      * @return CachedFontFile object
      */
     public CachedFontFile getFontFile(String embedUrl) {
-        return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        synchronized (changeLock) {
+            return containsFont(embedUrl) ? getFontFileMap().get(embedUrl) : null;
+        }
     }
 
     /**
@@ -367,12 +433,14 @@ public final class FontCache implements Serializable {
      *         if it is outdated
      */
     public EmbedFontInfo[] getFontInfos(String embedUrl, long lastModified) {
-        CachedFontFile cff = getFontFile(embedUrl);
-        if (cff.lastModified() == lastModified) {
-            return cff.getEmbedFontInfos();
-        } else {
-            removeFont(embedUrl);
-            return null;
+        synchronized (changeLock) {
+            CachedFontFile cff = getFontFile(embedUrl);
+            if (cff.lastModified() == lastModified) {
+                return cff.getEmbedFontInfos();
+            } else {
+                removeFont(embedUrl);
+                return null;
+            }
         }
     }
 
@@ -491,17 +559,39 @@ public final class FontCache implements Serializable {
 
         private Map<String, EmbedFontInfo> filefontsMap;
 
+        /** the cache file the fonts are decoded from when first needed, if any */
+        private transient FontCacheFile source;
+
+        private transient int sourceIndex;
+
         public CachedFontFile(long lastModified) {
             setLastModified(lastModified);
         }
 
-        private Map<String, EmbedFontInfo> getFileFontsMap() {
+        CachedFontFile(long lastModified, FontCacheFile source, int sourceIndex) {
+            this(lastModified);
+            this.source = source;
+            this.sourceIndex = sourceIndex;
+        }
+
+        private synchronized Map<String, EmbedFontInfo> getFileFontsMap() {
             if (filefontsMap == null) {
                 filefontsMap = new HashMap<String, EmbedFontInfo>();
+                if (source != null) {
+                    for (EmbedFontInfo efi : source.getFontInfos(sourceIndex)) {
+                        filefontsMap.put(efi.getPostScriptName(), efi);
+                    }
+                    source = null;
+                }
             }
             return filefontsMap;
         }
 
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            getFileFontsMap();
+            out.defaultWriteObject();
+        }
+
         void put(EmbedFontInfo efi) {
             getFileFontsMap().put(efi.getPostScriptName(), efi);
         }
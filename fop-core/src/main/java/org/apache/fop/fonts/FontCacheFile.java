@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary font cache file format. The file is memory-mapped and records are only decoded
+ * when they are asked for, so opening even a large cache is cheap.
+ * <p>
+ * All values are big-endian. The file starts with a header (magic number, format version and
+ * the number of entries in each section), followed by the offsets of the strings in the string
+ * data, fixed-size records for font files, fonts, font triplets and failed fonts, and finally
+ * the UTF-8 encoded string data. Records refer to strings by their index in the string table,
+ * -1 standing for null. The format doesn't depend on the layout of any Java class, only a
+ * change of {@link #VERSION} invalidates existing cache files.
+ */
+final class FontCacheFile {
+
+    /** "FOPC" */
+    private static final int MAGIC = 0x464F5043;
+
+    /** The version of the file format */
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    /** key, lastModified, first font, font count */
+    private static final int FILE_RECORD_SIZE = 20;
+    /** embed, metrics, afm, pfm, sub-font, PostScript name, encoding mode, embedding mode,
+     *  flags, first triplet, triplet count */
+    private static final int FONT_RECORD_SIZE = 44;
+    /** name, style, weight, priority */
+    private static final int TRIPLET_RECORD_SIZE = 16;
+    /** key, lastModified */
+    private static final int FAILED_RECORD_SIZE = 12;
+
+    private static final int FLAG_KERNING = 1;
+    private static final int FLAG_ADVANCED = 2;
+    private static final int FLAG_SIMULATE_STYLE = 4;
+    private static final int FLAG_EMBED_AS_TYPE1 = 8;
+    private static final int FLAG_USE_SVG = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+
+    private final int fileCount;
+    private final int fontCount;
+    private final int tripletCount;
+    private final int failedCount;
+
+    private final int stringOffsetsStart;
+    private final int filesStart;
+    private final int fontsStart;
+    private final int tripletsStart;
+    private final int failedStart;
+    private final int stringDataStart;
+
+    private final String[] strings;
+
+    private FontCacheFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a font cache file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported font cache version " + version);
+        }
+        int stringCount = checkCount(buffer.getInt(8));
+        fileCount = checkCount(buffer.getInt(12));
+        fontCount = checkCount(buffer.getInt(16));
+        tripletCount = checkCount(buffer.getInt(20));
+        failedCount = checkCount(buffer.getInt(24));
+        int stringDataLength = checkCount(buffer.getInt(28));
+
+        long pos = HEADER_SIZE;
+        stringOffsetsStart = (int) pos;
+        pos += 4L * stringCount;
+        filesStart = checkOffset(pos, limit);
+        pos += (long) FILE_RECORD_SIZE * fileCount;
+        fontsStart = checkOffset(pos, limit);
+        pos += (long) FONT_RECORD_SIZE * fontCount;
+        tripletsStart = checkOffset(pos, limit);
+        pos += (long) TRIPLET_RECORD_SIZE * tripletCount;
+        failedStart = checkOffset(pos, limit);
+        pos += (long) FAILED_RECORD_SIZE * failedCount;
+        stringDataStart = checkOffset(pos, limit);
+        if (pos + stringDataLength != limit) {
+            throw new IOException("Font cache file has an unexpected length");
+        }
+        strings = new String[stringCount];
+        validate(stringDataLength);
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupt font cache file");
+        }
+        return count;
+    }
+
+    private static int checkOffset(long offset, int limit) throws IOException {
+        if (offset > limit) {
+            throw new IOException("Font cache file is truncated");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Checks all references between the sections up front, so decoding records later on can't
+     * fail.
+     */
+    private void validate(int stringDataLength) throws IOException {
+        int previous = 0;
+        for (int i = 0; i < strings.length; i++) {
+            int offset = buffer.getInt(stringOffsetsStart + 4 * i);
+            if (offset < previous || offset > stringDataLength) {
+                throw new IOException("Corrupt string table in font cache file");
+            }
+            previous = offset;
+        }
+        for (int i = 0; i < fileCount; i++) {
+            int record = filesStart + FILE_RECORD_SIZE * i;
+            checkString(buffer.getInt(record), false);
+            checkRange(buffer.getInt(record + 12), buffer.getInt(record + 16), fontCount);
+        }
+        for (int i = 0; i < fontCount; i++) {
+            int record = fontsStart + FONT_RECORD_SIZE * i;
+            for (int field = 0; field < 8; field++) {
+                checkString(buffer.getInt(record + 4 * field), true);
+            }
+            int count = buffer.getInt(record + 40);
+            if (count != -1) {
+                checkRange(buffer.getInt(record + 36), count, tripletCount);
+            }
+        }
+        for (int i = 0; i < tripletCount; i++) {
+            int record = tripletsStart + TRIPLET_RECORD_SIZE * i;
+            checkString(buffer.getInt(record), true);
+            checkString(buffer.getInt(record + 4), true);
+        }
+        for (int i = 0; i < failedCount; i++) {
+            checkString(buffer.getInt(failedStart + FAILED_RECORD_SIZE * i), false);
+        }
+    }
+
+    private void checkString(int index, boolean nullable) throws IOException {
+        if (index >= strings.length || index < (nullable ? -1 : 0)) {
+            throw new IOException("Invalid string reference in font cache file");
+        }
+    }
+
+    private static void checkRange(int first, int count, int size) throws IOException {
+        if (first < 0 || count < 0 || (long) first + count > size) {
+            throw new IOException("Invalid record reference in font cache file");
+        }
+    }
+
+    /**
+     * Maps a font cache file into memory.
+     * @param file the cache file
+     * @return the font cache file
+     * @throws IOException if the file can't be read or isn't a valid font cache file
+     */
+    static FontCacheFile map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Font cache file is too large");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new FontCacheFile(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads font cache data from a buffer.
+     * @param buffer the buffer containing the font cache file
+     * @return the font cache file
+     * @throws IOException if the buffer doesn't contain a valid font cache file
+     */
+    static FontCacheFile wrap(ByteBuffer buffer) throws IOException {
+        return new FontCacheFile(buffer);
+    }
+
+    /** @return the number of cached font files */
+    int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Returns the cache key of a font file.
+     * @param index the index of the font file
+     * @return the cache key
+     */
+    String getFileKey(int index) {
+        return getString(buffer.getInt(filesStart + FILE_RECORD_SIZE * index));
+    }
+
+    /**
+     * Returns the last modified date/time of a font file.
+     * @param index the index of the font file
+     * @return the last modified date/time
+     */
+    long getFileLastModified(int index) {
+        return buffer.getLong(filesStart + FILE_RECORD_SIZE * index + 4);
+    }
+
+    /**
+     * Decodes the fonts of a font file.
+     * @param index the index of the font file
+     * @return the font infos
+     */
+    List<EmbedFontInfo> getFontInfos(int index) {
+        int record = filesStart + FILE_RECORD_SIZE * index;
+        int first = buffer.getInt(record + 12);
+        int count = buffer.getInt(record + 16);
+        List<EmbedFontInfo> fontInfos = new ArrayList<EmbedFontInfo>(count);
+        for (int i = first; i < first + count; i++) {
+            fontInfos.add(getFontInfo(i));
+        }
+        return fontInfos;
+    }
+
+    private EmbedFontInfo getFontInfo(int index) {
+        int record = fontsStart + FONT_RECORD_SIZE * index;
+        FontUris fontUris = new FontUris(getURI(record), getURI(record + 4),
+                getURI(record + 8), getURI(record + 12));
+        String subFontName = getString(buffer.getInt(record + 16));
+        String postScriptName = getString(buffer.getInt(record + 20));
+        String encodingMode = getString(buffer.getInt(record + 24));
+        String embeddingMode = getString(buffer.getInt(record + 28));
+        int flags = buffer.getInt(record + 32);
+        int firstTriplet = buffer.getInt(record + 36);
+        int triplets = buffer.getInt(record + 40);
+        List<FontTriplet> fontTriplets = null;
+        if (triplets != -1) {
+            fontTriplets = new ArrayList<FontTriplet>(triplets);
+            for (int i = firstTriplet; i < firstTriplet + triplets; i++) {
+                int tripletRecord = tripletsStart + TRIPLET_RECORD_SIZE * i;
+                fontTriplets.add(new FontTriplet(getString(buffer.getInt(tripletRecord)),
+                        getString(buffer.getInt(tripletRecord + 4)),
+                        buffer.getInt(tripletRecord + 8), buffer.getInt(tripletRecord + 12)));
+            }
+        }
+        EmbedFontInfo fontInfo = new EmbedFontInfo(fontUris,
+                (flags & FLAG_KERNING) != 0, (flags & FLAG_ADVANCED) != 0, fontTriplets,
+                subFontName,
+                encodingMode == null ? EncodingMode.AUTO : EncodingMode.getValue(encodingMode),
+                embeddingMode == null ? EmbeddingMode.AUTO : EmbeddingMode.getValue(embeddingMode),
+                (flags & FLAG_SIMULATE_STYLE) != 0, (flags & FLAG_EMBED_AS_TYPE1) != 0,
+                (flags & FLAG_USE_SVG) != 0);
+        fontInfo.setPostScriptName(postScriptName);
+        return fontInfo;
+    }
+
+    /** @return the number of fonts that failed to load */
+    int getFailedFontCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the cache key of a font that failed to load.
+     * @param index the index of the failed font
+     * @return the cache key
+     */
+    String getFailedFontKey(int index) {
+        return getString(buffer.getInt(failedStart + FAILED_RECORD_SIZE * index));
+    }
+
+    /**
+     * Returns the last modified date/time of a font that failed to load.
+     * @param index the index of the failed font
+     * @return the last modified date/time
+     */
+    long getFailedFontLastModified(int index) {
+        return buffer.getLong(failedStart + FAILED_RECORD_SIZE * index + 4);
+    }
+
+    private URI getURI(int position) {
+        String uri = getString(buffer.getInt(position));
+        return uri == null ? null : URI.create(uri);
+    }
+
+    private String getString(int index) {
+        if (index == -1) {
+            return null;
+        }
+        String s = strings[index];
+        if (s == null) {
+            int start = buffer.getInt(stringOffsetsStart + 4 * index);
+            int end = index + 1 < strings.length
+                    ? buffer.getInt(stringOffsetsStart + 4 * (index + 1))
+                    : buffer.limit() - stringDataStart;
+            byte[] bytes = new byte[end - start];
+            ByteBuffer data = buffer.duplicate();
+            data.position(stringDataStart + start);
+            data.get(bytes);
+            s = new String(bytes, UTF_8);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    /**
+     * Collects the content of a font cache and writes it in the binary format.
+     */
+    static final class Writer {
+
+        private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+        private final List<byte[]> strings = new ArrayList<byte[]>();
+        private final List<long[]> files = new ArrayList<long[]>();
+        private final List<int[]> fonts = new ArrayList<int[]>();
+        private final List<int[]> triplets = new ArrayList<int[]>();
+        private final List<long[]> failedFonts = new ArrayList<long[]>();
+        private int stringDataLength;
+
+        /**
+         * Adds a font file.
+         * @param key the cache key of the font file
+         * @param lastModified the last modified date/time of the font file
+         * @param fontInfos the fonts in the font file
+         */
+        void addFontFile(String key, long lastModified, Collection<EmbedFontInfo> fontInfos) {
+            files.add(new long[] {addString(key), lastModified, fonts.size(), fontInfos.size()});
+            for (EmbedFontInfo fontInfo : fontInfos) {
+                addFontInfo(fontInfo);
+            }
+        }
+
+        private void addFontInfo(EmbedFontInfo fontInfo) {
+            FontUris fontUris = fontInfo.getFontUris();
+            int flags = (fontInfo.getKerning() ? FLAG_KERNING : 0)
+                    | (fontInfo.getAdvanced() ? FLAG_ADVANCED : 0)
+                    | (fontInfo.getSimulateStyle() ? FLAG_SIMULATE_STYLE : 0)
+                    | (fontInfo.getEmbedAsType1() ? FLAG_EMBED_AS_TYPE1 : 0)
+                    | (fontInfo.getUseSVG() ? FLAG_USE_SVG : 0);
+            List<FontTriplet> fontTriplets = fontInfo.getFontTriplets();
+            fonts.add(new int[] {
+                    addURI(fontUris.getEmbed()), addURI(fontUris.getMetrics()),
+                    addURI(fontUris.getAfm()), addURI(fontUris.getPfm()),
+                    addString(fontInfo.getSubFontName()), addString(fontInfo.getPostScriptName()),
+                    addString(fontInfo.getEncodingMode() == null
+                            ? null : fontInfo.getEncodingMode().getName()),
+                    addString(fontInfo.getEmbeddingMode() == null
+                            ? null : fontInfo.getEmbeddingMode().getName()),
+                    flags, triplets.size(), fontTriplets == null ? -1 : fontTriplets.size()});
+            if (fontTriplets != null) {
+                for (FontTriplet triplet : fontTriplets) {
+                    triplets.add(new int[] {addString(triplet.getName()),
+                            addString(triplet.getStyle()), triplet.getWeight(),
+                            triplet.getPriority()});
+                }
+            }
+        }
+
+        /**
+         * Adds a font that failed to load.
+         * @param key the cache key of the font
+         * @param lastModified the last modified date/time of the font file
+         */
+        void addFailedFont(String key, long lastModified) {
+            failedFonts.add(new long[] {addString(key), lastModified});
+        }
+
+        private int addURI(URI uri) {
+            return addString(uri == null ? null : uri.toString());
+        }
+
+        private int addString(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer index = stringIndexes.get(s);
+            if (index == null) {
+                byte[] bytes = s.getBytes(UTF_8);
+                index = strings.size();
+                strings.add(bytes);
+                stringIndexes.put(s, index);
+                stringDataLength += bytes.length;
+            }
+            return index;
+        }
+
+        /**
+         * Writes the font cache file.
+         * @param out the stream to write to
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(OutputStream out) throws IOException {
+            DataOutputStream dout = new DataOutputStream(out);
+            dout.writeInt(MAGIC);
+            dout.writeInt(VERSION);
+            dout.writeInt(strings.size());
+            dout.writeInt(files.size());
+            dout.writeInt(fonts.size());
+            dout.writeInt(triplets.size());
+            dout.writeInt(failedFonts.size());
+            dout.writeInt(stringDataLength);
+            int offset = 0;
+            for (byte[] s : strings) {
+                dout.writeInt(offset);
+                offset += s.length;
+            }
+            for (long[] file : files) {
+                dout.writeInt((int) file[0]);
+                dout.writeLong(file[1]);
+                dout.writeInt((int) file[2]);
+                dout.writeInt((int) file[3]);
+            }
+            for (int[] font : fonts) {
+                for (int value : font) {
+                    dout.writeInt(value);
+                }
+            }
+            for (int[] triplet : triplets) {
+                for (int value : triplet) {
+                    dout.writeInt(value);
+                }
+            }
+            for (long[] failedFont : failedFonts) {
+                dout.writeInt((int) failedFont[0]);
+                dout.writeLong(failedFont[1]);
+            }
+            for (byte[] s : strings) {
+                dout.write(s);
+            }
+            dout.flush();
+        }
+    }
+}
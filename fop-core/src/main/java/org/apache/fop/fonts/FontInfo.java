@@ -64,6 +64,11 @@ public class FontInfo {
     /** Event listener for font events */
     private FontEventListener eventListener;
 
+    /** Cache of glyph substitution and positioning results, null if they aren't cached */
+    private ShapingCache shapingCache;
+
+    private WordMeasurementCache wordMeasurementCache;
+
     /**
      * Main constructor
      */
@@ -71,7 +76,8 @@ public class FontInfo {
         this.triplets = new HashMap<FontTriplet, String>();
         this.tripletPriorities = new HashMap<FontTriplet, Integer>();
         this.fonts = new HashMap<String, Typeface>();
-        this.usedFonts = new HashMap<String, Typeface>();
+        // page-sequences may be laid out concurrently while pages are being rendered
+        this.usedFonts = Collections.synchronizedMap(new HashMap<String, Typeface>());
     }
 
     /**
@@ -83,6 +89,40 @@ public class FontInfo {
         this.eventListener = listener;
     }
 
+    /**
+     * Sets the cache of glyph substitution and positioning results that is used by the Font
+     * instances created from now on.
+     * @param shapingCache the cache or null to not cache the results
+     */
+    public void setShapingCache(ShapingCache shapingCache) {
+        this.shapingCache = shapingCache;
+    }
+
+    /**
+     * Returns the cache of glyph substitution and positioning results.
+     * @return the cache or null if the results aren't cached
+     */
+    public ShapingCache getShapingCache() {
+        return shapingCache;
+    }
+
+    /**
+     * Sets the cache of word measurements. Its entries are keyed by the font keys of this
+     * FontInfo, so it must not be shared with another one.
+     * @param wordMeasurementCache the cache or null to not cache word measurements
+     */
+    public void setWordMeasurementCache(WordMeasurementCache wordMeasurementCache) {
+        this.wordMeasurementCache = wordMeasurementCache;
+    }
+
+    /**
+     * Returns the cache of word measurements.
+     * @return the cache or null if word measurements aren't cached
+     */
+    public WordMeasurementCache getWordMeasurementCache() {
+        return wordMeasurementCache;
+    }
+
     /**
      * Checks if the font setup is valid (At least the ultimate fallback font
      * must be registered.)
@@ -298,7 +338,7 @@ public class FontInfo {
      * @param fontSize the font size
      * @return the requested Font instance
      */
-    public Font getFontInstance(FontTriplet triplet, int fontSize) {
+    public synchronized Font getFontInstance(FontTriplet triplet, int fontSize) {
         Map<Integer, Font> sizes = getFontInstanceCache().get(triplet);
         if (sizes == null) {
             sizes = new HashMap<Integer, Font>();
@@ -310,7 +350,7 @@ public class FontInfo {
             String fontKey = getInternalFontKey(triplet);
             useFont(fontKey);
             FontMetrics metrics = getMetricsFor(fontKey);
-            font = new Font(fontKey, triplet, metrics, fontSize);
+            font = new Font(fontKey, triplet, metrics, fontSize, shapingCache);
             sizes.put(size, font);
         }
         return font;
@@ -49,6 +49,15 @@ public class FontManager {
     /** Allows enabling kerning on the base 14 fonts, default is false */
     private boolean enableBase14Kerning;
 
+    /** number of threads used to parse font files during font detection */
+    private int detectionThreads = 1;
+
+    /** the number of glyph substitution and positioning results cached per rendering run */
+    private int shapingCacheSize;
+
+    /** the number of word measurements cached per rendering run */
+    private int wordMeasurementCacheSize;
+
     /** FontTriplet matcher for fonts that shall be referenced rather than embedded. */
     private FontTriplet.Matcher referencedFontsMatcher;
 
@@ -91,6 +100,63 @@ public class FontManager {
         this.enableBase14Kerning = value;
     }
 
+    /** @return the number of threads used to parse font files found by font detection */
+    public int getDetectionThreads() {
+        return this.detectionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse the font files found by font auto-detection
+     * and in configured font directories. With more than one thread, the files are parsed
+     * concurrently, which speeds up building the font cache.
+     * @param threads the number of threads, 1 to parse the font files one after the other
+     */
+    public void setDetectionThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of font detection threads must be"
+                    + " at least 1: " + threads);
+        }
+        this.detectionThreads = threads;
+    }
+
+    /** @return the number of glyph substitution and positioning results cached per rendering run */
+    public int getShapingCacheSize() {
+        return this.shapingCacheSize;
+    }
+
+    /**
+     * Sets the number of glyph substitution and positioning results of complex script text
+     * that are cached per rendering run, so that words that occur repeatedly are shaped once.
+     * The least recently used results are dropped when the cache is full.
+     * @param size the maximum number of cached results, 0 (the default) to not cache them
+     */
+    public void setShapingCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The shaping cache size must not be negative: "
+                    + size);
+        }
+        this.shapingCacheSize = size;
+    }
+
+    /** @return the number of word measurements cached per rendering run */
+    public int getWordMeasurementCacheSize() {
+        return this.wordMeasurementCacheSize;
+    }
+
+    /**
+     * Sets the number of word measurements (widths, letter spaces and kerning) that are cached
+     * per rendering run, so that words that occur repeatedly in the same font are measured once.
+     * The least recently used measurements are dropped when the cache is full.
+     * @param size the maximum number of cached measurements, 0 (the default) to not cache them
+     */
+    public void setWordMeasurementCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The word measurement cache size must not be"
+                    + " negative: " + size);
+        }
+        this.wordMeasurementCacheSize = size;
+    }
+
     /**
      * Sets the font substitutions
      * @param substitutions font substitutions
@@ -164,6 +230,12 @@ public class FontManager {
         }
         // Make any defined substitutions in the font info
         getFontSubstitutions().adjustFontInfo(fontInfo);
+        if (shapingCacheSize > 0 && fontInfo.getShapingCache() == null) {
+            fontInfo.setShapingCache(new ShapingCache(shapingCacheSize));
+        }
+        if (wordMeasurementCacheSize > 0 && fontInfo.getWordMeasurementCache() == null) {
+            fontInfo.setWordMeasurementCache(new WordMeasurementCache(wordMeasurementCacheSize));
+        }
     }
 
     /**
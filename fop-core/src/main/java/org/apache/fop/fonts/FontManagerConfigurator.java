@@ -116,6 +116,17 @@ public class FontManagerConfigurator {
             }
         }
 
+        if (cfg.getChild("font-detection-threads", false) != null) {
+            try {
+                fontManager.setDetectionThreads(
+                        cfg.getChild("font-detection-threads").getValueAsInteger());
+            } catch (ConfigurationException e) {
+                LogUtil.handleException(log, e, true);
+            } catch (IllegalArgumentException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
+
         // global font configuration
         Configuration fontsCfg = cfg.getChild("fonts", false);
         if (fontsCfg != null) {
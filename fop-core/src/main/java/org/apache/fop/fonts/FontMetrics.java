@@ -142,7 +142,7 @@ public interface FontMetrics {
 
     /**
      * Returns the kerning map for the font.
-     * @return the kerning map
+     * @return the kerning map, which may be read-only
      */
     Map<Integer, Map<Integer, Integer>> getKerningInfo();
 
@@ -87,6 +87,24 @@ public class GlyphMapping {
             Font font, MinOptMax letterSpaceIPD, MinOptMax[] letterSpaceAdjustArray,
             char precedingChar, char breakOpportunityChar, final boolean endsWithHyphen, int level,
             boolean dontOptimizeForIdentityMapping, boolean retainAssociations, boolean retainControls) {
+        return doGlyphMapping(text, startIndex, endIndex, font, letterSpaceIPD, letterSpaceAdjustArray,
+                precedingChar, breakOpportunityChar, endsWithHyphen, level, dontOptimizeForIdentityMapping,
+                retainAssociations, retainControls, null);
+    }
+
+    /**
+     * Maps a word to glyphs and measures it, looking up the measurement of words that aren't
+     * shaped in a cache.
+     * @param measurementCache the cache of word measurements (may be null)
+     * @return the glyph mapping
+     * @see #doGlyphMapping(TextFragment, int, int, Font, MinOptMax, MinOptMax[], char, char,
+     * boolean, int, boolean, boolean, boolean)
+     */
+    public static GlyphMapping doGlyphMapping(TextFragment text, int startIndex, int endIndex,
+            Font font, MinOptMax letterSpaceIPD, MinOptMax[] letterSpaceAdjustArray,
+            char precedingChar, char breakOpportunityChar, final boolean endsWithHyphen, int level,
+            boolean dontOptimizeForIdentityMapping, boolean retainAssociations, boolean retainControls,
+            WordMeasurementCache measurementCache) {
         GlyphMapping mapping;
         if (font.performsSubstitution() || font.performsPositioning()) {
             mapping = processWordMapping(text, startIndex, endIndex, font,
@@ -94,7 +112,8 @@ public class GlyphMapping {
                     dontOptimizeForIdentityMapping, retainAssociations, retainControls);
         } else {
             mapping = processWordNoMapping(text, startIndex, endIndex, font,
-                    letterSpaceIPD, letterSpaceAdjustArray, precedingChar, breakOpportunityChar, endsWithHyphen, level);
+                    letterSpaceIPD, letterSpaceAdjustArray, precedingChar, breakOpportunityChar, endsWithHyphen, level,
+                    measurementCache);
         }
         return mapping;
     }
@@ -234,10 +253,8 @@ public class GlyphMapping {
 
     private static GlyphMapping processWordNoMapping(TextFragment text, int startIndex, int endIndex,
             final Font font, MinOptMax letterSpaceIPD, MinOptMax[] letterSpaceAdjustArray,
-            char precedingChar, final char breakOpportunityChar, final boolean endsWithHyphen, int level) {
-        boolean kerning = font.hasKerning();
-        MinOptMax wordIPD = MinOptMax.ZERO;
-
+            char precedingChar, final char breakOpportunityChar, final boolean endsWithHyphen, int level,
+            WordMeasurementCache measurementCache) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("PW: [" + startIndex + "," + endIndex + "]: {"
                     + " -M"
@@ -245,6 +262,46 @@ public class GlyphMapping {
                     + " }");
         }
 
+        WordMeasurementCache.Measurement measurement;
+        if (measurementCache != null && font.getFontName() != null) {
+            // the preceding character only matters for kerning
+            WordMeasurementCache.Key key = new WordMeasurementCache.Key(font.getFontName(),
+                    font.getFontSize(), letterSpaceIPD, font.hasKerning() ? precedingChar : 0,
+                    breakOpportunityChar, endsWithHyphen, text.subSequence(startIndex, endIndex).toString());
+            measurement = measurementCache.get(key);
+            if (measurement == null) {
+                measurement = measureWord(text, startIndex, endIndex, font, letterSpaceIPD,
+                        precedingChar, breakOpportunityChar, endsWithHyphen);
+                measurementCache.put(key, measurement);
+            }
+        } else {
+            measurement = measureWord(text, startIndex, endIndex, font, letterSpaceIPD,
+                    precedingChar, breakOpportunityChar, endsWithHyphen);
+        }
+        if (measurement.kerns != null) {
+            for (int offset = 0; offset < measurement.kerns.length; offset++) {
+                if (measurement.kerns[offset] != 0) {
+                    addToLetterAdjust(letterSpaceAdjustArray, startIndex + offset, measurement.kerns[offset]);
+                }
+            }
+        }
+        if (measurement.hyphenKern != 0) {
+            addToLetterAdjust(letterSpaceAdjustArray, endIndex, measurement.hyphenKern);
+        }
+
+        // create and return the AreaInfo object
+        return new GlyphMapping(startIndex, endIndex, 0, measurement.letterSpaces, measurement.wordIPD,
+                endsWithHyphen, false, (breakOpportunityChar != 0) && !isSpace(breakOpportunityChar), font,
+                level, null);
+    }
+
+    private static WordMeasurementCache.Measurement measureWord(TextFragment text, int startIndex,
+            int endIndex, final Font font, MinOptMax letterSpaceIPD, char precedingChar,
+            final char breakOpportunityChar, final boolean endsWithHyphen) {
+        boolean kerning = font.hasKerning();
+        MinOptMax wordIPD = MinOptMax.ZERO;
+        int[] kerns = null;
+
         CharSequence ics = text.subSequence(startIndex, endIndex);
         int offset = 0;
         for (int currentChar : CharUtilities.codepointsIter(ics)) {
@@ -263,12 +320,16 @@ public class GlyphMapping {
                     kern = font.getKernValue(precedingChar, currentChar);
                 }
                 if (kern != 0) {
-                    addToLetterAdjust(letterSpaceAdjustArray, startIndex + offset, kern);
+                    if (kerns == null) {
+                        kerns = new int[ics.length()];
+                    }
+                    kerns[offset] = kern;
                     wordIPD = wordIPD.plus(kern);
                 }
             }
             offset++;
         }
+        int hyphenKern = 0;
         if (kerning
                 && (breakOpportunityChar != 0)
                 && !isSpace(breakOpportunityChar)
@@ -281,11 +342,8 @@ public class GlyphMapping {
                 endChar = Character.toCodePoint(highSurrogate, (char) endChar);
             }
 
-            int kern = font.getKernValue(endChar, (int) breakOpportunityChar);
-            if (kern != 0) {
-                addToLetterAdjust(letterSpaceAdjustArray, endIndex, kern);
-                // TODO: add kern to wordIPD?
-            }
+            hyphenKern = font.getKernValue(endChar, (int) breakOpportunityChar);
+            // TODO: add kern to wordIPD?
         }
         // shy+chars at start of word: wordLength == 0 && breakOpportunity
         // shy only characters in word: wordLength == 0 && !breakOpportunity
@@ -302,10 +360,7 @@ public class GlyphMapping {
         }
         assert letterSpaces >= 0;
         wordIPD = wordIPD.plus(letterSpaceIPD.mult(letterSpaces));
-
-        // create and return the AreaInfo object
-        return new GlyphMapping(startIndex, endIndex, 0, letterSpaces, wordIPD, endsWithHyphen, false,
-                (breakOpportunityChar != 0) && !isSpace(breakOpportunityChar), font, level, null);
+        return new WordMeasurementCache.Measurement(wordIPD, letterSpaces, kerns, hyphenKern);
     }
 
     private static void addToLetterAdjust(MinOptMax[] letterSpaceAdjustArray, int index, int width) {
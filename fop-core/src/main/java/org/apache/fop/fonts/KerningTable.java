@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>An immutable kerning table. The kerning pairs are kept in a sorted array of primitive
+ * keys, so looking up a pair needs neither boxing nor hash map nodes, which also makes the
+ * table a lot smaller than the equivalent nested maps.</p>
+ *
+ * <p>{@link #asMap()} offers the table through the traditional
+ * <code>Map&lt;Integer, Map&lt;Integer, Integer&gt;&gt;</code> API, as a read-only view.</p>
+ */
+public final class KerningTable {
+
+    /** The table without kerning pairs */
+    public static final KerningTable EMPTY = new KerningTable(new long[0], new int[0]);
+
+    /** The kerning pairs, sorted, with the first character in the upper 32 bits */
+    private final long[] pairs;
+
+    /** The kerning values, in the order of the pairs */
+    private final int[] values;
+
+    /** The distinct first characters of the pairs, sorted */
+    private final int[] firstChars;
+
+    /** The index of the first pair of each first character, plus the number of pairs */
+    private final int[] rowStarts;
+
+    private KerningTable(long[] pairs, int[] values) {
+        this.pairs = pairs;
+        this.values = values;
+        int rows = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            if (i == 0 || first(pairs[i]) != first(pairs[i - 1])) {
+                rows++;
+            }
+        }
+        firstChars = new int[rows];
+        rowStarts = new int[rows + 1];
+        int row = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            if (i == 0 || first(pairs[i]) != first(pairs[i - 1])) {
+                firstChars[row] = first(pairs[i]);
+                rowStarts[row++] = i;
+            }
+        }
+        rowStarts[rows] = pairs.length;
+    }
+
+    /**
+     * Creates a kerning table from a kerning map. Null rows and values are ignored.
+     * @param kerning the kerning map (first character to second character to kerning value),
+     *          may be null
+     * @return the kerning table
+     */
+    public static KerningTable valueOf(Map<Integer, ? extends Map<Integer, Integer>> kerning) {
+        if (kerning == null) {
+            return EMPTY;
+        }
+        if (kerning instanceof TableView) {
+            return ((TableView) kerning).getTable();
+        }
+        int count = 0;
+        for (Map<Integer, Integer> row : kerning.values()) {
+            if (row != null) {
+                count += row.size();
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        long[] keys = new long[count];
+        int[] kerns = new int[count];
+        int n = 0;
+        for (Map.Entry<Integer, ? extends Map<Integer, Integer>> row : kerning.entrySet()) {
+            if (row.getKey() == null || row.getValue() == null) {
+                continue;
+            }
+            int first = row.getKey();
+            for (Map.Entry<Integer, Integer> pair : row.getValue().entrySet()) {
+                if (pair.getKey() != null && pair.getValue() != null) {
+                    keys[n] = key(first, pair.getKey());
+                    kerns[n++] = pair.getValue();
+                }
+            }
+        }
+        long[] pairs = Arrays.copyOf(keys, n);
+        Arrays.sort(pairs);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[Arrays.binarySearch(pairs, keys[i])] = kerns[i];
+        }
+        return new KerningTable(pairs, values);
+    }
+
+    private static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static int first(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int second(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the kerning value for a pair of characters.
+     * @param first the first character
+     * @param second the second character
+     * @return the kerning value, 0 if the pair isn't kerned
+     */
+    public int getKerning(int first, int second) {
+        int index = Arrays.binarySearch(pairs, key(first, second));
+        return index >= 0 ? values[index] : 0;
+    }
+
+    /**
+     * Indicates whether a pair of characters is in the table.
+     * @param first the first character
+     * @param second the second character
+     * @return true if the pair is kerned
+     */
+    public boolean contains(int first, int second) {
+        return Arrays.binarySearch(pairs, key(first, second)) >= 0;
+    }
+
+    /**
+     * Returns the number of kerning pairs.
+     * @return the number of pairs
+     */
+    public int size() {
+        return pairs.length;
+    }
+
+    /**
+     * Indicates whether the table has no kerning pairs.
+     * @return true if there are no pairs
+     */
+    public boolean isEmpty() {
+        return pairs.length == 0;
+    }
+
+    /**
+     * Returns a read-only view of the table as a map from the first character to a map from the
+     * second character to the kerning value.
+     * @return the map view
+     */
+    public Map<Integer, Map<Integer, Integer>> asMap() {
+        if (isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return new TableView();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "KerningTable[pairs=" + pairs.length + ", firstChars=" + firstChars.length + "]";
+    }
+
+    private Map<Integer, Integer> getRow(Object first) {
+        if (!(first instanceof Integer)) {
+            return null;
+        }
+        int row = Arrays.binarySearch(firstChars, (Integer) first);
+        return row >= 0 ? new RowView(rowStarts[row], rowStarts[row + 1]) : null;
+    }
+
+    /** The view of the whole table */
+    private final class TableView extends AbstractMap<Integer, Map<Integer, Integer>> {
+
+        KerningTable getTable() {
+            return KerningTable.this;
+        }
+
+        @Override
+        public Map<Integer, Integer> get(Object key) {
+            return getRow(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && Arrays.binarySearch(firstChars, (Integer) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return firstChars.length;
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, Map<Integer, Integer>>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, Map<Integer, Integer>>>() {
+
+                @Override
+                public Iterator<Map.Entry<Integer, Map<Integer, Integer>>> iterator() {
+                    return new ViewIterator<Map.Entry<Integer, Map<Integer, Integer>>>(
+                            0, firstChars.length) {
+                        @Override
+                        Map.Entry<Integer, Map<Integer, Integer>> get(int row) {
+                            return new SimpleImmutableEntry<Integer, Map<Integer, Integer>>(
+                                    firstChars[row], new RowView(rowStarts[row], rowStarts[row + 1]));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return firstChars.length;
+                }
+            };
+        }
+    }
+
+    /** The view of the pairs with the same first character */
+    private final class RowView extends AbstractMap<Integer, Integer> {
+
+        private final int start;
+
+        private final int end;
+
+        RowView(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private int indexOf(Object key) {
+            if (!(key instanceof Integer)) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(pairs, start, end,
+                    key(first(pairs[start]), (Integer) key));
+            return index >= 0 ? index : -1;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            int index = indexOf(key);
+            return index >= 0 ? values[index] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, Integer>>() {
+
+                @Override
+                public Iterator<Map.Entry<Integer, Integer>> iterator() {
+                    return new ViewIterator<Map.Entry<Integer, Integer>>(start, end) {
+                        @Override
+                        Map.Entry<Integer, Integer> get(int index) {
+                            return new SimpleImmutableEntry<Integer, Integer>(
+                                    second(pairs[index]), values[index]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return end - start;
+                }
+            };
+        }
+    }
+
+    /** A read-only iterator over a range of indices */
+    private abstract static class ViewIterator<E> implements Iterator<E> {
+
+        private int next;
+
+        private final int end;
+
+        ViewIterator(int start, int end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        abstract E get(int index);
+
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        public E next() {
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            return get(next++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("A kerning table is read-only");
+        }
+    }
+}
@@ -60,7 +60,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     private int defaultWidth;
     private CIDFontType cidType = CIDFontType.CIDTYPE2;
 
-    protected final CIDSet cidSet;
+    protected CIDSet cidSet;
 
     /* advanced typographic support */
     private GlyphDefinitionTable gdef;
@@ -81,9 +81,8 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
 
     private boolean isOTFFile;
 
-    // since for most users the most likely glyphs are in the first cmap segments we store their mapping.
-    private static final int NUM_MOST_LIKELY_GLYPHS = 256;
-    private int[] mostLikelyGlyphs = new int[NUM_MOST_LIKELY_GLYPHS];
+    /** the character map as a page table, for constant time lookups */
+    private volatile CMapPageTable cmapPageTable;
 
     //A map to store each used glyph from the CID set against the glyph name.
     private LinkedHashMap<Integer, String> usedGlyphNames = new LinkedHashMap<Integer, String>();
@@ -102,6 +101,32 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
         }
     }
 
+    /**
+     * Returns a copy of this font for use in another document. The copy shares the metrics, the
+     * character map and the advanced typographic tables with this font, but starts with an empty
+     * glyph subset and without private use mappings.
+     * @param resourceResolver the resource resolver of the document's font setup
+     * @return the copy
+     */
+    public synchronized MultiByteFont copy(InternalResourceResolver resourceResolver) {
+        getCMapPageTable();
+        MultiByteFont copy = (MultiByteFont) copyFont(resourceResolver);
+        if (cidSet instanceof CIDFull) {
+            copy.cidSet = new CIDFull(copy);
+        } else {
+            copy.cidSet = new CIDSubset(copy);
+        }
+        copy.numMapped = 0;
+        copy.numUnmapped = 0;
+        copy.nextPrivateUse = 0xE000;
+        copy.firstPrivate = 0;
+        copy.lastPrivate = 0;
+        copy.firstUnmapped = 0;
+        copy.lastUnmapped = 0;
+        copy.usedGlyphNames = new LinkedHashMap<Integer, String>();
+        return copy;
+    }
+
     /** {@inheritDoc} */
     @Override
     public int getDefaultWidth() {
@@ -213,38 +238,54 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
         return new Rectangle(bbox.x * size, bbox.y * size, bbox.width * size, bbox.height * size);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setCMap(CMapSegment[] cmap) {
+        super.setCMap(cmap);
+        cmapPageTable = CMapPageTable.create(this.cmap);
+    }
+
     /**
      * Returns the glyph index for a Unicode character. The method returns 0 if there's no
      * such glyph in the character map.
      * @param c the Unicode character index
      * @return the glyph index (or 0 if the glyph is not available)
      */
-    // [TBD] - needs optimization, i.e., change from linear search to binary search
     public int findGlyphIndex(int c) {
-        int idx = c;
-        int retIdx = SingleByteEncoding.NOT_FOUND_CODE_POINT;
+        int glyphIndex = getCMapPageTable().getGlyphIndex(c);
+        if (glyphIndex == CMapPageTable.NOT_IN_TABLE) {
+            glyphIndex = searchGlyphIndex(c);
+        }
+        return glyphIndex;
+    }
 
-        // for most users the most likely glyphs are in the first cmap segments (meaning the one with
-        // the lowest unicode start values)
-        if (idx < NUM_MOST_LIKELY_GLYPHS && mostLikelyGlyphs[idx] != 0) {
-            return mostLikelyGlyphs[idx];
+    private CMapPageTable getCMapPageTable() {
+        CMapPageTable table = cmapPageTable;
+        if (table == null) {
+            synchronized (this) {
+                if (cmapPageTable == null) {
+                    cmapPageTable = CMapPageTable.create(cmap);
+                }
+                table = cmapPageTable;
+            }
         }
+        return table;
+    }
+
+    /**
+     * Looks up a glyph index that isn't in the page table in the character map itself, which
+     * private use mappings may be added to at the same time.
+     */
+    private synchronized int searchGlyphIndex(int c) {
         for (CMapSegment i : cmap) {
-            if (retIdx == 0
-                    && i.getUnicodeStart() <= idx
-                    && i.getUnicodeEnd() >= idx) {
-                retIdx = i.getGlyphStartIndex()
-                    + idx
-                    - i.getUnicodeStart();
-                if (idx < NUM_MOST_LIKELY_GLYPHS) {
-                    mostLikelyGlyphs[idx] = retIdx;
-                }
+            if (i.getUnicodeStart() <= c && i.getUnicodeEnd() >= c) {
+                int retIdx = i.getGlyphStartIndex() + c - i.getUnicodeStart();
                 if (retIdx != 0) {
-                    break;
+                    return retIdx;
                 }
             }
         }
-        return retIdx;
+        return SingleByteEncoding.NOT_FOUND_CODE_POINT;
     }
 
     /**
@@ -254,6 +295,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
     protected synchronized void addPrivateUseMapping(int pu, int gi) {
         assert findGlyphIndex(pu) == SingleByteEncoding.NOT_FOUND_CODE_POINT;
         cmap.add(new CMapSegment(pu, pu, gi));
+        cmapPageTable = getCMapPageTable().withMapping(pu, gi);
     }
 
     /**
@@ -309,7 +351,7 @@ public class MultiByteFont extends CIDFont implements Substitutable, Positionabl
      * @return unicode scalar value
      */
     // [TBD] - needs optimization, i.e., change from linear search to binary search
-    private int findCharacterFromGlyphIndex(int gi, boolean augment) {
+    private synchronized int findCharacterFromGlyphIndex(int gi, boolean augment) {
         int cc = 0;
         for (CMapSegment segment : cmap) {
             int s = segment.getGlyphStartIndex();
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.fop.complexscripts.fonts.Positionable;
+import org.apache.fop.complexscripts.fonts.Substitutable;
+import org.apache.fop.complexscripts.util.CharAssociation;
+import org.apache.fop.util.LRUCache;
+
+/**
+ * <p>A cache for the results of glyph substitution and glyph positioning of complex script
+ * text, so that words that occur again and again in a document are shaped only once.</p>
+ *
+ * <p>The cache belongs to a {@link FontInfo}, so it is used for one rendering run only: the
+ * characters a substitution maps glyphs to may be private use characters that are allocated
+ * by the font used in that run. Results are keyed by font key, script, language and the input
+ * characters; positioning results also by font size. The features that are applied are
+ * determined by the script, so they need not be part of the key. The cache is a bounded
+ * least-recently-used cache.</p>
+ */
+public class ShapingCache extends LRUCache<ShapingCache.Key, Object> {
+
+    private static final int SUBSTITUTION = 0;
+
+    private static final int POSITIONING = 1;
+
+    /** Stands for a text that needs no positioning adjustments */
+    private static final int[][] NO_ADJUSTMENTS = new int[0][];
+
+    /**
+     * Creates a new cache.
+     * @param capacity the maximum number of cached substitution and positioning results
+     */
+    public ShapingCache(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Performs glyph substitution, or returns the result of an earlier substitution of the
+     * same characters with the same parameters.
+     * @param font the font
+     * @param fontKey the key of the font (F1, F2 etc.)
+     * @param cs the characters to substitute
+     * @param script a script identifier
+     * @param language a language identifier
+     * @param associations a (possibly null) list to which the character associations of the
+     * substituted characters are added
+     * @param retainControls true if control characters are to be retained
+     * @return the substituted characters
+     */
+    public CharSequence substitute(Substitutable font, String fontKey, CharSequence cs,
+            String script, String language, List associations, boolean retainControls) {
+        Key key = new Key(SUBSTITUTION, fontKey, 0, script, language, retainControls, cs);
+        Substitution substitution = (Substitution) get(key);
+        if (substitution == null) {
+            List<CharAssociation> substitutedAssociations = new ArrayList<CharAssociation>();
+            CharSequence substituted = font.performSubstitution(cs, script, language,
+                    substitutedAssociations, retainControls);
+            substitution = new Substitution(substituted.toString(),
+                    copy(substitutedAssociations));
+            put(key, substitution);
+        }
+        if (associations != null) {
+            associations.clear();
+            associations.addAll(copy(substitution.associations));
+        }
+        return substitution.chars;
+    }
+
+    /**
+     * Performs glyph positioning, or returns the result of an earlier positioning of the
+     * same characters with the same parameters.
+     * @param font the font
+     * @param fontKey the key of the font (F1, F2 etc.)
+     * @param cs the characters to position
+     * @param script a script identifier
+     * @param language a language identifier
+     * @param fontSize the font size in millipoints
+     * @return the positioning adjustments or null if none
+     */
+    public int[][] position(Positionable font, String fontKey, CharSequence cs, String script,
+            String language, int fontSize) {
+        Key key = new Key(POSITIONING, fontKey, fontSize, script, language, false, cs);
+        int[][] adjustments = (int[][]) get(key);
+        if (adjustments == null) {
+            adjustments = font.performPositioning(cs, script, language, fontSize);
+            put(key, adjustments == null ? NO_ADJUSTMENTS : copy(adjustments));
+            return adjustments;
+        }
+        // the caller may change the adjustments, for example when reordering combining marks
+        return adjustments == NO_ADJUSTMENTS ? null : copy(adjustments);
+    }
+
+    private static List<CharAssociation> copy(List<CharAssociation> associations) {
+        List<CharAssociation> copy = new ArrayList<CharAssociation>(associations.size());
+        for (CharAssociation ca : associations) {
+            copy.add((CharAssociation) ca.clone());
+        }
+        return copy;
+    }
+
+    private static int[][] copy(int[][] adjustments) {
+        int[][] copy = new int[adjustments.length][];
+        for (int i = 0; i < adjustments.length; i++) {
+            copy[i] = adjustments[i].clone();
+        }
+        return copy;
+    }
+
+    /** The result of a substitution */
+    private static final class Substitution {
+
+        private final String chars;
+
+        private final List<CharAssociation> associations;
+
+        Substitution(String chars, List<CharAssociation> associations) {
+            this.chars = chars;
+            this.associations = associations;
+        }
+    }
+
+    static final class Key {
+
+        private final int type;
+
+        private final String fontKey;
+
+        private final int fontSize;
+
+        private final String script;
+
+        private final String language;
+
+        private final boolean retainControls;
+
+        private final String chars;
+
+        private final int hashCode;
+
+        Key(int type, String fontKey, int fontSize, String script, String language,
+                boolean retainControls, CharSequence chars) {
+            this.type = type;
+            this.fontKey = fontKey;
+            this.fontSize = fontSize;
+            this.script = script;
+            this.language = language;
+            this.retainControls = retainControls;
+            this.chars = chars.toString();
+            int h = type;
+            h = h * 31 + fontKey.hashCode();
+            h = h * 31 + fontSize;
+            h = h * 31 + script.hashCode();
+            h = h * 31 + language.hashCode();
+            h = h * 31 + (retainControls ? 1 : 0);
+            h = h * 31 + this.chars.hashCode();
+            this.hashCode = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && type == other.type
+                    && fontSize == other.fontSize && retainControls == other.retainControls
+                    && chars.equals(other.chars) && fontKey.equals(other.fontKey)
+                    && script.equals(other.script) && language.equals(other.language);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.apache.xmlgraphics.io.ResourceResolver;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+
+/**
+ * <p>A process-wide pool of parsed OpenType and TrueType fonts. Every document's font setup
+ * loads its fonts on first use, so without the pool each document, and each FopFactory,
+ * parses its own copy of the same font files. The pool parses a font file once and hands out
+ * copies of it that share the parsed data (metrics, character map, kerning and advanced
+ * typographic tables) but have their own per-document state, like the glyph subset.</p>
+ *
+ * <p>Fonts are keyed by the font file and its last modification time, so a changed font file
+ * is parsed again, by the loading options, and by the resource resolver the font file is read
+ * through, since a custom resolver may return other data for the same file. Only fonts in
+ * local files are pooled, since only for those the modification time is known. The pool counts the copies in use; once
+ * all copies of a font have been garbage collected the parsed font is dropped.</p>
+ */
+public final class SharedFontPool {
+
+    private static final Log LOG = LogFactory.getLog(SharedFontPool.class);
+
+    private static final SharedFontPool INSTANCE = new SharedFontPool();
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private final ReferenceQueue<MultiByteFont> queue = new ReferenceQueue<MultiByteFont>();
+
+    SharedFontPool() {
+    }
+
+    /**
+     * Returns the process-wide pool.
+     * @return the pool
+     */
+    public static SharedFontPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads a font, sharing the parsed font data with other documents that use the same font
+     * file with the same options. The parameters are the ones of
+     * {@link FontLoader#loadFont(FontUris, String, boolean, EmbeddingMode, EncodingMode,
+     * boolean, boolean, InternalResourceResolver, boolean, boolean, boolean)}.
+     * @param fontUris the font URIs
+     * @param subFontName the sub-fontname of a font (for TrueType Collections, null otherwise)
+     * @param embedded indicates whether the font is embedded or referenced
+     * @param embeddingMode the embedding mode of the font
+     * @param encodingMode the requested encoding mode
+     * @param useKerning indicates whether kerning information should be loaded if available
+     * @param useAdvanced indicates whether advanced typographic information shall be loaded if
+     * available
+     * @param resourceResolver the font resolver to use when resolving URIs
+     * @param simulateStyle indicates whether bold and italic are simulated
+     * @param embedAsType1 indicates whether a CFF font is embedded as Type 1
+     * @param useSVG indicates whether SVG glyphs are used
+     * @return the font, for use in one document only
+     * @throws IOException In case of an I/O error
+     */
+    public CustomFont loadFont(FontUris fontUris, String subFontName,
+            boolean embedded, EmbeddingMode embeddingMode, EncodingMode encodingMode,
+            boolean useKerning, boolean useAdvanced, InternalResourceResolver resourceResolver,
+            boolean simulateStyle, boolean embedAsType1, boolean useSVG) throws IOException {
+        String key = createKey(fontUris, resourceResolver, subFontName, embedded, embeddingMode,
+                encodingMode, useKerning, useAdvanced, simulateStyle, embedAsType1, useSVG);
+        if (key == null) {
+            return FontLoader.loadFont(fontUris, subFontName, embedded, embeddingMode, encodingMode,
+                    useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG);
+        }
+        expungeStaleCopies();
+        ResourceResolver resolver = resourceResolver.getResourceResolver();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key, resolver);
+                entries.put(key, entry);
+            }
+        }
+        if (entry.resolver != resolver) {
+            // another resolver with the same identity hash code
+            return FontLoader.loadFont(fontUris, subFontName, embedded, embeddingMode, encodingMode,
+                    useKerning, useAdvanced, resourceResolver, simulateStyle, embedAsType1, useSVG);
+        }
+        synchronized (entry) {
+            if (entry.font == null) {
+                try {
+                    CustomFont font = FontLoader.loadFont(fontUris, subFontName, embedded,
+                            embeddingMode, encodingMode, useKerning, useAdvanced, resourceResolver,
+                            simulateStyle, embedAsType1, useSVG);
+                    if (!(font instanceof MultiByteFont)) {
+                        return font;
+                    }
+                    entry.font = (MultiByteFont) font;
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Added font to the shared pool: " + key);
+                    }
+                } finally {
+                    if (entry.font == null) {
+                        // the font couldn't be loaded or can't be shared
+                        synchronized (entries) {
+                            if (entries.get(key) == entry) {
+                                entries.remove(key);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        MultiByteFont copy = entry.font.copy(resourceResolver);
+        synchronized (entries) {
+            entry.copies.add(new Copy(copy, entry, queue));
+            if (!entries.containsKey(key)) {
+                entries.put(key, entry);
+            }
+        }
+        return copy;
+    }
+
+    private static String createKey(FontUris fontUris, InternalResourceResolver resourceResolver,
+            String subFontName, boolean embedded, EmbeddingMode embeddingMode,
+            EncodingMode encodingMode, boolean useKerning, boolean useAdvanced,
+            boolean simulateStyle, boolean embedAsType1, boolean useSVG) {
+        if (fontUris.getEmbed() == null || fontUris.getMetrics() != null
+                || fontUris.getAfm() != null || fontUris.getPfm() != null) {
+            return null;
+        }
+        URI uri = resourceResolver.resolveFromBase(fontUris.getEmbed());
+        if (!"file".equals(uri.getScheme()) || uri.isOpaque()) {
+            return null;
+        }
+        File file = new File(uri);
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        return file.getAbsolutePath() + ";" + lastModified + ";" + file.length()
+                + ";" + System.identityHashCode(resourceResolver.getResourceResolver())
+                + ";" + subFontName + ";" + embedded + ";" + embeddingMode + ";" + encodingMode
+                + ";" + useKerning + ";" + useAdvanced + ";" + simulateStyle
+                + ";" + embedAsType1 + ";" + useSVG;
+    }
+
+    private void expungeStaleCopies() {
+        Copy copy = (Copy) queue.poll();
+        if (copy == null) {
+            return;
+        }
+        synchronized (entries) {
+            while (copy != null) {
+                Entry entry = copy.entry;
+                entry.copies.remove(copy);
+                if (entry.copies.isEmpty() && entries.get(entry.key) == entry) {
+                    entries.remove(entry.key);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Removed font from the shared pool: " + entry.key);
+                    }
+                }
+                copy = (Copy) queue.poll();
+            }
+        }
+    }
+
+    /**
+     * Handles a copy as if it had been garbage collected. Used for testing.
+     * @param font a copy handed out by this pool
+     */
+    void releaseCopy(CustomFont font) {
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                for (Copy copy : entry.copies) {
+                    if (copy.get() == font) {
+                        copy.enqueue();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of parsed fonts in the pool.
+     * @return the number of fonts
+     */
+    public int size() {
+        expungeStaleCopies();
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** The parsed font for one key, and the copies of it that are still referenced */
+    private static final class Entry {
+
+        private final String key;
+
+        private final ResourceResolver resolver;
+
+        private final Set<Copy> copies = new HashSet<Copy>();
+
+        private MultiByteFont font;
+
+        Entry(String key, ResourceResolver resolver) {
+            this.key = key;
+            this.resolver = resolver;
+        }
+    }
+
+    /** A reference to a copy, which is enqueued once the copy is garbage collected */
+    private static final class Copy extends WeakReference<MultiByteFont> {
+
+        private final Entry entry;
+
+        Copy(MultiByteFont font, Entry entry, ReferenceQueue<? super MultiByteFont> queue) {
+            super(font, queue);
+            this.entry = entry;
+        }
+    }
+}
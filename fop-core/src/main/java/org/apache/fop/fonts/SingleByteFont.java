@@ -26,6 +26,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -71,7 +72,7 @@ public class SingleByteFont extends CustomFont {
         setEmbeddingMode(embeddingMode);
         if (embeddingMode != EmbeddingMode.FULL) {
             usedGlyphNames = new LinkedHashMap<Integer, String>();
-            usedGlyphs = new HashMap<Integer, Integer>();
+            usedGlyphs = new ConcurrentHashMap<Integer, Integer>();
             usedCharsIndex = new HashMap<Integer, Character>();
             charGIDMappings = new HashMap<Character, Integer>();
 
@@ -155,7 +156,7 @@ public class SingleByteFont extends CustomFont {
      * @param c the character
      * @return the suggested alternative character present in the font
      */
-    private char findAlternative(char c) {
+    private synchronized char findAlternative(char c) {
         char d;
         if (alternativeCodes == null) {
             alternativeCodes = new java.util.HashMap<Character, Character>();
@@ -225,15 +226,24 @@ public class SingleByteFont extends CustomFont {
     }
 
     private int mapChar(int glyphIndex, char unicode) {
+        Integer subsetCharSelector = usedGlyphs.get(glyphIndex);
+        if (subsetCharSelector == null) {
+            return addGlyph(glyphIndex, unicode);
+        } else {
+            return subsetCharSelector;
+        }
+    }
+
+    private synchronized int addGlyph(int glyphIndex, char unicode) {
         // Reencode to a new subset font or get the reencoded value
         // IOW, accumulate the accessed characters and build a character map for them
         Integer subsetCharSelector = usedGlyphs.get(glyphIndex);
         if (subsetCharSelector == null) {
             int selector = usedGlyphsCount;
-            usedGlyphs.put(glyphIndex, selector);
             usedCharsIndex.put(selector, unicode);
             charGIDMappings.put(unicode, glyphIndex);
             usedGlyphsCount++;
+            usedGlyphs.put(glyphIndex, selector);
             return selector;
         } else {
             return subsetCharSelector;
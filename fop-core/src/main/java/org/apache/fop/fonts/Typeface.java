@@ -74,6 +74,16 @@ public abstract class Typeface implements FontMetrics {
         this.charMapOps++;
     }
 
+    /**
+     * Forgets the character mapping operations, missing glyph warnings and the event listener,
+     * for a copy of this typeface that is going to be used in another document.
+     */
+    protected void resetUsage() {
+        this.charMapOps = 0;
+        this.warnedChars = null;
+        this.eventListener = null;
+    }
+
     /**
      * Indicates whether this font had to do any character mapping operations. If that was
      * not the case, it's an indication that the font has never actually been used.
@@ -112,6 +122,18 @@ public abstract class Typeface implements FontMetrics {
         return false;
     }
 
+    /**
+     * Returns the kerning table for the font. This is the preferred way to look up kerning
+     * values, {@link #getKerningInfo()} only offers a boxed view of the same data. This
+     * implementation builds the table from {@link #getKerningInfo()} on every call; a
+     * {@link Font} looks it up once.
+     * @return the kerning table, empty if the font has no kerning information or kerning
+     *          is disabled
+     */
+    public KerningTable getKerningTable() {
+        return hasKerningInfo() ? KerningTable.valueOf(getKerningInfo()) : KerningTable.EMPTY;
+    }
+
     /**
      * Sets the font event listener that can be used to receive events about particular events
      * in this class.
@@ -127,7 +149,7 @@ public abstract class Typeface implements FontMetrics {
      * @param c
      *            the character which is missing.
      */
-    protected void warnMissingGlyph(char c) {
+    protected synchronized void warnMissingGlyph(char c) {
         // Give up, character is not available
         Character ch = c;
         if (warnedChars == null) {
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import org.apache.fop.traits.MinOptMax;
+import org.apache.fop.util.LRUCache;
+
+/**
+ * <p>A cache for the measurement of words that aren't shaped, so that the widths and kerning
+ * of words that occur again and again in a document are looked up in the font only once. It
+ * is used by {@link GlyphMapping#doGlyphMapping} for one rendering run.</p>
+ *
+ * <p>Measurements are keyed by font key, font size, letter spacing, the characters of the word
+ * and the characters around it that influence kerning and letter spacing. The cache is a
+ * bounded least-recently-used cache.</p>
+ */
+public class WordMeasurementCache
+        extends LRUCache<WordMeasurementCache.Key, WordMeasurementCache.Measurement> {
+
+    /**
+     * Creates a new cache.
+     * @param capacity the maximum number of cached word measurements
+     */
+    public WordMeasurementCache(int capacity) {
+        super(capacity);
+    }
+
+    /** The measurement of a word, independent of its position in the text */
+    static final class Measurement {
+
+        /** the width of the word, including letter spaces */
+        final MinOptMax wordIPD;
+
+        /** the number of letter spaces */
+        final int letterSpaces;
+
+        /** the kerning before each character of the word, or null if there's none */
+        final int[] kerns;
+
+        /** the kerning between the word and the hyphen after it */
+        final int hyphenKern;
+
+        Measurement(MinOptMax wordIPD, int letterSpaces, int[] kerns, int hyphenKern) {
+            this.wordIPD = wordIPD;
+            this.letterSpaces = letterSpaces;
+            this.kerns = kerns;
+            this.hyphenKern = hyphenKern;
+        }
+    }
+
+    static final class Key {
+
+        private final String fontKey;
+
+        private final int fontSize;
+
+        private final MinOptMax letterSpaceIPD;
+
+        private final char precedingChar;
+
+        private final char breakOpportunityChar;
+
+        private final boolean endsWithHyphen;
+
+        private final String word;
+
+        private final int hashCode;
+
+        Key(String fontKey, int fontSize, MinOptMax letterSpaceIPD, char precedingChar,
+                char breakOpportunityChar, boolean endsWithHyphen, String word) {
+            this.fontKey = fontKey;
+            this.fontSize = fontSize;
+            this.letterSpaceIPD = letterSpaceIPD;
+            this.precedingChar = precedingChar;
+            this.breakOpportunityChar = breakOpportunityChar;
+            this.endsWithHyphen = endsWithHyphen;
+            this.word = word;
+            int h = fontKey.hashCode();
+            h = h * 31 + fontSize;
+            h = h * 31 + letterSpaceIPD.hashCode();
+            h = h * 31 + precedingChar;
+            h = h * 31 + breakOpportunityChar;
+            h = h * 31 + (endsWithHyphen ? 1 : 0);
+            h = h * 31 + word.hashCode();
+            this.hashCode = h;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && fontSize == other.fontSize
+                    && precedingChar == other.precedingChar
+                    && breakOpportunityChar == other.breakOpportunityChar
+                    && endsWithHyphen == other.endsWithHyphen && word.equals(other.word)
+                    && fontKey.equals(other.fontKey) && letterSpaceIPD.equals(other.letterSpaceIPD);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -373,6 +373,16 @@ public abstract class OpenFont {
      * @return pdf unit
      */
     public int convertTTFUnit2PDFUnit(int n) {
+        return convertTTFUnit2PDFUnit(n, upem);
+    }
+
+    /**
+     * Convert from truetype unit to pdf unit
+     * @param n truetype unit
+     * @param upem units per em of the font
+     * @return pdf unit
+     */
+    public static int convertTTFUnit2PDFUnit(int n, int upem) {
         int ret;
         if (n < 0) {
             long rest1 = n % upem;
@@ -978,6 +988,14 @@ public abstract class OpenFont {
         return ENCODING;
     }
 
+    /**
+     * Returns the unitsPerEm field of the "head" table.
+     * @return the units per em
+     */
+    public int getUnitsPerEm() {
+        return upem;
+    }
+
     /**
      * Returns the CapHeight attribute of the font.
      * @return int The CapHeight
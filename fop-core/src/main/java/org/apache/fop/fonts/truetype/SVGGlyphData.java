@@ -51,6 +51,20 @@ public class SVGGlyphData {
         this.svg = svg;
     }
 
+    /**
+     * Returns a copy of this glyph for a copy of the font, so that the scale found while
+     * creating the data URL isn't shared between documents.
+     * @return the copy
+     */
+    public SVGGlyphData copy() {
+        SVGGlyphData copy = new SVGGlyphData();
+        copy.svgDocOffset = svgDocOffset;
+        copy.svgDocLength = svgDocLength;
+        copy.svg = svg;
+        copy.scale = scale;
+        return copy;
+    }
+
     public String getDataURL(int height) {
         try {
             String modifiedSVG = updateTransform(svg, height);
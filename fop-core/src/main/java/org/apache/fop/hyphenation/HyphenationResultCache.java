@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.fop.util.LRUCache;
+
+/**
+ * <p>A cache for the hyphenation of individual words, so that words that occur again and again
+ * in a document (or in the documents rendered by the same
+ * {@link org.apache.fop.apps.FopFactory}) are looked up in the patterns only once.</p>
+ *
+ * <p>There's a separate least-recently-used cache of bounded size for each language. The
+ * cached {@link Hyphenation} instances are shared, so they must not be modified.</p>
+ */
+public class HyphenationResultCache {
+
+    /** Stands for a word that has no hyphenation points */
+    private static final Hyphenation NO_HYPHENATION = new Hyphenation("", new int[0]);
+
+    private final int capacity;
+
+    private final ConcurrentMap<String, LRUCache<Key, Hyphenation>> languageCaches
+            = new ConcurrentHashMap<String, LRUCache<Key, Hyphenation>>();
+
+    /**
+     * Creates a new cache.
+     * @param capacity the maximum number of words cached per language
+     */
+    public HyphenationResultCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Hyphenates a word, or returns the result of an earlier hyphenation of the same word with
+     * the same parameters.
+     * @param hTree the hyphenation tree for the language
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param word the word to hyphenate
+     * @param remainCharCount the minimum number of characters before the hyphenation point
+     * @param pushCharCount the minimum number of characters after the hyphenation point
+     * @return the hyphenation or null if the word isn't hyphenated
+     */
+    public Hyphenation hyphenate(ReadOnlyHyphenationTree hTree, String lang, String country,
+            String word, int remainCharCount, int pushCharCount) {
+        LRUCache<Key, Hyphenation> cache = getLanguageCache(
+                HyphenationTreeCache.constructLlccKey(lang, country));
+        Key key = new Key(word, remainCharCount, pushCharCount);
+        Hyphenation hyph = cache.get(key);
+        if (hyph != null) {
+            return hyph == NO_HYPHENATION ? null : hyph;
+        }
+        hyph = hTree.hyphenate(word, remainCharCount, pushCharCount);
+        cache.put(key, hyph == null ? NO_HYPHENATION : hyph);
+        return hyph;
+    }
+
+    private LRUCache<Key, Hyphenation> getLanguageCache(String llccKey) {
+        LRUCache<Key, Hyphenation> cache = languageCaches.get(llccKey);
+        if (cache == null) {
+            cache = new LRUCache<Key, Hyphenation>(capacity);
+            LRUCache<Key, Hyphenation> existing = languageCaches.putIfAbsent(llccKey, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the maximum number of words cached per language.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of hyphenations that were found in the cache.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        long hits = 0;
+        for (LRUCache<Key, Hyphenation> cache : languageCaches.values()) {
+            hits += cache.getHitCount();
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of hyphenations that had to be looked up in the patterns.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        long misses = 0;
+        for (LRUCache<Key, Hyphenation> cache : languageCaches.values()) {
+            misses += cache.getMissCount();
+        }
+        return misses;
+    }
+
+    /**
+     * Returns the number of words that were dropped from the cache to make room for others.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (LRUCache<Key, Hyphenation> cache : languageCaches.values()) {
+            evictions += cache.getEvictionCount();
+        }
+        return evictions;
+    }
+
+    /**
+     * Returns the number of words currently cached for a language.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @return the number of cached words
+     */
+    public int size(String lang, String country) {
+        LRUCache<Key, Hyphenation> cache = languageCaches.get(
+                HyphenationTreeCache.constructLlccKey(lang, country));
+        return cache != null ? cache.size() : 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "HyphenationResultCache[capacity=" + capacity + ", languages="
+                + languageCaches.keySet() + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Key {
+
+        private final String word;
+
+        private final int remainCharCount;
+
+        private final int pushCharCount;
+
+        Key(String word, int remainCharCount, int pushCharCount) {
+            this.word = word;
+            this.remainCharCount = remainCharCount;
+            this.pushCharCount = pushCharCount;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return remainCharCount == other.remainCharCount
+                    && pushCharCount == other.pushCharCount && word.equals(other.word);
+        }
+
+        @Override
+        public int hashCode() {
+            return (word.hashCode() * 31 + remainCharCount) * 31 + pushCharCount;
+        }
+    }
+}
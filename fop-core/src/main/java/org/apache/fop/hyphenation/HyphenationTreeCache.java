@@ -19,15 +19,26 @@
 
 package org.apache.fop.hyphenation;
 
+import java.lang.ref.WeakReference;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>This is a cache for HyphenationTree instances.</p>
+ *
+ * <p>Each {@link org.apache.fop.apps.FopFactory} has its own cache. Read-only trees loaded from
+ * the flat binary format are additionally shared between all caches as long as any of them
+ * holds on to them, so that every pattern file is mapped only once per JVM.</p>
  */
 public class HyphenationTreeCache {
 
+    /** Read-only hyphenation trees shared between all caches, by source */
+    private static final ConcurrentMap<String, WeakReference<MappedHyphenationTree>> SHARED_TREES
+            = new ConcurrentHashMap<String, WeakReference<MappedHyphenationTree>>();
+
     /** Contains the cached hyphenation trees */
     private Hashtable hyphenTrees = new Hashtable();
     /** Used to avoid multiple error messages for the same language if a pattern file is missing. */
@@ -38,15 +49,28 @@ public class HyphenationTreeCache {
      * @param lang the language
      * @param country the country (may be null or "none")
      * @return the HyhenationTree instance or null if it's not in the cache
+     * @deprecated use {@link #getReadOnlyHyphenationTree(String, String)} instead, which doesn't
+     * copy the trees loaded from precompiled pattern files
      */
+    @Deprecated
     public HyphenationTree getHyphenationTree(String lang, String country) {
+        return Hyphenator.toHyphenationTree(getReadOnlyHyphenationTree(lang, country));
+    }
+
+    /**
+     * Looks in the cache if a hyphenation tree is available and returns it if it is found.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @return the hyphenation tree or null if it's not in the cache
+     */
+    public ReadOnlyHyphenationTree getReadOnlyHyphenationTree(String lang, String country) {
         String key = constructLlccKey(lang, country);
 
         // first try to find it in the cache
         if (hyphenTrees.containsKey(key)) {
-            return (HyphenationTree)hyphenTrees.get(key);
+            return (ReadOnlyHyphenationTree)hyphenTrees.get(key);
         } else if (hyphenTrees.containsKey(lang)) {
-            return (HyphenationTree)hyphenTrees.get(lang);
+            return (ReadOnlyHyphenationTree)hyphenTrees.get(lang);
         } else {
             return null;
         }
@@ -91,6 +115,15 @@ public class HyphenationTreeCache {
      * @param hTree the hyphenation tree
      */
     public void cache(String key, HyphenationTree hTree) {
+        cache(key, (ReadOnlyHyphenationTree) hTree);
+    }
+
+    /**
+     * Cache a read-only hyphenation tree under its key.
+     * @param key the key (ex. "de_CH" or "en")
+     * @param hTree the hyphenation tree
+     */
+    public void cache(String key, ReadOnlyHyphenationTree hTree) {
         hyphenTrees.put(key, hTree);
     }
 
@@ -100,7 +133,7 @@ public class HyphenationTreeCache {
      * available.
      * @param key the key (ex. "de_CH" or "en")
      */
-    public void noteMissing(String key) {
+    public synchronized void noteMissing(String key) {
         if (missingHyphenationTrees == null) {
             missingHyphenationTrees = new java.util.HashSet();
         }
@@ -114,8 +147,48 @@ public class HyphenationTreeCache {
      * @param key the key (ex. "de_CH" or "en")
      * @return true if the hyphenation tree is unavailable
      */
-    public boolean isMissing(String key) {
+    public synchronized boolean isMissing(String key) {
         return (missingHyphenationTrees != null && missingHyphenationTrees.contains(key));
     }
 
+    /**
+     * Returns a shared read-only hyphenation tree.
+     * @param source identifies the source of the tree, including its version (e.g. the URI and
+     * the last modification date/time of a file)
+     * @return the shared tree or null if there's none for this source
+     */
+    static MappedHyphenationTree getSharedTree(String source) {
+        WeakReference<MappedHyphenationTree> ref = SHARED_TREES.get(source);
+        if (ref == null) {
+            return null;
+        }
+        MappedHyphenationTree hTree = ref.get();
+        if (hTree == null) {
+            SHARED_TREES.remove(source, ref);
+        }
+        return hTree;
+    }
+
+    /**
+     * Shares a read-only hyphenation tree. If another thread has shared a tree for the same
+     * source in the meantime, that tree is returned instead.
+     * @param source identifies the source of the tree, see {@link #getSharedTree(String)}
+     * @param hTree the tree
+     * @return the shared tree
+     */
+    static MappedHyphenationTree shareTree(String source, MappedHyphenationTree hTree) {
+        WeakReference<MappedHyphenationTree> ref = new WeakReference<MappedHyphenationTree>(hTree);
+        while (true) {
+            WeakReference<MappedHyphenationTree> existing = SHARED_TREES.putIfAbsent(source, ref);
+            if (existing == null) {
+                return hTree;
+            }
+            MappedHyphenationTree shared = existing.get();
+            if (shared != null) {
+                return shared;
+            }
+            SHARED_TREES.remove(source, existing);
+        }
+    }
+
 }
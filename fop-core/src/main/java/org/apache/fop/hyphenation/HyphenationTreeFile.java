@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.hyphenation.MappedHyphenationTree.MappedTernaryTree;
+
+/**
+ * The flat binary format of compiled hyphenation patterns. Unlike a serialized
+ * {@link HyphenationTree}, a file in this format can be memory-mapped and queried in place by a
+ * {@link MappedHyphenationTree}, so loading it is nearly free and the operating system shares
+ * its pages between all processes using the same file.
+ * <p>
+ * All values are big-endian. The file starts with a header (magic number, format version, the
+ * root, node count, key count and key array length of the pattern tree and of the character
+ * class tree, the length of the interletter values and the length of the exceptions), followed
+ * by the node arrays (lo, hi, eq and split characters) and key array of the pattern tree, the
+ * same for the character class tree, the packed interletter values and finally the
+ * exceptions. The node and key arrays are stored as 16-bit characters, exactly as they are held
+ * by {@link TernaryTree}.
+ */
+final class HyphenationTreeFile {
+
+    /** "FOPH" */
+    private static final int MAGIC = 0x464F5048;
+
+    /** The version of the file format */
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 48;
+
+    /** The value of a node's eq field for a character class tree isn't an index */
+    private static final int NO_VALUE_LIMIT = 0x10000;
+
+    private static final byte EXCEPTION_STRING = 0;
+    private static final byte EXCEPTION_HYPHEN = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HyphenationTreeFile() {
+    }
+
+    /**
+     * Indicates whether a stream contains a file in this format, without consuming it.
+     * @param in the stream, which must support {@link InputStream#mark(int)}
+     * @return true if the stream starts with the magic number of this format
+     * @throws IOException if an I/O error occurs
+     */
+    static boolean isHyphenationTreeFile(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Maps a hyphenation tree file into memory.
+     * @param file the file
+     * @return the hyphenation tree
+     * @throws IOException if the file can't be read or isn't a valid hyphenation tree file
+     */
+    static MappedHyphenationTree map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Hyphenation tree file is too large");
+            }
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a hyphenation tree file from a stream that can't be mapped, for instance a
+     * resource in a JAR file.
+     * @param in the stream
+     * @return the hyphenation tree
+     * @throws IOException if an I/O error occurs or the stream doesn't contain a valid
+     * hyphenation tree file
+     */
+    static MappedHyphenationTree read(InputStream in) throws IOException {
+        return wrap(ByteBuffer.wrap(IOUtils.toByteArray(in)));
+    }
+
+    /**
+     * Creates a hyphenation tree that queries the given buffer.
+     * @param buffer the buffer containing the hyphenation tree file, from its position to its
+     * limit
+     * @return the hyphenation tree
+     * @throws IOException if the buffer doesn't contain a valid hyphenation tree file
+     */
+    static MappedHyphenationTree wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.slice().asReadOnlyBuffer();
+        int limit = data.limit();
+        if (limit < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a hyphenation tree file");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported hyphenation tree file version " + version);
+        }
+        int vspaceLength = checkCount(data.getInt(40));
+        int exceptionsLength = checkCount(data.getInt(44));
+
+        long[] pos = {HEADER_SIZE};
+        MappedTernaryTree patterns = readTree(data, 8, pos, vspaceLength);
+        MappedTernaryTree classmap = readTree(data, 24, pos, NO_VALUE_LIMIT);
+        ByteBuffer values = slice(data, pos, vspaceLength);
+        if (vspaceLength > 0 && values.get(vspaceLength - 1) != 0) {
+            throw new IOException("Corrupt interletter values in hyphenation tree file");
+        }
+        ByteBuffer exceptions = slice(data, pos, exceptionsLength);
+        if (pos[0] != limit) {
+            throw new IOException("Hyphenation tree file has an unexpected length");
+        }
+        return new MappedHyphenationTree(data, patterns, classmap, values,
+                readExceptions(exceptions));
+    }
+
+    private static MappedTernaryTree readTree(ByteBuffer data, int header, long[] pos,
+            int valueLimit) throws IOException {
+        int root = checkCount(data.getInt(header));
+        int nodeCount = checkCount(data.getInt(header + 4));
+        int keyCount = checkCount(data.getInt(header + 8));
+        int kvLength = checkCount(data.getInt(header + 12));
+        if (nodeCount > 0x10000 || kvLength > 0x10000 || (root != 0 && root >= nodeCount)) {
+            throw new IOException("Corrupt ternary tree in hyphenation tree file");
+        }
+        CharBuffer lo = slice(data, pos, 2 * nodeCount).asCharBuffer();
+        CharBuffer hi = slice(data, pos, 2 * nodeCount).asCharBuffer();
+        CharBuffer eq = slice(data, pos, 2 * nodeCount).asCharBuffer();
+        CharBuffer sc = slice(data, pos, 2 * nodeCount).asCharBuffer();
+        CharBuffer kv = slice(data, pos, 2 * kvLength).asCharBuffer();
+        validateTree(lo, hi, eq, sc, kv, valueLimit);
+        return new MappedTernaryTree((char) root, nodeCount, keyCount, lo, hi, eq, sc, kv);
+    }
+
+    /**
+     * Checks all references between the nodes, the keys and the values up front, so that
+     * looking up a word later on can't run off the arrays.
+     */
+    private static void validateTree(CharBuffer lo, CharBuffer hi, CharBuffer eq, CharBuffer sc,
+            CharBuffer kv, int valueLimit) throws IOException {
+        int nodeCount = sc.limit();
+        int kvLength = kv.limit();
+        if (kvLength > 0 && kv.get(kvLength - 1) != 0) {
+            throw new IOException("Corrupt key array in hyphenation tree file");
+        }
+        for (int p = 1; p < nodeCount; p++) {
+            char split = sc.get(p);
+            boolean valid;
+            if (split == 0xFFFF) {
+                valid = lo.get(p) < kvLength && eq.get(p) < valueLimit && hi.get(p) < nodeCount;
+            } else if (split == 0) {
+                valid = lo.get(p) < nodeCount && eq.get(p) < valueLimit && hi.get(p) < nodeCount;
+            } else {
+                valid = lo.get(p) < nodeCount && eq.get(p) < nodeCount && hi.get(p) < nodeCount;
+            }
+            if (!valid) {
+                throw new IOException("Invalid node reference in hyphenation tree file");
+            }
+        }
+    }
+
+    private static HashMap readExceptions(ByteBuffer exceptions) throws IOException {
+        try {
+            int count = checkCount(exceptions.getInt());
+            HashMap stoplist = new HashMap(Math.max(23, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                String word = readString(exceptions);
+                int size = checkCount(exceptions.getInt());
+                ArrayList hyphenatedword = new ArrayList(size);
+                for (int j = 0; j < size; j++) {
+                    byte kind = exceptions.get();
+                    if (kind == EXCEPTION_STRING) {
+                        hyphenatedword.add(readString(exceptions));
+                    } else if (kind == EXCEPTION_HYPHEN) {
+                        String pre = readString(exceptions);
+                        String no = readString(exceptions);
+                        String post = readString(exceptions);
+                        hyphenatedword.add(new Hyphen(pre, no, post));
+                    } else {
+                        throw new IOException("Corrupt exception in hyphenation tree file");
+                    }
+                }
+                stoplist.put(word, hyphenatedword);
+            }
+            if (exceptions.hasRemaining()) {
+                throw new IOException("Corrupt exceptions in hyphenation tree file");
+            }
+            return stoplist;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Hyphenation tree file is truncated");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkCount(length)];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupt hyphenation tree file");
+        }
+        return count;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, long[] pos, int length) throws IOException {
+        long start = pos[0];
+        long end = start + length;
+        if (end > data.limit()) {
+            throw new IOException("Hyphenation tree file is truncated");
+        }
+        ByteBuffer section = data.duplicate();
+        section.position((int) start);
+        section.limit((int) end);
+        pos[0] = end;
+        return section.slice();
+    }
+
+    /**
+     * Writes a hyphenation tree in this format.
+     * @param tree the hyphenation tree, as loaded from an XML pattern file or a serialized tree
+     * @param out the stream to write to (not closed)
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(HyphenationTree tree, OutputStream out) throws IOException {
+        byte[] exceptions = encodeExceptions(tree.stoplist);
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        writeTreeHeader(dout, tree);
+        writeTreeHeader(dout, tree.classmap);
+        dout.writeInt(tree.vspace.length());
+        dout.writeInt(exceptions.length);
+        writeTree(dout, tree);
+        writeTree(dout, tree.classmap);
+        dout.write(tree.vspace.getArray(), 0, tree.vspace.length());
+        dout.write(exceptions);
+        dout.flush();
+    }
+
+    /**
+     * Writes a read-only hyphenation tree in this format, which is just a copy of the file it
+     * was created from.
+     * @param tree the hyphenation tree
+     * @param out the stream to write to (not closed)
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(MappedHyphenationTree tree, OutputStream out) throws IOException {
+        ByteBuffer data = tree.getData();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        out.write(bytes);
+    }
+
+    private static void writeTreeHeader(DataOutputStream out, TernaryTree tree)
+            throws IOException {
+        out.writeInt(tree.root);
+        out.writeInt(tree.freenode);
+        out.writeInt(tree.length);
+        out.writeInt(tree.kv.length());
+    }
+
+    private static void writeTree(DataOutputStream out, TernaryTree tree) throws IOException {
+        char[][] nodes = {tree.lo, tree.hi, tree.eq, tree.sc};
+        for (char[] array : nodes) {
+            for (int p = 0; p < tree.freenode; p++) {
+                out.writeChar(array[p]);
+            }
+        }
+        char[] kv = tree.kv.getArray();
+        for (int i = 0; i < tree.kv.length(); i++) {
+            out.writeChar(kv[i]);
+        }
+    }
+
+    private static byte[] encodeExceptions(Map stoplist) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(stoplist.size());
+        for (Iterator iter = stoplist.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry entry = (Map.Entry) iter.next();
+            writeString(out, (String) entry.getKey());
+            List hyphenatedword = (List) entry.getValue();
+            out.writeInt(hyphenatedword.size());
+            for (Object o : hyphenatedword) {
+                if (o instanceof Hyphen) {
+                    Hyphen hyphen = (Hyphen) o;
+                    out.writeByte(EXCEPTION_HYPHEN);
+                    writeString(out, hyphen.preBreak);
+                    writeString(out, hyphen.noBreak);
+                    writeString(out, hyphen.postBreak);
+                } else {
+                    out.writeByte(EXCEPTION_STRING);
+                    writeString(out, (String) o);
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -20,10 +20,13 @@
 package org.apache.fop.hyphenation;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.Map;
 
 import org.xml.sax.InputSource;
@@ -35,6 +38,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.fop.ResourceEventProducer;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
 import org.apache.fop.events.EventBroadcaster;
 
 /**
@@ -57,8 +61,37 @@ public final class Hyphenator {
     private Hyphenator() {
     }
 
+    /**
+     * Returns the hyphenation tree for a language, as a modifiable copy if it was loaded from a
+     * precompiled pattern file.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param resourceResolver resource resolver to find the hyphenation files
+     * @param hyphPatNames the map of user-configured hyphenation pattern file names
+     * @param foUserAgent the user agent
+     * @return the hyphenation tree or null if it is not available
+     * @deprecated use {@link #getReadOnlyHyphenationTree(String, String, InternalResourceResolver,
+     * Map, FOUserAgent)} instead, which doesn't copy the cached tree
+     */
+    @Deprecated
     public static HyphenationTree getHyphenationTree(String lang, String country,
                        InternalResourceResolver resourceResolver, Map hyphPatNames, FOUserAgent foUserAgent) {
+        return toHyphenationTree(getReadOnlyHyphenationTree(lang, country, resourceResolver, hyphPatNames,
+                foUserAgent));
+    }
+
+    /**
+     * Returns the hyphenation tree for a language. The tree is cached and may be shared
+     * between threads and {@link org.apache.fop.apps.FopFactory} instances.
+     * @param lang the language
+     * @param country the country (may be null or "none")
+     * @param resourceResolver resource resolver to find the hyphenation files
+     * @param hyphPatNames the map of user-configured hyphenation pattern file names
+     * @param foUserAgent the user agent
+     * @return the hyphenation tree or null if it is not available
+     */
+    public static ReadOnlyHyphenationTree getReadOnlyHyphenationTree(String lang, String country,
+                       InternalResourceResolver resourceResolver, Map hyphPatNames, FOUserAgent foUserAgent) {
         String llccKey = HyphenationTreeCache.constructLlccKey(lang, country);
 
         HyphenationTreeCache cache = foUserAgent.getHyphenationTreeCache();
@@ -68,9 +101,9 @@ public final class Hyphenator {
             return null;
         }
 
-        HyphenationTree hTree;
+        ReadOnlyHyphenationTree hTree;
         // first try to find it in the cache
-        hTree = cache.getHyphenationTree(lang, country);
+        hTree = cache.getReadOnlyHyphenationTree(lang, country);
         if (hTree != null) {
             return hTree;
         }
@@ -80,14 +113,14 @@ public final class Hyphenator {
             key = llccKey;
         }
         if (resourceResolver != null) {
-            hTree = getUserHyphenationTree(key, resourceResolver);
+            hTree = getReadOnlyUserHyphenationTree(key, resourceResolver);
         }
         if (hTree == null) {
-            hTree = getFopHyphenationTree(key);
+            hTree = getReadOnlyFopHyphenationTree(key);
         }
 
         if (hTree == null && country != null && !country.equals("none")) {
-            return getHyphenationTree(lang, null, resourceResolver, hyphPatNames, foUserAgent);
+            return getReadOnlyHyphenationTree(lang, null, resourceResolver, hyphPatNames, foUserAgent);
         }
 
         // put it into the pattern cache
@@ -107,8 +140,8 @@ public final class Hyphenator {
         return hTree;
     }
 
-    private static InputStream getResourceStream(String key) {
-        InputStream is = null;
+    private static URL getResourceURL(String key) {
+        URL url = null;
         // Try to use Context Class Loader to load the properties file.
         try {
             java.lang.reflect.Method getCCL = Thread.class.getMethod(
@@ -117,8 +150,7 @@ public final class Hyphenator {
                 ClassLoader contextClassLoader = (ClassLoader)getCCL.invoke(
                         Thread.currentThread(),
                         new Object[0]);
-                is = contextClassLoader.getResourceAsStream("hyph/" + key
-                                                            + ".hyp");
+                url = contextClassLoader.getResource("hyph/" + key + ".hyp");
             }
         } catch (NoSuchMethodException e) {
             //ignore, fallback further down
@@ -128,12 +160,11 @@ public final class Hyphenator {
             //ignore, fallback further down
         }
 
-        if (is == null) {
-            is = Hyphenator.class.getResourceAsStream("/hyph/" + key
-                                                      + ".hyp");
+        if (url == null) {
+            url = Hyphenator.class.getResource("/hyph/" + key + ".hyp");
         }
 
-        return is;
+        return url;
     }
 
     private static HyphenationTree readHyphenationTree(InputStream in) {
@@ -150,21 +181,121 @@ public final class Hyphenator {
     }
 
     /**
-     * Returns a hyphenation tree. This method looks in the resources (getResourceStream) for
+     * Reads a precompiled hyphenation tree, either in the flat binary format written by
+     * {@link SerializeHyphPattern} or as a serialized object. Trees in the flat binary format
+     * are read-only, so they are shared between all FopFactory instances.
+     * @param in the stream to read the tree from, which must support marking
+     * @param file the file the stream reads from, so it can be mapped into memory instead, or
+     * null if the stream doesn't read from a file
+     * @param source identifies the source of the tree and its version, so it can be shared, or
+     * null if the source can't be identified
+     * @return the hyphenation tree or null if it couldn't be read
+     */
+    private static ReadOnlyHyphenationTree readHyphenationTree(InputStream in, File file,
+            String source) {
+        try {
+            if (!HyphenationTreeFile.isHyphenationTreeFile(in)) {
+                return readHyphenationTree(in);
+            }
+            MappedHyphenationTree hTree = source != null
+                    ? HyphenationTreeCache.getSharedTree(source) : null;
+            if (hTree == null) {
+                hTree = file != null ? HyphenationTreeFile.map(file) : HyphenationTreeFile.read(in);
+                if (source != null) {
+                    hTree = HyphenationTreeCache.shareTree(source, hTree);
+                }
+            }
+            return hTree;
+        } catch (IOException ioe) {
+            log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the local file a URI points to.
+     * @param uri the URI
+     * @return the file or null if the URI doesn't point to an existing local file
+     */
+    private static File toFile(URI uri) {
+        if ("file".equals(uri.getScheme())) {
+            try {
+                File file = new File(uri);
+                if (file.isFile()) {
+                    return file;
+                }
+            } catch (IllegalArgumentException iae) {
+                //not a hierarchical file URI, ignore
+            }
+        }
+        return null;
+    }
+
+    private static String getSource(File file) {
+        return file.getAbsolutePath() + ";" + file.lastModified() + ";" + file.length();
+    }
+
+    /**
+     * Returns a modifiable copy of a hyphenation tree if it was loaded from a precompiled
+     * pattern file.
+     * @param tree the hyphenation tree (may be null)
+     * @return the hyphenation tree or null
+     */
+    static HyphenationTree toHyphenationTree(ReadOnlyHyphenationTree tree) {
+        if (tree instanceof MappedHyphenationTree) {
+            return ((MappedHyphenationTree) tree).toHyphenationTree();
+        }
+        return (HyphenationTree) tree;
+    }
+
+    /**
+     * Returns a hyphenation tree. This method looks in the resources (getResourceURL) for
      * the hyphenation patterns.
      * @param key the language/country key
      * @return the hyphenation tree or null if it wasn't found in the resources
+     * @deprecated use {@link #getReadOnlyFopHyphenationTree(String)} instead
      */
+    @Deprecated
     public static HyphenationTree getFopHyphenationTree(String key) {
-        InputStream is = getResourceStream(key);
-        if (is == null) {
+        return toHyphenationTree(getReadOnlyFopHyphenationTree(key));
+    }
+
+    /**
+     * Returns a hyphenation tree. This method looks in the resources (getResourceURL) for
+     * the hyphenation patterns. Trees in the flat binary format are shared between all
+     * FopFactory instances.
+     * @param key the language/country key
+     * @return the hyphenation tree or null if it wasn't found in the resources
+     */
+    public static ReadOnlyHyphenationTree getReadOnlyFopHyphenationTree(String key) {
+        URL url = getResourceURL(key);
+        if (url == null) {
             if (log.isDebugEnabled()) {
                 log.debug("Couldn't find precompiled hyphenation pattern "
                           + key + " in resources");
             }
             return null;
         }
-        return readHyphenationTree(is);
+        File file = null;
+        String source = url.toExternalForm();
+        try {
+            file = toFile(url.toURI());
+            if (file != null) {
+                source = getSource(file);
+            }
+        } catch (URISyntaxException use) {
+            //not mappable, read it from the stream
+        }
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(url.openStream());
+            return readHyphenationTree(in, file, source);
+        } catch (IOException ioe) {
+            log.error("I/O error while loading precompiled hyphenation pattern file", ioe);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
     }
 
     /**
@@ -173,10 +304,25 @@ public final class Hyphenator {
      * @param key language key for the requested hyphenation file
      * @param resourceResolver resource resolver to find the hyphenation files
      * @return the requested HypenationTree or null if it is not available
+     * @deprecated use {@link #getReadOnlyUserHyphenationTree(String, InternalResourceResolver)}
+     * instead
      */
+    @Deprecated
     public static HyphenationTree getUserHyphenationTree(String key,
             InternalResourceResolver resourceResolver) {
-        HyphenationTree hTree = null;
+        return toHyphenationTree(getReadOnlyUserHyphenationTree(key, resourceResolver));
+    }
+
+    /**
+     * Load tree from serialized file or xml file
+     * using configuration settings. Trees in the flat binary format are shared between all
+     * FopFactory instances.
+     * @param key language key for the requested hyphenation file
+     * @param resourceResolver resource resolver to find the hyphenation files
+     * @return the requested HypenationTree or null if it is not available
+     */
+    public static ReadOnlyHyphenationTree getReadOnlyUserHyphenationTree(String key,
+            InternalResourceResolver resourceResolver) {
         // I use here the following convention. The file name specified in
         // the configuration is taken as the base name. First we try
         // name + ".hyp" assuming a serialized HyphenationTree. If that fails
@@ -191,11 +337,11 @@ public final class Hyphenator {
             try {
                 InputStream in = getHyphenationTreeStream(name, resourceResolver);
                 try {
-                    hTree = readHyphenationTree(in);
+                    File file = getHyphenationTreeFile(name, resourceResolver);
+                    return readHyphenationTree(in, file, file != null ? getSource(file) : null);
                 } finally {
                     IOUtils.closeQuietly(in);
                 }
-                return hTree;
             } catch (IOException ioe) {
                 if (log.isDebugEnabled()) {
                     log.debug("I/O problem while trying to load " + name, ioe);
@@ -208,7 +354,7 @@ public final class Hyphenator {
         if (key.endsWith(XMLTYPE)) {
             name = key.replace(XMLTYPE, "");
         }
-        hTree = new HyphenationTree();
+        HyphenationTree hTree = new HyphenationTree();
         try {
             InputStream in = getHyphenationTreeStream(name, resourceResolver);
             try {
@@ -244,14 +390,41 @@ public final class Hyphenator {
         return null;
     }
 
+    /**
+     * Returns the local file a hyphenation tree would be read from, so it can be mapped into
+     * memory. That's only done if the resources are read by the default resource resolver;
+     * a custom resolver may redirect, restrict or transform the access to the file, so the
+     * tree must then be read from the stream it provides.
+     * @param name the name of the hyphenation tree file
+     * @param resourceResolver the resource resolver to find the hyphenation files
+     * @return the file or null if the tree must be read from the resource resolver's stream
+     */
+    private static File getHyphenationTreeFile(String name,
+            InternalResourceResolver resourceResolver) {
+        if (resourceResolver.getResourceResolver()
+                != ResourceResolverFactory.createDefaultResourceResolver()) {
+            return null;
+        }
+        try {
+            return toFile(resourceResolver.resolveFromBase(InternalResourceResolver.cleanURI(name)));
+        } catch (URISyntaxException use) {
+            return null;
+        }
+    }
+
     public static Hyphenation hyphenate(String lang, String country, InternalResourceResolver resourceResolver,
                                         Map hyphPatNames,
                                         String word,
                                         int leftMin, int rightMin, FOUserAgent foUserAgent) {
-        HyphenationTree hTree = getHyphenationTree(lang, country, resourceResolver, hyphPatNames, foUserAgent);
+        ReadOnlyHyphenationTree hTree = getReadOnlyHyphenationTree(lang, country, resourceResolver,
+                hyphPatNames, foUserAgent);
         if (hTree == null) {
             return null;
         }
+        HyphenationResultCache resultCache = foUserAgent.getHyphenationResultCache();
+        if (resultCache != null) {
+            return resultCache.hyphenate(hTree, lang, country, word, leftMin, rightMin);
+        }
         return hTree.hyphenate(word, leftMin, rightMin);
     }
 
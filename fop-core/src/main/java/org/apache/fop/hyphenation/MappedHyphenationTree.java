@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only hyphenation tree that looks up the patterns directly in a buffer holding a
+ * {@link HyphenationTreeFile}, usually a memory-mapped file. Nothing but the exceptions is
+ * copied to the heap, and since the tree can't be modified, a single instance can safely be
+ * shared by all threads and all {@link org.apache.fop.apps.FopFactory} instances.
+ */
+final class MappedHyphenationTree extends AbstractHyphenationTree {
+
+    /** The whole hyphenation tree file */
+    private final ByteBuffer data;
+
+    private final MappedTernaryTree patterns;
+
+    /** The character classes */
+    private final MappedTernaryTree classmap;
+
+    /** The packed interletter values */
+    private final ByteBuffer values;
+
+    /** The hyphenation exceptions */
+    private final Map stoplist;
+
+    MappedHyphenationTree(ByteBuffer data, MappedTernaryTree patterns, MappedTernaryTree classmap,
+            ByteBuffer values, Map stoplist) {
+        this.data = data;
+        this.patterns = patterns;
+        this.classmap = classmap;
+        this.values = values;
+        this.stoplist = stoplist;
+    }
+
+    /**
+     * Returns the buffer holding the hyphenation tree file this tree was created from.
+     * @return a read-only view of the buffer
+     */
+    ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the number of patterns.
+     * @return the number of patterns
+     */
+    int size() {
+        return patterns.size();
+    }
+
+    /**
+     * Copies this tree to the heap, for the callers that still expect a
+     * {@link HyphenationTree}.
+     * @return a new hyphenation tree with the same patterns, character classes and exceptions
+     */
+    HyphenationTree toHyphenationTree() {
+        HyphenationTree tree = new HyphenationTree();
+        patterns.copyTo(tree);
+        classmap.copyTo(tree.classmap);
+        byte[] packed = new byte[values.limit()];
+        ByteBuffer buf = values.duplicate();
+        buf.rewind();
+        buf.get(packed);
+        tree.vspace = new ByteVector(packed);
+        tree.vspace.alloc(packed.length);    // the vector starts out empty
+        tree.vspace.trimToSize();
+        tree.stoplist = new HashMap(stoplist);
+        return tree;
+    }
+
+    /** {@inheritDoc} */
+    int findClass(char[] key) {
+        return classmap.find(key, 0);
+    }
+
+    /** {@inheritDoc} */
+    List getException(String word) {
+        return (List) stoplist.get(word);
+    }
+
+    /** {@inheritDoc} */
+    public String findPattern(String pat) {
+        char[] key = new char[pat.length() + 1];
+        pat.getChars(0, pat.length(), key, 0);
+        int k = patterns.find(key, 0);
+        if (k >= 0) {
+            return unpackValues(k);
+        }
+        return "";
+    }
+
+    private String unpackValues(int k) {
+        StringBuffer buf = new StringBuffer();
+        byte v = values.get(k++);
+        while (v != 0) {
+            char c = (char)((v >>> 4) - 1 + '0');
+            buf.append(c);
+            c = (char)(v & 0x0f);
+            if (c == 0) {
+                break;
+            }
+            c = (char)(c - 1 + '0');
+            buf.append(c);
+            v = values.get(k++);
+        }
+        return buf.toString();
+    }
+
+    /** {@inheritDoc} */
+    void searchPatterns(char[] word, int index, byte[] il) {
+        CharBuffer lo = patterns.loBuf;
+        CharBuffer hi = patterns.hiBuf;
+        CharBuffer eq = patterns.eqBuf;
+        CharBuffer sc = patterns.scBuf;
+        int nodeCount = patterns.nodeCount;
+        int i = index;
+        char sp = word[i];
+        char p = patterns.rootNode;
+
+        while (p > 0 && p < nodeCount) {
+            char split = sc.get(p);
+            if (split == 0xFFFF) {
+                if (patterns.hstrcmp(word, i, lo.get(p)) == 0) {
+                    applyValues(eq.get(p), index, il);    // data pointer is in eq[]
+                }
+                return;
+            }
+            int d = sp - split;
+            if (d == 0) {
+                if (sp == 0) {
+                    break;
+                }
+                sp = word[++i];
+                p = eq.get(p);
+                char q = p;
+
+                // look for a pattern ending at this position by searching for
+                // the null char ( splitchar == 0 )
+                while (q > 0 && q < nodeCount) {
+                    char qsplit = sc.get(q);
+                    if (qsplit == 0xFFFF) {        // stop at compressed branch
+                        break;
+                    }
+                    if (qsplit == 0) {
+                        applyValues(eq.get(q), index, il);
+                        break;
+                    }
+                    q = lo.get(q);
+                }
+            } else {
+                p = d < 0 ? lo.get(p) : hi.get(p);
+            }
+        }
+    }
+
+    /**
+     * Updates the interletter values with the packed values at the given index, like
+     * {@link HyphenationTree#getValues(int)} but without creating a temporary array.
+     */
+    private void applyValues(int k, int index, byte[] il) {
+        int j = index;
+        byte v = values.get(k++);
+        while (v != 0) {
+            j = applyValue((byte)((v >>> 4) - 1), j, il);
+            if ((v & 0x0f) == 0) {
+                break;
+            }
+            j = applyValue((byte)((v & 0x0f) - 1), j, il);
+            v = values.get(k++);
+        }
+    }
+
+    private static int applyValue(byte value, int j, byte[] il) {
+        if (j < il.length && value > il[j]) {
+            il[j] = value;
+        }
+        return j + 1;
+    }
+
+    /** {@inheritDoc} */
+    public void printStats() {
+        System.out.println("Value space size = " + Integer.toString(values.limit()));
+        patterns.printStats();
+    }
+
+    /**
+     * A read-only ternary tree whose nodes and keys are stored in buffers.
+     */
+    static final class MappedTernaryTree {
+
+        private final char rootNode;
+
+        private final int nodeCount;
+
+        private final int keyCount;
+
+        private final CharBuffer loBuf;
+
+        private final CharBuffer hiBuf;
+
+        private final CharBuffer eqBuf;
+
+        private final CharBuffer scBuf;
+
+        private final CharBuffer kvBuf;
+
+        MappedTernaryTree(char root, int nodeCount, int keyCount, CharBuffer lo, CharBuffer hi,
+                CharBuffer eq, CharBuffer sc, CharBuffer kv) {
+            this.rootNode = root;
+            this.nodeCount = nodeCount;
+            this.keyCount = keyCount;
+            this.loBuf = lo;
+            this.hiBuf = hi;
+            this.eqBuf = eq;
+            this.scBuf = sc;
+            this.kvBuf = kv;
+        }
+
+        /**
+         * Like {@link TernaryTree#find(char[], int)}.
+         * @param key the null terminated key
+         * @param start the index of the key's first character
+         * @return the value stored for the key or -1 if there's no such key
+         */
+        int find(char[] key, int start) {
+            int d;
+            char p = rootNode;
+            int i = start;
+            char c;
+
+            while (p != 0) {
+                char split = scBuf.get(p);
+                if (split == 0xFFFF) {
+                    if (strcmp(key, i, loBuf.get(p)) == 0) {
+                        return eqBuf.get(p);
+                    } else {
+                        return -1;
+                    }
+                }
+                c = key[i];
+                d = c - split;
+                if (d == 0) {
+                    if (c == 0) {
+                        return eqBuf.get(p);
+                    }
+                    i++;
+                    p = eqBuf.get(p);
+                } else if (d < 0) {
+                    p = loBuf.get(p);
+                } else {
+                    p = hiBuf.get(p);
+                }
+            }
+            return -1;
+        }
+
+        /** Like {@link TernaryTree#strcmp(char[], int, char[], int)} against the keys. */
+        private int strcmp(char[] a, int startA, int startB) {
+            for (; a[startA] == kvBuf.get(startB); startA++, startB++) {
+                if (a[startA] == 0) {
+                    return 0;
+                }
+            }
+            return a[startA] - kvBuf.get(startB);
+        }
+
+        /** Like {@link HyphenationTree#hstrcmp(char[], int, char[], int)} against the keys. */
+        int hstrcmp(char[] s, int si, int ti) {
+            for (; s[si] == kvBuf.get(ti); si++, ti++) {
+                if (s[si] == 0) {
+                    return 0;
+                }
+            }
+            char t = kvBuf.get(ti);
+            if (t == 0) {
+                return 0;
+            }
+            return s[si] - t;
+        }
+
+        /**
+         * Copies the nodes and keys of this tree to a ternary tree on the heap.
+         * @param tree the tree to copy to
+         */
+        void copyTo(TernaryTree tree) {
+            tree.lo = toArray(loBuf);
+            tree.hi = toArray(hiBuf);
+            tree.eq = toArray(eqBuf);
+            tree.sc = toArray(scBuf);
+            tree.kv = new CharVector(toArray(kvBuf));
+            tree.root = rootNode;
+            tree.freenode = (char) nodeCount;
+            tree.length = keyCount;
+        }
+
+        private static char[] toArray(CharBuffer buffer) {
+            char[] array = new char[buffer.limit()];
+            CharBuffer buf = buffer.duplicate();
+            buf.rewind();
+            buf.get(array);
+            return array;
+        }
+
+        /**
+         * Returns the number of keys.
+         * @return the number of keys
+         */
+        int size() {
+            return keyCount;
+        }
+
+        /**
+         * Print statistics.
+         */
+        void printStats() {
+            System.out.println("Number of keys = " + Integer.toString(keyCount));
+            System.out.println("Node count = " + Integer.toString(nodeCount));
+            System.out.println("Key Array length = " + Integer.toString(kvBuf.limit()));
+        }
+    }
+}
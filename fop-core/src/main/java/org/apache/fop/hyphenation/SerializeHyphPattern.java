@@ -22,11 +22,16 @@ package org.apache.fop.hyphenation;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * <p>Serialize hyphenation patterns.</p>
- * <p>For all xml files in the source directory a pattern file is built in the target directory.</p>
+ * <p>For all xml files in the source directory a pattern file is built in the target directory.
+ * The pattern files are written in a flat binary format that {@link Hyphenator} memory-maps
+ * and queries in place, instead of deserializing a {@link HyphenationTree}.</p>
  * <p>This class may be called from the ant build file in a java task.</p>
  */
 public class SerializeHyphPattern {
@@ -73,14 +78,25 @@ public class SerializeHyphPattern {
         startProcess = rebuild(infile, outfile);
         if (startProcess) {
             HyphenationTree hTree = buildPatternFile(infile);
-            // serialize class
+            // write the flat binary format, which can be memory-mapped
             try {
-                // @SuppressFBWarnings("OS_OPEN_STREAM_EXCEPTION_PATH")
-                ObjectOutputStream out = new ObjectOutputStream(
-                        new java.io.BufferedOutputStream(
-                        new java.io.FileOutputStream(outfile)));
-                out.writeObject(hTree);
-                out.close();
+                // the pattern file may be mapped by a running FOP, so never overwrite it in
+                // place: write a temporary file next to it and swap it in
+                File tempFile = File.createTempFile(outfile.getName(), ".tmp",
+                        outfile.getAbsoluteFile().getParentFile());
+                try {
+                    // @SuppressFBWarnings("OS_OPEN_STREAM_EXCEPTION_PATH")
+                    OutputStream out = new java.io.BufferedOutputStream(
+                            new java.io.FileOutputStream(tempFile));
+                    try {
+                        HyphenationTreeFile.write(hTree, out);
+                    } finally {
+                        out.close();
+                    }
+                    replace(tempFile, outfile);
+                } finally {
+                    tempFile.delete();
+                }
             } catch (IOException ioe) {
                 System.err.println("Can't write compiled pattern file: "
                                    + outfile);
@@ -89,6 +105,15 @@ public class SerializeHyphPattern {
         }
     }
 
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /*
      * serializes pattern files
      */
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>A persistent cache for the processed form of images, such as the separated color and
+ * alpha channels of PNG images ready to be embedded in PDF. The data is stored in a directory
+ * that can be shared by rendering runs and JVMs, keyed by a hash of the image content and the
+ * name of the processed form (the "flavor"), so that an image is processed only once no
+ * matter where it is loaded from.</p>
+ *
+ * <p>The total size of the cache is limited: when it is exceeded, the least recently used
+ * entries are deleted. Errors while reading or writing the cache are logged and otherwise
+ * ignored, the data is processed again then.</p>
+ */
+public class ImageDataCache {
+
+    private static final Log LOG = LogFactory.getLog(ImageDataCache.class);
+
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache in the given directory. The directory is created if it doesn't exist.
+     * @param directory the directory holding the cached data
+     * @param maxSize the maximum total size of the cached data in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public ImageDataCache(File directory, long maxSize) throws IOException {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be at least 1");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the image cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        for (File file : listEntries()) {
+            size.addAndGet(file.length());
+        }
+    }
+
+    /**
+     * Computes the hash of an image's content, to be used in keys.
+     * @param in the content of the image, which is read to the end but not closed
+     * @return the hash as a hexadecimal string
+     * @throws IOException if the content cannot be read
+     */
+    public static String computeHash(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the cached data for an image.
+     * @param hash the hash of the image content (see {@link #computeHash(InputStream)})
+     * @param flavor the name of the processed form, which may only contain letters, digits,
+     * '-' and '_'
+     * @return the data, or null if it isn't cached
+     */
+    public byte[] get(String hash, String flavor) {
+        File file = getFile(hash, flavor);
+        if (file.isFile()) {
+            try {
+                byte[] data = readFile(file);
+                file.setLastModified(System.currentTimeMillis());
+                hits.incrementAndGet();
+                return data;
+            } catch (IOException ioe) {
+                LOG.warn("Cannot read cached image data from " + file + ": " + ioe.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the data for an image. It is written to a temporary file first, so that other
+     * rendering runs never see partially written data.
+     * @param hash the hash of the image content (see {@link #computeHash(InputStream)})
+     * @param flavor the name of the processed form
+     * @param data the data
+     */
+    public void put(String hash, String flavor, byte[] data) {
+        if (data.length > maxSize) {
+            return;
+        }
+        File file = getFile(hash, flavor);
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile("fop-image", ".tmp", directory);
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                out.write(data);
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+            long previousSize = file.length();
+            replace(tempFile, file);
+            tempFile = null;
+            if (size.addAndGet(data.length - previousSize) > maxSize) {
+                evict();
+            }
+        } catch (IOException ioe) {
+            LOG.warn("Cannot write cached image data to " + file + ": " + ioe.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Replaces the target by the source file in a single step where the file system supports
+     * it, so that other rendering runs never see the entry missing.
+     */
+    private static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within its maximum size.
+     * The directory is scanned again, since other JVMs may have added entries to it.
+     */
+    private synchronized void evict() {
+        File[] files = listEntries();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && total > maxSize; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                evictions.incrementAndGet();
+            }
+        }
+        size.set(total);
+    }
+
+    private File[] listEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private File getFile(String hash, String flavor) {
+        return new File(directory, hash + "-" + flavor + SUFFIX);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the directory holding the cached data.
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum total size of the cached data.
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the cached data, as far as this instance knows.
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of lookups that found their data in the cache.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that didn't find their data in the cache.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries deleted to keep the cache within its maximum size.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "ImageDataCache[directory=" + directory + ", maxSize=" + maxSize + ", size="
+                + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+}
@@ -25,6 +25,7 @@ import java.util.ListIterator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.fo.Constants;
 import org.apache.fop.layoutmgr.BreakingAlgorithm.KnuthNode;
 import org.apache.fop.traits.MinOptMax;
@@ -359,6 +360,26 @@ public abstract class AbstractBreaker {
         ElementListObserver.observe(elementList, "breaker", null);
     }
 
+    /**
+     * Returns the monitor of the rendering run, which is checked while breaking so that a
+     * document that takes too long to break into pages can be stopped.
+     * @return the render monitor, or null
+     */
+    protected RenderMonitor getRenderMonitor() {
+        LayoutManager topLevelLM = getTopLevelLM();
+        if (topLevelLM != null && topLevelLM.getFObj() != null) {
+            return topLevelLM.getFObj().getUserAgent().getRenderMonitor();
+        }
+        return null;
+    }
+
+    private void checkRenderLimits() {
+        RenderMonitor monitor = getRenderMonitor();
+        if (monitor != null) {
+            monitor.check();
+        }
+    }
+
     /**
      * Starts the page breaking process.
      * @param flowBPD the constant available block-progression-dimension (used for every part)
@@ -379,6 +400,7 @@ public abstract class AbstractBreaker {
 
         int nextSequenceStartsOn = Constants.EN_ANY;
         while (hasMoreContent()) {
+            checkRenderLimits();
             blockLists.clear();
 
             //*** Phase 1: Get Knuth elements ***
@@ -389,6 +411,7 @@ public abstract class AbstractBreaker {
             log.debug("PLM> blockLists.size() = " + blockLists.size());
             for (blockListIndex = 0; blockListIndex < blockLists.size(); blockListIndex++) {
                 blockList = blockLists.get(blockListIndex);
+                checkRenderLimits();
 
                 //debug code start
                 if (log.isDebugEnabled()) {
@@ -407,6 +430,7 @@ public abstract class AbstractBreaker {
                          isPartOverflowRecoveryActivated(), autoHeight, isSinglePartFavored());
 
                 alg.setConstantLineWidth(flowBPD);
+                alg.setRenderMonitor(getRenderMonitor());
                 int optimalPageCount = alg.findBreakingPoints(blockList, 1, true,
                         BreakingAlgorithm.ALL_BREAKS);
                 boolean ipdChangesOnNextPage = (alg.getIPDdifference() != 0);
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.area.AreaTreeHandler;
 import org.apache.fop.area.AreaTreeModel;
 import org.apache.fop.area.IDTracker;
@@ -289,6 +290,10 @@ public abstract class AbstractPageSequenceLayoutManager extends AbstractLayoutMa
 
         currentPageNum++;
 
+        RenderMonitor monitor = areaTreeHandler.getUserAgent().getRenderMonitor();
+        if (monitor != null) {
+            monitor.pageCreated();
+        }
         curPage = createPage(currentPageNum, isBlank);
 
         if (log.isDebugEnabled()) {
@@ -314,6 +319,10 @@ public abstract class AbstractPageSequenceLayoutManager extends AbstractLayoutMa
         idTracker.tryIDResolution(curPage.getPageViewport());
         // Queue for ID resolution and rendering
         areaTreeHandler.getAreaTreeModel().addPage(curPage.getPageViewport());
+        RenderMonitor monitor = areaTreeHandler.getUserAgent().getRenderMonitor();
+        if (monitor != null) {
+            monitor.pageLaidOut();
+        }
         if (log.isDebugEnabled()) {
             log.debug("page finished: " + curPage.getPageViewport().getPageNumberString()
                     + ", current num: " + currentPageNum);
@@ -19,9 +19,12 @@
 
 package org.apache.fop.layoutmgr;
 
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.fo.Constants;
 
 /**
@@ -192,6 +195,23 @@ public abstract class BreakingAlgorithm {
     private boolean partOverflowRecoveryActivated = true;
     private KnuthNode lastRecovered;
 
+    /** The nodes that can be reused by the next call to findBreakingPoints, or null. */
+    private List<KnuthNode> nodePool;
+    /** The number of nodes of the pool in use by the current call to findBreakingPoints. */
+    private int usedPoolNodes;
+
+    /** The monitor checked while breaking, or null. */
+    private RenderMonitor renderMonitor;
+
+    /** The elements of the paragraph, packed into arrays. */
+    private PackedKnuthSequence packedPar;
+
+    /** The accumulated width, stretch and shrink up to after the break being considered. */
+    private boolean breakTotalsComputed;
+    private int breakWidth;
+    private int breakStretch;
+    private int breakShrink;
+
     /**
      * Create a new instance.
      *
@@ -226,34 +246,34 @@ public abstract class BreakingAlgorithm {
      */
     public class KnuthNode {
         /** index of the breakpoint represented by this node */
-        public final int position;
+        public int position;
 
         /** number of the line ending at this breakpoint */
-        public final int line;
+        public int line;
 
         /** fitness class of the line ending at this breakpoint. One of 0, 1, 2, 3. */
-        public final int fitness;
+        public int fitness;
 
         /** accumulated width of the KnuthElements up to after this breakpoint. */
-        public final int totalWidth;
+        public int totalWidth;
 
         /** accumulated stretchability of the KnuthElements up to after this breakpoint. */
-        public final int totalStretch;
+        public int totalStretch;
 
         /** accumulated shrinkability of the KnuthElements up to after this breakpoint. */
-        public final int totalShrink;
+        public int totalShrink;
 
         /** adjustment ratio if the line ends at this breakpoint */
-        public final double adjustRatio;
+        public double adjustRatio;
 
         /** available stretch of the line ending at this breakpoint */
-        public final int availableShrink;
+        public int availableShrink;
 
         /** available shrink of the line ending at this breakpoint */
-        public final int availableStretch;
+        public int availableStretch;
 
         /** difference between target and actual line width */
-        public final int difference;
+        public int difference;
 
         /** minimum total demerits up to this breakpoint */
         public double totalDemerits;
@@ -289,6 +309,14 @@ public abstract class BreakingAlgorithm {
                 int totalWidth, int totalStretch, int totalShrink,
                 double adjustRatio, int availableShrink, int availableStretch,
                 int difference, double totalDemerits, KnuthNode previous) {
+            init(position, line, fitness, totalWidth, totalStretch, totalShrink, adjustRatio,
+                    availableShrink, availableStretch, difference, totalDemerits, previous);
+        }
+
+        private void init(int position, int line, int fitness,
+                int totalWidth, int totalStretch, int totalShrink,
+                double adjustRatio, int availableShrink, int availableStretch,
+                int difference, double totalDemerits, KnuthNode previous) {
             this.position = position;
             this.line = line;
             this.fitness = fitness;
@@ -301,6 +329,8 @@ public abstract class BreakingAlgorithm {
             this.difference = difference;
             this.totalDemerits = totalDemerits;
             this.previous = previous;
+            this.next = null;
+            this.fitRecoveryCounter = 0;
         }
 
         /** {@inheritDoc} */
@@ -488,6 +518,28 @@ public abstract class BreakingAlgorithm {
         this.lineWidth = lineWidth;
     }
 
+    /**
+     * Lets this algorithm recycle the nodes it creates. Each call to
+     * {@link #findBreakingPoints(KnuthSequence, int, double, boolean, int)} reuses the nodes
+     * of the pool, so this may only be used if no node is referenced after
+     * {@link #updateData2(KnuthNode, KnuthSequence, int)} has been called for it. The same
+     * pool may be passed to several algorithms that are not used at the same time.
+     * @param nodePool the list of nodes to reuse and to which new nodes are added, or null
+     * to allocate a new node for every breakpoint
+     */
+    public void setNodePool(List<KnuthNode> nodePool) {
+        this.nodePool = nodePool;
+    }
+
+    /**
+     * Sets the monitor of the rendering run, which is checked at regular intervals while
+     * breaking so that a paragraph or page sequence that takes too long can be stopped.
+     * @param renderMonitor the render monitor, or null
+     */
+    public void setRenderMonitor(RenderMonitor renderMonitor) {
+        this.renderMonitor = renderMonitor;
+    }
+
     /**
      * @param par           the paragraph to break
      * @param threshold     upper bound of the adjustment ratio
@@ -525,6 +577,12 @@ public abstract class BreakingAlgorithm {
         this.par = par;
         this.threshold = threshold;
         this.force = force;
+        if (nodePool != null) {
+            // the nodes created by an earlier call are no longer in use
+            usedPoolNodes = 0;
+            lastDeactivated = null;
+            lastRecovered = null;
+        }
 
         // initialize the algorithm
         initialize();
@@ -554,6 +612,9 @@ public abstract class BreakingAlgorithm {
         // main loop
         for (int elementIndex = startIndex; elementIndex < par.size(); elementIndex++) {
 
+            if (renderMonitor != null && (elementIndex & 0x3FF) == 0) {
+                renderMonitor.check();
+            }
             previousIsBox = handleElementAt(
                     elementIndex, previousIsBox, allowedBreaks).isBox();
 
@@ -692,10 +753,10 @@ public abstract class BreakingAlgorithm {
             int totalWidth, int totalStretch, int totalShrink,
             double adjustRatio, int availableShrink, int availableStretch,
             int difference, double totalDemerits, KnuthNode previous) {
-        return new KnuthNode(position, line, fitness,
-                             totalWidth, totalStretch, totalShrink,
-                             adjustRatio, availableShrink, availableStretch,
-                             difference, totalDemerits, previous);
+        return obtainNode(position, line, fitness,
+                          totalWidth, totalStretch, totalShrink,
+                          adjustRatio, availableShrink, availableStretch,
+                          difference, totalDemerits, previous);
     }
 
     /** Creates a new active node for a break from the best active node of the given
@@ -715,11 +776,40 @@ public abstract class BreakingAlgorithm {
      */
     protected KnuthNode createNode(int position, int line, int fitness,
                                    int totalWidth, int totalStretch, int totalShrink) {
-        return new KnuthNode(position, line, fitness,
-                             totalWidth, totalStretch, totalShrink, best.getAdjust(fitness),
-                             best.getAvailableShrink(fitness), best.getAvailableStretch(fitness),
-                             best.getDifference(fitness), best.getDemerits(fitness),
-                             best.getNode(fitness));
+        return obtainNode(position, line, fitness,
+                          totalWidth, totalStretch, totalShrink, best.getAdjust(fitness),
+                          best.getAvailableShrink(fitness), best.getAvailableStretch(fitness),
+                          best.getDifference(fitness), best.getDemerits(fitness),
+                          best.getNode(fitness));
+    }
+
+    /** Takes a node from the node pool, if there is one, or else creates a new node. */
+    private KnuthNode obtainNode(int position, int line, int fitness,
+            int totalWidth, int totalStretch, int totalShrink,
+            double adjustRatio, int availableShrink, int availableStretch,
+            int difference, double totalDemerits, KnuthNode previous) {
+        if (nodePool == null) {
+            return new KnuthNode(position, line, fitness,
+                                 totalWidth, totalStretch, totalShrink,
+                                 adjustRatio, availableShrink, availableStretch,
+                                 difference, totalDemerits, previous);
+        }
+        KnuthNode node;
+        if (usedPoolNodes < nodePool.size()) {
+            node = nodePool.get(usedPoolNodes);
+            node.init(position, line, fitness,
+                      totalWidth, totalStretch, totalShrink,
+                      adjustRatio, availableShrink, availableStretch,
+                      difference, totalDemerits, previous);
+        } else {
+            node = new KnuthNode(position, line, fitness,
+                                 totalWidth, totalStretch, totalShrink,
+                                 adjustRatio, availableShrink, availableStretch,
+                                 difference, totalDemerits, previous);
+            nodePool.add(node);
+        }
+        usedPoolNodes++;
+        return node;
     }
 
     /**
@@ -904,8 +994,9 @@ public abstract class BreakingAlgorithm {
         // advance in the sequence in order to avoid taking into account
         // these elements twice
         int restartingIndex = restartingNode.position;
-        while (restartingIndex + 1 < par.size()
-               && !(getElement(restartingIndex + 1).isBox())) {
+        PackedKnuthSequence packed = getPackedPar();
+        while (restartingIndex + 1 < packed.size()
+               && !packed.is(restartingIndex + 1, PackedKnuthSequence.BOX)) {
             restartingIndex++;
         }
         return restartingIndex;
@@ -928,6 +1019,7 @@ public abstract class BreakingAlgorithm {
 
         lastDeactivated = null;
         lastTooLong = null;
+        breakTotalsComputed = false;
         for (int line = startLine; line < endLine; line++) {
             for (KnuthNode node = getNode(line); node != null; node = node.next) {
                 if (node.position == elementIdx) {
@@ -1011,6 +1103,21 @@ public abstract class BreakingAlgorithm {
                              int availableShrink,
                              int availableStretch) {
 
+        computeBreakTotals(elementIdx);
+
+        createForcedNodes(node, line, elementIdx, difference, r, demerits, fitnessClass, availableShrink,
+                availableStretch, breakWidth, breakStretch, breakShrink);
+    }
+
+    /**
+     * Computes the accumulated width, stretch and shrink up to after a break at the given
+     * element, once for every call to {@link #considerLegalBreak(KnuthElement, int)}.
+     * @param elementIdx the index of the element at which the break is considered
+     */
+    private void computeBreakTotals(int elementIdx) {
+        if (breakTotalsComputed) {
+            return;
+        }
         int newWidth = totalWidth;
         int newStretch = totalStretch;
         int newShrink = totalShrink;
@@ -1021,21 +1128,22 @@ public abstract class BreakingAlgorithm {
         // the values stored in the node; these would be as if the break
         // was just before the next box element, thus ignoring glues and
         // penalties between the "real" break and the following box
-        for (int i = elementIdx; i < par.size(); i++) {
-            KnuthElement tempElement = getElement(i);
-            if (tempElement.isBox()) {
+        PackedKnuthSequence packed = getPackedPar();
+        for (int i = elementIdx; i < packed.size(); i++) {
+            if (packed.is(i, PackedKnuthSequence.BOX)) {
                 break;
-            } else if (tempElement.isGlue()) {
-                newWidth += tempElement.getWidth();
-                newStretch += tempElement.getStretch();
-                newShrink += tempElement.getShrink();
-            } else if (tempElement.isForcedBreak() && i != elementIdx) {
+            } else if (packed.is(i, PackedKnuthSequence.GLUE)) {
+                newWidth += packed.getWidth(i);
+                newStretch += packed.getStretch(i);
+                newShrink += packed.getShrink(i);
+            } else if (packed.is(i, PackedKnuthSequence.FORCED_BREAK) && i != elementIdx) {
                 break;
             }
         }
-
-        createForcedNodes(node, line, elementIdx, difference, r, demerits, fitnessClass, availableShrink,
-                availableStretch, newWidth, newStretch, newShrink);
+        breakWidth = newWidth;
+        breakStretch = newStretch;
+        breakShrink = newShrink;
+        breakTotalsComputed = true;
     }
 
     protected void createForcedNodes(KnuthNode node, int line, int elementIdx, int difference, double r,
@@ -1130,28 +1238,7 @@ public abstract class BreakingAlgorithm {
             return;
         }
 
-        int newWidth = totalWidth;
-        int newStretch = totalStretch;
-        int newShrink = totalShrink;
-
-        // add the width, stretch and shrink of glue elements after
-        // the break
-        // this does not affect the dimension of the line / page, only
-        // the values stored in the node; these would be as if the break
-        // was just before the next box element, thus ignoring glues and
-        // penalties between the "real" break and the following box
-        for (int i = elementIdx; i < par.size(); i++) {
-            KnuthElement tempElement = getElement(i);
-            if (tempElement.isBox()) {
-                break;
-            } else if (tempElement.isGlue()) {
-                newWidth += tempElement.getWidth();
-                newStretch += tempElement.getStretch();
-                newShrink += tempElement.getShrink();
-            } else if (tempElement.isForcedBreak() && i != elementIdx) {
-                break;
-            }
-        }
+        computeBreakTotals(elementIdx);
 
         // add nodes to the active nodes list
         double minimumDemerits = best.getMinDemerits() + incompatibleFitnessDemerit;
@@ -1164,7 +1251,7 @@ public abstract class BreakingAlgorithm {
                             + " from fitness class " + FitnessClasses.NAMES[i]);
                 }
                 KnuthNode newNode = createNode(elementIdx, line + 1, i,
-                                               newWidth, newStretch, newShrink);
+                                               breakWidth, breakStretch, breakShrink);
                 addNode(line + 1, newNode);
             }
         }
@@ -1257,9 +1344,9 @@ public abstract class BreakingAlgorithm {
             demerits = f * f;
         }
 
+        PackedKnuthSequence packed = getPackedPar();
         if (element.isPenalty() && ((KnuthPenalty) element).isPenaltyFlagged()
-            && getElement(activeNode.position).isPenalty()
-            && ((KnuthPenalty) getElement(activeNode.position)).isPenaltyFlagged()) {
+            && packed.is(activeNode.position, PackedKnuthSequence.FLAGGED)) {
             // add demerit for consecutive breaks at flagged penalties
             demerits += repeatedFlaggedDemerit;
             // there are at least two consecutive lines ending with a flagged penalty;
@@ -1269,9 +1356,7 @@ public abstract class BreakingAlgorithm {
             for (KnuthNode prevNode = activeNode.previous;
                  prevNode != null && flaggedPenaltiesCount <= maxFlaggedPenaltiesCount;
                  prevNode = prevNode.previous) {
-                KnuthElement prevElement = getElement(prevNode.position);
-                if (prevElement.isPenalty()
-                    && ((KnuthPenalty) prevElement).isPenaltyFlagged()) {
+                if (packed.is(prevNode.position, PackedKnuthSequence.FLAGGED)) {
                     // the previous line ends with a flagged penalty too
                     flaggedPenaltiesCount++;
                 } else {
@@ -1307,6 +1392,18 @@ public abstract class BreakingAlgorithm {
         }
     }
 
+    /**
+     * Returns the elements of the paragraph packed into arrays, packing them again if the
+     * paragraph was modified.
+     * @return the packed paragraph
+     */
+    private PackedKnuthSequence getPackedPar() {
+        if (packedPar == null || !packedPar.isPackedFrom(par)) {
+            packedPar = new PackedKnuthSequence(par);
+        }
+        return packedPar;
+    }
+
     /**
      * Return the element at index idx in the paragraph.
      * @param idx index of the element.
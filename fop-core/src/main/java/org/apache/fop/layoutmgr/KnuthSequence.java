@@ -183,6 +183,15 @@ public abstract class KnuthSequence extends ArrayList {
         }
     }
 
+    /**
+     * Returns the number of structural modifications of this sequence, which tells whether a
+     * {@link PackedKnuthSequence} is still up to date.
+     * @return the modification count
+     */
+    int getModificationCount() {
+        return modCount;
+    }
+
     /**
      * Is this an inline or a block sequence?
      * @return true if this is an inline sequence
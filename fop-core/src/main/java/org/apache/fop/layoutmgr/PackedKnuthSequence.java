@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr;
+
+/**
+ * The widths, stretches, shrinks, penalties and types of the elements of a
+ * {@link KnuthSequence}, stored in parallel arrays. The breaking algorithm uses it for the
+ * loops that only need these values, so that they don't have to go through the element
+ * objects. It is a snapshot: it has to be rebuilt when elements are added to or removed
+ * from the sequence (see {@link #isPackedFrom(KnuthSequence)}).
+ */
+final class PackedKnuthSequence {
+
+    /** flag for a box */
+    static final int BOX = 1;
+
+    /** flag for a glue */
+    static final int GLUE = 2;
+
+    /** flag for a penalty */
+    static final int PENALTY = 4;
+
+    /** flag for a flagged penalty */
+    static final int FLAGGED = 8;
+
+    /** flag for a forced break */
+    static final int FORCED_BREAK = 16;
+
+    private final KnuthSequence sequence;
+
+    private final int modificationCount;
+
+    private final int size;
+
+    private final int[] width;
+
+    private final int[] stretch;
+
+    private final int[] shrink;
+
+    private final int[] penalty;
+
+    private final int[] flags;
+
+    /**
+     * Packs the elements of the given sequence.
+     * @param sequence a sequence of {@link KnuthElement}s
+     */
+    PackedKnuthSequence(KnuthSequence sequence) {
+        this.sequence = sequence;
+        this.modificationCount = sequence.getModificationCount();
+        this.size = sequence.size();
+        this.width = new int[size];
+        this.stretch = new int[size];
+        this.shrink = new int[size];
+        this.penalty = new int[size];
+        this.flags = new int[size];
+        for (int i = 0; i < size; i++) {
+            KnuthElement element = (KnuthElement) sequence.get(i);
+            width[i] = element.getWidth();
+            if (element.isBox()) {
+                flags[i] = BOX;
+            } else if (element.isGlue()) {
+                flags[i] = GLUE;
+                stretch[i] = element.getStretch();
+                shrink[i] = element.getShrink();
+            } else if (element.isPenalty()) {
+                KnuthPenalty p = (KnuthPenalty) element;
+                penalty[i] = p.getPenalty();
+                flags[i] = PENALTY | (p.isPenaltyFlagged() ? FLAGGED : 0)
+                        | (p.isForcedBreak() ? FORCED_BREAK : 0);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether this is an up-to-date packing of the given sequence.
+     * @param sequence a sequence
+     * @return true if the sequence is the packed one and hasn't been modified since
+     */
+    boolean isPackedFrom(KnuthSequence sequence) {
+        return this.sequence == sequence
+                && modificationCount == sequence.getModificationCount()
+                && size == sequence.size();
+    }
+
+    /** @return the number of elements */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the width of the element
+     */
+    int getWidth(int index) {
+        return width[index];
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the stretch of the element, 0 if it isn't a glue
+     */
+    int getStretch(int index) {
+        return stretch[index];
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the shrink of the element, 0 if it isn't a glue
+     */
+    int getShrink(int index) {
+        return shrink[index];
+    }
+
+    /**
+     * @param index the index of an element
+     * @return the penalty value of the element, 0 if it isn't a penalty
+     */
+    int getPenalty(int index) {
+        return penalty[index];
+    }
+
+    /**
+     * @param index the index of an element
+     * @param flag one of {@link #BOX}, {@link #GLUE}, {@link #PENALTY}, {@link #FLAGGED} or
+     * {@link #FORCED_BREAK}
+     * @return true if the element has the flag
+     */
+    boolean is(int index, int flag) {
+        return (flags[index] & flag) != 0;
+    }
+}
@@ -448,6 +448,7 @@ public class PageBreaker extends AbstractBreaker {
             log.debug("===================================================");
         }
 
+        algRestart.setRenderMonitor(getRenderMonitor());
         int optimalPageCount = algRestart.findBreakingPoints(effectiveList,
                     newStartPos,
                     1, true, BreakingAlgorithm.ALL_BREAKS);
@@ -19,6 +19,7 @@
 
 package org.apache.fop.layoutmgr.inline;
 
+import org.apache.fop.area.PageNumberIndex;
 import org.apache.fop.area.PageViewport;
 import org.apache.fop.area.Trait;
 import org.apache.fop.area.inline.InlineArea;
@@ -97,10 +98,28 @@ public abstract class AbstractPageNumberCitationLayoutManager extends LeafNodeLa
             citationString = page.getPageNumberString();
         } else {
             resolved = false;
-            citationString = "MMM"; // Use a place holder
+            citationString = getPreviousPageNumber();
+            if (citationString == null) {
+                citationString = "MMM"; // Use a place holder
+            }
         }
     }
 
+    /**
+     * Returns the number of the cited page found by the first pass of a two-pass layout, to
+     * be used as the place holder. The citation is still resolved once the cited page has
+     * been laid out, as the page may have moved since the first pass.
+     */
+    private String getPreviousPageNumber() {
+        PageNumberIndex index = citation.getUserAgent().getPageNumberIndex();
+        if (index == null) {
+            return null;
+        }
+        return getReferenceType() == UnresolvedPageNumber.FIRST
+                ? index.getFirstPageNumber(citation.getRefId())
+                : index.getLastPageNumber(citation.getRefId());
+    }
+
     private int getStringWidth(String str) {
         int width = 0;
         for (int count = 0; count < str.length(); count++) {
@@ -75,4 +75,15 @@ public interface InlineLevelEventProducer extends EventProducer {
      */
     void inlineContainerAutoIPDNotSupported(Object source, float fallback);
 
+    /**
+     * Reports how often word measurements were found in the cache during a rendering run.
+     *
+     * @param source the event source
+     * @param hits the number of words whose measurement was found in the cache
+     * @param misses the number of words that had to be measured
+     * @param hitRate the percentage of words whose measurement was found in the cache
+     * @event.severity INFO
+     */
+    void wordMeasurementCacheStatistics(Object source, long hits, long misses, int hitRate);
+
 }
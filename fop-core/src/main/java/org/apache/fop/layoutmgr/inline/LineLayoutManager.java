@@ -177,6 +177,10 @@ public class LineLayoutManager extends InlineStackingLayoutManager
      */
     private boolean hyphenationPerformed;
 
+    /** The nodes recycled by the line breaking algorithms of the paragraphs */
+    private final List<BreakingAlgorithm.KnuthNode> breakingNodePool
+            = new ArrayList<BreakingAlgorithm.KnuthNode>();
+
     /**
      * This class is used to remember
      * which was the first element in the paragraph
@@ -853,6 +857,9 @@ public class LineLayoutManager extends InlineStackingLayoutManager
                                             ? 0 : hyphenationLadderCount.getValue(),
                                         this);
         alg.setConstantLineWidth(ipd);
+        // the line break positions are built from the nodes, so they can be reused
+        alg.setNodePool(breakingNodePool);
+        alg.setRenderMonitor(fobj.getUserAgent().getRenderMonitor());
         boolean canWrap = (wrapOption != EN_NO_WRAP);
         boolean canHyphenate = (canWrap && hyphenationProperties.hyphenate.getEnum() == EN_TRUE);
 
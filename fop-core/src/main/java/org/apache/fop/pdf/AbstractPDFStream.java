@@ -19,9 +19,19 @@
 
 package org.apache.fop.pdf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.output.CountingOutputStream;
 
@@ -41,6 +51,15 @@ public abstract class AbstractPDFStream extends PDFObject {
 
     private PDFNumber refLength = new PDFNumber();
 
+    /** The stream being encoded ahead of output, if any */
+    private Future<StreamCache> preparedStream;
+
+    /** The digest of the encoded stream, computed while encoding if this stream is deduplicable */
+    private byte[] encodedDigest;
+
+    /** The stream with the same content this one has been replaced with, if any */
+    private AbstractPDFStream original;
+
     protected AbstractPDFStream() {
         this(true);
     }
@@ -83,9 +102,10 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     protected void setupFilterList() {
         if (multipleFiltersAllowed() && !getFilterList().isInitialized()) {
+            String type = getDefaultFilterName();
             getFilterList().addDefaultFilters(
                 getDocumentSafely().getFilterMap(),
-                getDefaultFilterName());
+                type, getDocumentSafely().getFlateSettings(type));
         }
         prepareImplicitFilters();
         getDocument().applyEncryption(this);
@@ -168,11 +188,23 @@ public abstract class AbstractPDFStream extends PDFObject {
         //Allocate a temporary buffer to find out the size of the encoded stream
         final StreamCache encodedStream = StreamCacheFactory.getInstance()
                 .createStreamCache(getSizeHint());
-        OutputStream filteredOutput
-                = getFilterList().applyFilters(encodedStream.getOutputStream());
+        OutputStream out = encodedStream.getOutputStream();
+        MessageDigest digest = null;
+        if (isDeduplicable()) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+                out = new DigestOutputStream(out, digest);
+            } catch (NoSuchAlgorithmException e) {
+                // the stream is simply not deduplicated
+            }
+        }
+        OutputStream filteredOutput = getFilterList().applyFilters(out);
         outputRawStreamData(filteredOutput);
         filteredOutput.flush();
         filteredOutput.close();
+        if (digest != null) {
+            encodedDigest = digest.digest();
+        }
         return encodedStream;
     }
 
@@ -210,6 +242,67 @@ public abstract class AbstractPDFStream extends PDFObject {
         return bytesWritten;
     }
 
+    /**
+     * Indicates whether the stream data can be encoded on another thread ahead of the output
+     * of this object. This requires that the raw stream data is complete once the object is
+     * queued for output and that encoding it doesn't touch any shared state.
+     * @return true if the stream can be encoded concurrently
+     */
+    protected boolean supportsConcurrentEncoding() {
+        return false;
+    }
+
+    /**
+     * Indicates whether this stream may be replaced by a stream with the same content that has
+     * already been written. The stream is then encoded ahead of output, so the digest of the
+     * encoded data can be computed while encoding, and written as a null object if a stream
+     * with the same digest and dictionary is found. This requires that the stream is only
+     * referenced from objects that are written after it.
+     * @return true if the stream can be deduplicated
+     */
+    protected boolean isDeduplicable() {
+        return false;
+    }
+
+    /**
+     * Starts encoding the stream data on the given executor, so the encoded stream is ready
+     * by the time this object is output. The filters are set up on the calling thread.
+     * @param executor the executor to encode the stream on
+     */
+    void prepareEncodedStream(ExecutorService executor) {
+        if (preparedStream != null) {
+            return;
+        }
+        setupFilterList();
+        preparedStream = executor.submit(new Callable<StreamCache>() {
+            public StreamCache call() throws IOException {
+                return encodeStream();
+            }
+        });
+    }
+
+    private StreamCache getPreparedStream() throws IOException {
+        try {
+            return preparedStream.get();
+        } catch (InterruptedException e) {
+            preparedStream.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding a PDF stream");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            preparedStream = null;
+        }
+    }
+
     /**
      * Overload the base object method so we don't have to copy
      * byte arrays around so much
@@ -217,12 +310,20 @@ public abstract class AbstractPDFStream extends PDFObject {
      */
     @Override
     public int output(OutputStream stream) throws IOException {
-        setupFilterList();
+        StreamCache encodedStream = null;
+        if (preparedStream != null) {
+            encodedStream = getPreparedStream();
+        } else {
+            setupFilterList();
+        }
 
         CountingOutputStream cout = new CountingOutputStream(stream);
         StringBuilder textBuffer = new StringBuilder(64);
 
-        StreamCache encodedStream = null;
+        boolean deduplicable = isDeduplicable();
+        if (encodedStream == null && (!encodeOnTheFly || deduplicable)) {
+            encodedStream = encodeStream();
+        }
         final Object lengthEntry;
         if (encodeOnTheFly) {
             if (!refLength.hasObjectNumber()) {
@@ -230,11 +331,23 @@ public abstract class AbstractPDFStream extends PDFObject {
             }
             lengthEntry = refLength;
         } else {
-            encodedStream = encodeStream();
             lengthEntry = encodedStream.getSize();
         }
 
         populateStreamDict(lengthEntry);
+        if (deduplicable && encodedDigest != null) {
+            original = getDocument().findStreamWithSameContent(this, getContentKey(),
+                    encodedStream.getSize());
+            if (original != null) {
+                if (encodeOnTheFly) {
+                    refLength.setNumber(0);
+                }
+                encodedStream.clear();
+                textBuffer.append("null");
+                PDFDocument.flushTextBuffer(textBuffer, cout);
+                return cout.getCount();
+            }
+        }
         dictionary.writeDictionary(cout, textBuffer);
 
         //Send encoded stream to target OutputStream
@@ -243,6 +356,9 @@ public abstract class AbstractPDFStream extends PDFObject {
             encodeAndWriteStream(cout, refLength);
         } else {
             outputStreamData(encodedStream, cout);
+            if (encodeOnTheFly) {
+                refLength.setNumber(encodedStream.getSize());
+            }
             encodedStream.clear(); //Encoded stream can now be discarded
         }
 
@@ -250,6 +366,36 @@ public abstract class AbstractPDFStream extends PDFObject {
         return cout.getCount();
     }
 
+    /**
+     * Returns a key that identifies the content of this stream: the digest of the encoded data
+     * and the dictionary entries except the name and length.
+     */
+    private String getContentKey() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder textBuffer = new StringBuilder(PDFText.toHex(encodedDigest, false));
+        for (String key : new TreeSet<String>(dictionary.keySet())) {
+            if (!"Name".equals(key) && !"Length".equals(key)) {
+                textBuffer.append(' ').append(PDFName.escapeName(key)).append(' ');
+                formatObject(dictionary.get(key), out, textBuffer);
+            }
+        }
+        PDFDocument.flushTextBuffer(textBuffer, out);
+        return out.toString("ISO-8859-1");
+    }
+
+    /**
+     * Returns a reference to this stream or, if it has been replaced by a stream with the same
+     * content, to that stream.
+     * @return the object reference
+     */
+    @Override
+    public PDFReference makeReference() {
+        if (original != null) {
+            return original.makeReference();
+        }
+        return super.makeReference();
+    }
+
     @Override
     public void setDocument(PDFDocument doc) {
         dictionary.setDocument(doc);
@@ -21,6 +21,8 @@ package org.apache.fop.pdf;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import org.apache.xmlgraphics.util.io.FlateEncodeOutputStream;
 
@@ -79,6 +81,7 @@ public class FlateFilter extends PDFFilter {
     private int colors;
     private int bitsPerComponent;
     private int columns;
+    private FlateSettings settings = FlateSettings.DEFAULT;
 
     /**
      * Get the name of this filter.
@@ -208,12 +211,49 @@ public class FlateFilter extends PDFFilter {
     }
 
 
+    /**
+     * Sets the compression level and strategy.
+     *
+     * @param settings the settings to use
+     */
+    public void setSettings(FlateSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Returns the compression level and strategy.
+     *
+     * @return the settings
+     */
+    public FlateSettings getSettings() {
+        return settings;
+    }
+
     /** {@inheritDoc} */
     public OutputStream applyFilter(OutputStream out) throws IOException {
         if (isApplied()) {
             return out;
-        } else {
+        } else if (settings.isDefault()) {
             return new FlateEncodeOutputStream(out);
+        } else {
+            return new ConfiguredFlateEncodeOutputStream(out, settings.createDeflater());
+        }
+    }
+
+    /** Deflates with a deflater of its own, which is released when the stream is closed. */
+    private static final class ConfiguredFlateEncodeOutputStream extends DeflaterOutputStream {
+
+        ConfiguredFlateEncodeOutputStream(OutputStream out, Deflater deflater) {
+            super(out, deflater);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
         }
     }
 
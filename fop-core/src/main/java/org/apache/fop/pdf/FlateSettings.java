@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.zip.Deflater;
+
+/**
+ * The compression level and strategy used by the {@link FlateFilter}.
+ */
+public final class FlateSettings {
+
+    /** The settings of the JDK's {@link Deflater}, which are used unless configured otherwise */
+    public static final FlateSettings DEFAULT
+            = new FlateSettings(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+    /** Settings for the fastest compression */
+    public static final FlateSettings BEST_SPEED
+            = new FlateSettings(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+
+    /** Settings for the smallest output */
+    public static final FlateSettings BEST_COMPRESSION
+            = new FlateSettings(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+    private final int level;
+
+    private final int strategy;
+
+    /**
+     * Creates new settings.
+     * @param level the compression level (0-9 or -1 for the default level)
+     * @param strategy the compression strategy, one of the strategy constants of
+     * {@link Deflater}
+     */
+    public FlateSettings(int level, int strategy) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED
+                && strategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid compression strategy: " + strategy);
+        }
+        this.level = level;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Returns the settings for a preset.
+     * @param name the name of the preset: "default", "fast" or "best"
+     * @return the settings
+     * @throws IllegalArgumentException if there is no such preset
+     */
+    public static FlateSettings getPreset(String name) {
+        if ("default".equals(name)) {
+            return DEFAULT;
+        } else if ("fast".equals(name)) {
+            return BEST_SPEED;
+        } else if ("best".equals(name)) {
+            return BEST_COMPRESSION;
+        }
+        throw new IllegalArgumentException("Unknown compression preset: " + name);
+    }
+
+    /**
+     * Parses the name of a compression strategy.
+     * @param name "default", "filtered" or "huffman-only"
+     * @return the corresponding strategy constant of {@link Deflater}
+     * @throws IllegalArgumentException if the name isn't known
+     */
+    public static int parseStrategy(String name) {
+        if ("default".equals(name)) {
+            return Deflater.DEFAULT_STRATEGY;
+        } else if ("filtered".equals(name)) {
+            return Deflater.FILTERED;
+        } else if ("huffman-only".equals(name)) {
+            return Deflater.HUFFMAN_ONLY;
+        }
+        throw new IllegalArgumentException("Unknown compression strategy: " + name);
+    }
+
+    /**
+     * Returns the compression level.
+     * @return the level (0-9 or -1 for the default level)
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the compression strategy.
+     * @return one of the strategy constants of {@link Deflater}
+     */
+    public int getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Indicates whether these are the settings the JDK uses by default.
+     * @return true for the default settings
+     */
+    public boolean isDefault() {
+        return level == Deflater.DEFAULT_COMPRESSION && strategy == Deflater.DEFAULT_STRATEGY;
+    }
+
+    /**
+     * Creates a deflater with these settings. It must be ended by the caller.
+     * @return the deflater
+     */
+    Deflater createDeflater() {
+        Deflater deflater = new Deflater(level);
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FlateSettings)) {
+            return false;
+        }
+        FlateSettings other = (FlateSettings) obj;
+        return level == other.level && strategy == other.strategy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31 * level + strategy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "FlateSettings[level=" + level + ", strategy=" + strategy + "]";
+    }
+}
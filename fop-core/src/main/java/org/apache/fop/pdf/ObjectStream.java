@@ -75,6 +75,17 @@ public class ObjectStream extends PDFStream {
         streamContent.writeTo(out);
     }
 
+    /** {@inheritDoc} */
+    protected String getDefaultFilterName() {
+        return PDFFilterList.OBJECT_STREAM_FILTER;
+    }
+
+    /** {@inheritDoc} */
+    protected boolean supportsConcurrentEncoding() {
+        // the compressed objects are output while encoding
+        return false;
+    }
+
     @Override
     protected void populateStreamDict(Object lengthEntry) {
         put("Type", OBJ_STM);
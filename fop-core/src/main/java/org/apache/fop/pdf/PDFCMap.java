@@ -428,4 +428,10 @@ public class PDFCMap extends PDFStream {
         builder.writeCMap();
         return super.output(stream);
     }
+
+    /** {@inheritDoc} */
+    protected boolean supportsConcurrentEncoding() {
+        // the CMap is only written to the stream on output
+        return false;
+    }
 }
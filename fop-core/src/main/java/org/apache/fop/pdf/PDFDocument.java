@@ -33,6 +33,12 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -140,25 +146,27 @@ public class PDFDocument {
 
     private Map<String, List<String>> filterMap = new HashMap<String, List<String>>();
 
-    private List<PDFGState> gstates = new ArrayList<PDFGState>();
+    private Map<String, FlateSettings> flateSettings = Collections.emptyMap();
 
-    private List<PDFFunction> functions = new ArrayList<PDFFunction>();
+    private PDFObjectIndex<PDFGState> gstates = new PDFObjectIndex<PDFGState>();
 
-    private List<PDFShading> shadings = new ArrayList<PDFShading>();
+    private PDFObjectIndex<PDFFunction> functions = new PDFObjectIndex<PDFFunction>();
 
-    private List<PDFPattern> patterns = new ArrayList<PDFPattern>();
+    private PDFObjectIndex<PDFShading> shadings = new PDFObjectIndex<PDFShading>();
 
-    private List<PDFLink> links = new ArrayList<PDFLink>();
+    private PDFObjectIndex<PDFPattern> patterns = new PDFObjectIndex<PDFPattern>();
+
+    private PDFObjectIndex<PDFLink> links = new PDFObjectIndex<PDFLink>();
 
     private List<PDFDestination> destinations;
 
-    private List<PDFFileSpec> filespecs = new ArrayList<PDFFileSpec>();
+    private PDFObjectIndex<PDFFileSpec> filespecs = new PDFObjectIndex<PDFFileSpec>();
 
-    private List<PDFGoToRemote> gotoremotes = new ArrayList<PDFGoToRemote>();
+    private PDFObjectIndex<PDFGoToRemote> gotoremotes = new PDFObjectIndex<PDFGoToRemote>();
 
-    private List<PDFGoTo> gotos = new ArrayList<PDFGoTo>();
+    private PDFObjectIndex<PDFGoTo> gotos = new PDFObjectIndex<PDFGoTo>();
 
-    private List<PDFLaunch> launches = new ArrayList<PDFLaunch>();
+    private PDFObjectIndex<PDFLaunch> launches = new PDFObjectIndex<PDFLaunch>();
 
     protected List<PDFPage> pageObjs = new ArrayList<PDFPage>();
 
@@ -180,6 +188,19 @@ public class PDFDocument {
 
     private boolean formXObjectEnabled;
 
+    private int compressionThreads = 1;
+
+    private boolean xObjectDeduplicationEnabled;
+
+    /** XObjects that have been written, by the digest of their encoded data and dictionary */
+    private Map<String, AbstractPDFStream> streamsByContent;
+
+    private int deduplicatedXObjectCount;
+
+    private long deduplicatedXObjectBytes;
+
+    private ExecutorService compressionExecutor;
+
     protected boolean outputStarted;
 
     /**
@@ -342,6 +363,35 @@ public class PDFDocument {
         return this.filterMap;
     }
 
+    /**
+     * Sets the compression settings of the flate filter for each stream type. The keys are
+     * the filter list types of {@link PDFFilterList}, types without an entry of their own
+     * use the settings of {@link PDFFilterList#DEFAULT_FILTER}.
+     *
+     * @param map the map of compression settings for each stream type, may be null
+     */
+    public void setFlateSettings(Map<String, FlateSettings> map) {
+        if (map == null) {
+            this.flateSettings = Collections.emptyMap();
+        } else {
+            this.flateSettings = map;
+        }
+    }
+
+    /**
+     * Returns the compression settings of the flate filter for a stream type.
+     *
+     * @param type the filter list type of the stream
+     * @return the compression settings
+     */
+    public FlateSettings getFlateSettings(String type) {
+        FlateSettings settings = flateSettings.get(type);
+        if (settings == null) {
+            settings = flateSettings.get(PDFFilterList.DEFAULT_FILTER);
+        }
+        return settings == null ? FlateSettings.DEFAULT : settings;
+    }
+
     /**
      * Returns the {@link PDFPages} object associated with the root object.
      *
@@ -619,15 +669,6 @@ public class PDFDocument {
         return this.encryption;
     }
 
-    private Object findPDFObject(List<? extends PDFObject> list, PDFObject compare) {
-        for (PDFObject obj : list) {
-            if (compare.contentEquals(obj)) {
-                return obj;
-            }
-        }
-        return null;
-    }
-
     /**
      * Looks through the registered functions to see if one that is equal to
      * a reference object exists
@@ -636,7 +677,7 @@ public class PDFDocument {
      * @return the function if it was found, null otherwise
      */
     protected PDFFunction findFunction(PDFFunction compare) {
-        return (PDFFunction)findPDFObject(this.functions, compare);
+        return this.functions.find(compare);
     }
 
     /**
@@ -647,7 +688,7 @@ public class PDFDocument {
      * @return the shading if it was found, null otherwise
      */
     protected PDFShading findShading(PDFShading compare) {
-        return (PDFShading)findPDFObject(this.shadings, compare);
+        return this.shadings.find(compare);
     }
 
     /**
@@ -660,7 +701,7 @@ public class PDFDocument {
      * @return the shading if it was found, null otherwise
      */
     protected PDFPattern findPattern(PDFPattern compare) {
-        return (PDFPattern)findPDFObject(this.patterns, compare);
+        return this.patterns.find(compare);
     }
 
     /**
@@ -695,7 +736,7 @@ public class PDFDocument {
      * @return the link if found, null otherwise
      */
     protected PDFLink findLink(PDFLink compare) {
-        return (PDFLink)findPDFObject(this.links, compare);
+        return this.links.find(compare);
     }
 
     /**
@@ -705,7 +746,7 @@ public class PDFDocument {
      * @return the file spec if found, null otherwise
      */
     protected PDFFileSpec findFileSpec(PDFFileSpec compare) {
-        return (PDFFileSpec)findPDFObject(this.filespecs, compare);
+        return this.filespecs.find(compare);
     }
 
     /**
@@ -715,7 +756,7 @@ public class PDFDocument {
      * @return the goto remote if found, null otherwise
      */
     protected PDFGoToRemote findGoToRemote(PDFGoToRemote compare) {
-        return (PDFGoToRemote)findPDFObject(this.gotoremotes, compare);
+        return this.gotoremotes.find(compare);
     }
 
     /**
@@ -725,7 +766,7 @@ public class PDFDocument {
      * @return the goto if found, null otherwise
      */
     protected PDFGoTo findGoTo(PDFGoTo compare) {
-        return (PDFGoTo)findPDFObject(this.gotos, compare);
+        return this.gotos.find(compare);
     }
 
     /**
@@ -735,27 +776,50 @@ public class PDFDocument {
      * @return the launch if found, null otherwise
      */
     protected PDFLaunch findLaunch(PDFLaunch compare) {
-        return (PDFLaunch) findPDFObject(this.launches, compare);
+        return this.launches.find(compare);
     }
 
     /**
-     * Looks for an existing GState to use
+     * Looks for an existing GState with the same values.
      *
-     * @param wanted requested features
-     * @param current currently active features
+     * @param compare reference object to use as search template
      * @return the GState if found, null otherwise
      */
-    protected PDFGState findGState(PDFGState wanted, PDFGState current) {
-        PDFGState poss;
-        for (PDFGState avail : this.gstates) {
-            poss = new PDFGState();
-            poss.addValues(current);
-            poss.addValues(avail);
-            if (poss.equals(wanted)) {
-                return avail;
-            }
+    protected PDFGState findGState(PDFGState compare) {
+        return this.gstates.find(compare);
+    }
+
+    /**
+     * Returns the number of times an object with the same content as a new one was looked
+     * for among the registered functions, shadings, patterns, GStates and actions.
+     *
+     * @return the number of lookups
+     */
+    public int getReuseLookupCount() {
+        int count = 0;
+        for (PDFObjectIndex<?> index : getReusableObjectIndexes()) {
+            count += index.getLookupCount();
         }
-        return null;
+        return count;
+    }
+
+    /**
+     * Returns the number of times an already registered object was reused instead of
+     * registering a new one with the same content.
+     *
+     * @return the number of reused objects
+     */
+    public int getReuseHitCount() {
+        int count = 0;
+        for (PDFObjectIndex<?> index : getReusableObjectIndexes()) {
+            count += index.getHitCount();
+        }
+        return count;
+    }
+
+    private PDFObjectIndex<?>[] getReusableObjectIndexes() {
+        return new PDFObjectIndex<?>[] {gstates, functions, shadings, patterns, links,
+                filespecs, gotoremotes, gotos, launches};
     }
 
     /**
@@ -1019,6 +1083,10 @@ public class PDFDocument {
      */
     public void output(OutputStream stream) throws IOException {
         outputStarted = true;
+        if (compressionThreads > 1 && !isEncryptionActive()) {
+            outputWithConcurrentEncoding(stream);
+            return;
+        }
         //Write out objects until the list is empty. This approach (used with a
         //LinkedList) allows for output() methods to create and register objects
         //on the fly even during serialization.
@@ -1028,6 +1096,69 @@ public class PDFDocument {
         }
     }
 
+    /**
+     * Writes out the queued objects like {@link #output(OutputStream)} but encodes the streams
+     * among the next objects on the compression threads while the objects before them are
+     * written. The objects are still written, and their offsets recorded, in order.
+     */
+    private void outputWithConcurrentEncoding(OutputStream stream) throws IOException {
+        ExecutorService executor = getCompressionExecutor();
+        int maxPreparedStreams = compressionThreads * 2;
+        LinkedList<PDFObject> pending = new LinkedList<PDFObject>();
+        int preparedStreams = 0;
+        try {
+            while (!this.objects.isEmpty() || !pending.isEmpty()) {
+                while (preparedStreams < maxPreparedStreams && !this.objects.isEmpty()) {
+                    PDFObject object = this.objects.remove(0);
+                    pending.add(object);
+                    if (isConcurrentlyEncodable(object)) {
+                        ((AbstractPDFStream) object).prepareEncodedStream(executor);
+                        preparedStreams++;
+                    }
+                }
+                PDFObject object = pending.removeFirst();
+                if (isConcurrentlyEncodable(object)) {
+                    preparedStreams--;
+                }
+                streamIndirectObject(object, stream);
+            }
+        } finally {
+            this.objects.addAll(0, pending);
+        }
+    }
+
+    private static boolean isConcurrentlyEncodable(PDFObject object) {
+        return object instanceof AbstractPDFStream
+                && ((AbstractPDFStream) object).supportsConcurrentEncoding();
+    }
+
+    private synchronized ExecutorService getCompressionExecutor() {
+        if (compressionExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(compressionThreads,
+                    compressionThreads, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "FOP PDF compression " + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            compressionExecutor = executor;
+        }
+        return compressionExecutor;
+    }
+
+    private synchronized void shutdownCompressionExecutor() {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdown();
+            compressionExecutor = null;
+        }
+    }
+
     protected void writeTrailer(OutputStream stream, int first, int last, int size, long mainOffset, long startxref)
             throws IOException {
         TrailerOutputHelper trailerOutputHelper = mayCompressStructureTreeElements()
@@ -1126,8 +1257,20 @@ public class PDFDocument {
      * @throws IOException if there is an exception writing to the output stream
      */
     public void outputTrailer(OutputStream stream) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Reused " + getReuseHitCount() + " objects in "
+                    + getReuseLookupCount() + " lookups");
+            if (xObjectDeduplicationEnabled) {
+                log.debug("Deduplicated " + deduplicatedXObjectCount + " XObjects, saving "
+                        + deduplicatedXObjectBytes + " bytes");
+            }
+        }
         createDestinations();
-        output(stream);
+        try {
+            output(stream);
+        } finally {
+            shutdownCompressionExecutor();
+        }
         outputTrailerObjectsAndXref(stream);
     }
 
@@ -1269,4 +1412,83 @@ public class PDFDocument {
     public void setFormXObjectEnabled(boolean b) {
         formXObjectEnabled = b;
     }
+
+    /**
+     * Returns the number of threads used to encode (compress) streams while the document is
+     * written.
+     * @return the number of compression threads, 1 if streams are encoded while being written
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to encode (compress) streams while the document is
+     * written. With more than one thread, content streams, images and fonts are encoded ahead
+     * of being written. This isn't done if encryption is active.
+     * @param compressionThreads the number of compression threads
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Indicates whether image and form XObjects with the same content are written only once.
+     * @return true if XObjects are deduplicated
+     */
+    public boolean isXObjectDeduplicationEnabled() {
+        return xObjectDeduplicationEnabled;
+    }
+
+    /**
+     * Sets whether image and form XObjects with the same content are written only once. XObjects
+     * are looked up by their key (usually the image URI) when they are added; with this
+     * enabled, an XObject whose encoded data and dictionary are the same as those of an XObject
+     * that has already been written is replaced by that one, e.g. when the same image is loaded
+     * from different URIs. This isn't done if encryption or linearization is active.
+     * @param b true to deduplicate XObjects
+     */
+    public void setXObjectDeduplicationEnabled(boolean b) {
+        this.xObjectDeduplicationEnabled = b;
+    }
+
+    /**
+     * Returns the number of XObjects that were replaced by an XObject with the same content.
+     * @return the number of deduplicated XObjects
+     */
+    public int getDeduplicatedXObjectCount() {
+        return deduplicatedXObjectCount;
+    }
+
+    /**
+     * Returns the size of the encoded data of the XObjects that were replaced by an XObject
+     * with the same content.
+     * @return the number of bytes saved
+     */
+    public long getDeduplicatedXObjectBytes() {
+        return deduplicatedXObjectBytes;
+    }
+
+    /**
+     * Looks for a stream that has already been written with the same content as the given one.
+     * If there is none, the given stream is remembered for later lookups.
+     * @param stream the stream about to be written
+     * @param contentKey the digest of the stream's encoded data and dictionary
+     * @param size the size of the encoded data
+     * @return the stream with the same content or null
+     */
+    AbstractPDFStream findStreamWithSameContent(AbstractPDFStream stream, String contentKey,
+            long size) {
+        if (streamsByContent == null) {
+            streamsByContent = new HashMap<String, AbstractPDFStream>();
+        }
+        AbstractPDFStream original = streamsByContent.get(contentKey);
+        if (original == null) {
+            streamsByContent.put(contentKey, stream);
+        } else {
+            deduplicatedXObjectCount++;
+            deduplicatedXObjectBytes += size;
+        }
+        return original;
+    }
 }
@@ -1525,7 +1525,7 @@ public class PDFFactory {
         obj.setDocument(getDocument());
         obj.getFilterList().addDefaultFilters(
                 getDocument().getFilterMap(),
-                type);
+                type, getDocument().getFlateSettings(type));
 
         if (add) {
             getDocument().registerObject(obj);
@@ -1623,22 +1623,16 @@ public class PDFFactory {
      */
     public PDFGState makeGState(Map settings, PDFGState current) {
 
-        // try to locate a gstate that has all the settings
-        // or will inherit from the current gstate
-        // compare "DEFAULT + settings" with "current + each gstate"
-
-        PDFGState wanted = new PDFGState();
-        wanted.addValues(PDFGState.DEFAULT);
-        wanted.addValues(settings);
+        // a GState with the same settings can be used regardless of the current GState
 
+        PDFGState gstate = new PDFGState();
+        gstate.addValues(settings);
 
-        PDFGState existing = getDocument().findGState(wanted, current);
+        PDFGState existing = getDocument().findGState(gstate);
         if (existing != null) {
             return existing;
         }
 
-        PDFGState gstate = new PDFGState();
-        gstate.addValues(settings);
         getDocument().registerObject(gstate);
         return gstate;
     }
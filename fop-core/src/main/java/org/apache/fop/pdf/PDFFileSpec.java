@@ -96,4 +96,9 @@ public class PDFFileSpec extends PDFDictionary {
 
         return true;
     }
+
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        return getFilename().hashCode();
+    }
 }
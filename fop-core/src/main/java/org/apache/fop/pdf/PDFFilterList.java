@@ -47,6 +47,8 @@ public class PDFFilterList {
     public static final String FONT_FILTER = "font";
     /** Key for the filter used for metadata */
     public static final String METADATA_FILTER = "metadata";
+    /** Key for the filter used for object streams */
+    public static final String OBJECT_STREAM_FILTER = "object-stream";
 
     private List<PDFFilter> filters = new java.util.ArrayList<PDFFilter>();
 
@@ -54,6 +56,8 @@ public class PDFFilterList {
 
     private boolean disableAllFilters;
 
+    private FlateSettings flateSettings = FlateSettings.DEFAULT;
+
     /**
      * Default constructor.
      * <p>
@@ -122,7 +126,7 @@ public class PDFFilterList {
             return;
         }
         if (filterType.equals("flate")) {
-            addFilter(new FlateFilter());
+            addFilter(createFlateFilter());
         } else if (filterType.equals("null")) {
             addFilter(new NullFilter());
         } else if (filterType.equals("ascii-85")) {
@@ -158,6 +162,23 @@ public class PDFFilterList {
         }
     }
 
+    private FlateFilter createFlateFilter() {
+        FlateFilter filter = new FlateFilter();
+        filter.setSettings(flateSettings);
+        return filter;
+    }
+
+    /**
+     * Adds the default filters to this stream, compressing with the given settings.
+     * @param filters Map of filters
+     * @param type which filter list to modify
+     * @param flateSettings the compression settings for the flate filter
+     */
+    public void addDefaultFilters(Map filters, String type, FlateSettings flateSettings) {
+        this.flateSettings = flateSettings;
+        addDefaultFilters(filters, type);
+    }
+
     /**
      * Adds the default filters to this stream.
      * @param filters Map of filters
@@ -188,7 +209,7 @@ public class PDFFilterList {
                 addFilter(new NullFilter());
             } else {
                 // built-in default to flate
-                addFilter(new FlateFilter());
+                addFilter(createFlateFilter());
             }
         } else {
             for (Object aFilterset : filterset) {
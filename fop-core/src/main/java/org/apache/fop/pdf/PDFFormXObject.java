@@ -159,6 +159,11 @@ public class PDFFormXObject extends PDFXObject {
         contents.outputRawStreamData(out);
     }
 
+    /** {@inheritDoc} */
+    protected boolean supportsConcurrentEncoding() {
+        return true;
+    }
+
     /** {@inheritDoc} */
     public int output(OutputStream stream) throws IOException {
         final int len = super.output(stream);
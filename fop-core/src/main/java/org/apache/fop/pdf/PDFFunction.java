@@ -189,4 +189,15 @@ public class PDFFunction extends PDFObject {
         return true;
     }
 
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        int hash = function.getFunctionType();
+        hash = 31 * hash + function.getBitsPerSample();
+        hash = 31 * hash + function.getOrder();
+        hash = 31 * hash + (function.getDomain() != null ? function.getDomain().hashCode() : 0);
+        hash = 31 * hash + Arrays.hashCode(function.getCZero());
+        hash = 31 * hash + Arrays.hashCode(function.getCOne());
+        return 31 * hash + pdfFunctions.hashCode();
+    }
+
 }
@@ -199,5 +199,10 @@ public class PDFGState extends PDFObject {
         }
         return true;
     }
+
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        return values.hashCode();
+    }
 }
 
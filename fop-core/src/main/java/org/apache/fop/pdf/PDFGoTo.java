@@ -192,5 +192,17 @@ public class PDFGoTo extends PDFAction {
 
         return (isNamedDestination == gt.isNamedDestination);
     }
+
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        int hash = pageReference != null ? pageReference.hashCode() : 0;
+        if (destination == null) {
+            hash = 31 * hash + (int) xPosition;
+            hash = 31 * hash + (int) yPosition;
+        } else {
+            hash = 31 * hash + destination.hashCode();
+        }
+        return 31 * hash + (isNamedDestination ? 1 : 0);
+    }
 }
 
@@ -165,5 +165,12 @@ public class PDFGoToRemote extends PDFAction {
 
         return (this.newWindow == remote.newWindow);
     }
+
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        int hash = pdfFileSpec.toString().hashCode();
+        hash = 31 * hash + (destination != null ? destination.hashCode() : pageReference);
+        return 31 * hash + (newWindow ? 1 : 0);
+    }
 }
 
@@ -142,7 +142,9 @@ public class PDFImageXObject extends PDFXObject {
         }
         PDFReference ref = pdfimage.getSoftMaskReference();
         if (ref != null) {
-            put("SMask", ref);
+            // the soft mask may have been replaced by one with the same content
+            PDFObject softMask = ref.getObject();
+            put("SMask", softMask != null ? softMask.makeReference() : ref);
         }
         //Important: do this at the end so previous values can be overwritten.
         pdfimage.populateXObjectDictionary(getDictionary());
@@ -179,6 +181,14 @@ public class PDFImageXObject extends PDFXObject {
         return pdfimage.multipleFiltersAllowed();
     }
 
+    /**
+     * {@inheritDoc}
+     * With PDF/VT, the image data is needed for the XObject ID before it is encoded.
+     */
+    protected boolean supportsConcurrentEncoding() {
+        return !getDocument().getProfile().isPDFVTActive();
+    }
+
     @Override
     public void getChildren(Set<PDFObject> children) {
         super.getChildren(children);
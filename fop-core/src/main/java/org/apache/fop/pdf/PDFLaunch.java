@@ -95,4 +95,9 @@ public class PDFLaunch extends PDFAction {
 
         return true;
     }
+
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        return externalFileSpec.toString().hashCode();
+    }
 }
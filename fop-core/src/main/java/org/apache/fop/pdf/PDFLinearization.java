@@ -74,6 +74,11 @@ public class PDFLinearization {
             return new PDFFilterList(getDocument().isEncryptionActive());
         }
 
+        @Override
+        protected boolean supportsConcurrentEncoding() {
+            return false;
+        }
+
         @Override
         protected void outputRawStreamData(OutputStream os) throws IOException {
             CountingOutputStream bos = new CountingOutputStream(os);
@@ -144,6 +144,16 @@ public class PDFLink extends PDFObject {
         return true;
     }
 
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        // the action may still be replaced, so it is left to contentEquals()
+        int hash = color != null ? color.hashCode() : 0;
+        hash = 31 * hash + (int) ulx;
+        hash = 31 * hash + (int) uly;
+        hash = 31 * hash + (int) brx;
+        return 31 * hash + (int) bry;
+    }
+
     @Override
     public void getChildren(Set<PDFObject> children) {
         super.getChildren(children);
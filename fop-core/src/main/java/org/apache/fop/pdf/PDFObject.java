@@ -356,6 +356,18 @@ public abstract class PDFObject implements PDFWritable {
         return this.equals(o);
     }
 
+    /**
+     * Returns a hash code for the content of this object. It must be consistent with
+     * {@link #contentEquals(PDFObject)}, i.e. objects with the same content must return the same
+     * value. It is used to look up objects with the same content when registering new ones. Only
+     * values that don't change once the object has been registered should be taken into account.
+     *
+     * @return the hash code of the content
+     */
+    protected int contentHashCode() {
+        return hashCode();
+    }
+
     public void getChildren(Set<PDFObject> children) {
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of registered PDF objects keyed by {@link PDFObject#contentHashCode()}, used to find
+ * an object with the same content as a new one without comparing it against every registered
+ * object. Objects with the same hash code are told apart with
+ * {@link PDFObject#contentEquals(PDFObject)}.
+ *
+ * @param <T> the type of the indexed objects
+ */
+final class PDFObjectIndex<T extends PDFObject> {
+
+    private final Map<Integer, Object> buckets = new HashMap<Integer, Object>();
+
+    private int lookups;
+
+    private int hits;
+
+    /**
+     * Adds an object to the index.
+     *
+     * @param obj the object
+     */
+    @SuppressWarnings("unchecked")
+    void add(T obj) {
+        Integer key = obj.contentHashCode();
+        Object bucket = buckets.get(key);
+        if (bucket == null) {
+            buckets.put(key, obj);
+        } else if (bucket instanceof PDFObject) {
+            List<T> list = new ArrayList<T>(2);
+            list.add((T) bucket);
+            list.add(obj);
+            buckets.put(key, list);
+        } else {
+            ((List<T>) bucket).add(obj);
+        }
+    }
+
+    /**
+     * Looks for an object with the same content as the given one. If there are several, the
+     * one that was added first is returned.
+     *
+     * @param compare reference object
+     * @return the object if one was found, null otherwise
+     */
+    @SuppressWarnings("unchecked")
+    T find(PDFObject compare) {
+        lookups++;
+        Object bucket = buckets.get(compare.contentHashCode());
+        T found = null;
+        if (bucket instanceof PDFObject) {
+            if (compare.contentEquals((T) bucket)) {
+                found = (T) bucket;
+            }
+        } else if (bucket != null) {
+            for (T obj : (List<T>) bucket) {
+                if (compare.contentEquals(obj)) {
+                    found = obj;
+                    break;
+                }
+            }
+        }
+        if (found != null) {
+            hits++;
+        }
+        return found;
+    }
+
+    /** @return the number of lookups performed */
+    int getLookupCount() {
+        return lookups;
+    }
+
+    /** @return the number of lookups that found an object with the same content */
+    int getHitCount() {
+        return hits;
+    }
+}
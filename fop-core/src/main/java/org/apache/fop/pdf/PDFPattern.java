@@ -272,7 +272,8 @@ public class PDFPattern extends PDFPathPaint {
                 pdfStream.setObjectNumber(getObjectNumber());
                 pdfStream.getFilterList().addDefaultFilters(
                         getDocument().getFilterMap(),
-                        PDFFilterList.CONTENT_FILTER);
+                        PDFFilterList.CONTENT_FILTER,
+                        getDocument().getFlateSettings(PDFFilterList.CONTENT_FILTER));
                 getDocument().applyEncryption(pdfStream);
                 encodedStream = pdfStream.encodeStream();
                 p.append(pdfStream.getFilterList().buildFilterDictEntries());
@@ -420,4 +421,14 @@ public class PDFPattern extends PDFPathPaint {
         return true;
     }
 
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        int hash = patternType;
+        hash = 31 * hash + paintType;
+        hash = 31 * hash + tilingType;
+        hash = 31 * hash + (bBox != null ? bBox.hashCode() : 0);
+        hash = 31 * hash + (matrix != null ? matrix.hashCode() : 0);
+        return 31 * hash + (shading != null ? shading.hashCode() : 0);
+    }
+
 }
@@ -175,4 +175,11 @@ public class PDFShading extends PDFObject {
         return true;
     }
 
+    /** {@inheritDoc} */
+    protected int contentHashCode() {
+        int hash = shading.getShadingType();
+        hash = 31 * hash + (shading.getCoords() != null ? shading.getCoords().hashCode() : 0);
+        return 31 * hash + (shading.getFunction() != null ? shading.getFunction().hashCode() : 0);
+    }
+
 }
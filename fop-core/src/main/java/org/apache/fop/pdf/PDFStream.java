@@ -183,6 +183,11 @@ public class PDFStream extends AbstractPDFStream {
         data.outputContents(out);
     }
 
+    /** {@inheritDoc} */
+    protected boolean supportsConcurrentEncoding() {
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -64,4 +64,16 @@ public abstract class PDFXObject extends AbstractPDFStream {
         return 0;
     }
 
+    /**
+     * {@inheritDoc}
+     * XObjects are only referenced by name from content streams and through the document's
+     * resources, which are written at the end, so they can be deduplicated if enabled. This
+     * isn't done with encryption, which makes every stream different, or linearization.
+     */
+    protected boolean isDeduplicable() {
+        PDFDocument doc = getDocument();
+        return doc.isXObjectDeduplicationEnabled() && !doc.isEncryptionActive()
+                && !doc.isLinearizationEnabled();
+    }
+
 }
@@ -77,7 +77,8 @@ public class CrossReferenceStream extends CrossReferenceObject {
             protected void setupFilterList() {
                 PDFFilterList filterList = getFilterList();
                 assert !filterList.isInitialized();
-                filterList.addDefaultFilters(document.getFilterMap(), getDefaultFilterName());
+                filterList.addDefaultFilters(document.getFilterMap(), getDefaultFilterName(),
+                        document.getFlateSettings(PDFFilterList.OBJECT_STREAM_FILTER));
             }
 
         };
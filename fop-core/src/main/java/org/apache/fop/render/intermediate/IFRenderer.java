@@ -54,6 +54,7 @@ import org.apache.fop.accessibility.StructureTreeElement;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.apps.RenderMonitor;
 import org.apache.fop.area.Area;
 import org.apache.fop.area.AreaTreeObject;
 import org.apache.fop.area.Block;
@@ -566,6 +567,10 @@ public class IFRenderer extends AbstractPathOrientedRenderer {
         if (log.isTraceEnabled()) {
             log.trace("renderPage() " + page);
         }
+        RenderMonitor monitor = getUserAgent().getRenderMonitor();
+        if (monitor != null) {
+            monitor.check();
+        }
         try {
             pageIndices.put(page.getKey(), page.getPageIndex());
             Rectangle viewArea = page.getViewArea();
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.fop.fonts.FontType;
+import org.apache.fop.fonts.KerningTable;
 import org.apache.fop.fonts.Typeface;
 
 
@@ -196,6 +197,13 @@ public class SystemFontMetricsMapper extends Typeface implements FontMetricsMapp
         return java.util.Collections.EMPTY_MAP;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public KerningTable getKerningTable() {
+        return KerningTable.EMPTY;
+    }
+
     /**
      * {@inheritDoc}
      */
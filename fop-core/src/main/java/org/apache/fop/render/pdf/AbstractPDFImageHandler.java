@@ -42,7 +42,7 @@ abstract class AbstractPDFImageHandler implements ImageHandler {
         assert context instanceof PDFRenderingContext;
         PDFRenderingContext pdfContext = (PDFRenderingContext)context;
         PDFContentGenerator generator = pdfContext.getGenerator();
-        PDFImage pdfimage = createPDFImage(image, image.getInfo().getOriginalURI());
+        PDFImage pdfimage = createPDFImage(context, image, image.getInfo().getOriginalURI());
         PDFXObject xobj = generator.getDocument().addImage(
                 generator.getResourceContext(), pdfimage);
 
@@ -67,4 +67,18 @@ abstract class AbstractPDFImageHandler implements ImageHandler {
      * the given image
      */
     abstract PDFImage createPDFImage(Image image, String xobjectKey);
+
+    /**
+     * Creates a PDF image object out of the given image, with access to the rendering context.
+     * By default, this calls {@link #createPDFImage(Image, String)}.
+     *
+     * @param context the rendering context
+     * @param image an image
+     * @param xobjectKey a key for retrieval of the image from the document's XObject collection
+     * @return a suitable {@link PDFImage} implementation that can handle the flavour of
+     * the given image
+     */
+    PDFImage createPDFImage(RenderingContext context, Image image, String xobjectKey) {
+        return createPDFImage(image, xobjectKey);
+    }
 }
@@ -40,6 +40,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.xmlgraphics.image.loader.impl.ImageRawPNG;
 import org.apache.xmlgraphics.image.loader.impl.ImageRawStream;
 
+import org.apache.fop.image.ImageDataCache;
 import org.apache.fop.pdf.BitmapImage;
 import org.apache.fop.pdf.FlateFilter;
 import org.apache.fop.pdf.PDFColor;
@@ -66,6 +67,8 @@ public class ImageRawPNGAdapter extends AbstractImageAdapter {
     private String maskRef;
     private PDFReference softMask;
     private int numberOfInterleavedComponents;
+    private ImageDataCache imageDataCache;
+    private String contentHash;
 
     /**
      * Creates a new PDFImage from an Image instance.
@@ -116,33 +119,11 @@ public class ImageRawPNGAdapter extends AbstractImageAdapter {
             // TODO: Implement code to combine image with background color if transparency is not allowed
             // here we need to inflate the PNG pixel data, which includes alpha, separate the alpha channel
             // and then deflate it back again
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DeflaterOutputStream dos = new DeflaterOutputStream(baos, new Deflater());
-            InputStream in = ((ImageRawStream) image).createInputStream();
+            byte[] alphaData;
             try {
-                InflaterInputStream infStream = new InflaterInputStream(in, new Inflater());
-                DataInputStream dataStream = new DataInputStream(infStream);
-                // offset is the byte offset of the alpha component
-                int offset = numberOfInterleavedComponents - 1; // 1 for GA, 3 for RGBA
-                int numColumns = image.getSize().getWidthPx();
-                int bytesPerRow = numberOfInterleavedComponents * numColumns;
-                int filter;
-                // read line by line; the first byte holds the filter
-                while ((filter = dataStream.read()) != -1) {
-                    byte[] bytes = new byte[bytesPerRow];
-                    dataStream.readFully(bytes, 0, bytesPerRow);
-                    dos.write((byte) filter);
-                    for (int j = 0; j < numColumns; j++) {
-                        dos.write(bytes, offset, 1);
-                        offset += numberOfInterleavedComponents;
-                    }
-                    offset = numberOfInterleavedComponents - 1;
-                }
-                dos.close();
+                alphaData = getSeparatedChannels(true);
             } catch (IOException e) {
                 throw new RuntimeException("Error processing transparency channel:", e);
-            } finally {
-                IOUtils.closeQuietly(in);
             }
             // set up alpha channel compression
             FlateFilter transFlate;
@@ -157,7 +138,7 @@ public class ImageRawPNGAdapter extends AbstractImageAdapter {
                 throw new RuntimeException("FlateFilter configuration error", e);
             }
             BitmapImage alphaMask = new BitmapImage("Mask:" + this.getKey(), image.getSize().getWidthPx(),
-                    image.getSize().getHeightPx(), baos.toByteArray(), null);
+                    image.getSize().getHeightPx(), alphaData, null);
             alphaMask.setPDFFilter(transFlate);
             alphaMask.disallowMultipleFilters();
             alphaMask.setColorSpace(new PDFDeviceColorSpace(PDFDeviceColorSpace.DEVICE_GRAY));
@@ -208,37 +189,101 @@ public class ImageRawPNGAdapter extends AbstractImageAdapter {
 
     /** {@inheritDoc} */
     public void outputContents(OutputStream out) throws IOException {
-        InputStream in = ((ImageRawStream) image).createInputStream();
+        if (numberOfInterleavedComponents == 1 || numberOfInterleavedComponents == 3) {
+            // means we have Gray, RGB, or Palette
+            InputStream in = ((ImageRawStream) image).createInputStream();
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        } else if (imageDataCache != null) {
+            // means we have Gray + alpha or RGB + alpha
+            out.write(getSeparatedChannels(false));
+        } else {
+            separateChannels(out, false);
+        }
+    }
+
+    /**
+     * Sets the cache in which the separated color and alpha channels of the image are kept, so
+     * that they are extracted only once for images with the same content.
+     * @param imageDataCache the cache or null to always extract the channels
+     */
+    public void setImageDataCache(ImageDataCache imageDataCache) {
+        this.imageDataCache = imageDataCache;
+    }
+
+    /**
+     * Returns the deflated color or alpha channels of an image with an alpha channel, from the
+     * image data cache if possible.
+     * @param alpha true for the alpha channel, false for the color channels
+     * @return the deflated channel data
+     * @throws IOException if the image data cannot be read
+     */
+    private byte[] getSeparatedChannels(boolean alpha) throws IOException {
+        String flavor = null;
+        if (imageDataCache != null) {
+            flavor = (alpha ? "pdf-png-alpha-" : "pdf-png-color-") + numberOfInterleavedComponents
+                    + "-" + getBitsPerComponent() + "-" + image.getSize().getWidthPx();
+            byte[] data = imageDataCache.get(getContentHash(), flavor);
+            if (data != null) {
+                return data;
+            }
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        separateChannels(baos, alpha);
+        byte[] data = baos.toByteArray();
+        if (imageDataCache != null) {
+            imageDataCache.put(getContentHash(), flavor, data);
+        }
+        return data;
+    }
 
+    private String getContentHash() throws IOException {
+        if (contentHash == null) {
+            InputStream in = ((ImageRawStream) image).createInputStream();
+            try {
+                contentHash = ImageDataCache.computeHash(in);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        return contentHash;
+    }
+
+    /**
+     * Inflates the PNG pixel data, which includes alpha, separates the color or alpha channels
+     * and deflates them back again.
+     * @param out the stream to write the deflated channels to
+     * @param alpha true for the alpha channel, false for the color channels
+     * @throws IOException if the image data cannot be read or the channels cannot be written
+     */
+    private void separateChannels(OutputStream out, boolean alpha) throws IOException {
+        // firstOffset is the byte offset of the first component to keep: 1 for GA, 3 for RGBA
+        // when keeping alpha, 0 otherwise
+        int firstOffset = alpha ? numberOfInterleavedComponents - 1 : 0;
+        int numBytes = alpha ? 1 : numberOfInterleavedComponents - 1;
+        int numColumns = image.getSize().getWidthPx();
+        int bytesPerRow = numberOfInterleavedComponents * numColumns;
+        InputStream in = ((ImageRawStream) image).createInputStream();
         try {
-            if (numberOfInterleavedComponents == 1 || numberOfInterleavedComponents == 3) {
-                // means we have Gray, RGB, or Palette
-                IOUtils.copy(in, out);
-            } else {
-                // means we have Gray + alpha or RGB + alpha
-                // TODO: since we have alpha here do this when the alpha channel is extracted
-                int numBytes = numberOfInterleavedComponents - 1; // 1 for Gray, 3 for RGB
-                int numColumns = image.getSize().getWidthPx();
-                InflaterInputStream infStream = new InflaterInputStream(in, new Inflater());
-                DataInputStream dataStream = new DataInputStream(infStream);
-                int offset = 0;
-                int bytesPerRow = numberOfInterleavedComponents * numColumns;
-                int filter;
-                // here we need to inflate the PNG pixel data, which includes alpha, separate the alpha
-                // channel and then deflate the RGB channels back again
-                DeflaterOutputStream dos = new DeflaterOutputStream(out, new Deflater());
-                while ((filter = dataStream.read()) != -1) {
-                    byte[] bytes = new byte[bytesPerRow];
-                    dataStream.readFully(bytes, 0, bytesPerRow);
-                    dos.write((byte) filter);
-                    for (int j = 0; j < numColumns; j++) {
-                        dos.write(bytes, offset, numBytes);
-                        offset += numberOfInterleavedComponents;
-                    }
-                    offset = 0;
+            InflaterInputStream infStream = new InflaterInputStream(in, new Inflater());
+            DataInputStream dataStream = new DataInputStream(infStream);
+            DeflaterOutputStream dos = new DeflaterOutputStream(out, new Deflater());
+            byte[] bytes = new byte[bytesPerRow];
+            int filter;
+            // read line by line; the first byte holds the filter
+            while ((filter = dataStream.read()) != -1) {
+                dataStream.readFully(bytes, 0, bytesPerRow);
+                dos.write((byte) filter);
+                int offset = firstOffset;
+                for (int j = 0; j < numColumns; j++) {
+                    dos.write(bytes, offset, numBytes);
+                    offset += numberOfInterleavedComponents;
                 }
-                dos.close();
             }
+            dos.close();
         } finally {
             IOUtils.closeQuietly(in);
         }
@@ -41,6 +41,13 @@ public class PDFImageHandlerRawPNG extends AbstractPDFImageHandler {
         return new ImageRawPNGAdapter((ImageRawPNG) image, xobjectKey);
     }
 
+    @Override
+    PDFImage createPDFImage(RenderingContext context, Image image, String xobjectKey) {
+        ImageRawPNGAdapter adapter = new ImageRawPNGAdapter((ImageRawPNG) image, xobjectKey);
+        adapter.setImageDataCache(context.getUserAgent().getImageDataCache());
+        return adapter;
+    }
+
     /** {@inheritDoc} */
     public int getPriority() {
         return 100;
@@ -36,6 +36,7 @@ import org.apache.fop.configuration.ConfigurationException;
 import org.apache.fop.fonts.DefaultFontConfig;
 import org.apache.fop.fonts.DefaultFontConfig.DefaultFontConfigParser;
 import org.apache.fop.fonts.FontEventAdapter;
+import org.apache.fop.pdf.FlateSettings;
 import org.apache.fop.pdf.PDFEncryptionParams;
 import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.render.RendererConfig;
@@ -55,6 +56,9 @@ import static org.apache.fop.render.pdf.PDFEncryptionOption.NO_PRINT;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.NO_PRINTHQ;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.OWNER_PASSWORD;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.USER_PASSWORD;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
+import static org.apache.fop.render.pdf.PDFRendererOption.DEDUPLICATE_XOBJECTS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
@@ -142,6 +146,7 @@ public final class PDFRendererConfig implements RendererConfig {
         private void configure(Configuration cfg, FOUserAgent userAgent, boolean strict) throws FOPException {
             try {
                 buildFilterMapFromConfiguration(cfg);
+                buildFlateSettingsFromConfiguration(cfg);
                 parseAndPut(PDF_A_MODE, cfg);
                 parseAndPut(PDF_UA_MODE, cfg);
                 parseAndPut(PDF_X_MODE, cfg);
@@ -152,6 +157,8 @@ public final class PDFRendererConfig implements RendererConfig {
                 parseAndPut(MERGE_FONTS, cfg);
                 parseAndPut(LINEARIZATION, cfg);
                 parseAndPut(FORM_XOBJECT, cfg);
+                parseAndPut(COMPRESSION_THREADS, cfg);
+                parseAndPut(DEDUPLICATE_XOBJECTS, cfg);
                 parseAndPut(VERSION, cfg);
             } catch (ConfigurationException e) {
                 LogUtil.handleException(LOG, e, strict);
@@ -215,6 +222,42 @@ public final class PDFRendererConfig implements RendererConfig {
             put(FILTER_LIST, filterMap);
         }
 
+        private void buildFlateSettingsFromConfiguration(Configuration cfg)
+                throws ConfigurationException {
+            Configuration[] compressionCfgs = cfg.getChildren(COMPRESSION.getName());
+            if (compressionCfgs.length == 0) {
+                return;
+            }
+            Map<String, FlateSettings> settingsMap = new HashMap<String, FlateSettings>();
+            for (Configuration compressionCfg : compressionCfgs) {
+                String type = compressionCfg.getAttribute("type", PDFFilterList.DEFAULT_FILTER);
+                FlateSettings settings;
+                try {
+                    String preset = compressionCfg.getAttribute("preset", null);
+                    if (preset != null) {
+                        settings = FlateSettings.getPreset(preset);
+                    } else {
+                        settings = new FlateSettings(
+                                compressionCfg.getAttributeAsInteger("level",
+                                        FlateSettings.DEFAULT.getLevel()),
+                                FlateSettings.parseStrategy(
+                                        compressionCfg.getAttribute("strategy", "default")));
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigurationException("Invalid compression settings for type '"
+                            + type + "': " + e.getMessage());
+                }
+                if (settingsMap.put(type, settings) != null) {
+                    throw new ConfigurationException("Compression settings of type '"
+                            + type + "' have already been defined");
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compression settings for type " + type + ": " + settings);
+                }
+            }
+            put(COMPRESSION, settingsMap);
+        }
+
         private String parseConfig(Configuration cfg, RendererConfigOption option) {
             Configuration child = cfg.getChild(option.getName());
             String value = child.getValue(null);
@@ -21,9 +21,13 @@ package org.apache.fop.render.pdf;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.pdf.FlateSettings;
 import org.apache.fop.pdf.PDFAMode;
+import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.pdf.PDFUAMode;
 import org.apache.fop.pdf.PDFVTMode;
 import org.apache.fop.pdf.PDFXMode;
@@ -99,6 +103,38 @@ public enum PDFRendererOption implements RendererConfigOption {
             return Boolean.valueOf(value);
         }
     },
+    /**
+     * Rendering Options key for the number of threads used to compress streams while the
+     * document is written, default: 1 (streams are compressed while being written)
+     */
+    COMPRESSION_THREADS("compression-threads", 1) {
+        @Override
+        Integer deserialize(String value) {
+            return Integer.valueOf(value);
+        }
+    },
+    /**
+     * Rendering Options key for writing image and form XObjects with the same content only
+     * once, default: false
+     */
+    DEDUPLICATE_XOBJECTS("deduplicate-xobjects", false) {
+        @Override
+        Boolean deserialize(String value) {
+            return Boolean.valueOf(value);
+        }
+    },
+    /**
+     * Rendering Options key for the flate compression settings per stream type, datatype:
+     * Map&lt;String, FlateSettings&gt;. A String value names a preset ("default", "fast" or
+     * "best") used for all streams.
+     */
+    COMPRESSION("compression", null) {
+        @Override
+        Map<String, FlateSettings> deserialize(String value) {
+            return Collections.singletonMap(PDFFilterList.DEFAULT_FILTER,
+                    FlateSettings.getPreset(value));
+        }
+    },
     /** Rendering Options key for the ICC profile for the output intent. */
     OUTPUT_PROFILE("output-profile") {
         @Override
@@ -24,6 +24,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.fop.pdf.FlateSettings;
 import org.apache.fop.pdf.PDFAMode;
 import org.apache.fop.pdf.PDFEncryptionParams;
 import org.apache.fop.pdf.PDFUAMode;
@@ -31,6 +32,9 @@ import org.apache.fop.pdf.PDFVTMode;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.pdf.Version;
 
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
+import static org.apache.fop.render.pdf.PDFRendererOption.DEDUPLICATE_XOBJECTS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
@@ -147,4 +151,16 @@ public final class PDFRendererOptionsConfig {
     public Boolean getFormXObjectEnabled() {
         return (Boolean)properties.get(FORM_XOBJECT);
     }
+
+    public Integer getCompressionThreads() {
+        return (Integer) properties.get(COMPRESSION_THREADS);
+    }
+
+    public Boolean getXObjectDeduplicationEnabled() {
+        return (Boolean) properties.get(DEDUPLICATE_XOBJECTS);
+    }
+
+    public Map<String, FlateSettings> getFlateSettings() {
+        return (Map<String, FlateSettings>) properties.get(COMPRESSION);
+    }
 }
@@ -595,6 +595,7 @@ class PDFRenderingUtil {
         updateInfo();
         updatePDFProfiles();
         pdfDoc.setFilterMap(rendererConfig.getFilterMap());
+        pdfDoc.setFlateSettings(rendererConfig.getFlateSettings());
         pdfDoc.outputHeader(out);
 
         //Setup encryption if necessary
@@ -621,6 +622,8 @@ class PDFRenderingUtil {
         pdfDoc.setMergeFontsEnabled(rendererConfig.getMergeFontsEnabled());
         pdfDoc.setLinearizationEnabled(rendererConfig.getLinearizationEnabled());
         pdfDoc.setFormXObjectEnabled(rendererConfig.getFormXObjectEnabled());
+        pdfDoc.setCompressionThreads(rendererConfig.getCompressionThreads());
+        pdfDoc.setXObjectDeduplicationEnabled(rendererConfig.getXObjectDeduplicationEnabled());
 
         return this.pdfDoc;
     }
@@ -19,12 +19,21 @@
 
 package org.apache.fop.servlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -32,6 +41,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -39,7 +49,8 @@ import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamSource;
 
-import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
 import org.apache.xmlgraphics.io.Resource;
 import org.apache.xmlgraphics.io.ResourceResolver;
@@ -50,6 +61,7 @@ import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.FopFactoryBuilder;
 import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.util.LRUCache;
 
 /**
  * Example servlet to generate a PDF from a servlet.
@@ -70,7 +82,21 @@ import org.apache.fop.apps.MimeConstants;
  * <br>
  * For this to work with Internet Explorer, you might need to append "ext=.pdf"
  * to the URL.
- * (todo) Ev. add caching mechanism for Templates objects
+ * <br>
+ * Compiled stylesheets are cached and recompiled when the stylesheet changes. The PDF is
+ * streamed to the client as it is produced. The servlet's init parameters are:
+ * <ul>
+ *   <li>templatesCacheSize: the maximum number of compiled stylesheets kept in the cache;
+ *   the least recently used ones are dropped first, 0 to not cache them (default: 32)</li>
+ *   <li>maxConcurrentRenders: the maximum number of documents rendered at the same time,
+ *   0 for no maximum (default: the number of processors)</li>
+ *   <li>renderQueueTimeout: how long, in milliseconds, a request waits for one of the other
+ *   renders to finish before it is refused with status 503 (default: 30000)</li>
+ *   <li>contentLength: "true" to buffer the PDF so that a Content-Length header can be sent
+ *   (default: false)</li>
+ *   <li>bufferThreshold: the size in bytes above which the buffered PDF is written to a
+ *   temporary file in the web application's temporary directory (default: 1048576)</li>
+ * </ul>
  */
 public class FopServlet extends HttpServlet {
 
@@ -83,6 +109,24 @@ public class FopServlet extends HttpServlet {
     /** Name of the parameter used for the XSLT file */
     protected static final String XSLT_REQUEST_PARAM = "xslt";
 
+    /** Name of the init parameter for the maximum number of concurrent renders */
+    protected static final String MAX_CONCURRENT_RENDERS_PARAM = "maxConcurrentRenders";
+    /** Name of the init parameter for the time a request waits for a render to finish */
+    protected static final String RENDER_QUEUE_TIMEOUT_PARAM = "renderQueueTimeout";
+    /** Name of the init parameter that enables the Content-Length header */
+    protected static final String CONTENT_LENGTH_PARAM = "contentLength";
+    /** Name of the init parameter for the size above which buffered output goes to disk */
+    protected static final String BUFFER_THRESHOLD_PARAM = "bufferThreshold";
+    /** Name of the init parameter for the maximum number of cached compiled stylesheets */
+    protected static final String TEMPLATES_CACHE_SIZE_PARAM = "templatesCacheSize";
+
+    private static final int DEFAULT_RENDER_QUEUE_TIMEOUT = 30000;
+    private static final int DEFAULT_BUFFER_THRESHOLD = 1024 * 1024;
+    private static final int DEFAULT_TEMPLATES_CACHE_SIZE = 32;
+
+    /** The servlet context attribute holding the web application's temporary directory */
+    private static final String TEMP_DIR_ATTRIBUTE = "javax.servlet.context.tempdir";
+
     /** The TransformerFactory used to create Transformer instances */
     protected TransformerFactory transFactory;
     /** The FopFactory used to create Fop instances */
@@ -90,6 +134,16 @@ public class FopServlet extends HttpServlet {
     /** URIResolver for use by this servlet */
     protected transient URIResolver uriResolver;
 
+    // compiled stylesheets by normalized system id, null if they aren't cached
+    private transient LRUCache<String, CachedTemplates> templatesCache;
+    // limits the number of concurrent renders, null if there is no limit
+    private transient Semaphore renderPermits;
+    private long renderQueueTimeout;
+    private boolean contentLength;
+    private int bufferThreshold;
+    // where buffered output goes to disk
+    private File tempDir;
+
     /**
      * {@inheritDoc}
      */
@@ -99,6 +153,25 @@ public class FopServlet extends HttpServlet {
         transFactory.setAttribute("http://javax.xml.XMLConstants/property/accessExternalDTD", "");
         transFactory.setAttribute("http://javax.xml.XMLConstants/property/accessExternalStylesheet", "");
         this.transFactory.setURIResolver(this.uriResolver);
+        int templatesCacheSize = getIntInitParameter(TEMPLATES_CACHE_SIZE_PARAM,
+                DEFAULT_TEMPLATES_CACHE_SIZE);
+        if (templatesCacheSize > 0) {
+            this.templatesCache = new LRUCache<String, CachedTemplates>(templatesCacheSize);
+        }
+        int maxConcurrentRenders = getIntInitParameter(MAX_CONCURRENT_RENDERS_PARAM,
+                Runtime.getRuntime().availableProcessors());
+        if (maxConcurrentRenders > 0) {
+            this.renderPermits = new Semaphore(maxConcurrentRenders, true);
+        }
+        this.renderQueueTimeout = getIntInitParameter(RENDER_QUEUE_TIMEOUT_PARAM,
+                DEFAULT_RENDER_QUEUE_TIMEOUT);
+        this.contentLength = "true".equalsIgnoreCase(getInitParameter(CONTENT_LENGTH_PARAM));
+        this.bufferThreshold = getIntInitParameter(BUFFER_THRESHOLD_PARAM,
+                DEFAULT_BUFFER_THRESHOLD);
+        this.tempDir = (File) getServletContext().getAttribute(TEMP_DIR_ATTRIBUTE);
+        if (this.tempDir == null) {
+            this.tempDir = new File(System.getProperty("java.io.tmpdir"));
+        }
         //Configure FopFactory as desired
         // TODO: Double check this behaves properly!!
         ResourceResolver resolver = new ResourceResolver() {
@@ -116,6 +189,18 @@ public class FopServlet extends HttpServlet {
         fopFactory = builder.build();
     }
 
+    private int getIntInitParameter(String name, int defaultValue) throws ServletException {
+        String value = getInitParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException nfe) {
+            throw new ServletException("Invalid value for init parameter " + name + ": " + value);
+        }
+    }
+
     /**
      * This method is called right after the FopFactory is instantiated and can be overridden
      * by subclasses to perform additional configuration.
@@ -136,22 +221,49 @@ public class FopServlet extends HttpServlet {
             String xsltParam = request.getParameter(XSLT_REQUEST_PARAM);
 
             //Analyze parameters and decide with method to use
-            if (foParam != null) {
-                renderFO(foParam, response);
-            } else if ((xmlParam != null) && (xsltParam != null)) {
-                renderXML(xmlParam, xsltParam, response);
-            } else {
+            if (foParam == null && (xmlParam == null || xsltParam == null)) {
                 response.setContentType("text/html");
                 PrintWriter out = response.getWriter();
                 out.println("<html><head><title>Error</title></head>\n"
                           + "<body><h1>FopServlet Error</h1><h3>No 'fo' "
                           + "request param given.</body></html>");
+            } else if (!acquireRenderPermit()) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Too many documents are being rendered, please try again later.");
+            } else {
+                try {
+                    if (foParam != null) {
+                        renderFO(foParam, response);
+                    } else {
+                        renderXML(xmlParam, xsltParam, response);
+                    }
+                } finally {
+                    if (renderPermits != null) {
+                        renderPermits.release();
+                    }
+                }
             }
         } catch (Exception ex) {
             throw new ServletException(ex);
         }
     }
 
+    /**
+     * Waits until the number of concurrent renders allows another one.
+     * @return true if the request may be rendered, false if it waited for too long
+     */
+    private boolean acquireRenderPermit() {
+        if (renderPermits == null) {
+            return true;
+        }
+        try {
+            return renderPermits.tryAcquire(renderQueueTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     /**
      * Converts a String parameter to a JAXP Source object.
      * @param param a String parameter
@@ -170,17 +282,103 @@ public class FopServlet extends HttpServlet {
         return src;
     }
 
-    private void sendPDF(byte[] content, HttpServletResponse response) throws IOException {
+    /**
+     * Returns the compiled stylesheet for the given parameter. Compiled stylesheets are
+     * cached by the system id of the stylesheet, so that different paths to the same file
+     * share a compiled stylesheet, and compiled again when the modification time of the
+     * stylesheet changes.
+     * @param xslt the XSLT file
+     * @return the compiled stylesheet
+     * @throws TransformerException if the stylesheet cannot be compiled
+     */
+    protected Templates getTemplates(String xslt) throws TransformerException {
+        Source xsltSrc = convertString2Source(xslt);
+        String key = getTemplatesKey(xsltSrc, xslt);
+        long lastModified = getLastModified(xsltSrc);
+        CachedTemplates cached = templatesCache != null ? templatesCache.get(key) : null;
+        if (cached != null && cached.lastModified == lastModified) {
+            if (xsltSrc instanceof StreamSource) {
+                IOUtils.closeQuietly(((StreamSource) xsltSrc).getInputStream());
+                IOUtils.closeQuietly(((StreamSource) xsltSrc).getReader());
+            }
+            return cached.templates;
+        }
+        Templates templates = this.transFactory.newTemplates(xsltSrc);
+        if (templatesCache != null) {
+            templatesCache.put(key, new CachedTemplates(templates, lastModified));
+        }
+        return templates;
+    }
+
+    /**
+     * Returns the key of a stylesheet in the cache of compiled stylesheets.
+     * @param src the stylesheet
+     * @param xslt the stylesheet parameter, used if the stylesheet has no system id
+     * @return the normalized system id of the stylesheet
+     */
+    private String getTemplatesKey(Source src, String xslt) {
+        String systemId = src.getSystemId();
+        if (systemId == null) {
+            return xslt;
+        }
+        try {
+            return new URI(systemId).normalize().toString();
+        } catch (URISyntaxException use) {
+            return systemId;
+        }
+    }
+
+    /**
+     * Returns the modification time of a stylesheet.
+     * @param src the stylesheet
+     * @return the modification time, or 0 if it is unknown
+     */
+    private long getLastModified(Source src) {
+        String systemId = src.getSystemId();
+        if (systemId == null) {
+            return 0;
+        }
+        try {
+            URL url = new URL(systemId);
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI()).lastModified();
+            }
+            URLConnection connection = url.openConnection();
+            try {
+                return connection.getLastModified();
+            } finally {
+                if (connection instanceof HttpURLConnection) {
+                    ((HttpURLConnection) connection).disconnect();
+                }
+            }
+        } catch (IOException ioe) {
+            return 0;
+        } catch (URISyntaxException use) {
+            return 0;
+        }
+    }
+
+    private void sendPDF(DeferredFileOutputStream content, HttpServletResponse response)
+                throws IOException {
         //Send the result back to the client
-        response.setContentType("application/pdf");
-        response.setContentLength(content.length);
-        response.getOutputStream().write(content);
-        response.getOutputStream().flush();
+        response.setHeader("Content-Length", Long.toString(content.getByteCount()));
+        OutputStream out = response.getOutputStream();
+        if (content.isInMemory()) {
+            out.write(content.getData());
+        } else {
+            InputStream in = new FileInputStream(content.getFile());
+            try {
+                IOUtils.copy(in, out);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        out.flush();
     }
 
     /**
-     * Renders an XSL-FO file into a PDF file. The PDF is written to a byte
-     * array that is returned as the method's result.
+     * Renders an XSL-FO file into a PDF file. The PDF is written to the
+     * response as described for {@link #render(Source, Transformer, HttpServletResponse)}.
      * @param fo the XSL-FO file
      * @param response HTTP response object
      * @throws FOPException If an error occurs during the rendering of the
@@ -205,8 +403,8 @@ public class FopServlet extends HttpServlet {
 
     /**
      * Renders an XML file into a PDF file by applying a stylesheet
-     * that converts the XML to XSL-FO. The PDF is written to a byte array
-     * that is returned as the method's result.
+     * that converts the XML to XSL-FO. The PDF is written to the response
+     * as described for {@link #render(Source, Transformer, HttpServletResponse)}.
      * @param xml the XML file
      * @param xslt the XSLT file
      * @param response HTTP response object
@@ -221,10 +419,9 @@ public class FopServlet extends HttpServlet {
 
         //Setup sources
         Source xmlSrc = convertString2Source(xml);
-        Source xsltSrc = convertString2Source(xslt);
 
         //Setup the XSL transformation
-        Transformer transformer = this.transFactory.newTransformer(xsltSrc);
+        Transformer transformer = getTemplates(xslt).newTransformer();
         transformer.setURIResolver(this.uriResolver);
 
         //Start transformation and rendering process
@@ -235,8 +432,10 @@ public class FopServlet extends HttpServlet {
      * Renders an input file (XML or XSL-FO) into a PDF file. It uses the JAXP
      * transformer given to optionally transform the input document to XSL-FO.
      * The transformer may be an identity transformer in which case the input
-     * must already be XSL-FO. The PDF is written to a byte array that is
-     * returned as the method's result.
+     * must already be XSL-FO. The PDF is written to the response while it is
+     * produced, so an error may occur after part of it has been sent. If the
+     * contentLength init parameter is set, the PDF is buffered instead, in
+     * memory or in a temporary file, to send its length first.
      * @param src Input XML or XSL-FO
      * @param transformer Transformer to use for optional transformation
      * @param response HTTP response object
@@ -250,10 +449,34 @@ public class FopServlet extends HttpServlet {
                 throws FOPException, TransformerException, IOException {
 
         FOUserAgent foUserAgent = getFOUserAgent();
+        response.setContentType(MimeConstants.MIME_PDF);
+
+        if (contentLength) {
+            //Setup output
+            //The file is only created once the PDF exceeds the threshold
+            File spillFile = new File(tempDir, "fop-servlet-" + UUID.randomUUID() + ".pdf");
+            DeferredFileOutputStream out = new DeferredFileOutputStream(bufferThreshold, spillFile);
+            try {
+                renderTo(src, transformer, foUserAgent, out);
+                out.close();
+
+                //Return the result
+                sendPDF(out, response);
+            } finally {
+                IOUtils.closeQuietly(out);
+                if (!out.isInMemory()) {
+                    spillFile.delete();
+                }
+            }
+        } else {
+            OutputStream out = new BufferedOutputStream(response.getOutputStream());
+            renderTo(src, transformer, foUserAgent, out);
+            out.flush();
+        }
+    }
 
-        //Setup output
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
+    private void renderTo(Source src, Transformer transformer, FOUserAgent foUserAgent,
+                OutputStream out) throws FOPException, TransformerException {
         //Setup FOP
         Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, foUserAgent, out);
 
@@ -262,9 +485,6 @@ public class FopServlet extends HttpServlet {
 
         //Start the transformation and rendering process
         transformer.transform(src, res);
-
-        //Return the result
-        sendPDF(out.toByteArray(), response);
     }
 
     /** @return a new FOUserAgent for FOP */
@@ -274,4 +494,17 @@ public class FopServlet extends HttpServlet {
         return userAgent;
     }
 
+    /** A compiled stylesheet and the modification time of its source */
+    private static final class CachedTemplates {
+
+        private final Templates templates;
+
+        private final long lastModified;
+
+        CachedTemplates(Templates templates, long lastModified) {
+            this.templates = templates;
+            this.lastModified = lastModified;
+        }
+    }
+
 }
@@ -60,6 +60,7 @@ public class PDFDocumentGraphics2DConfigurator {
             //Filter map
             PDFRendererConfig pdfConfig = new PDFRendererConfigParser().build(null, cfg);
             pdfDoc.setFilterMap(pdfConfig.getConfigOptions().getFilterMap());
+            pdfDoc.setFlateSettings(pdfConfig.getConfigOptions().getFlateSettings());
         } catch (FOPException e) {
             throw new RuntimeException(e);
         }
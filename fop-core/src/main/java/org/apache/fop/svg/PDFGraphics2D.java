@@ -73,6 +73,7 @@ import org.apache.xmlgraphics.java2d.GraphicsConfigurationWithTransparency;
 import org.apache.fop.fonts.Font;
 import org.apache.fop.fonts.FontInfo;
 import org.apache.fop.fonts.FontSetup;
+import org.apache.fop.fonts.KerningTable;
 import org.apache.fop.pdf.BitmapImage;
 import org.apache.fop.pdf.PDFAnnotList;
 import org.apache.fop.pdf.PDFColor;
@@ -1272,8 +1273,8 @@ public class PDFGraphics2D extends AbstractGraphics2D implements NativeImageHand
         applyPaint(getPaint(), true);
         applyAlpha(c.getAlpha(), OPAQUE);
 
-        Map<Integer, Map<Integer, Integer>> kerning = fontState.getKerning();
-        boolean kerningAvailable = (kerning != null && !kerning.isEmpty());
+        KerningTable kerning = fontState.getKerningTable();
+        boolean kerningAvailable = !kerning.isEmpty();
 
         boolean useMultiByte = isMultiByteFont(currentFontName);
 
@@ -1408,17 +1409,12 @@ public class PDFGraphics2D extends AbstractGraphics2D implements NativeImageHand
         return f.isMultiByte();
     }
 
-    private void addKerning(StringWriter buf, Integer ch1, Integer ch2,
-                            Map<Integer, Map<Integer, Integer>> kerning, String startText,
+    private void addKerning(StringWriter buf, int ch1, int ch2,
+                            KerningTable kerning, String startText,
                             String endText) {
         preparePainting();
-        Map<Integer, Integer> kernPair = kerning.get(ch1);
-
-        if (kernPair != null) {
-            Integer width = kernPair.get(ch2);
-            if (width != null) {
-                currentStream.write(endText + (-width) + " " + startText);
-            }
+        if (kerning.contains(ch1, ch2)) {
+            currentStream.write(endText + (-kerning.getKerning(ch1, ch2)) + " " + startText);
         }
     }
 
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.util;
+
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Records the content of a SAX stream so that it can be sent to other
+ * {@link ContentHandler}s any number of times. The position of each event is recorded as
+ * well, so that the handlers receiving the events can report errors with the line and column
+ * numbers of the original document.
+ */
+public class SAXEventRecorder extends DefaultHandler {
+
+    private final List<RecordedEvent> events = new java.util.ArrayList<RecordedEvent>();
+
+    private Locator locator;
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) {
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.startPrefixMapping(prefix, uri);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPrefixMapping(final String prefix) {
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.endPrefixMapping(prefix);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startElement(final String uri, final String localName, final String qName,
+            Attributes attributes) {
+        final Attributes atts = new AttributesImpl(attributes);
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.startElement(uri, localName, qName, atts);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) {
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.endElement(uri, localName, qName);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        final char[] text = new char[length];
+        System.arraycopy(ch, start, text, 0, length);
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.characters(text, 0, text.length);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        final char[] text = new char[length];
+        System.arraycopy(ch, start, text, 0, length);
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.ignorableWhitespace(text, 0, text.length);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void processingInstruction(final String target, final String data) {
+        record(new RecordedEvent() {
+            void replay(ContentHandler handler) throws SAXException {
+                handler.processingInstruction(target, data);
+            }
+        });
+    }
+
+    private void record(RecordedEvent event) {
+        if (locator != null) {
+            event.line = locator.getLineNumber();
+            event.column = locator.getColumnNumber();
+        }
+        events.add(event);
+    }
+
+    /**
+     * Sends the recorded document to the given handler, from startDocument to endDocument.
+     *
+     * @param handler the handler receiving the events
+     * @throws SAXException if the handler fails
+     */
+    public void replay(ContentHandler handler) throws SAXException {
+        LocatorImpl replayLocator = new LocatorImpl();
+        if (locator != null) {
+            replayLocator.setPublicId(locator.getPublicId());
+            replayLocator.setSystemId(locator.getSystemId());
+        }
+        replayLocator.setLineNumber(-1);
+        replayLocator.setColumnNumber(-1);
+        handler.setDocumentLocator(replayLocator);
+        handler.startDocument();
+        for (RecordedEvent event : events) {
+            replayLocator.setLineNumber(event.line);
+            replayLocator.setColumnNumber(event.column);
+            event.replay(handler);
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * Returns the number of recorded events.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /** A recorded SAX event */
+    private abstract static class RecordedEvent {
+
+        private int line = -1;
+
+        private int column = -1;
+
+        abstract void replay(ContentHandler handler) throws SAXException;
+    }
+}
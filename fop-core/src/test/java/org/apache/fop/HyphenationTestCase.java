@@ -23,14 +23,20 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.commons.io.IOUtils;
 
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.ResourceResolver;
+
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.io.InternalResourceResolver;
 import org.apache.fop.apps.io.ResourceResolverFactory;
@@ -38,6 +44,8 @@ import org.apache.fop.hyphenation.Hyphenation;
 import org.apache.fop.hyphenation.HyphenationException;
 import org.apache.fop.hyphenation.HyphenationTree;
 import org.apache.fop.hyphenation.Hyphenator;
+import org.apache.fop.hyphenation.ReadOnlyHyphenationTree;
+import org.apache.fop.hyphenation.SerializeHyphPattern;
 
 public class HyphenationTestCase {
     private FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
@@ -75,6 +83,76 @@ public class HyphenationTestCase {
         f.delete();
     }
 
+    @Test
+    public void testHyphenatorMappedBinary() throws IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        f.mkdir();
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                f.toURI());
+        new SerializeHyphPattern().serializeDir(new File("test/resources/fop"), f);
+        File hyp = new File(f, "fr.hyp");
+
+        Hyphenation hyph = Hyphenator.hyphenate("fr.hyp" + Hyphenator.HYPTYPE, null, resourceResolver, null,
+                "oello", 0, 0, fopFactory.newFOUserAgent());
+        assertEquals(hyph.toString(), "oel-lo");
+
+        // the read-only tree is shared with other factories
+        ReadOnlyHyphenationTree hTree = Hyphenator.getReadOnlyHyphenationTree("fr.hyp" + Hyphenator.HYPTYPE,
+                null, resourceResolver, null, fopFactory.newFOUserAgent());
+        FopFactory otherFactory = FopFactory.newInstance(new File(".").toURI());
+        assertSame(hTree, Hyphenator.getReadOnlyHyphenationTree("fr.hyp" + Hyphenator.HYPTYPE, null,
+                resourceResolver, null, otherFactory.newFOUserAgent()));
+
+        // the deprecated accessor still returns a modifiable tree
+        HyphenationTree copy = Hyphenator.getHyphenationTree("fr.hyp" + Hyphenator.HYPTYPE, null,
+                resourceResolver, null, fopFactory.newFOUserAgent());
+        assertEquals("oel-lo", copy.hyphenate("oello", 0, 0).toString());
+
+        hyp.delete();
+        f.delete();
+    }
+
+    @Test
+    public void testHyphenatorMappedBinaryCustomResolver() throws IOException {
+        File f = File.createTempFile("hyp", "fop");
+        f.delete();
+        f.mkdir();
+        new SerializeHyphPattern().serializeDir(new File("test/resources/fop"), f);
+        File other = new File(f, "other");
+        other.mkdir();
+        FileOutputStream fos = new FileOutputStream(new File(other, "fr.xml"));
+        fos.write(("<hyphenation-info></hyphenation-info>").getBytes());
+        fos.close();
+        new SerializeHyphPattern().serializeDir(other, other);
+        final File redirected = new File(other, "fr.hyp");
+        ResourceResolver resolver = new ResourceResolver() {
+            public Resource getResource(URI uri) throws IOException {
+                return new Resource(new FileInputStream(redirected));
+            }
+
+            public OutputStream getOutputStream(URI uri) throws IOException {
+                throw new UnsupportedOperationException();
+            }
+        };
+        InternalResourceResolver resourceResolver = ResourceResolverFactory.createInternalResourceResolver(
+                f.toURI(), resolver);
+
+        // the patterns served by the resolver are used, not the file the URI points to
+        Hyphenation hyph = Hyphenator.hyphenate("fr.hyp" + Hyphenator.HYPTYPE, null, resourceResolver, null,
+                "oello", 0, 0, fopFactory.newFOUserAgent());
+        assertNull(hyph);
+
+        for (File file : other.listFiles()) {
+            file.delete();
+        }
+        other.delete();
+        for (File file : f.listFiles()) {
+            file.delete();
+        }
+        f.delete();
+    }
+
     @Test
     public void testHyphenatorCache() throws IOException {
         File f = File.createTempFile("hyp", "fop");
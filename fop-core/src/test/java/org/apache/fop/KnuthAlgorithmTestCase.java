@@ -19,12 +19,14 @@
 
 package org.apache.fop;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.fop.layoutmgr.BlockKnuthSequence;
 import org.apache.fop.layoutmgr.BreakingAlgorithm;
@@ -81,6 +83,32 @@ public class KnuthAlgorithmTestCase {
         assertEquals(5000, parts[1].difference);
     }
 
+    /**
+     * Tests that recycling the nodes doesn't change the breaks, and that the nodes of an
+     * earlier run are reused.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testNodePool() throws Exception {
+        List<BreakingAlgorithm.KnuthNode> nodePool = new ArrayList<BreakingAlgorithm.KnuthNode>();
+        MyBreakingAlgorithm algo = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        algo.setConstantLineWidth(30000);
+        algo.setNodePool(nodePool);
+        algo.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        int poolSize = nodePool.size();
+        assertTrue(poolSize > 0);
+
+        algo = new MyBreakingAlgorithm(0, 0, true, true, 0);
+        algo.setConstantLineWidth(30000);
+        algo.setNodePool(nodePool);
+        algo.findBreakingPoints(getKnuthSequence1(), 1, true, BreakingAlgorithm.ALL_BREAKS);
+        assertEquals(poolSize, nodePool.size());
+        Part[] parts = algo.getParts();
+        assertEquals("Sequence must produce 3 parts", 3, parts.length);
+        assertEquals(5000, parts[0].difference);
+        assertEquals(5000, parts[1].difference);
+    }
+
     private class Part {
         private int difference;
         private double ratio;
@@ -42,6 +42,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import org.apache.fop.accessibility.Accessibility;
 import org.apache.fop.render.RendererConfigOption;
@@ -206,6 +207,44 @@ public class FopConfBuilder implements FontConfigurator<FopConfBuilder> {
         return this;
     }
 
+    /**
+     * Adds a &lt;cache&gt; tag to the &lt;caches&gt; tag within the fop.xconf.
+     *
+     * @param cache the name of the cache
+     * @param size the maximum number of entries
+     * @return <b>this</b>
+     */
+    public FopConfBuilder setCacheSize(String cache, int size) {
+        NodeList caches = root.getElementsByTagName("caches");
+        Element cachesEl;
+        if (caches.getLength() == 0) {
+            cachesEl = fopConfDOM.createElement("caches");
+            root.appendChild(cachesEl);
+        } else {
+            cachesEl = (Element) caches.item(0);
+        }
+        Element el = fopConfDOM.createElement("cache");
+        el.setAttribute("name", cache);
+        el.setAttribute("size", String.valueOf(size));
+        cachesEl.appendChild(el);
+        return this;
+    }
+
+    /**
+     * Set the &lt;image-data-cache&gt; tag within the fop.xconf.
+     *
+     * @param directory the directory of the image data cache
+     * @param maxSize the maximum size of the cache in megabytes
+     * @return <b>this</b>
+     */
+    public FopConfBuilder setImageDataCache(String directory, int maxSize) {
+        Element el = fopConfDOM.createElement("image-data-cache");
+        el.setAttribute("max-size", String.valueOf(maxSize));
+        el.appendChild(fopConfDOM.createTextNode(directory));
+        root.appendChild(el);
+        return this;
+    }
+
     /**
      * Sets whether the fonts cache is used or not.
      *
@@ -216,6 +255,16 @@ public class FopConfBuilder implements FontConfigurator<FopConfBuilder> {
         return createElement("use-cache", String.valueOf(enableFontCaching));
     }
 
+    /**
+     * Sets the number of threads used to parse font files during font detection.
+     *
+     * @param threads the number of threads
+     * @return <b>this</b>
+     */
+    public FopConfBuilder setFontDetectionThreads(int threads) {
+        return createElement("font-detection-threads", String.valueOf(threads));
+    }
+
     /**
      * Starts a renderer specific config builder.
      *
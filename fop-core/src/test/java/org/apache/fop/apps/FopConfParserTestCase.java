@@ -32,6 +32,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.apache.fop.image.ImageDataCache;
+
 /**
  * Test case for {@link FopConfParser}.
  */
@@ -135,6 +137,44 @@ public class FopConfParserTestCase {
         assertTrue(buildFactory().getRendererFactory().isRendererPreferred());
     }
 
+    @Test
+    public void testHyphenationCacheSize() {
+        builder.setCacheSize(FopFactoryConfig.HYPHENATION_CACHE, 500);
+        assertEquals(500, buildFactory().getHyphenationResultCache().getCapacity());
+    }
+
+    @Test
+    public void testShapingCacheSize() {
+        assertEquals(0, buildFactory().getFontManager().getShapingCacheSize());
+        builder.setCacheSize(FopFactoryConfig.SHAPING_CACHE, 500);
+        assertEquals(500, buildFactory().getFontManager().getShapingCacheSize());
+    }
+
+    @Test
+    public void testWordMeasurementCacheSize() {
+        assertEquals(0, buildFactory().getFontManager().getWordMeasurementCacheSize());
+        builder.setCacheSize(FopFactoryConfig.WORD_MEASUREMENT_CACHE, 500);
+        assertEquals(500, buildFactory().getFontManager().getWordMeasurementCacheSize());
+    }
+
+    @Test(expected = FOPException.class)
+    public void testUnknownCacheInStrictMode() throws SAXException, IOException {
+        builder.setStrictConfiguration(true);
+        builder.setCacheSize("unknown", 500);
+        new FopConfParser(builder.build(), baseURI);
+    }
+
+    @Test
+    public void testImageDataCache() throws IOException {
+        File directory = File.createTempFile("fop", "cache");
+        directory.delete();
+        builder.setImageDataCache(directory.toURI().toString(), 10);
+        ImageDataCache cache = buildFactory().newFOUserAgent().getImageDataCache();
+        assertEquals(directory, cache.getDirectory());
+        assertEquals(10 * 1024 * 1024, cache.getMaxSize());
+        directory.delete();
+    }
+
     @Test
     public void testRelativeURINoBaseNoFont() throws Exception {
         checkRelativeURIs("test/config/relative-uri/no-base_no-font.xconf",
@@ -19,6 +19,7 @@
 
 package org.apache.fop.apps;
 
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -29,7 +30,9 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -43,6 +46,7 @@ import org.apache.fop.fo.pagination.PageSequence;
 import org.apache.fop.fo.pagination.SideRegion;
 import org.apache.fop.fo.pagination.StaticContent;
 import org.apache.fop.fo.pagination.Title;
+import org.apache.fop.image.ImageDataCache;
 import org.apache.fop.layoutmgr.ExternalDocumentLayoutManager;
 import org.apache.fop.layoutmgr.FlowLayoutManager;
 import org.apache.fop.layoutmgr.LayoutManager;
@@ -94,6 +98,10 @@ public class FopFactoryBuilderTestCase {
         assertEquals(FopFactoryConfig.DEFAULT_PAGE_HEIGHT, factory.getPageHeight());
         assertEquals(FopFactoryConfig.DEFAULT_PAGE_WIDTH, factory.getPageWidth());
         assertFalse(factory.getRendererFactory().isRendererPreferred());
+        assertNull(factory.getLayoutExecutor());
+        assertNull(factory.getHyphenationResultCache());
+        assertEquals(0, factory.getFontManager().getWordMeasurementCacheSize());
+        assertNull(factory.newFOUserAgent().getImageDataCache());
     }
 
     @Test
@@ -279,6 +287,52 @@ public class FopFactoryBuilderTestCase {
         });
     }
 
+    @Test
+    public void testGetSetLayoutThreads() {
+        runSetterTest(new Runnable() {
+            public void run() {
+                defaultBuilder.setLayoutThreads(2);
+                assertNotNull(buildFopFactory().getLayoutExecutor());
+            }
+        });
+    }
+
+    @Test
+    public void testGetSetHyphenationCacheSize() {
+        runSetterTest(new Runnable() {
+            public void run() {
+                defaultBuilder.setCacheSize(FopFactoryConfig.HYPHENATION_CACHE, 100);
+                assertEquals(100, buildFopFactory().getHyphenationResultCache().getCapacity());
+            }
+        });
+    }
+
+    @Test
+    public void testGetSetWordMeasurementCacheSize() {
+        runSetterTest(new Runnable() {
+            public void run() {
+                defaultBuilder.setCacheSize(FopFactoryConfig.WORD_MEASUREMENT_CACHE, 100);
+                assertEquals(100, buildFopFactory().getFontManager().getWordMeasurementCacheSize());
+            }
+        });
+    }
+
+    @Test
+    public void testGetSetImageDataCache() {
+        runSetterTest(new Runnable() {
+            public void run() {
+                File directory = new File(System.getProperty("java.io.tmpdir"));
+                defaultBuilder.setImageDataCacheDirectory(directory);
+                defaultBuilder.setImageDataCacheMaxSize(1000);
+                FopFactory factory = buildFopFactory();
+                ImageDataCache cache = factory.newFOUserAgent().getImageDataCache();
+                assertEquals(directory, cache.getDirectory());
+                assertEquals(1000, cache.getMaxSize());
+                assertSame(cache, factory.newFOUserAgent().getImageDataCache());
+            }
+        });
+    }
+
     private void runSetterTest(Runnable setterTest) {
         setterTest.run();
         try {
@@ -17,6 +17,7 @@
 
 package org.apache.fop.apps;
 
+import java.io.File;
 import java.net.URI;
 import java.util.Map;
 import java.util.Set;
@@ -137,6 +138,22 @@ public final class MutableConfig implements FopFactoryConfig {
         return delegate.isTableBorderOverpaint();
     }
 
+    public int getLayoutThreads() {
+        return delegate.getLayoutThreads();
+    }
+
+    public int getCacheSize(String cache) {
+        return delegate.getCacheSize(cache);
+    }
+
+    public File getImageDataCacheDirectory() {
+        return delegate.getImageDataCacheDirectory();
+    }
+
+    public long getImageDataCacheMaxSize() {
+        return delegate.getImageDataCacheMaxSize();
+    }
+
     public Map<String, String> getHyphenationPatternNames() {
         return delegate.getHyphenationPatternNames();
     }
@@ -29,6 +29,9 @@ import static org.apache.fop.render.pdf.PDFEncryptionOption.ENCRYPTION_LENGTH;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.ENCRYPTION_PARAMS;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.OWNER_PASSWORD;
 import static org.apache.fop.render.pdf.PDFEncryptionOption.USER_PASSWORD;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION;
+import static org.apache.fop.render.pdf.PDFRendererOption.COMPRESSION_THREADS;
+import static org.apache.fop.render.pdf.PDFRendererOption.DEDUPLICATE_XOBJECTS;
 import static org.apache.fop.render.pdf.PDFRendererOption.DISABLE_SRGB_COLORSPACE;
 import static org.apache.fop.render.pdf.PDFRendererOption.FILTER_LIST;
 import static org.apache.fop.render.pdf.PDFRendererOption.FORM_XOBJECT;
@@ -99,6 +102,37 @@ public final class PDFRendererConfBuilder extends RendererConfBuilder {
         return this;
     }
 
+    public PDFRendererConfBuilder setCompressionThreads(int threads) {
+        createTextElement(COMPRESSION_THREADS, String.valueOf(threads));
+        return this;
+    }
+
+    public PDFRendererConfBuilder setXObjectDeduplicationEnabled(boolean b) {
+        createTextElement(DEDUPLICATE_XOBJECTS, String.valueOf(b));
+        return this;
+    }
+
+    public PDFRendererConfBuilder setCompressionPreset(String type, String preset) {
+        Element compressionEl = createElement(COMPRESSION.getName());
+        if (type != null) {
+            compressionEl.setAttribute("type", type);
+        }
+        compressionEl.setAttribute("preset", preset);
+        return this;
+    }
+
+    public PDFRendererConfBuilder setCompression(String type, int level, String strategy) {
+        Element compressionEl = createElement(COMPRESSION.getName());
+        if (type != null) {
+            compressionEl.setAttribute("type", type);
+        }
+        compressionEl.setAttribute("level", String.valueOf(level));
+        if (strategy != null) {
+            compressionEl.setAttribute("strategy", strategy);
+        }
+        return this;
+    }
+
     public final class EncryptionParamsBuilder {
         private final Element el;
 
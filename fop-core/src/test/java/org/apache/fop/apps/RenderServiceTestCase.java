@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+package org.apache.fop.apps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RenderServiceTestCase {
+
+    private static final String FO = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+            + "  <fo:layout-master-set>\n"
+            + "    <fo:simple-page-master master-name=\"simple\" page-height=\"27.9cm\" page-width=\"21.6cm\">\n"
+            + "      <fo:region-body />\n"
+            + "    </fo:simple-page-master>\n"
+            + "  </fo:layout-master-set>\n"
+            + "  <fo:page-sequence master-reference=\"simple\">\n"
+            + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+            + " <fo:block>page 1</fo:block>\n"
+            + " <fo:block break-before=\"page\">page 2</fo:block>\n"
+            + " <fo:block break-before=\"page\">page 3</fo:block>\n"
+            + "    </fo:flow>\n"
+            + "  </fo:page-sequence>\n"
+            + "</fo:root>";
+
+    private RenderService service;
+
+    @Before
+    public void setUp() {
+        service = new RenderService(FopFactory.newInstance(new File(".").toURI()), 2);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private RenderJob createJob() {
+        return new RenderJob(new StreamSource(new ByteArrayInputStream(FO.getBytes())),
+                MimeConstants.MIME_PDF, new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testRender() throws Exception {
+        final boolean[] customized = new boolean[1];
+        RenderJob job = createJob();
+        job.setUserAgentCustomizer(new RenderJob.UserAgentCustomizer() {
+            public void customize(FOUserAgent userAgent) {
+                customized[0] = true;
+            }
+        });
+        job.setMaxPages(3);
+        job.setTimeout(60000);
+        assertEquals(3, service.submit(job).get().getPageCount());
+        assertTrue(customized[0]);
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        final int[] laidOut = new int[1];
+        final int[] rendered = new int[1];
+        final long[] bytes = new long[1];
+        RenderJob job = createJob();
+        job.setProgressListener(new RenderProgressListener() {
+            public void pageLaidOut(int pagesLaidOut) {
+                laidOut[0] = pagesLaidOut;
+            }
+
+            public void pageRendered(int pagesRendered, long bytesWritten) {
+                rendered[0] = pagesRendered;
+                bytes[0] = bytesWritten;
+            }
+        });
+        service.submit(job).get();
+        assertEquals(3, laidOut[0]);
+        assertEquals(3, rendered[0]);
+        assertTrue(bytes[0] > 0);
+    }
+
+    @Test
+    public void testCancelBeforeStart() throws Exception {
+        RenderMonitor monitor = new RenderMonitor();
+        monitor.cancel();
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setRenderMonitor(monitor);
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, userAgent, new ByteArrayOutputStream());
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(
+                    new StreamSource(new ByteArrayInputStream(FO.getBytes())),
+                    new SAXResult(fop.getDefaultHandler()));
+            fail("The rendering run should have been cancelled");
+        } catch (RenderCancelledException e) {
+            //expected
+        } catch (TransformerException e) {
+            //expected, when the exception is wrapped by the transformer
+        }
+        assertEquals(0, monitor.getPagesLaidOut());
+    }
+
+    @Test
+    public void testMaxPages() throws Exception {
+        RenderJob job = createJob();
+        job.setMaxPages(2);
+        assertCancelled(service.submit(job));
+    }
+
+    @Test
+    public void testCancelledMonitor() {
+        RenderMonitor monitor = new RenderMonitor(0, 0, 0);
+        monitor.check();
+        monitor.cancel();
+        try {
+            monitor.check();
+            fail("RenderCancelledException expected");
+        } catch (RenderCancelledException e) {
+            assertTrue(monitor.isCancelled());
+        }
+    }
+
+    @Test
+    public void testExpiredMonitor() throws Exception {
+        RenderMonitor monitor = new RenderMonitor(1, 0, 0);
+        Thread.sleep(10);
+        try {
+            monitor.pageCreated();
+            fail("RenderCancelledException expected");
+        } catch (RenderCancelledException e) {
+            assertEquals(1, monitor.getPageCount());
+        }
+    }
+
+    private void assertCancelled(Future<FormattingResults> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("RenderCancelledException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof RenderCancelledException);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.apps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.area.PageNumberIndex;
+
+public class TwoPassLayoutTestCase {
+
+    private static final String FO = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+            + "  <fo:layout-master-set>\n"
+            + "    <fo:simple-page-master master-name=\"simple\" page-height=\"27.9cm\" page-width=\"21.6cm\">\n"
+            + "      <fo:region-body />\n"
+            + "    </fo:simple-page-master>\n"
+            + "  </fo:layout-master-set>\n"
+            + "  <fo:page-sequence master-reference=\"simple\">\n"
+            + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+            + " <fo:block>Pages <fo:page-number-citation ref-id=\"a\"/> to "
+            + "<fo:page-number-citation-last ref-id=\"a\"/></fo:block>\n"
+            + " <fo:block break-before=\"page\" id=\"a\">page 2"
+            + "<fo:block break-before=\"page\">page 3</fo:block></fo:block>\n"
+            + "    </fo:flow>\n"
+            + "  </fo:page-sequence>\n"
+            + "</fo:root>";
+
+    private FormattingResults render(FopFactory fopFactory, FOUserAgent userAgent)
+            throws Exception {
+        return render(fopFactory, userAgent, FO, "application/pdf", new ByteArrayOutputStream());
+    }
+
+    private FormattingResults render(FopFactory fopFactory, FOUserAgent userAgent, String fo,
+            String mime, ByteArrayOutputStream out) throws Exception {
+        Fop fop = fopFactory.newFop(mime, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(fo.getBytes()));
+        transformer.transform(src, new SAXResult(fop.getDefaultHandler()));
+        return fop.getResults();
+    }
+
+    @Test
+    public void testPageNumbersAreCollected() throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setTwoPassLayout(true);
+        FormattingResults results = render(fopFactory, userAgent);
+
+        PageNumberIndex index = userAgent.getPageNumberIndex();
+        assertEquals("2", index.getFirstPageNumber("a"));
+        assertEquals("3", index.getLastPageNumber("a"));
+        assertNull(index.getFirstPageNumber("b"));
+        assertEquals(3, results.getPageCount());
+    }
+
+    @Test
+    public void testCitationFollowsMovedBreak() throws Exception {
+        // "xxxx MMM" needs two lines, which push block "a" to page 2 in the first pass, but
+        // "xxxx 2" fits on one line, so "a" ends up on page 1 in the second pass
+        String fo = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\""
+                + " font-family=\"Helvetica\" font-size=\"12pt\">"
+                + "<fo:layout-master-set>"
+                + "<fo:simple-page-master master-name=\"simple\" page-height=\"30pt\""
+                + " page-width=\"40pt\"><fo:region-body/></fo:simple-page-master>"
+                + "</fo:layout-master-set>"
+                + "<fo:page-sequence master-reference=\"simple\">"
+                + "<fo:flow flow-name=\"xsl-region-body\">"
+                + "<fo:block>xxxx <fo:page-number-citation ref-id=\"a\"/></fo:block>"
+                + "<fo:block id=\"a\">y</fo:block>"
+                + "</fo:flow></fo:page-sequence></fo:root>";
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setTwoPassLayout(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FormattingResults results = render(fopFactory, userAgent, fo,
+                MimeConstants.MIME_FOP_AREA_TREE, out);
+
+        assertEquals("2", userAgent.getPageNumberIndex().getFirstPageNumber("a"));
+        assertEquals(1, results.getPageCount());
+        String areaTree = out.toString("UTF-8");
+        assertTrue(areaTree.contains(">1</word>"));
+        assertFalse(areaTree.contains(">2</word>"));
+    }
+
+    @Test
+    public void testSinglePassByDefault() throws Exception {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        render(fopFactory, userAgent);
+        assertNull(userAgent.getPageNumberIndex());
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.area;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.Fop;
+import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.fop.apps.MimeConstants;
+import org.apache.fop.apps.RenderMonitor;
+
+/**
+ * Checks that laying out page-sequences concurrently produces the same area tree as serial
+ * layout.
+ */
+public class ConcurrentPageSequenceLayoutTestCase {
+
+    private static final int SEQUENCES = 12;
+
+    @Test
+    public void testSameAreaTreeAsSerialLayout() throws Exception {
+        String fo = createDocument();
+        Result serial = render(fo, 1);
+        Result concurrent = render(fo, 4);
+        assertEquals(serial.pageCount, concurrent.pageCount);
+        assertEquals(serial.areaTree, concurrent.areaTree);
+    }
+
+    @Test
+    public void testPendingJobsFollowPoolSize() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(6, new ConcurrentPageSequenceLayout(null, executor).getMaxPendingJobs());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueuedLayoutIsCancelledOnError() throws Exception {
+        // an inline isn't allowed directly in a flow
+        assertQueuedLayoutIsCancelled("<fo:inline/>", false);
+    }
+
+    @Test
+    public void testQueuedLayoutIsCancelledWithRun() throws Exception {
+        assertQueuedLayoutIsCancelled("<fo:block>text</fo:block>", true);
+    }
+
+    /**
+     * Renders two page-sequences that stay queued and a third one with the given content,
+     * which fails, and checks that the two queued ones are cancelled.
+     * @param content the content of the flow of the third page-sequence
+     * @param cancelRun true to cancel the rendering run once the two are queued
+     */
+    private void assertQueuedLayoutIsCancelled(String content, boolean cancelRun)
+            throws Exception {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            // keep the only worker busy, so that the page-sequences stay queued
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            StringBuilder sb = new StringBuilder();
+            sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">")
+                    .append("<fo:layout-master-set>")
+                    .append("<fo:simple-page-master master-name=\"page\">")
+                    .append("<fo:region-body/></fo:simple-page-master>")
+                    .append("</fo:layout-master-set>");
+            for (int i = 0; i < 2; i++) {
+                sb.append("<fo:page-sequence master-reference=\"page\" initial-page-number=\"1\">")
+                        .append("<fo:flow flow-name=\"xsl-region-body\"><fo:block>text")
+                        .append("</fo:block></fo:flow></fo:page-sequence>");
+            }
+            sb.append("<fo:page-sequence master-reference=\"page\" initial-page-number=\"1\">")
+                    .append("<fo:flow flow-name=\"xsl-region-body\">").append(content)
+                    .append("</fo:flow></fo:page-sequence></fo:root>");
+
+            FopFactory fopFactory = new FopFactoryBuilder(new File(".").toURI()).build();
+            FOUserAgent userAgent = fopFactory.newFOUserAgent();
+            userAgent.setLayoutExecutor(executor);
+            if (cancelRun) {
+                userAgent.setRenderMonitor(new RenderMonitor() {
+                    @Override
+                    public void check() {
+                        if (executor.getQueue().size() == 2) {
+                            cancel();
+                        }
+                        super.check();
+                    }
+                });
+            }
+            Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent,
+                    new ByteArrayOutputStream());
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            try {
+                transformer.transform(new StreamSource(new StringReader(sb.toString())),
+                        new SAXResult(fop.getDefaultHandler()));
+                fail("The rendering run must fail");
+            } catch (TransformerException e) {
+                // expected
+            }
+            assertEquals(2, executor.getQueue().size());
+            for (Runnable task : executor.getQueue()) {
+                assertTrue(((Future<?>) task).isCancelled());
+            }
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private Result render(String fo, int layoutThreads) throws Exception {
+        FopFactory fopFactory = new FopFactoryBuilder(new File(".").toURI())
+                .setLayoutThreads(layoutThreads).build();
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCreationDate(new Date(0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop(MimeConstants.MIME_FOP_AREA_TREE, userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new StreamSource(new StringReader(fo)),
+                new SAXResult(fop.getDefaultHandler()));
+        Result result = new Result();
+        result.pageCount = fop.getResults().getPageCount();
+        // page keys only need to be unique and are assigned differently
+        result.areaTree = out.toString("UTF-8").replaceAll(" key=\"[^\"]*\"", "");
+        return result;
+    }
+
+    private String createDocument() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">")
+                .append("<fo:layout-master-set>")
+                .append("<fo:simple-page-master master-name=\"odd\" page-height=\"297mm\"")
+                .append(" page-width=\"210mm\" margin=\"20mm\">")
+                .append("<fo:region-body margin-top=\"10mm\"/><fo:region-before extent=\"10mm\"/>")
+                .append("</fo:simple-page-master>")
+                .append("<fo:simple-page-master master-name=\"even\" page-height=\"297mm\"")
+                .append(" page-width=\"210mm\" margin=\"25mm\">")
+                .append("<fo:region-body margin-top=\"10mm\"/><fo:region-before extent=\"10mm\"/>")
+                .append("</fo:simple-page-master>")
+                .append("<fo:page-sequence-master master-name=\"alternate\">")
+                .append("<fo:repeatable-page-master-alternatives>")
+                .append("<fo:conditional-page-master-reference master-reference=\"odd\"")
+                .append(" odd-or-even=\"odd\"/>")
+                .append("<fo:conditional-page-master-reference master-reference=\"even\"")
+                .append(" odd-or-even=\"even\"/>")
+                .append("</fo:repeatable-page-master-alternatives>")
+                .append("</fo:page-sequence-master>")
+                .append("</fo:layout-master-set>");
+        for (int i = 0; i < SEQUENCES; i++) {
+            sb.append("<fo:page-sequence id=\"seq").append(i)
+                    .append("\" master-reference=\"alternate\" force-page-count=\"even\"");
+            if (i % 3 != 0) {
+                sb.append(" initial-page-number=\"1\"");
+            }
+            sb.append(">")
+                    .append("<fo:static-content flow-name=\"xsl-region-before\"><fo:block>")
+                    .append("<fo:retrieve-marker retrieve-class-name=\"section\"/> page ")
+                    .append("<fo:page-number/> of <fo:page-number-citation-last ref-id=\"seq")
+                    .append(i).append("\"/></fo:block></fo:static-content>")
+                    .append("<fo:flow flow-name=\"xsl-region-body\">");
+            for (int j = 0; j < 20; j++) {
+                sb.append("<fo:block id=\"b").append(i).append('_').append(j).append("\">")
+                        .append("<fo:marker marker-class-name=\"section\">Section ")
+                        .append(i).append('.').append(j).append("</fo:marker>");
+                for (int k = 0; k < 40; k++) {
+                    sb.append("text").append((i * 7 + j * 3 + k) % 11).append(' ');
+                }
+                if (i + 1 < SEQUENCES) {
+                    // forward reference into the next page-sequence
+                    sb.append("see page <fo:page-number-citation ref-id=\"b")
+                            .append(i + 1).append("_0\"/>");
+                }
+                sb.append("</fo:block>");
+            }
+            sb.append("</fo:flow></fo:page-sequence>");
+        }
+        sb.append("</fo:root>");
+        return sb.toString();
+    }
+
+    private static final class Result {
+        private int pageCount;
+        private String areaTree;
+    }
+}
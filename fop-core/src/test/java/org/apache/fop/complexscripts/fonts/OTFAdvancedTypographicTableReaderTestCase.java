@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.complexscripts.fonts;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.util.Collection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.fop.fonts.truetype.FontFileReader;
+import org.apache.fop.fonts.truetype.OFFontLoader;
+import org.apache.fop.fonts.truetype.OFTableName;
+import org.apache.fop.fonts.truetype.TTFFile;
+
+/**
+ * Tests reading the lookup tables of GSUB and GPOS on first use.
+ */
+public class OTFAdvancedTypographicTableReaderTestCase {
+
+    private static final String FONT = "test/resources/fonts/ttf/DejaVuLGCSerif.ttf";
+
+    @Test
+    public void testLookupTablesAreReadOnFirstUse() throws IOException {
+        TTFFile ttf = loadFont(readFontData());
+        GlyphSubstitutionTable gsub = ttf.getGSUB();
+        int lookups = getLookupTableOffsets(readFontData(), ttf, OFTableName.GSUB).length;
+        assertEquals(lookups, gsub.getUnreadLookupTableCount());
+        // a ligature substitution, which doesn't refer to other lookup tables
+        assertNotNull(gsub.getLookupTable("lu3"));
+        assertEquals(lookups - 1, gsub.getUnreadLookupTableCount());
+        gsub.getLookupTables();
+        assertEquals(0, gsub.getUnreadLookupTableCount());
+    }
+
+    @Test
+    public void testLookupTablesMatchFontFile() throws IOException {
+        byte[] data = readFontData();
+        TTFFile ttf = loadFont(data);
+        checkLookupTables(data, ttf, OFTableName.GSUB, ttf.getGSUB());
+        checkLookupTables(data, ttf, OFTableName.GPOS, ttf.getGPOS());
+    }
+
+    private void checkLookupTables(byte[] data, TTFFile ttf, OFTableName tableTag, GlyphTable table)
+            throws IOException {
+        // read from the whole font file, as all lookup tables used to be read with the font
+        long[] lookupTables = getLookupTableOffsets(data, ttf, tableTag);
+        OTFAdvancedTypographicTableReader.LookupListReader reader
+            = new OTFAdvancedTypographicTableReader.LookupListReader(tableTag, data, lookupTables,
+                ttf.getUnitsPerEm());
+        for (int i = 0; i < lookupTables.length; i++) {
+            String lid = "lu" + i;
+            GlyphTable.LookupTable lt = table.getLookupTable(lid);
+            assertEquals(lid, describe(reader.readSubtables(lid)),
+                describe((lt != null) ? lt.getSubtables() : new GlyphSubtable[0]));
+        }
+    }
+
+    @Test
+    public void testMalformedLookupTableIsIgnored() throws IOException {
+        byte[] data = readFontData();
+        TTFFile ttf = loadFont(data);
+        long[] lookupTables = getLookupTableOffsets(data, ttf, OFTableName.GSUB);
+        int malformed = 0;
+        while (ttf.getGSUB().getLookupTable("lu" + malformed) == null) {
+            malformed++;
+        }
+        // point the first subtable of the lookup table past the end of the GSUB table
+        int offset = (int) lookupTables[malformed] + 6;
+        data[offset] = (byte) 0xFF;
+        data[offset + 1] = (byte) 0xFF;
+
+        TTFFile malformedTTF = loadFont(data);
+        GlyphSubstitutionTable gsub = malformedTTF.getGSUB();
+        assertNotNull(gsub);
+        assertNull(gsub.getLookupTable("lu" + malformed));
+        for (int i = 0; i < lookupTables.length; i++) {
+            if (i != malformed) {
+                String lid = "lu" + i;
+                assertEquals(lid, describe(ttf.getGSUB().getLookupTable(lid)),
+                    describe(gsub.getLookupTable(lid)));
+            }
+        }
+    }
+
+    private static byte[] readFontData() throws IOException {
+        InputStream in = new FileInputStream(FONT);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static TTFFile loadFont(byte[] data) throws IOException {
+        FontFileReader reader = new FontFileReader(new ByteArrayInputStream(data));
+        TTFFile ttf = new TTFFile(false, true);
+        ttf.readFont(reader, OFFontLoader.readHeader(reader));
+        return ttf;
+    }
+
+    private static long[] getLookupTableOffsets(byte[] data, TTFFile ttf, OFTableName tableTag)
+            throws IOException {
+        FontFileReader in = new FontFileReader(new ByteArrayInputStream(data));
+        long to = ttf.getDirectoryEntry(tableTag).getOffset();
+        in.seekSet(to + 8);
+        long lookupList = to + in.readTTFUShort();
+        in.seekSet(lookupList);
+        long[] lookupTables = new long[in.readTTFUShort()];
+        for (int i = 0; i < lookupTables.length; i++) {
+            lookupTables[i] = lookupList + in.readTTFUShort();
+        }
+        return lookupTables;
+    }
+
+    private static String describe(Object o) {
+        if (o instanceof GlyphTable.LookupTable) {
+            return describe(((GlyphTable.LookupTable) o).getSubtables());
+        } else if (o instanceof GlyphSubtable) {
+            GlyphSubtable st = (GlyphSubtable) o;
+            return st.getClass().getName() + "{" + st.getLookupId() + "," + st.getType() + ","
+                + st.getFormat() + "," + st.getFlags() + "," + st.getSequence() + ","
+                + describe(st.getCoverage()) + "," + describe(st.getEntries()) + "}";
+        } else if (o instanceof GlyphMappingTable) {
+            return o.getClass().getName() + describe(((GlyphMappingTable) o).getEntries());
+        } else if (o instanceof GlyphMappingTable.MappingRange) {
+            GlyphMappingTable.MappingRange r = (GlyphMappingTable.MappingRange) o;
+            return r.getStart() + "-" + r.getEnd() + ":" + r.getIndex();
+        } else if (o instanceof GlyphTable.RuleSet) {
+            return describe(((GlyphTable.RuleSet) o).getRules());
+        } else if (o instanceof Collection) {
+            return describe(((Collection) o).toArray());
+        } else if ((o != null) && o.getClass().isArray()) {
+            StringBuffer sb = new StringBuffer("[");
+            for (int i = 0, n = Array.getLength(o); i < n; i++) {
+                sb.append(describe(Array.get(o, i)));
+                sb.append(' ');
+            }
+            sb.append(']');
+            return sb.toString();
+        } else {
+            return String.valueOf(o);
+        }
+    }
+}
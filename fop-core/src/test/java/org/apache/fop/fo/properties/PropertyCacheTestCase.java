@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fo.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyCacheTestCase {
+
+    @Test
+    public void testFetchReturnsCanonicalInstance() {
+        PropertyCache<String> cache = new PropertyCache<String>();
+        String first = new String("abc");
+        assertSame(first, cache.fetch(first));
+        assertSame(first, cache.fetch(new String("abc")));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testHashCodeCollisions() {
+        PropertyCache<Key> cache = new PropertyCache<Key>(16);
+        Key a = new Key(1);
+        Key b = new Key(2);
+        assertSame(a, cache.fetch(a));
+        assertSame(b, cache.fetch(b));
+        // both are kept although they have the same hash code
+        assertSame(a, cache.fetch(new Key(1)));
+        assertSame(b, cache.fetch(new Key(2)));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testGrowsAndShrinks() {
+        PropertyCache<Integer> cache = new PropertyCache<Integer>();
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(cache.fetch(new Integer(i)));
+        }
+        assertEquals(10000, cache.size());
+        for (int i = 0; i < 10000; i++) {
+            assertSame(values.get(i), cache.fetch(new Integer(i)));
+        }
+        assertEquals(10000, cache.getHitCount());
+
+        int capacity = cache.capacity();
+        for (Integer value : values) {
+            cache.reclaim(value);
+        }
+        // reclaimed entries are unlinked when an entry is added to their segment
+        for (int i = 10000; i < 11000; i++) {
+            values.add(cache.fetch(new Integer(i)));
+        }
+        assertEquals(1000, cache.size());
+        assertTrue(cache.capacity() < capacity / 4);
+    }
+
+    @Test
+    public void testConcurrentFetch() throws Exception {
+        final PropertyCache<String> cache = new PropertyCache<String>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String[]>> futures = new ArrayList<Future<String[]>>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<String[]>() {
+                    public String[] call() {
+                        String[] result = new String[1000];
+                        for (int i = 0; i < result.length; i++) {
+                            result[i] = cache.fetch(new String("value" + i));
+                        }
+                        return result;
+                    }
+                }));
+            }
+            String[] expected = futures.get(0).get();
+            for (Future<String[]> future : futures) {
+                String[] actual = future.get();
+                for (int i = 0; i < expected.length; i++) {
+                    assertSame(expected[i], actual[i]);
+                }
+            }
+            assertEquals(1000, cache.getMissCount());
+            assertEquals(7000, cache.getHitCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachesAreListed() {
+        PropertyCache<String> cache = new PropertyCache<String>();
+        assertTrue(PropertyCache.getCaches().contains(cache));
+    }
+
+    private static final class Key {
+
+        private final int value;
+
+        Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).value == value;
+        }
+    }
+}
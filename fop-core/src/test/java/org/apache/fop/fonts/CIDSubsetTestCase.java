@@ -19,10 +19,18 @@
 
 package org.apache.fop.fonts;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -138,6 +146,41 @@ public class CIDSubsetTestCase {
         }
     }
 
+    @Test
+    public void testConcurrentMapping() throws Exception {
+        final CIDSubset subset = new CIDSubset(mock(MultiByteFont.class));
+        final int glyphs = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                final int offset = t * 100;
+                results.add(executor.submit(new Callable<int[]>() {
+                    public int[] call() {
+                        int[] selectors = new int[glyphs + 1];
+                        for (int i = 0; i < glyphs; i++) {
+                            int glyphIndex = 1 + (i + offset) % glyphs;
+                            selectors[glyphIndex] = subset.mapCodePoint(glyphIndex, 'a' + glyphIndex);
+                        }
+                        return selectors;
+                    }
+                }));
+            }
+            int[] selectors = results.get(0).get();
+            for (Future<int[]> result : results) {
+                assertTrue(Arrays.equals(selectors, result.get()));
+            }
+            Set<Integer> distinct = new HashSet<Integer>();
+            for (int glyphIndex = 1; glyphIndex <= glyphs; glyphIndex++) {
+                assertTrue(distinct.add(selectors[glyphIndex]));
+                assertEquals(glyphIndex, subset.getOriginalGlyphIndex(selectors[glyphIndex]));
+            }
+            assertEquals(glyphs + 1, subset.getNumberOfGlyphs());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testGetGlyphs() {
         Map<Integer, Integer> fontGlyphs = cidSub.getGlyphs();
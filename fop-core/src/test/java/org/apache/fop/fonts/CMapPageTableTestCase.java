@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class CMapPageTableTestCase {
+
+    private static List<CMapSegment> createSegments() {
+        List<CMapSegment> segments = new ArrayList<CMapSegment>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(0x3000);
+            segments.add(new CMapSegment(start, start + random.nextInt(40), random.nextInt(3000)));
+        }
+        // overlapping segments where the first one maps to glyph 0
+        segments.add(new CMapSegment(0x4DFF, 0x4E10, 1));
+        segments.add(new CMapSegment(0x4E00, 0x4E20, 500));
+        segments.add(new CMapSegment(0x1F600, 0x1F64F, 1200));
+        segments.add(new CMapSegment(0x20000, 0x20010, 70000));
+        segments.add(new CMapSegment(0xFFFF, 0xFFFF, 0));
+        return segments;
+    }
+
+    private static int search(List<CMapSegment> segments, int cp) {
+        for (CMapSegment segment : segments) {
+            if (segment.getUnicodeStart() <= cp && segment.getUnicodeEnd() >= cp) {
+                int glyphIndex = segment.getGlyphStartIndex() + cp - segment.getUnicodeStart();
+                if (glyphIndex != 0) {
+                    return glyphIndex;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void assertLookups(List<CMapSegment> segments, CMapPageTable table) {
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            int glyphIndex = table.getGlyphIndex(cp);
+            int expected = search(segments, cp);
+            if (glyphIndex == CMapPageTable.NOT_IN_TABLE) {
+                assertEquals(true, expected >= 0xFFFF);
+            } else {
+                assertEquals("code point " + Integer.toHexString(cp), expected, glyphIndex);
+            }
+        }
+    }
+
+    @Test
+    public void testLookup() {
+        List<CMapSegment> segments = createSegments();
+        CMapPageTable table = CMapPageTable.create(segments);
+        assertLookups(segments, table);
+        assertEquals(0, table.getGlyphIndex(0x30000));
+        assertEquals(CMapPageTable.NOT_IN_TABLE, table.getGlyphIndex(-1));
+        assertEquals(CMapPageTable.NOT_IN_TABLE, table.getGlyphIndex(0x20005));
+    }
+
+    @Test
+    public void testWithMapping() {
+        List<CMapSegment> segments = createSegments();
+        CMapPageTable table = CMapPageTable.create(segments);
+        CMapPageTable extended = table.withMapping(0xE000, 17).withMapping(0xF0000, 18);
+        assertEquals(0, table.getGlyphIndex(0xE000));
+        assertEquals(0, table.getGlyphIndex(0xF0000));
+        segments.add(new CMapSegment(0xE000, 0xE000, 17));
+        segments.add(new CMapSegment(0xF0000, 0xF0000, 18));
+        assertLookups(segments, extended);
+    }
+
+    @Test
+    public void testMultiByteFont() {
+        InternalResourceResolver resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new java.io.File(".").toURI());
+        MultiByteFont font = new MultiByteFont(resolver, EmbeddingMode.AUTO);
+        List<CMapSegment> segments = createSegments();
+        font.setCMap(segments.toArray(new CMapSegment[segments.size()]));
+        for (int cp = 0; cp < 0x21000; cp++) {
+            assertEquals(search(segments, cp), font.findGlyphIndex(cp));
+        }
+        font.addPrivateUseMapping(0xE000, 42);
+        assertEquals(42, font.findGlyphIndex(0xE000));
+        assertEquals(42, font.getCMap()[font.getCMap().length - 1].getGlyphStartIndex());
+    }
+}
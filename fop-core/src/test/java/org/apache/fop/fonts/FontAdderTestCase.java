@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.autodetect.FontFileFinder;
+
+public class FontAdderTestCase {
+
+    @Test
+    public void testConcurrentDetectionFindsSameFonts() throws Exception {
+        List<URL> fontURLs = new FontFileFinder(-1, null).find("test/resources/fonts");
+        assertTrue(fontURLs.size() > 1);
+        List<String> serial = detect(fontURLs, 1);
+        List<String> concurrent = detect(fontURLs, 4);
+        assertTrue(serial.size() > 1);
+        assertEquals(serial, concurrent);
+    }
+
+    private List<String> detect(List<URL> fontURLs, int threads) throws Exception {
+        InternalResourceResolver resolver = ResourceResolverFactory
+                .createDefaultInternalResourceResolver(new File(".").toURI());
+        FontCacheManager cacheManager = FontCacheManagerFactory.createDefault();
+        File cacheFile = File.createTempFile("fop-fonts", ".bin");
+        cacheFile.delete();
+        cacheManager.setCacheFile(cacheFile.toURI());
+        FontManager fontManager = new FontManager(resolver, FontDetectorFactory.createDisabled(),
+                cacheManager);
+        fontManager.setDetectionThreads(threads);
+        List<EmbedFontInfo> fontInfos = new ArrayList<EmbedFontInfo>();
+        new FontAdder(fontManager, resolver, null).add(fontURLs, fontInfos);
+
+        List<String> result = new ArrayList<String>();
+        for (EmbedFontInfo fontInfo : fontInfos) {
+            result.add(fontInfo.getEmbedURI() + " " + fontInfo.getPostScriptName()
+                    + " " + fontInfo.getFontTriplets());
+            assertTrue(fontManager.getFontCache().containsFont(fontInfo));
+        }
+        return result;
+    }
+}
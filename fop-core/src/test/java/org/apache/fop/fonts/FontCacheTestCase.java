@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class FontCacheTestCase {
+
+    private File cacheFile;
+
+    private InternalResourceResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("fop-fonts", ".bin");
+        resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new File(".").toURI());
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        URI ttc = new URI("file:/fonts/f%C3%BCnf.ttc");
+        EmbedFontInfo regular = new EmbedFontInfo(new FontUris(ttc, null), true, false,
+                Arrays.asList(new FontTriplet("F\u00fcnf", Font.STYLE_NORMAL, Font.WEIGHT_NORMAL),
+                        new FontTriplet("fuenf", Font.STYLE_NORMAL, Font.WEIGHT_NORMAL, 1)),
+                "Fuenf Regular", EncodingMode.CID, EmbeddingMode.SUBSET, false, false, true);
+        regular.setPostScriptName("Fuenf-Regular");
+        EmbedFontInfo bold = new EmbedFontInfo(new FontUris(ttc, null), false, true,
+                Arrays.asList(new FontTriplet("F\u00fcnf", Font.STYLE_NORMAL, Font.WEIGHT_BOLD)),
+                "Fuenf Bold", EncodingMode.AUTO, EmbeddingMode.FULL, true, true, false);
+        bold.setPostScriptName("Fuenf-Bold");
+        URI afm = new URI("file:/fonts/type1.afm");
+        EmbedFontInfo type1 = new EmbedFontInfo(new FontUris(new URI("file:/fonts/type1.pfb"),
+                new URI("file:/fonts/type1.xml"), afm, null), false, false, null, null);
+
+        FontCache cache = new FontCache();
+        cache.addFont(regular, resolver);
+        cache.addFont(bold, resolver);
+        cache.addFont(type1, resolver);
+        cache.registerFailedFont("file:/fonts/broken.ttf", 42L);
+        assertTrue(cache.hasChanged());
+        cache.saveTo(cacheFile);
+        assertFalse(cache.hasChanged());
+
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        assertFalse(loaded.hasChanged());
+        assertTrue(loaded.containsFont(ttc.toASCIIString()));
+        assertTrue(loaded.containsFont(type1));
+        assertTrue(loaded.isFailedFont("file:/fonts/broken.ttf", 42L));
+        assertFalse(loaded.isFailedFont("file:/fonts/other.ttf", 42L));
+
+        // the font files don't exist, so their last modified date/time is 0
+        EmbedFontInfo[] infos = loaded.getFontInfos(ttc.toASCIIString(), 0L);
+        assertEquals(2, infos.length);
+        if (!"Fuenf-Regular".equals(infos[0].getPostScriptName())) {
+            infos = new EmbedFontInfo[] {infos[1], infos[0]};
+        }
+        assertFontInfoEquals(regular, infos[0]);
+        assertFontInfoEquals(bold, infos[1]);
+
+        EmbedFontInfo[] type1Infos = loaded.getFontInfos(FontCache.getCacheKey(type1), 0L);
+        assertFontInfoEquals(type1, type1Infos[0]);
+        assertEquals(afm, type1Infos[0].getFontUris().getAfm());
+        assertNull(type1Infos[0].getFontUris().getPfm());
+    }
+
+    @Test
+    public void testLoadUnchangedCacheAgain() throws Exception {
+        FontCache cache = new FontCache();
+        cache.addFont(new EmbedFontInfo(new FontUris(new URI("file:/fonts/a.ttf"), null),
+                true, true, null, null), resolver);
+        cache.saveTo(cacheFile);
+        FontCache loaded = FontCache.loadFrom(cacheFile);
+        loaded.removeFont("file:/fonts/a.ttf");
+        loaded.registerFailedFont("file:/fonts/a.ttf", 1L);
+        loaded.saveTo(cacheFile);
+        FontCache reloaded = FontCache.loadFrom(cacheFile);
+        assertFalse(reloaded.containsFont("file:/fonts/a.ttf"));
+        assertTrue(reloaded.isFailedFont("file:/fonts/a.ttf", 1L));
+    }
+
+    @Test
+    public void testCacheFileThatCannotBeReplaced() throws Exception {
+        // a directory that isn't empty can't be replaced, like a mapped file on Windows
+        cacheFile.delete();
+        cacheFile.mkdir();
+        File child = new File(cacheFile, "child");
+        child.createNewFile();
+        try {
+            FontCache cache = new FontCache();
+            cache.registerFailedFont("file:/fonts/broken.ttf", 42L);
+            cache.saveTo(cacheFile);
+            assertTrue(cache.hasChanged());
+            assertTrue(cacheFile.isDirectory());
+            assertEquals(1, cacheFile.list().length);
+        } finally {
+            child.delete();
+        }
+    }
+
+    @Test
+    public void testDiscardInvalidCacheFile() throws Exception {
+        // a cache file written by a version that used Java serialization
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(cacheFile));
+        out.writeObject(new FontTriplet("any", Font.STYLE_NORMAL, Font.WEIGHT_NORMAL));
+        out.close();
+        assertNull(FontCache.loadFrom(cacheFile));
+        assertFalse(cacheFile.exists());
+    }
+
+    private void assertFontInfoEquals(EmbedFontInfo expected, EmbedFontInfo actual) {
+        assertEquals(expected.getEmbedURI(), actual.getEmbedURI());
+        assertEquals(expected.getMetricsURI(), actual.getMetricsURI());
+        assertEquals(expected.getPostScriptName(), actual.getPostScriptName());
+        assertEquals(expected.getSubFontName(), actual.getSubFontName());
+        assertEquals(expected.getKerning(), actual.getKerning());
+        assertEquals(expected.getAdvanced(), actual.getAdvanced());
+        assertEquals(expected.getEncodingMode(), actual.getEncodingMode());
+        assertEquals(expected.getEmbeddingMode(), actual.getEmbeddingMode());
+        assertEquals(expected.getSimulateStyle(), actual.getSimulateStyle());
+        assertEquals(expected.getEmbedAsType1(), actual.getEmbedAsType1());
+        assertEquals(expected.getUseSVG(), actual.getUseSVG());
+        assertEquals(expected.getFontTriplets(), actual.getFontTriplets());
+        if (expected.getFontTriplets() != null) {
+            for (int i = 0; i < expected.getFontTriplets().size(); i++) {
+                assertEquals(expected.getFontTriplets().get(i).getPriority(),
+                        actual.getFontTriplets().get(i).getPriority());
+            }
+        }
+    }
+}
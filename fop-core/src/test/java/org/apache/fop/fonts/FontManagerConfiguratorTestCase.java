@@ -108,6 +108,13 @@ public class FontManagerConfiguratorTestCase {
                 fontManager.getResourceResolver().getBaseURI());
     }
 
+    @Test
+    public void fontDetectionThreads() {
+        assertEquals(1, getManager().getDetectionThreads());
+        builder.setFontDetectionThreads(4);
+        assertEquals(4, getManager().getDetectionThreads());
+    }
+
     @Test
     public void absoluteBaseURI() {
         String absoluteBase = "test:///absolute/";
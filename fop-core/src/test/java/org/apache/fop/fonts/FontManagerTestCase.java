@@ -78,6 +78,21 @@ public class FontManagerTestCase {
         verify(fontCacheManager).load();
     }
 
+    @Test
+    public void testWordMeasurementCachePerFontInfo() {
+        FontInfo fontInfo = new FontInfo();
+        sut.setup(fontInfo, new FontCollection[0]);
+        Assert.assertNull(fontInfo.getWordMeasurementCache());
+
+        sut.setWordMeasurementCacheSize(10);
+        fontInfo = new FontInfo();
+        sut.setup(fontInfo, new FontCollection[0]);
+        FontInfo otherFontInfo = new FontInfo();
+        sut.setup(otherFontInfo, new FontCollection[0]);
+        Assert.assertEquals(10, fontInfo.getWordMeasurementCache().getCapacity());
+        Assert.assertNotSame(fontInfo.getWordMeasurementCache(), otherFontInfo.getWordMeasurementCache());
+    }
+
     @Test
     public void testSaveCache() throws FOPException {
         sut.saveCache();
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.text.CharacterIterator;
+import java.text.StringCharacterIterator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.fop.traits.MinOptMax;
+
+public class GlyphMappingTestCase {
+
+    private static final class StringTextFragment implements TextFragment {
+
+        private final String text;
+
+        StringTextFragment(String text) {
+            this.text = text;
+        }
+
+        public CharacterIterator getIterator() {
+            return new StringCharacterIterator(text);
+        }
+
+        public int getBeginIndex() {
+            return 0;
+        }
+
+        public int getEndIndex() {
+            return text.length();
+        }
+
+        public String getScript() {
+            return "auto";
+        }
+
+        public String getLanguage() {
+            return "none";
+        }
+
+        public int getBidiLevel() {
+            return -1;
+        }
+
+        public char charAt(int subSequenceIndex) {
+            return text.charAt(subSequenceIndex);
+        }
+
+        public CharSequence subSequence(int startIndex, int endIndex) {
+            return text.subSequence(startIndex, endIndex);
+        }
+    }
+
+    private static Font createFont() {
+        FontMetrics metrics = mock(FontMetrics.class);
+        when(metrics.getWidth(anyInt(), anyInt())).thenReturn(5000000);
+        when(metrics.hasKerningInfo()).thenReturn(true);
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        kerning.put((int) 'A', new HashMap<Integer, Integer>());
+        kerning.get((int) 'A').put((int) 'V', -100);
+        when(metrics.getKerningInfo()).thenReturn(kerning);
+        return new Font("F1", null, metrics, 10000);
+    }
+
+    private static GlyphMapping map(TextFragment text, int start, int end, Font font,
+            MinOptMax[] letterSpaceAdjust, WordMeasurementCache cache) {
+        return GlyphMapping.doGlyphMapping(text, start, end, font, MinOptMax.ZERO, letterSpaceAdjust,
+                (char) 0, ' ', false, 0, false, false, false, cache);
+    }
+
+    @Test
+    public void testCachedMeasurementMatchesMeasurement() {
+        Font font = createFont();
+        WordMeasurementCache cache = new WordMeasurementCache(10);
+        TextFragment text = new StringTextFragment("AVA AVA");
+
+        MinOptMax[] expectedAdjust = new MinOptMax[8];
+        GlyphMapping expected = map(text, 4, 7, font, expectedAdjust, null);
+
+        MinOptMax[] letterSpaceAdjust = new MinOptMax[8];
+        GlyphMapping first = map(text, 0, 3, font, letterSpaceAdjust, cache);
+        GlyphMapping second = map(text, 4, 7, font, letterSpaceAdjust, cache);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertEquals(expected.areaIPD, first.areaIPD);
+        assertEquals(expected.areaIPD, second.areaIPD);
+        assertEquals(expected.letterSpaceCount, second.letterSpaceCount);
+        assertEquals(4, second.startIndex);
+        assertEquals(7, second.endIndex);
+        assertEquals(MinOptMax.getInstance(-1000), letterSpaceAdjust[1]);
+        assertNull(letterSpaceAdjust[2]);
+        assertEquals(expectedAdjust[5], letterSpaceAdjust[5]);
+        assertEquals(MinOptMax.getInstance(3 * 5000 - 1000), second.areaIPD);
+    }
+
+    @Test
+    public void testKeyIncludesFontSize() {
+        Font font = createFont();
+        Font larger = new Font("F1", null, font.getFontMetrics(), 12000);
+        WordMeasurementCache cache = new WordMeasurementCache(10);
+        TextFragment text = new StringTextFragment("AVA");
+        map(text, 0, 3, font, new MinOptMax[4], cache);
+        map(text, 0, 3, larger, new MinOptMax[4], cache);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+}
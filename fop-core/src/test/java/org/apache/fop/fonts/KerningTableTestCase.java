@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class KerningTableTestCase {
+
+    private static Map<Integer, Map<Integer, Integer>> createKerningMap() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        Random random = new Random(17);
+        for (int i = 0; i < 2000; i++) {
+            int first = random.nextInt(600);
+            Map<Integer, Integer> row = kerning.get(first);
+            if (row == null) {
+                row = new HashMap<Integer, Integer>();
+                kerning.put(first, row);
+            }
+            row.put(random.nextInt(600), random.nextInt(400) - 300);
+        }
+        kerning.put(0x4E00, new HashMap<Integer, Integer>());
+        kerning.get(0x4E00).put(0xFFFF, -20);
+        return kerning;
+    }
+
+    @Test
+    public void testLookup() {
+        Map<Integer, Map<Integer, Integer>> kerning = createKerningMap();
+        KerningTable table = KerningTable.valueOf(kerning);
+        int pairs = 0;
+        for (int first = 0; first < 600; first++) {
+            for (int second = 0; second < 600; second++) {
+                Map<Integer, Integer> row = kerning.get(first);
+                Integer expected = row != null ? row.get(second) : null;
+                assertEquals(expected != null ? expected.intValue() : 0,
+                        table.getKerning(first, second));
+                assertEquals(expected != null, table.contains(first, second));
+                if (expected != null) {
+                    pairs++;
+                }
+            }
+        }
+        assertEquals(-20, table.getKerning(0x4E00, 0xFFFF));
+        assertEquals(pairs + 1, table.size());
+        assertEquals(0, table.getKerning(-1, 5));
+    }
+
+    @Test
+    public void testMapView() {
+        Map<Integer, Map<Integer, Integer>> kerning = createKerningMap();
+        kerning.put(700, new HashMap<Integer, Integer>());
+        Map<Integer, Map<Integer, Integer>> view = KerningTable.valueOf(kerning).asMap();
+        kerning.remove(700);
+        assertEquals(kerning, view);
+        assertEquals(view, kerning);
+        assertEquals(kerning.hashCode(), view.hashCode());
+        assertEquals(kerning.get(65), view.get(65));
+        assertNull(view.get(700));
+        assertNull(view.get("A"));
+        assertFalse(view.containsKey(700));
+        assertNull(view.get(65).get(700));
+        try {
+            view.put(1, new HashMap<Integer, Integer>());
+            fail("The view must be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            view.entrySet().iterator().next().getValue().clear();
+            fail("The view must be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        assertSame(KerningTable.EMPTY, KerningTable.valueOf(null));
+        assertSame(KerningTable.EMPTY,
+                KerningTable.valueOf(new HashMap<Integer, Map<Integer, Integer>>()));
+        assertTrue(KerningTable.EMPTY.isEmpty());
+        assertTrue(KerningTable.EMPTY.asMap().isEmpty());
+        assertEquals(0, KerningTable.EMPTY.getKerning('A', 'V'));
+    }
+
+    @Test
+    public void testFontLooksUpKerningTableOnce() {
+        Map<Integer, Map<Integer, Integer>> kerning = new HashMap<Integer, Map<Integer, Integer>>();
+        kerning.put((int) 'A', new HashMap<Integer, Integer>());
+        kerning.get((int) 'A').put((int) 'V', -80);
+        Typeface typeface = mock(Typeface.class);
+        when(typeface.hasKerningInfo()).thenReturn(true);
+        when(typeface.getKerningInfo()).thenReturn(kerning);
+        when(typeface.getKerningTable()).thenCallRealMethod();
+        Font font = new Font("F1", null, typeface, 1000);
+        assertEquals(-80, font.getKernValue('A', 'V'));
+        assertEquals(0, font.getKernValue('V', 'A'));
+        verify(typeface, times(1)).getKerningInfo();
+    }
+
+    @Test
+    public void testCustomFontKerning() {
+        InternalResourceResolver resolver = ResourceResolverFactory.createDefaultInternalResourceResolver(
+                new java.io.File(".").toURI());
+        SingleByteFont font = new SingleByteFont(resolver, EmbeddingMode.AUTO);
+        assertFalse(font.hasKerningInfo());
+        Map<Integer, Integer> row = new HashMap<Integer, Integer>();
+        row.put((int) 'V', -80);
+        font.putKerningEntry((int) 'A', row);
+        assertTrue(font.hasKerningInfo());
+        assertEquals(-80, font.getKerningTable().getKerning('A', 'V'));
+
+        row = new HashMap<Integer, Integer>();
+        row.put((int) 'o', -15);
+        font.putKerningEntry((int) 'T', row);
+        assertEquals(-80, font.getKerningTable().getKerning('A', 'V'));
+        assertEquals(-15, font.getKerningTable().getKerning('T', 'o'));
+        assertEquals(-15, font.getKerningInfo().get((int) 'T').get((int) 'o').intValue());
+
+        Font sized = new Font("F1", null, font, 12000);
+        assertEquals(-15 * 12, sized.getKernValue('T', 'o'));
+        assertEquals(0, sized.getKernValue('o', 'T'));
+
+        font.setKerningEnabled(false);
+        assertFalse(font.hasKerningInfo());
+        assertTrue(font.getKerningTable().isEmpty());
+        assertEquals(0, new Font("F1", null, font, 12000).getKernValue('T', 'o'));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.apache.fop.complexscripts.fonts.Positionable;
+import org.apache.fop.complexscripts.fonts.Substitutable;
+import org.apache.fop.complexscripts.util.CharAssociation;
+
+public class ShapingCacheTestCase {
+
+    private static final class ShapingFont implements Substitutable, Positionable {
+
+        private int substitutions;
+
+        private int positionings;
+
+        public boolean performsSubstitution() {
+            return true;
+        }
+
+        public CharSequence performSubstitution(CharSequence cs, String script, String language,
+                List associations, boolean retainControls) {
+            substitutions++;
+            if (associations != null) {
+                associations.clear();
+                for (int i = 0; i < cs.length(); i++) {
+                    associations.add(new CharAssociation(i, 1));
+                }
+            }
+            return new StringBuilder(cs).reverse();
+        }
+
+        public CharSequence reorderCombiningMarks(CharSequence cs, int[][] gpa, String script,
+                String language, List associations) {
+            return cs;
+        }
+
+        public boolean performsPositioning() {
+            return true;
+        }
+
+        public int[][] performPositioning(CharSequence cs, String script, String language,
+                int fontSize) {
+            positionings++;
+            if (cs.length() == 1) {
+                return null;
+            }
+            int[][] adjustments = new int[cs.length()][4];
+            adjustments[0][0] = fontSize / 1000;
+            return adjustments;
+        }
+
+        public int[][] performPositioning(CharSequence cs, String script, String language) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testSubstitution() {
+        ShapingCache cache = new ShapingCache(10);
+        ShapingFont font = new ShapingFont();
+        List<CharAssociation> associations = new ArrayList<CharAssociation>();
+        assertEquals("cba", cache.substitute(font, "F1", "abc", "arab", "dflt", associations,
+                false).toString());
+        assertEquals(3, associations.size());
+        List<CharAssociation> cachedAssociations = new ArrayList<CharAssociation>();
+        assertEquals("cba", cache.substitute(font, "F1", "abc", "arab", "dflt",
+                cachedAssociations, false).toString());
+        assertEquals(1, font.substitutions);
+        assertEquals(3, cachedAssociations.size());
+        assertNotSame(associations.get(0), cachedAssociations.get(0));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.substitute(font, "F2", "abc", "arab", "dflt", null, false);
+        cache.substitute(font, "F1", "abc", "thai", "dflt", null, false);
+        cache.substitute(font, "F1", "abc", "arab", "URD", null, false);
+        cache.substitute(font, "F1", "abc", "arab", "dflt", null, true);
+        assertEquals(5, font.substitutions);
+        assertEquals(1.0 / 6, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testPositioning() {
+        ShapingCache cache = new ShapingCache(10);
+        ShapingFont font = new ShapingFont();
+        int[][] adjustments = cache.position(font, "F1", "ab", "arab", "dflt", 12000);
+        assertEquals(12, adjustments[0][0]);
+        adjustments[0][0] = 0;
+        int[][] cached = cache.position(font, "F1", "ab", "arab", "dflt", 12000);
+        assertEquals(1, font.positionings);
+        assertArrayEquals(new int[] {12, 0, 0, 0}, cached[0]);
+        assertEquals(10, cache.position(font, "F1", "ab", "arab", "dflt", 10000)[0][0]);
+        assertNull(cache.position(font, "F1", "a", "arab", "dflt", 12000));
+        assertNull(cache.position(font, "F1", "a", "arab", "dflt", 12000));
+        assertEquals(3, font.positionings);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.fonts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.ResourceResolver;
+
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.fonts.truetype.SVGGlyphData;
+
+public class SharedFontPoolTestCase {
+
+    private static final URI DEJAVU = new File("test/resources/fonts/ttf/DejaVuLGCSerif.ttf").toURI();
+
+    private final SharedFontPool pool = new SharedFontPool();
+
+    private final InternalResourceResolver resolver
+            = ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI());
+
+    private CustomFont loadFont(URI uri, InternalResourceResolver resourceResolver)
+            throws IOException {
+        return pool.loadFont(new FontUris(uri, null), null, true, EmbeddingMode.SUBSET,
+                EncodingMode.AUTO, true, true, resourceResolver, false, false, false);
+    }
+
+    @Test
+    public void testFontDataIsShared() throws IOException {
+        MultiByteFont a = (MultiByteFont) loadFont(DEJAVU, resolver);
+        MultiByteFont b = (MultiByteFont) loadFont(DEJAVU,
+                ResourceResolverFactory.createDefaultInternalResourceResolver(new File(".").toURI()));
+        assertNotSame(a, b);
+        assertEquals(1, pool.size());
+        assertNotNull(a.getGSUB());
+        assertSame(a.getGSUB(), b.getGSUB());
+    }
+
+    @Test
+    public void testCopiesHaveTheirOwnSubset() throws IOException {
+        MultiByteFont a = (MultiByteFont) loadFont(DEJAVU, resolver);
+        MultiByteFont b = (MultiByteFont) loadFont(DEJAVU, resolver);
+        int used = b.getUsedGlyphs().size();
+        a.mapChar('A');
+        assertEquals(used + 1, a.getUsedGlyphs().size());
+        assertEquals(used, b.getUsedGlyphs().size());
+    }
+
+    @Test
+    public void testCopiesHaveTheirOwnSVGGlyphs() {
+        MultiByteFont font = new MultiByteFont(resolver, EmbeddingMode.SUBSET);
+        SVGGlyphData svg = new SVGGlyphData();
+        svg.setSVG("<svg/>");
+        Map<Integer, SVGGlyphData> svgs = new HashMap<Integer, SVGGlyphData>();
+        svgs.put(1, svg);
+        font.setSVG(svgs);
+        MultiByteFont copy = font.copy(resolver);
+        assertNotSame(svg, copy.svgs.get(1));
+        copy.svgs.get(1).scale = 2;
+        assertEquals(1, svg.scale, 0);
+    }
+
+    @Test
+    public void testFontsAreKeyedByResolver() throws IOException {
+        final ResourceResolver delegate = ResourceResolverFactory.createDefaultResourceResolver();
+        ResourceResolver custom = new ResourceResolver() {
+            public Resource getResource(URI uri) throws IOException {
+                return delegate.getResource(uri);
+            }
+
+            public OutputStream getOutputStream(URI uri) throws IOException {
+                return delegate.getOutputStream(uri);
+            }
+        };
+        MultiByteFont a = (MultiByteFont) loadFont(DEJAVU, resolver);
+        MultiByteFont b = (MultiByteFont) loadFont(DEJAVU,
+                ResourceResolverFactory.createInternalResourceResolver(new File(".").toURI(), custom));
+        assertEquals(2, pool.size());
+        assertNotSame(a.getGSUB(), b.getGSUB());
+    }
+
+    @Test
+    public void testUnusedFontsAreDropped() throws IOException {
+        CustomFont a = loadFont(DEJAVU, resolver);
+        CustomFont b = loadFont(DEJAVU, resolver);
+        pool.releaseCopy(a);
+        assertEquals(1, pool.size());
+        pool.releaseCopy(b);
+        assertEquals(0, pool.size());
+        assertNotSame(b, loadFont(DEJAVU, resolver));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testFailedLoadIsNotPooled() throws IOException {
+        File file = File.createTempFile("fop-broken-font", ".ttf");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write("not a font".getBytes("US-ASCII"));
+            } finally {
+                out.close();
+            }
+            try {
+                loadFont(file.toURI(), resolver);
+                fail("a broken font must not load");
+            } catch (Exception e) {
+                // expected
+            }
+            assertEquals(0, pool.size());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.fop.apps.FopFactoryConfig;
+import org.apache.fop.apps.io.InternalResourceResolver;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+
+public class HyphenationResultCacheTestCase {
+
+    private HyphenationTree hTree;
+
+    @Before
+    public void setUp() throws Exception {
+        hTree = new HyphenationTree();
+        hTree.loadPatterns(new File("test/resources/fop/fr.xml").getAbsolutePath());
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        HyphenationResultCache cache = new HyphenationResultCache(10);
+        Hyphenation hyph = cache.hyphenate(hTree, "fr", null, "hello", 0, 0);
+        assertEquals("-hel-lo", hyph.toString());
+        assertSame(hyph, cache.hyphenate(hTree, "fr", null, "hello", 0, 0));
+        assertEquals("hel-lo", cache.hyphenate(hTree, "fr", null, "hello", 1, 1).toString());
+        assertEquals("hel-lo", cache.hyphenate(hTree, "fr", "FR", "hello", 1, 1).toString());
+        // words without hyphenation points are cached as well
+        assertNull(cache.hyphenate(hTree, "fr", null, "xyz", 1, 1));
+        assertNull(cache.hyphenate(hTree, "fr", null, "xyz", 1, 1));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(3, cache.size("fr", null));
+        assertEquals(1, cache.size("fr", "FR"));
+        assertEquals(0, cache.size("de", null));
+    }
+
+    @Test
+    public void testHyphenatorUsesFactoryCache() {
+        File f = new File("test/resources/fop");
+        InternalResourceResolver resourceResolver
+                = ResourceResolverFactory.createDefaultInternalResourceResolver(f.toURI());
+        FOUserAgent userAgent = new FopFactoryBuilder(new File(".").toURI())
+                .setCacheSize(FopFactoryConfig.HYPHENATION_CACHE, 100).build().newFOUserAgent();
+        for (int i = 0; i < 3; i++) {
+            Hyphenation hyph = Hyphenator.hyphenate("fr.xml" + Hyphenator.XMLTYPE, null,
+                    resourceResolver, null, "hello", 0, 0, userAgent);
+            assertEquals("-hel-lo", hyph.toString());
+        }
+        HyphenationResultCache cache = userAgent.getHyphenationResultCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class HyphenationTreeFileTestCase {
+
+    private final List<String> patterns = new ArrayList<String>();
+
+    private HyphenationTree tree;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        StringBuilder xml = new StringBuilder("<hyphenation-info><classes>");
+        for (char c = 'a'; c <= 'h'; c++) {
+            xml.append(c).append(Character.toUpperCase(c)).append(' ');
+        }
+        xml.append("\u00fc\u00dc</classes>");
+        xml.append("<exceptions>ta-ble a<hyphen pre=\"k\" no=\"c\" post=\"k\"/>b</exceptions>");
+        xml.append("<patterns>");
+        for (int i = 0; i < 500; i++) {
+            StringBuilder pattern = new StringBuilder();
+            if (random.nextInt(10) == 0) {
+                pattern.append('.');
+            }
+            int length = 1 + random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                char c = random.nextInt(10) == 0 ? '\u00fc' : (char) ('a' + random.nextInt(8));
+                pattern.append(c);
+                if (random.nextBoolean()) {
+                    pattern.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            patterns.add(pattern.toString().replaceAll("[0-9.]", ""));
+            xml.append(pattern).append(' ');
+        }
+        xml.append("</patterns></hyphenation-info>");
+        tree = new HyphenationTree();
+        tree.loadPatterns(new InputSource(new StringReader(xml.toString())));
+    }
+
+    @Test
+    public void testMappedTreeHyphenatesLikeLoadedTree() throws Exception {
+        File file = File.createTempFile("fop", ".hyp");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            HyphenationTreeFile.write(tree, out);
+            out.close();
+            MappedHyphenationTree mapped = HyphenationTreeFile.map(file);
+
+            assertEquals(tree.size(), mapped.size());
+            for (String pattern : patterns) {
+                assertEquals(pattern, tree.findPattern(pattern), mapped.findPattern(pattern));
+            }
+            assertEquals("", mapped.findPattern("zz"));
+
+            Random random = new Random(7);
+            for (int i = 0; i < 2000; i++) {
+                char[] word = new char[2 + random.nextInt(12)];
+                for (int j = 0; j < word.length; j++) {
+                    int r = random.nextInt(20);
+                    if (r == 0) {
+                        word[j] = '-';
+                    } else if (r == 1) {
+                        word[j] = '\u00dc';
+                    } else {
+                        word[j] = (char) ((r < 4 ? 'A' : 'a') + r % 8);
+                    }
+                }
+                String w = new String(word);
+                assertHyphenationEquals(w, tree.hyphenate(w, 1, 1), mapped.hyphenate(w, 1, 1));
+                assertHyphenationEquals(w, tree.hyphenate(w, 2, 3), mapped.hyphenate(w, 2, 3));
+            }
+            assertEquals("ta-ble", mapped.hyphenate("table", 1, 1).toString());
+            assertHyphenationEquals("ab", tree.hyphenate("ab", 1, 1), mapped.hyphenate("ab", 1, 1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertHyphenationEquals(String word, Hyphenation expected, Hyphenation actual) {
+        if (expected == null) {
+            assertNull(word, actual);
+        } else {
+            assertEquals(word, expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    public void testWriteMappedTree() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyphenationTreeFile.write(tree, out);
+        byte[] bytes = out.toByteArray();
+        MappedHyphenationTree wrapped = HyphenationTreeFile.wrap(ByteBuffer.wrap(bytes));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        HyphenationTreeFile.write(wrapped, copy);
+        assertArrayEquals(bytes, copy.toByteArray());
+    }
+
+    @Test
+    public void testCopyMappedTree() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyphenationTreeFile.write(tree, out);
+        MappedHyphenationTree wrapped = HyphenationTreeFile.wrap(ByteBuffer.wrap(out.toByteArray()));
+        HyphenationTree copy = wrapped.toHyphenationTree();
+        assertEquals(tree.size(), copy.size());
+        for (String pattern : patterns) {
+            assertEquals(pattern, tree.findPattern(pattern), copy.findPattern(pattern));
+        }
+        assertEquals("ta-ble", copy.hyphenate("table", 1, 1).toString());
+        copy.insert("zz", (char) 1);
+        assertEquals(1, copy.find("zz"));
+        assertEquals("", wrapped.findPattern("zz"));
+    }
+
+    @Test
+    public void testRebuildKeepsMappedTreeIntact() throws Exception {
+        File dir = File.createTempFile("fop", "hyp");
+        dir.delete();
+        dir.mkdir();
+        File xml = new File(dir, "xx.xml");
+        File hyp = new File(dir, "xx.hyp");
+        try {
+            writePatterns(xml, "<classes>aA hH lL oO</classes><patterns>l1l</patterns>");
+            new SerializeHyphPattern().serializeDir(dir, dir);
+            MappedHyphenationTree mapped = HyphenationTreeFile.map(hyp);
+            assertEquals("hol-lo", mapped.hyphenate("hollo", 1, 1).toString());
+
+            writePatterns(xml, "<classes>aA hH lL oO</classes><patterns>o1l</patterns>");
+            xml.setLastModified(hyp.lastModified() + 2000);
+            new SerializeHyphPattern().serializeDir(dir, dir);
+
+            // the new patterns are swapped in, while the old ones stay mapped untouched
+            assertEquals("ho-llo", HyphenationTreeFile.map(hyp).hyphenate("hollo", 1, 1).toString());
+            assertEquals("hol-lo", mapped.hyphenate("hollo", 1, 1).toString());
+            assertArrayEquals(new String[] {"xx.hyp", "xx.xml"}, sortedList(dir));
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private void writePatterns(File file, String content) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("<hyphenation-info>" + content + "</hyphenation-info>");
+        } finally {
+            out.close();
+        }
+    }
+
+    private String[] sortedList(File dir) {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testRejectCorruptFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyphenationTreeFile.write(tree, out);
+        byte[] bytes = out.toByteArray();
+        assertInvalid(Arrays.copyOf(bytes, bytes.length - 1));
+        byte[] corrupt = bytes.clone();
+        // make the first node of the pattern tree point beyond the last node
+        corrupt[48 + 2] = (byte) 0xFF;
+        corrupt[48 + 3] = (byte) 0xFE;
+        assertInvalid(corrupt);
+        assertInvalid(new byte[] {(byte) 0xAC, (byte) 0xED, 0, 5});
+    }
+
+    private void assertInvalid(byte[] bytes) {
+        try {
+            HyphenationTreeFile.wrap(ByteBuffer.wrap(bytes));
+            fail("The file is invalid");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
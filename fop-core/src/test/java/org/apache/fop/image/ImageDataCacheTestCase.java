@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ImageDataCacheTestCase {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("fop", "cache");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSharedAcrossInstances() throws IOException {
+        ImageDataCache cache = new ImageDataCache(directory, 1000);
+        String hash = ImageDataCache.computeHash(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        assertEquals(64, hash.length());
+        assertNull(cache.get(hash, "test"));
+        cache.put(hash, "test", new byte[] {4, 5});
+
+        ImageDataCache other = new ImageDataCache(directory, 1000);
+        assertEquals(2, other.getSize());
+        assertArrayEquals(new byte[] {4, 5}, other.get(hash, "test"));
+        assertNull(other.get(hash, "other"));
+        assertEquals(1, other.getHitCount());
+        assertEquals(1, other.getMissCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        ImageDataCache cache = new ImageDataCache(directory, 25);
+        cache.put("a", "test", new byte[10]);
+        new File(directory, "a-test.bin").setLastModified(System.currentTimeMillis() - 20000);
+        cache.put("b", "test", new byte[10]);
+        new File(directory, "b-test.bin").setLastModified(System.currentTimeMillis() - 10000);
+        // using "a" makes "b" the least recently used entry
+        cache.get("a", "test");
+        cache.put("c", "test", new byte[10]);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(20, cache.getSize());
+        assertNull(cache.get("b", "test"));
+        assertEquals(10, cache.get("a", "test").length);
+        assertEquals(10, cache.get("c", "test").length);
+    }
+
+    @Test
+    public void testTooLarge() throws IOException {
+        ImageDataCache cache = new ImageDataCache(directory, 5);
+        cache.put("a", "test", new byte[10]);
+        assertNull(cache.get("a", "test"));
+        assertFalse(new File(directory, "a-test.bin").exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() throws IOException {
+        new ImageDataCache(directory, 0);
+    }
+}
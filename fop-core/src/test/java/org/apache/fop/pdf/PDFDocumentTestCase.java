@@ -21,10 +21,12 @@ package org.apache.fop.pdf;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Date;
 
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * Test case for {@link PDFDocument}
@@ -59,4 +61,62 @@ public class PDFDocumentTestCase {
         PDFDocument.flushTextBuffer(textBuffer, out);
         assertEquals(fullString, out.toString());
     }
+
+    @Test
+    public void testConcurrentEncodingProducesSameOutput() throws IOException {
+        assertEquals(createDocument(1), createDocument(4));
+    }
+
+    private String createDocument(int compressionThreads) throws IOException {
+        PDFDocument doc = new PDFDocument("Test");
+        doc.getInfo().setCreationDate(new Date(0));
+        doc.setCompressionThreads(compressionThreads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        for (int i = 0; i < 20; i++) {
+            PDFStream stream = new PDFStream(i % 2 == 0);
+            for (int j = 0; j < 200; j++) {
+                stream.add("BT /F1 12 Tf " + (i * j % 500) + " 700 Td (Text " + j + ") Tj ET\n");
+            }
+            doc.registerObject(stream);
+            doc.registerObject(new PDFArray(i, i + 1));
+            if (i % 5 == 4) {
+                doc.output(out);
+            }
+        }
+        doc.outputTrailer(out);
+        // the file ID is different for every document
+        return out.toString("ISO-8859-1").replaceAll("/ID \\[[^\\]]*\\]", "");
+    }
+
+    @Test
+    public void testXObjectDeduplication() throws IOException {
+        testXObjectDeduplication(1);
+        testXObjectDeduplication(4);
+    }
+
+    private void testXObjectDeduplication(int compressionThreads) throws IOException {
+        PDFDocument doc = new PDFDocument("Test");
+        doc.setXObjectDeduplicationEnabled(true);
+        doc.setCompressionThreads(compressionThreads);
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        // the same image from two URIs and a different one
+        PDFImageXObject first = doc.addImage(null, new BitmapImage("a.png", 10, 10, data, null));
+        PDFImageXObject second = doc.addImage(null, new BitmapImage("b.png", 10, 10, data, null));
+        PDFImageXObject other = doc.addImage(null, new BitmapImage("c.png", 10, 10, new byte[300],
+                null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.outputHeader(out);
+        doc.outputTrailer(out);
+
+        assertEquals(1, doc.getDeduplicatedXObjectCount());
+        assertEquals(first.referencePDF(), second.referencePDF());
+        assertFalse(first.referencePDF().equals(other.referencePDF()));
+        String pdf = out.toString("ISO-8859-1");
+        assertEquals(2, pdf.split("/Subtype /Image").length - 1);
+        assertEquals(pdf, 1, pdf.split("/Im2 " + first.referencePDF()).length - 1);
+    }
 }
@@ -27,9 +27,15 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.xmlgraphics.io.ResourceResolver;
@@ -227,4 +233,31 @@ public class PDFFactoryTestCase {
 
         assertEquals(expectedString, link.toPDFString());
     }
+
+    @Test
+    public void testReuseObjectsWithSameContent() {
+        PDFDocument doc = new PDFDocument("");
+        PDFFactory pdfFactory = new PDFFactory(doc);
+        List<Double> domain = Arrays.asList(0.0, 1.0);
+        PDFFunction function = pdfFactory.makeFunction(domain, null,
+                new float[] {0f}, new float[] {1f}, 1.0);
+        assertSame(function, pdfFactory.makeFunction(Arrays.asList(0.0, 1.0), null,
+                new float[] {0f}, new float[] {1f}, 1.0));
+        assertNotSame(function, pdfFactory.makeFunction(domain, null,
+                new float[] {0f}, new float[] {0.5f}, 1.0));
+
+        Map<String, Float> settings = Collections.singletonMap(PDFGState.GSTATE_ALPHA_NONSTROKE,
+                0.5f);
+        PDFGState gstate = pdfFactory.makeGState(settings, PDFGState.DEFAULT);
+        assertSame(gstate, pdfFactory.makeGState(settings, PDFGState.DEFAULT));
+        assertNotSame(gstate, pdfFactory.makeGState(
+                Collections.singletonMap(PDFGState.GSTATE_ALPHA_STROKE, 0.5f), PDFGState.DEFAULT));
+
+        PDFAction action = pdfFactory.getExternalAction("file:test.pdf#page=2", false);
+        assertSame(action, pdfFactory.getExternalAction("file:test.pdf#page=2", false));
+        assertNotSame(action, pdfFactory.getExternalAction("file:test.pdf#page=3", false));
+
+        assertEquals(12, doc.getReuseLookupCount());
+        assertEquals(5, doc.getReuseHitCount());
+    }
 }
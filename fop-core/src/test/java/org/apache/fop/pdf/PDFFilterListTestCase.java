@@ -19,8 +19,16 @@
 
 package org.apache.fop.pdf;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
 public class PDFFilterListTestCase {
@@ -30,4 +38,37 @@ public class PDFFilterListTestCase {
         PDFFilterList filterList = new PDFFilterList();
         assertFalse(filterList.isInitialized());
     }
+
+    @Test
+    public void testFlateSettings() throws Exception {
+        PDFFilterList filterList = new PDFFilterList();
+        filterList.addDefaultFilters(Collections.EMPTY_MAP, PDFFilterList.CONTENT_FILTER,
+                FlateSettings.BEST_SPEED);
+        FlateFilter filter = (FlateFilter) filterList.getFilters().get(0);
+        assertEquals(FlateSettings.BEST_SPEED, filter.getSettings());
+
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 17 + i / 1000);
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        OutputStream out = filter.applyFilter(encoded);
+        out.write(data);
+        out.close();
+        Inflater inflater = new Inflater();
+        inflater.setInput(encoded.toByteArray());
+        byte[] decoded = new byte[data.length];
+        assertEquals(data.length, inflater.inflate(decoded));
+        inflater.end();
+        assertArrayEquals(data, decoded);
+    }
+
+    @Test
+    public void testFlateSettingsForNamedFilter() {
+        PDFFilterList filterList = new PDFFilterList();
+        FlateSettings settings = new FlateSettings(Deflater.BEST_COMPRESSION, Deflater.FILTERED);
+        filterList.addDefaultFilters(Collections.singletonMap(PDFFilterList.DEFAULT_FILTER,
+                Collections.singletonList("flate")), PDFFilterList.IMAGE_FILTER, settings);
+        assertEquals(settings, ((FlateFilter) filterList.getFilters().get(0)).getSettings());
+    }
 }
@@ -19,9 +19,17 @@ package org.apache.fop.render;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -33,11 +41,22 @@ import javax.xml.transform.stream.StreamSource;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import org.xml.sax.SAXException;
 
+import org.apache.xmlgraphics.io.Resource;
+import org.apache.xmlgraphics.io.TempResourceResolver;
+
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
+import org.apache.fop.apps.FopFactoryBuilder;
+import org.apache.fop.apps.io.ResourceResolverFactory;
+import org.apache.fop.events.Event;
+import org.apache.fop.events.EventListener;
 
 public class ConserveMemoryTestCase {
     @Test
@@ -76,11 +95,178 @@ public class ConserveMemoryTestCase {
         }
     }
 
-    private void foToOutput(String fo) throws SAXException, TransformerException {
+    @Test
+    public void testCompressedPages() throws Throwable {
+        final String fo = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+                + "  <fo:layout-master-set>\n"
+                + "    <fo:simple-page-master master-name=\"simple\" page-height=\"27.9cm\" page-width=\"21.6cm\">\n"
+                + "      <fo:region-body />\n"
+                + "    </fo:simple-page-master>\n"
+                + "  </fo:layout-master-set>\n"
+                + "  <fo:page-sequence master-reference=\"simple\">\n"
+                + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+                + " <fo:block>See page <fo:page-number-citation ref-id=\"a\"/></fo:block>\n"
+                + " <fo:block break-before=\"page\">page 2</fo:block>\n"
+                + " <fo:block break-before=\"page\" id=\"a\">page 3</fo:block>\n"
+                + "    </fo:flow>\n"
+                + "  </fo:page-sequence>\n"
+                + "</fo:root>";
+        final List<String> errors = new ArrayList<String>();
         FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
         FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setCachedPageCompression(true);
+        userAgent.getEventBroadcaster().addEventListener(new EventListener() {
+            public void processEvent(Event event) {
+                if ("pageSaveError".equals(event.getEventKey())
+                        || "pageLoadError".equals(event.getEventKey())) {
+                    errors.add(event.getEventKey());
+                }
+            }
+        });
+        foToOutput(fo, fopFactory, userAgent);
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
+    @Test
+    public void testMultipleSavedPages() throws Throwable {
+        for (boolean compress : new boolean[] {false, true}) {
+            final List<String> errors = new ArrayList<String>();
+            FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+            FOUserAgent userAgent = fopFactory.newFOUserAgent();
+            userAgent.setCachedPageCompression(compress);
+            userAgent.getEventBroadcaster().addEventListener(new EventListener() {
+                public void processEvent(Event event) {
+                    if ("pageSaveError".equals(event.getEventKey())
+                            || "pageLoadError".equals(event.getEventKey())) {
+                        errors.add(event.getEventKey());
+                    }
+                }
+            });
+            userAgent.setConserveMemoryPolicy(true);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Fop fop = fopFactory.newFop("application/pdf", userAgent, out);
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            Source src = new StreamSource(new ByteArrayInputStream(getCitingPagesFO(4).getBytes()));
+            transformer.transform(src, new SAXResult(fop.getDefaultHandler()));
+
+            assertTrue(errors.toString(), errors.isEmpty());
+            assertEquals(5, fop.getResults().getPageCount());
+            assertEquals(5, countPages(out.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testMaxUnresolvedPagesInMemory() throws Throwable {
+        final List<Event> events = new ArrayList<Event>();
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
+        userAgent.setMaxUnresolvedPagesInMemory(1);
+        userAgent.getEventBroadcaster().addEventListener(new EventListener() {
+            public void processEvent(Event event) {
+                if (event.getEventKey().startsWith("page") || event.getEventKey().startsWith("cached")) {
+                    events.add(event);
+                }
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Fop fop = fopFactory.newFop("application/pdf", userAgent, out);
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(getCitingPagesFO(4).getBytes()));
+        transformer.transform(src, new SAXResult(fop.getDefaultHandler()));
+
+        assertEquals(events.toString(), 1, events.size());
+        Event statistics = events.get(0);
+        assertEquals("cachedPagesStatistics", statistics.getEventKey());
+        assertTrue(statistics.toString(), (Integer) statistics.getParam("held") <= 1);
+        assertEquals(3, statistics.getParam("spilled"));
+        assertEquals(3, statistics.getParam("reloaded"));
+        assertEquals(5, fop.getResults().getPageCount());
+        assertEquals(5, countPages(out.toByteArray()));
+    }
+
+    @Test
+    public void testSavedPagesAreReleasedOnAbort() throws Throwable {
+        final Map<String, byte[]> tempResources = new HashMap<String, byte[]>();
+        final int[] saved = new int[1];
+        TempResourceResolver tempResolver = new TempResourceResolver() {
+            public Resource getResource(String id) throws IOException {
+                return new Resource(new ByteArrayInputStream(tempResources.remove(id)));
+            }
+
+            public OutputStream getOutputStream(final String id) throws IOException {
+                saved[0]++;
+                return new ByteArrayOutputStream() {
+                    public void close() {
+                        tempResources.put(id, toByteArray());
+                    }
+                };
+            }
+        };
+        FopFactory fopFactory = new FopFactoryBuilder(new File(".").toURI(),
+                ResourceResolverFactory.createTempAwareResourceResolver(tempResolver,
+                        ResourceResolverFactory.createDefaultResourceResolver())).build();
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
         userAgent.setConserveMemoryPolicy(true);
+        // the pages citing the second page-sequence are saved before its invalid content is found
+        String fo = getCitingPagesFO(4).replace(" id=\"a\"", "").replace("</fo:root>",
+                "  <fo:page-sequence master-reference=\"simple\">\n"
+                + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+                + " <fo:block id=\"a\">target</fo:block><fo:inline/>\n"
+                + "    </fo:flow>\n"
+                + "  </fo:page-sequence>\n"
+                + "</fo:root>");
+        Fop fop = fopFactory.newFop("application/pdf", userAgent, new ByteArrayOutputStream());
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Source src = new StreamSource(new ByteArrayInputStream(fo.getBytes()));
+        try {
+            transformer.transform(src, new SAXResult(fop.getDefaultHandler()));
+            fail("The invalid document must be aborted");
+        } catch (TransformerException e) {
+            //expected
+        }
+        assertTrue(saved[0] > 0);
+        assertTrue(tempResources.keySet().toString(), tempResources.isEmpty());
+    }
+
+    private static String getCitingPagesFO(int citingPages) {
+        StringBuilder fo = new StringBuilder("<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+                + "  <fo:layout-master-set>\n"
+                + "    <fo:simple-page-master master-name=\"simple\" page-height=\"27.9cm\" page-width=\"21.6cm\">\n"
+                + "      <fo:region-body />\n"
+                + "    </fo:simple-page-master>\n"
+                + "  </fo:layout-master-set>\n"
+                + "  <fo:page-sequence master-reference=\"simple\">\n"
+                + "    <fo:flow flow-name=\"xsl-region-body\">\n");
+        for (int i = 0; i < citingPages; i++) {
+            fo.append(" <fo:block break-before=\"page\">See page <fo:page-number-citation ref-id=\"a\"/>"
+                    + "</fo:block>\n");
+        }
+        fo.append(" <fo:block break-before=\"page\" id=\"a\">last page</fo:block>\n"
+                + "    </fo:flow>\n"
+                + "  </fo:page-sequence>\n"
+                + "</fo:root>");
+        return fo.toString();
+    }
+
+    private static int countPages(byte[] pdf) {
+        Matcher matcher = Pattern.compile("/Type /Page(?!s)").matcher(new String(pdf));
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private void foToOutput(String fo) throws SAXException, TransformerException {
+        FopFactory fopFactory = FopFactory.newInstance(new File(".").toURI());
+        FOUserAgent userAgent = fopFactory.newFOUserAgent();
         userAgent.setAccessibility(true);
+        foToOutput(fo, fopFactory, userAgent);
+    }
+
+    private void foToOutput(String fo, FopFactory fopFactory, FOUserAgent userAgent)
+            throws SAXException, TransformerException {
+        userAgent.setConserveMemoryPolicy(true);
         Fop fop = fopFactory.newFop("application/pdf", userAgent, new ByteArrayOutputStream());
         Transformer transformer = TransformerFactory.newInstance().newTransformer();
         Source src = new StreamSource(new ByteArrayInputStream(fo.getBytes()));
@@ -25,9 +25,13 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.IndexColorModel;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -40,6 +44,7 @@ import org.apache.xmlgraphics.image.loader.ImageSize;
 import org.apache.xmlgraphics.image.loader.impl.ImageRawPNG;
 import org.apache.xmlgraphics.java2d.color.profile.ColorProfileUtil;
 
+import org.apache.fop.image.ImageDataCache;
 import org.apache.fop.pdf.FlateFilter;
 import org.apache.fop.pdf.PDFAMode;
 import org.apache.fop.pdf.PDFDictionary;
@@ -114,6 +119,52 @@ public class ImageRawPNGAdapterTestCase {
         testOutputContentsWithGRGBAPNG(128, -1, -1, -1, 128);
     }
 
+    @Test
+    public void testOutputContentsWithImageDataCache() throws IOException {
+        File directory = File.createTempFile("fop", "cache");
+        directory.delete();
+        ImageDataCache cache = new ImageDataCache(directory, 100000);
+        try {
+            byte[] expected = RawPNGTestUtil.buildGRGBAData(-1, 128, 128, 128, -1);
+            assertArrayEquals(expected, outputContentsWithImageDataCache(cache));
+            assertEquals(0, cache.getHitCount());
+            // the second image is served from the cache
+            assertArrayEquals(expected, outputContentsWithImageDataCache(cache));
+            assertEquals(1, cache.getHitCount());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private byte[] outputContentsWithImageDataCache(ImageDataCache cache) throws IOException {
+        ComponentColorModel cm = mock(ComponentColorModel.class);
+        ImageRawPNG irpng = mock(ImageRawPNG.class);
+        PDFDocument doc = mock(PDFDocument.class);
+        PDFProfile profile = mock(PDFProfile.class);
+        ImageRawPNGAdapter irpnga = new ImageRawPNGAdapter(irpng, "mock");
+        irpnga.setImageDataCache(cache);
+
+        when(irpng.getColorModel()).thenReturn(cm);
+        when(irpng.getRenderingIntent()).thenReturn(-1);
+        when(cm.getNumComponents()).thenReturn(4);
+        when(doc.getProfile()).thenReturn(profile);
+        when(profile.getPDFAMode()).thenReturn(PDFAMode.PDFA_1A);
+        when(irpng.getSize()).thenReturn(RawPNGTestUtil.getImageSize());
+        final byte[] data = RawPNGTestUtil.buildGRGBAData(-1, 128, 128, 128, 128);
+        when(irpng.createInputStream()).thenAnswer(new Answer<InputStream>() {
+            public InputStream answer(InvocationOnMock invocation) {
+                return new ByteArrayInputStream(data);
+            }
+        });
+        irpnga.setup(doc);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        irpnga.outputContents(baos);
+        return baos.toByteArray();
+    }
+
     private void testOutputContentsWithGRGBAPNG(int gray, int red, int green, int blue, int alpha)
             throws IOException {
         int numColorComponents = gray > -1 ? 1 : 3;
@@ -19,14 +19,19 @@
 
 package org.apache.fop.render.pdf;
 
+import java.util.Map;
+import java.util.zip.Deflater;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.fop.apps.AbstractRendererConfigParserTester;
 import org.apache.fop.apps.PDFRendererConfBuilder;
+import org.apache.fop.pdf.FlateSettings;
 import org.apache.fop.pdf.PDFAMode;
 import org.apache.fop.pdf.PDFXMode;
 import org.apache.fop.pdf.Version;
@@ -124,6 +129,24 @@ public class PDFRendererConfigParserTestCase
         assertEquals("ascii-85", conf.getConfigOptions().getFilterMap().get("image").get(1));
     }
 
+    @Test
+    public void testCompression() throws Exception {
+        parseConfig(createRenderer()
+                .setCompressionPreset(null, "fast")
+                .setCompression("image", 9, "filtered"));
+        Map<String, FlateSettings> settings = conf.getConfigOptions().getFlateSettings();
+        assertEquals(FlateSettings.BEST_SPEED, settings.get("default"));
+        assertEquals(new FlateSettings(Deflater.BEST_COMPRESSION, Deflater.FILTERED),
+                settings.get("image"));
+        assertNull(settings.get("font"));
+    }
+
+    @Test
+    public void testCompressionNotConfigured() throws Exception {
+        parseConfig(createRenderer());
+        assertNull(conf.getConfigOptions().getFlateSettings());
+    }
+
     @Test
     public void testPDFAMode() throws Exception {
         parseConfig(createRenderer().setPDFAMode(PDFAMode.PDFA_1A.getName()));
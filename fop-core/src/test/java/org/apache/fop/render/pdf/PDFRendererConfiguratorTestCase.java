@@ -30,7 +30,9 @@ import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
 import org.apache.fop.apps.PDFRendererConfBuilder;
+import org.apache.fop.pdf.FlateSettings;
 import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFException;
 
@@ -73,4 +75,31 @@ public class PDFRendererConfiguratorTestCase extends
         docHandler.startDocument();
         Assert.assertTrue(getDocHandler().getThePDFDocument().isFormXObjectEnabled());
     }
+
+    @Test
+    public void testCompressionThreads() throws Exception {
+        parseConfig(createBuilder().setCompressionThreads(4));
+        docHandler.startDocument();
+        Assert.assertEquals(4, getDocHandler().getThePDFDocument().getCompressionThreads());
+    }
+
+    @Test
+    public void testXObjectDeduplication() throws Exception {
+        parseConfig(createBuilder().setXObjectDeduplicationEnabled(true));
+        docHandler.startDocument();
+        Assert.assertTrue(getDocHandler().getThePDFDocument().isXObjectDeduplicationEnabled());
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        parseConfig(createBuilder()
+                .setCompressionPreset(null, "fast")
+                .setCompression(PDFFilterList.IMAGE_FILTER, 9, null));
+        docHandler.startDocument();
+        PDFDocument pdfDoc = getDocHandler().getThePDFDocument();
+        Assert.assertEquals(FlateSettings.BEST_SPEED,
+                pdfDoc.getFlateSettings(PDFFilterList.CONTENT_FILTER));
+        Assert.assertEquals(FlateSettings.BEST_COMPRESSION,
+                pdfDoc.getFlateSettings(PDFFilterList.IMAGE_FILTER));
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.transform.Templates;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FopServletTestCase {
+
+    private static final String XSLT = "<xsl:stylesheet version=\"1.0\""
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\n"
+            + "  <xsl:template match=\"/\"><xsl:copy-of select=\".\"/></xsl:template>\n"
+            + "</xsl:stylesheet>";
+
+    private static final String FO = "<fo:root xmlns:fo=\"http://www.w3.org/1999/XSL/Format\">\n"
+            + "  <fo:layout-master-set>\n"
+            + "    <fo:simple-page-master master-name=\"simple\" page-height=\"27.9cm\" page-width=\"21.6cm\">\n"
+            + "      <fo:region-body />\n"
+            + "    </fo:simple-page-master>\n"
+            + "  </fo:layout-master-set>\n"
+            + "  <fo:page-sequence master-reference=\"simple\">\n"
+            + "    <fo:flow flow-name=\"xsl-region-body\">\n"
+            + "      <fo:block>Hello World!</fo:block>\n"
+            + "    </fo:flow>\n"
+            + "  </fo:page-sequence>\n"
+            + "</fo:root>";
+
+    private File tempDir;
+
+    @After
+    public void tearDown() {
+        if (tempDir != null) {
+            for (File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    @Test
+    public void testTemplatesAreCachedBySystemId() throws Exception {
+        FopServlet servlet = createServlet(new FopServlet());
+        File xslt = createFile("a.xsl", XSLT);
+        Templates templates = servlet.getTemplates(xslt.getPath());
+        assertSame(templates, servlet.getTemplates(xslt.getPath()));
+        assertSame(templates, servlet.getTemplates(tempDir.getPath() + "/./" + xslt.getName()));
+    }
+
+    @Test
+    public void testModifiedTemplatesAreCompiledAgain() throws Exception {
+        FopServlet servlet = createServlet(new FopServlet());
+        File xslt = createFile("a.xsl", XSLT);
+        Templates templates = servlet.getTemplates(xslt.getPath());
+        assertTrue(xslt.setLastModified(xslt.lastModified() - 10000));
+        Templates modified = servlet.getTemplates(xslt.getPath());
+        assertNotSame(templates, modified);
+        assertSame(modified, servlet.getTemplates(xslt.getPath()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTemplatesAreEvicted() throws Exception {
+        FopServlet servlet = createServlet(new FopServlet(), "templatesCacheSize", "1");
+        File a = createFile("a.xsl", XSLT);
+        File b = createFile("b.xsl", XSLT);
+        Templates templates = servlet.getTemplates(a.getPath());
+        assertSame(templates, servlet.getTemplates(a.getPath()));
+        servlet.getTemplates(b.getPath());
+        assertNotSame(templates, servlet.getTemplates(a.getPath()));
+    }
+
+    @Test
+    public void testRequestIsRefusedAfterQueueTimeout() throws Exception {
+        final CountDownLatch rendering = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final FopServlet servlet = createServlet(new FopServlet() {
+            @Override
+            protected void renderFO(String fo, HttpServletResponse response) {
+                rendering.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "maxConcurrentRenders", "1", "renderQueueTimeout", "10");
+        final Exception[] failure = new Exception[1];
+        Thread first = new Thread() {
+            public void run() {
+                try {
+                    servlet.doGet(createRequest("test.fo"), mock(HttpServletResponse.class));
+                } catch (ServletException e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        first.start();
+        rendering.await();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        servlet.doGet(createRequest("test.fo"), response);
+        verify(response).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        finish.countDown();
+        first.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        File fo = createFile("test.fo", FO);
+        // the first buffer spills to a temporary file, the second one stays in memory
+        for (String bufferThreshold : new String[] {"1", "1048576"}) {
+            FopServlet servlet = createServlet(new FopServlet(),
+                    "contentLength", "true", "bufferThreshold", bufferThreshold);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            HttpServletResponse response = mock(HttpServletResponse.class);
+            when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+                public void write(int b) {
+                    out.write(b);
+                }
+            });
+            servlet.doGet(createRequest(fo.getPath()), response);
+            assertTrue(out.toString("US-ASCII").startsWith("%PDF-"));
+            verify(response).setHeader("Content-Length", Integer.toString(out.size()));
+            assertArrayEquals(new String[] {"test.fo"}, tempDir.list());
+        }
+    }
+
+    private FopServlet createServlet(FopServlet servlet, String... initParameters)
+            throws ServletException {
+        ServletContext context = mock(ServletContext.class);
+        when(context.getAttribute("javax.servlet.context.tempdir")).thenReturn(tempDir);
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        for (int i = 0; i < initParameters.length; i += 2) {
+            when(config.getInitParameter(initParameters[i])).thenReturn(initParameters[i + 1]);
+        }
+        servlet.init(config);
+        return servlet;
+    }
+
+    private HttpServletRequest createRequest(String fo) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter(FopServlet.FO_REQUEST_PARAM)).thenReturn(fo);
+        return request;
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        if (tempDir == null) {
+            tempDir = File.createTempFile("fop-servlet-test", "");
+            tempDir.delete();
+            tempDir.mkdir();
+        }
+        File file = new File(tempDir, name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}